@@ -1,5 +1,7 @@
 package com.vesalaakso.rbb;
 
+import java.io.File;
+
 import org.newdawn.slick.AppGameContainer;
 import org.newdawn.slick.GameContainer;
 import org.newdawn.slick.SlickException;
@@ -7,6 +9,7 @@ import org.newdawn.slick.state.StateBasedGame;
 
 import com.vesalaakso.rbb.model.GameStatus;
 import com.vesalaakso.rbb.model.ResourceManager;
+import com.vesalaakso.rbb.model.StatusJournal;
 import com.vesalaakso.rbb.states.GameState;
 import com.vesalaakso.rbb.states.LoadState;
 import com.vesalaakso.rbb.states.MainMenuState;
@@ -28,15 +31,22 @@ public class RubberBandBall extends StateBasedGame {
 	/** The amount of levels we have */
 	public static final int LEVEL_COUNT = 4;
 
+	/** The directory the game status is saved to. */
+	private static final String SAVE_DIR = "save";
+
+	/** The resource manager behind all resource loading. */
+	private final ResourceManager resourceManager;
+
 	/** Constructs a new game. */
 	public RubberBandBall() {
 		super("Rubber band ball");
 
 		// The game status is stored in this and queried when necessary.
 		GameStatus gameStatus = new GameStatus();
+		gameStatus.setJournal(new StatusJournal(new File(SAVE_DIR)));
 
 		// Init resource manager
-		ResourceManager resourceManager = new ResourceManager();
+		resourceManager = new ResourceManager();
 
 		// Construct a special map change state
 		MapChangeState mapChangeState = new MapChangeState();
@@ -73,6 +83,13 @@ public class RubberBandBall extends StateBasedGame {
 		}
 	}
 
+	/** Keeps the music streaming, whichever state is running. */
+	@Override
+	protected void postUpdateState(GameContainer container, int delta)
+			throws SlickException {
+		resourceManager.getMusicPlayer().update(delta);
+	}
+
 	@Override
 	public void initStatesList(GameContainer container) throws SlickException {
 		// see main-method
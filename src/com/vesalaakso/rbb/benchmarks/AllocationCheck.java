@@ -0,0 +1,410 @@
+package com.vesalaakso.rbb.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.newdawn.slick.AngelCodeFont;
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Graphics;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.opengl.Texture;
+import org.newdawn.slick.opengl.renderer.Renderer;
+import org.newdawn.slick.util.Log;
+
+import com.sun.management.ThreadMXBean;
+import com.vesalaakso.rbb.controller.CameraController;
+import com.vesalaakso.rbb.model.Camera;
+import com.vesalaakso.rbb.model.EffectManager;
+import com.vesalaakso.rbb.model.Physics;
+import com.vesalaakso.rbb.model.Player;
+import com.vesalaakso.rbb.model.ResourceManager;
+import com.vesalaakso.rbb.model.RubberBand;
+import com.vesalaakso.rbb.model.SimulationEngine;
+import com.vesalaakso.rbb.model.TileMapContainer;
+import com.vesalaakso.rbb.model.TileMapObject;
+import com.vesalaakso.rbb.model.TrajectoryPredictor;
+import com.vesalaakso.rbb.model.audio.SoundBackend;
+import com.vesalaakso.rbb.model.resources.Audio;
+import com.vesalaakso.rbb.model.resources.Font;
+import com.vesalaakso.rbb.model.resources.Gfx;
+import com.vesalaakso.rbb.view.BackgroundPainter;
+import com.vesalaakso.rbb.view.DebugPrintPainter;
+import com.vesalaakso.rbb.view.GameStatusPainter;
+import com.vesalaakso.rbb.view.PainterContainer;
+import com.vesalaakso.rbb.view.ParticleSystemPainter;
+import com.vesalaakso.rbb.view.PhysicsMetricsPainter;
+import com.vesalaakso.rbb.view.PhysicsPainter;
+import com.vesalaakso.rbb.view.PlayerPainter;
+import com.vesalaakso.rbb.view.RubberBandPainter;
+import com.vesalaakso.rbb.view.TileMapAreaPainter;
+import com.vesalaakso.rbb.view.WorldView;
+
+/**
+ * Runs the game loop without a display for a fixed amount of frames and checks
+ * how much memory the frames allocate. Exits with a non-zero status if the
+ * frames allocate more than {@link #BUDGET_BYTES}, so that garbage sneaking
+ * back into the game loop is noticed.
+ * <p>
+ * A frame is the same as in the game: the physics with the player listener
+ * and the collision effects, the trajectory prediction, the particles and
+ * sounds of the effect manager, the camera and the painters, the debug
+ * painters included. Only the tile layers are left out, as baking them into
+ * chunks needs an OpenGL context. The painters draw through a
+ * {@link HeadlessRenderer} which draws nothing, with images and fonts which
+ * have no pixels. Slick's <code>Graphics</code> copies every color set on it,
+ * so the painters draw to a {@link HeadlessGraphics} which doesn't, leaving
+ * only what the game itself allocates to be counted. The sounds are played
+ * through a backend which plays nothing.
+ * <p>
+ * Loading the level, restarting it and launching the player are not counted,
+ * as they happen only once in a while. Aiming isn't run at all, so the rubber
+ * band and the predicted path are never drawn.
+ *
+ * @author Vesa Laakso
+ */
+public class AllocationCheck {
+
+	/** Amount of frames run before measuring, so that the JIT settles. */
+	private static final int WARMUP_FRAMES = 2000;
+
+	/** Amount of frames measured. */
+	private static final int MEASURED_FRAMES = 10000;
+
+	/** The length of a single frame in milliseconds. */
+	private static final int FRAME_DELTA = 16;
+
+	/** How much the measured frames may allocate in total, in bytes. */
+	private static final long BUDGET_BYTES = 256 * 1024;
+
+	/** The launch forces to cycle through, as x-y pairs. */
+	private static final float[] LAUNCHES = { 30f, -20f, -25f, -30f, 40f, 0f,
+			-40f, -10f };
+
+	/** The particles and sounds of the collisions. */
+	private final EffectManager effectManager;
+
+	/** The simulation to run. */
+	private final SimulationEngine engine;
+
+	/** The prediction of the launches, updated but never aimed with. */
+	private final TrajectoryPredictor trajectoryPredictor;
+
+	/** The camera follows the player, just like when playing. */
+	private final CameraController cameraController;
+
+	/** All the painters of the game. */
+	private final PainterContainer painterContainer;
+
+	/** The graphics context the painters draw to. */
+	private final Graphics graphics;
+
+	/** Used to query the memory allocated by this thread. */
+	private final ThreadMXBean threadBean;
+
+	/** The index of the next launch in {@link #LAUNCHES}. */
+	private int nextLaunch;
+
+	/**
+	 * Constructs a new check which runs the given level. The
+	 * {@link HeadlessRenderer} must already be in use.
+	 *
+	 * @param resourceManager
+	 *            an initialized resource manager to load the level from
+	 * @param level
+	 *            the level to run
+	 * @throws Exception
+	 *             if the level could not be loaded
+	 */
+	public AllocationCheck(ResourceManager resourceManager, int level)
+			throws Exception {
+		effectManager = new EffectManager(resourceManager, new SilentBackend());
+		effectManager.init();
+
+		engine = new SimulationEngine(resourceManager, effectManager);
+		engine.loadLevel(level);
+		Player player = engine.getPlayer();
+		Physics physics = engine.getPhysics();
+
+		TileMapContainer mapContainer = new TileMapContainer();
+		mapContainer.setMap(engine.getMap());
+		Camera camera = new Camera();
+		cameraController =
+			new CameraController(player, mapContainer, camera);
+
+		RubberBand rubberBand =
+			new RubberBand(player, physics, engine.getReplayRecorder(), camera,
+					null);
+		trajectoryPredictor =
+			new TrajectoryPredictor(rubberBand, player, physics, mapContainer);
+		trajectoryPredictor.reset();
+
+		// The same painters in the same order as in the game, except for the
+		// tile layers.
+		painterContainer = new PainterContainer(resourceManager, camera);
+		WorldView view = painterContainer.getWorldView();
+		painterContainer.addPainter(new BackgroundPainter(camera));
+		painterContainer.addPainter(new TileMapAreaPainter(mapContainer, view));
+		painterContainer.addPainter(new PlayerPainter(player));
+		painterContainer.addPainter(new RubberBandPainter(rubberBand,
+				trajectoryPredictor));
+		painterContainer.addPainter(new ParticleSystemPainter(effectManager,
+				view));
+		painterContainer.addPainter(new GameStatusPainter(engine
+				.getGameStatus(), mapContainer));
+		painterContainer.addDebugPainter(new PhysicsPainter(physics, view));
+		painterContainer.addDebugPainter(new DebugPrintPainter(physics, player,
+				camera));
+		painterContainer.addDebugPainter(new PhysicsMetricsPainter(physics
+				.getMetrics()));
+
+		graphics = new HeadlessGraphics();
+
+		threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+	}
+
+	/**
+	 * Runs the given amount of frames.
+	 *
+	 * @param frames
+	 *            amount of frames to run
+	 * @return the amount of bytes the frames allocated
+	 */
+	public long run(int frames) {
+		long threadId = Thread.currentThread().getId();
+		long allocated = 0;
+
+		for (int i = 0; i < frames; i++) {
+			prepareFrame();
+
+			long before = threadBean.getThreadAllocatedBytes(threadId);
+			trajectoryPredictor.update(FRAME_DELTA);
+			engine.update(FRAME_DELTA);
+			effectManager.update(FRAME_DELTA);
+			cameraController.update(FRAME_DELTA);
+			painterContainer.paintAll(graphics, true);
+			allocated += threadBean.getThreadAllocatedBytes(threadId) - before;
+		}
+		return allocated;
+	}
+
+	/** Restarts the level or launches the player when needed. */
+	private void prepareFrame() {
+		if (engine.getOutcome() != SimulationEngine.Outcome.RUNNING) {
+			engine.restart();
+			trajectoryPredictor.reset();
+			effectManager.reset();
+		}
+
+		Player player = engine.getPlayer();
+		if (!player.isStartPositioned()) {
+			TileMapObject spawn = engine.getMap().getSpawnArea();
+			engine.placePlayer(spawn.x + spawn.width * .5f, spawn.y
+					+ spawn.height * .5f);
+		}
+		if (player.isReadyForLaunch()) {
+			engine.launch(LAUNCHES[nextLaunch], LAUNCHES[nextLaunch + 1]);
+			nextLaunch = (nextLaunch + 2) % LAUNCHES.length;
+		}
+	}
+
+	/**
+	 * Runs the check on the first level.
+	 *
+	 * @param args
+	 *            not used
+	 * @throws Exception
+	 *             if the check could not be run
+	 */
+	public static void main(String[] args) throws Exception {
+		// Before anything of Slick's graphics is touched.
+		Renderer.setRenderer(new HeadlessRenderer());
+		Renderer.setLineStripRenderer(Renderer.DEFAULT_LINE_STRIP_RENDERER);
+
+		// Don't let the map loading info drown the results.
+		Log.setVerbose(false);
+
+		ResourceManager resourceManager = new HeadlessResources();
+		resourceManager.initHeadless();
+
+		AllocationCheck check = new AllocationCheck(resourceManager, 1);
+		if (!check.threadBean.isThreadAllocatedMemorySupported()) {
+			System.err.println("This JVM can't measure allocations.");
+			System.exit(1);
+		}
+		check.threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		check.run(WARMUP_FRAMES);
+		long allocated = check.run(MEASURED_FRAMES);
+
+		System.out.println(String.format(
+				"%d frames allocated %d bytes (%.1f bytes/frame), budget %d",
+				MEASURED_FRAMES, allocated, (double) allocated
+						/ MEASURED_FRAMES, BUDGET_BYTES));
+
+		if (allocated > BUDGET_BYTES) {
+			System.err.println("Allocation budget exceeded!");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Resources for painting without a display. Every image is an empty
+	 * texture and every font is Slick's default font drawn from an empty
+	 * texture.
+	 */
+	private static class HeadlessResources extends ResourceManager {
+		/** The size of every image. */
+		private static final int IMAGE_SIZE = 64;
+
+		/** The images, created when first asked for. */
+		private final Map<Gfx, Image> images = new EnumMap<Gfx, Image>(
+				Gfx.class);
+
+		/** The font given for all the fonts. */
+		private org.newdawn.slick.Font font;
+
+		@Override
+		public Image getImage(Gfx gfx) {
+			Image image = images.get(gfx);
+			if (image == null) {
+				image = new Image(new EmptyTexture(IMAGE_SIZE, IMAGE_SIZE));
+				images.put(gfx, image);
+			}
+			return image;
+		}
+
+		@Override
+		public org.newdawn.slick.Font getFont(Font font) {
+			if (this.font == null) {
+				try {
+					this.font =
+						new AngelCodeFont(
+								"org/newdawn/slick/data/defaultfont.fnt",
+								new Image(new EmptyTexture(256, 256)));
+				}
+				catch (SlickException e) {
+					throw new RuntimeException("Could not read the font", e);
+				}
+			}
+			return this.font;
+		}
+	}
+
+	/**
+	 * Graphics which remember the color set instead of copying it. The color
+	 * isn't used for drawing, as nothing is drawn anyway. Created without a
+	 * size, as the sized ones load a default font.
+	 */
+	private static class HeadlessGraphics extends Graphics {
+		/** The color last set. */
+		private Color color = Color.white;
+
+		@Override
+		public void setColor(Color color) {
+			if (color != null) {
+				this.color = color;
+			}
+		}
+
+		@Override
+		public Color getColor() {
+			return new Color(color);
+		}
+	}
+
+	/** A texture which has a size but no pixels, nor an OpenGL texture. */
+	private static class EmptyTexture implements Texture {
+		/** The width of the texture. */
+		private final int width;
+
+		/** The height of the texture. */
+		private final int height;
+
+		/** Constructs a new texture of the given size. */
+		EmptyTexture(int width, int height) {
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public boolean hasAlpha() {
+			return true;
+		}
+
+		@Override
+		public String getTextureRef() {
+			return "empty";
+		}
+
+		@Override
+		public void bind() {
+		}
+
+		@Override
+		public int getImageHeight() {
+			return height;
+		}
+
+		@Override
+		public int getImageWidth() {
+			return width;
+		}
+
+		@Override
+		public float getHeight() {
+			return 1;
+		}
+
+		@Override
+		public float getWidth() {
+			return 1;
+		}
+
+		@Override
+		public int getTextureHeight() {
+			return height;
+		}
+
+		@Override
+		public int getTextureWidth() {
+			return width;
+		}
+
+		@Override
+		public void release() {
+		}
+
+		@Override
+		public int getTextureID() {
+			return 0;
+		}
+
+		@Override
+		public byte[] getTextureData() {
+			return null;
+		}
+
+		@Override
+		public void setTextureFilter(int textureFilter) {
+		}
+	}
+
+	/** A sound backend whose sounds end as soon as they start. */
+	private static class SilentBackend implements SoundBackend {
+		@Override
+		public int play(Audio audio, float pitch, float volume) {
+			return -1;
+		}
+
+		@Override
+		public boolean isPlaying(int voice) {
+			return false;
+		}
+
+		@Override
+		public void stop(int voice) {
+		}
+	}
+}
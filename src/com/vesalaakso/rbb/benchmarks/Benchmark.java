@@ -0,0 +1,79 @@
+package com.vesalaakso.rbb.benchmarks;
+
+import com.vesalaakso.rbb.model.ResourceManager;
+import com.vesalaakso.rbb.model.SimulationEngine;
+import com.vesalaakso.rbb.model.TileMapObject;
+import com.vesalaakso.rbb.model.exceptions.MapException;
+
+/**
+ * A single benchmark run by {@link BenchmarkRunner}. The runner calls
+ * {@link #setUp()} once and then calls {@link #run()} over and over again,
+ * timing the calls.
+ *
+ * @author Vesa Laakso
+ */
+public abstract class Benchmark {
+
+	/** The name printed for the results of this benchmark. */
+	private final String name;
+
+	/**
+	 * Constructs a new benchmark with the given name.
+	 *
+	 * @param name
+	 *            the name printed for the results of this benchmark
+	 */
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Gets the name of this benchmark.
+	 *
+	 * @return name of this benchmark
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Prepares everything the benchmark needs. This is not timed.
+	 *
+	 * @throws Exception
+	 *             if the benchmark could not be set up
+	 */
+	public abstract void setUp() throws Exception;
+
+	/**
+	 * Runs the measured operation once.
+	 *
+	 * @return some value depending on the work done, which the runner sums so
+	 *         that the JIT can't remove the work as unused.
+	 * @throws Exception
+	 *             if the operation failed
+	 */
+	public abstract long run() throws Exception;
+
+	/**
+	 * Creates a simulation of the given level with the player placed in the
+	 * middle of the spawn area, ready to be launched.
+	 *
+	 * @param resourceManager
+	 *            an initialized resource manager to load the map from
+	 * @param level
+	 *            the level to simulate
+	 * @return the simulation
+	 * @throws MapException
+	 *             if the level could not be loaded
+	 */
+	protected static SimulationEngine createEngineAtSpawn(
+			ResourceManager resourceManager, int level) throws MapException {
+		SimulationEngine engine = new SimulationEngine(resourceManager);
+		engine.loadLevel(level);
+
+		TileMapObject spawn = engine.getMap().getSpawnArea();
+		engine.placePlayer(spawn.x + spawn.width * .5f, spawn.y + spawn.height
+				* .5f);
+		return engine;
+	}
+}
@@ -0,0 +1,145 @@
+package com.vesalaakso.rbb.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.newdawn.slick.util.Log;
+
+import com.vesalaakso.rbb.RubberBandBall;
+import com.vesalaakso.rbb.model.ResourceManager;
+
+/**
+ * Runs the benchmarks of the game without a display and prints how long a
+ * single operation of each took. Every performance change should be checked
+ * against these numbers.
+ * <p>
+ * Give a part of a benchmark name as the first argument to run only the
+ * matching benchmarks.
+ *
+ * @author Vesa Laakso
+ */
+public class BenchmarkRunner {
+
+	/** How many untimed rounds are run before measuring. */
+	private static final int WARMUP_ROUNDS = 5;
+
+	/** How many timed rounds are measured. */
+	private static final int MEASURED_ROUNDS = 10;
+
+	/** How long a single round lasts, in nanoseconds. */
+	private static final long ROUND_NANOS = 200 * 1000 * 1000L;
+
+	/** The benchmarks to run. */
+	private final List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+	/** Sum of the values returned by benchmarks, printed to keep them alive */
+	private long sink;
+
+	/**
+	 * Adds a benchmark to be run.
+	 *
+	 * @param benchmark
+	 *            the benchmark to run
+	 */
+	public void add(Benchmark benchmark) {
+		benchmarks.add(benchmark);
+	}
+
+	/**
+	 * Runs all the benchmarks whose name contains the given filter.
+	 *
+	 * @param filter
+	 *            the string the names must contain, empty for all
+	 * @throws Exception
+	 *             if some benchmark failed
+	 */
+	public void runAll(String filter) throws Exception {
+		System.out.println(String.format(Locale.US, "%-44s %14s %12s %12s",
+				"Benchmark", "ns/op", "+-", "ops"));
+		for (Benchmark b : benchmarks) {
+			if (b.getName().contains(filter)) {
+				runBenchmark(b);
+			}
+		}
+		System.out.println("(sink " + sink + ")");
+	}
+
+	/** Runs a single benchmark and prints its results. */
+	private void runBenchmark(Benchmark b) throws Exception {
+		b.setUp();
+
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			runRound(b);
+		}
+
+		double[] nanosPerOp = new double[MEASURED_ROUNDS];
+		long totalOps = 0;
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			long[] result = runRound(b);
+			nanosPerOp[i] = (double) result[0] / result[1];
+			totalOps += result[1];
+		}
+
+		double mean = 0;
+		for (double d : nanosPerOp) {
+			mean += d;
+		}
+		mean /= MEASURED_ROUNDS;
+
+		double variance = 0;
+		for (double d : nanosPerOp) {
+			variance += (d - mean) * (d - mean);
+		}
+		double deviation = Math.sqrt(variance / MEASURED_ROUNDS);
+
+		System.out.println(String.format(Locale.US,
+				"%-44s %14.1f %12.1f %12d", b.getName(), mean, deviation,
+				totalOps));
+	}
+
+	/**
+	 * Runs the benchmark over and over for a single round and returns the
+	 * elapsed nanoseconds and the amount of operations run.
+	 */
+	private long[] runRound(Benchmark b) throws Exception {
+		long ops = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			sink += b.run();
+			ops++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < ROUND_NANOS);
+		return new long[] { elapsed, ops };
+	}
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args
+	 *            optional part of the benchmark names to run
+	 * @throws Exception
+	 *             if some benchmark failed
+	 */
+	public static void main(String[] args) throws Exception {
+		// Don't let the map loading info drown the results.
+		Log.setVerbose(false);
+
+		ResourceManager resourceManager = new ResourceManager();
+		resourceManager.initHeadless();
+
+		BenchmarkRunner runner = new BenchmarkRunner();
+		for (int level = 1; level <= RubberBandBall.LEVEL_COUNT; level++) {
+			runner.add(new TileMapInitBenchmark(resourceManager, level));
+			runner.add(new PhysicsInitializeMapBenchmark(resourceManager,
+					level));
+			runner.add(new PhysicsUpdateBenchmark(resourceManager, level));
+			runner.add(new PlayerListenerBenchmark(resourceManager, level));
+			runner.add(new PlayerCollisionListenerBenchmark(resourceManager,
+					level));
+		}
+
+		runner.runAll(args.length > 0 ? args[0] : "");
+	}
+}
@@ -0,0 +1,254 @@
+package com.vesalaakso.rbb.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.newdawn.slick.opengl.renderer.Renderer;
+import org.newdawn.slick.opengl.renderer.SGL;
+
+/**
+ * A renderer for Slick which draws nothing, so that the painters can be run
+ * without a display. Must be given to {@link Renderer#setRenderer(SGL)}
+ * before any of Slick's graphics classes are used, as they look the renderer
+ * up only once. Only the current color and the maximum texture size are
+ * answered, everything else is ignored.
+ *
+ * @author Vesa Laakso
+ */
+class HeadlessRenderer implements SGL {
+
+	/** The texture size told to the texture loader, so it loads anything. */
+	private static final int MAX_TEXTURE_SIZE = 4096;
+
+	/** The color last set, as red, green, blue and alpha. */
+	private final float[] currentColor = { 1, 1, 1, 1 };
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void initDisplay(int width, int height) {
+	}
+
+	@Override
+	public void enterOrtho(int xsize, int ysize) {
+	}
+
+	@Override
+	public void glClearColor(float red, float green, float blue, float alpha) {
+	}
+
+	@Override
+	public void glClipPlane(int plane, DoubleBuffer buffer) {
+	}
+
+	@Override
+	public void glScissor(int x, int y, int width, int height) {
+	}
+
+	@Override
+	public void glLineWidth(float width) {
+	}
+
+	@Override
+	public void glClear(int mask) {
+	}
+
+	@Override
+	public void glColorMask(boolean red, boolean green, boolean blue,
+			boolean alpha) {
+	}
+
+	@Override
+	public void glLoadIdentity() {
+	}
+
+	@Override
+	public void glGetInteger(int id, IntBuffer ret) {
+		if (id == GL_MAX_TEXTURE_SIZE) {
+			ret.put(0, MAX_TEXTURE_SIZE);
+		}
+	}
+
+	@Override
+	public void glGetFloat(int id, FloatBuffer ret) {
+	}
+
+	@Override
+	public void glEnable(int item) {
+	}
+
+	@Override
+	public void glDisable(int item) {
+	}
+
+	@Override
+	public void glBindTexture(int target, int id) {
+	}
+
+	@Override
+	public void glGetTexImage(int target, int level, int format, int type,
+			ByteBuffer pixels) {
+	}
+
+	@Override
+	public void glDeleteTextures(IntBuffer buffer) {
+	}
+
+	@Override
+	public void glColor4f(float r, float g, float b, float a) {
+		currentColor[0] = r;
+		currentColor[1] = g;
+		currentColor[2] = b;
+		currentColor[3] = a;
+	}
+
+	@Override
+	public void glTexCoord2f(float u, float v) {
+	}
+
+	@Override
+	public void glVertex3f(float x, float y, float z) {
+	}
+
+	@Override
+	public void glVertex2f(float x, float y) {
+	}
+
+	@Override
+	public void glRotatef(float angle, float x, float y, float z) {
+	}
+
+	@Override
+	public void glTranslatef(float x, float y, float z) {
+	}
+
+	@Override
+	public void glBegin(int geomType) {
+	}
+
+	@Override
+	public void glEnd() {
+	}
+
+	@Override
+	public void glTexEnvi(int target, int mode, int value) {
+	}
+
+	@Override
+	public void glPointSize(float size) {
+	}
+
+	@Override
+	public void glScalef(float x, float y, float z) {
+	}
+
+	@Override
+	public void glPushMatrix() {
+	}
+
+	@Override
+	public void glPopMatrix() {
+	}
+
+	@Override
+	public void glBlendFunc(int src, int dest) {
+	}
+
+	@Override
+	public int glGenLists(int count) {
+		return 0;
+	}
+
+	@Override
+	public void glNewList(int id, int option) {
+	}
+
+	@Override
+	public void glEndList() {
+	}
+
+	@Override
+	public void glCallList(int id) {
+	}
+
+	@Override
+	public void glCopyTexImage2D(int target, int level, int internalFormat,
+			int x, int y, int width, int height, int border) {
+	}
+
+	@Override
+	public void glReadPixels(int x, int y, int width, int height, int format,
+			int type, ByteBuffer pixels) {
+	}
+
+	@Override
+	public void glTexParameteri(int target, int param, int value) {
+	}
+
+	@Override
+	public float[] getCurrentColor() {
+		return currentColor;
+	}
+
+	@Override
+	public void glDeleteLists(int list, int count) {
+	}
+
+	@Override
+	public void glDepthMask(boolean mask) {
+	}
+
+	@Override
+	public void glClearDepth(float value) {
+	}
+
+	@Override
+	public void glDepthFunc(int func) {
+	}
+
+	@Override
+	public void setGlobalAlphaScale(float alphaScale) {
+	}
+
+	@Override
+	public void glLoadMatrix(FloatBuffer buffer) {
+	}
+
+	@Override
+	public void glGenTextures(IntBuffer ids) {
+	}
+
+	@Override
+	public void glGetError() {
+	}
+
+	@Override
+	public void glTexImage2D(int target, int level, int internalFormat,
+			int width, int height, int border, int format, int type,
+			ByteBuffer pixels) {
+	}
+
+	@Override
+	public void glTexSubImage2D(int target, int level, int xoffset,
+			int yoffset, int width, int height, int format, int type,
+			ByteBuffer pixels) {
+	}
+
+	@Override
+	public boolean canTextureMirrorClamp() {
+		return false;
+	}
+
+	@Override
+	public boolean canSecondaryColor() {
+		return false;
+	}
+
+	@Override
+	public void glSecondaryColor3ubEXT(byte red, byte green, byte blue) {
+	}
+}
@@ -0,0 +1,52 @@
+package com.vesalaakso.rbb.benchmarks;
+
+import com.vesalaakso.rbb.model.Physics;
+import com.vesalaakso.rbb.model.ResourceManager;
+import com.vesalaakso.rbb.model.SimulationEngine;
+
+/**
+ * Measures {@link Physics#initializeMap()}. The map is initialized through
+ * {@link Physics#reset()}, as that is how the game does it and as it removes
+ * the bodies of the previous initialization.
+ *
+ * @author Vesa Laakso
+ */
+public class PhysicsInitializeMapBenchmark extends Benchmark {
+
+	/** The resource manager to load the map from. */
+	private final ResourceManager resourceManager;
+
+	/** The level to initialize. */
+	private final int level;
+
+	/** The physics engine to initialize. */
+	private Physics physics;
+
+	/**
+	 * Constructs the benchmark for the given level.
+	 *
+	 * @param resourceManager
+	 *            an initialized resource manager to load the map from
+	 * @param level
+	 *            the level to initialize
+	 */
+	public PhysicsInitializeMapBenchmark(ResourceManager resourceManager,
+			int level) {
+		super("Physics.initializeMap level " + level);
+		this.resourceManager = resourceManager;
+		this.level = level;
+	}
+
+	@Override
+	public void setUp() throws Exception {
+		SimulationEngine engine = new SimulationEngine(resourceManager);
+		engine.loadLevel(level);
+		physics = engine.getPhysics();
+	}
+
+	@Override
+	public long run() {
+		physics.reset();
+		return physics.getBodies().size();
+	}
+}
@@ -0,0 +1,66 @@
+package com.vesalaakso.rbb.benchmarks;
+
+import com.vesalaakso.rbb.model.Physics;
+import com.vesalaakso.rbb.model.Player;
+import com.vesalaakso.rbb.model.ResourceManager;
+import com.vesalaakso.rbb.model.SimulationEngine;
+
+/**
+ * Measures {@link Physics#update(int)} while the player is bouncing around the
+ * level. Whenever the player stops, it is launched again from where it
+ * stopped, so the world never falls asleep.
+ *
+ * @author Vesa Laakso
+ */
+public class PhysicsUpdateBenchmark extends Benchmark {
+
+	/** The delta to update physics with, one step worth of time. */
+	private static final int DELTA = (int) Math.ceil(Physics.STEP_MILLIS);
+
+	/** The launch forces to cycle through, as x-y pairs. */
+	private static final float[] LAUNCHES = { 30f, -20f, -25f, -30f, 40f, 0f,
+			-40f, -10f };
+
+	/** The resource manager to load the map from. */
+	private final ResourceManager resourceManager;
+
+	/** The level to simulate. */
+	private final int level;
+
+	/** The simulation the physics belong to. */
+	private SimulationEngine engine;
+
+	/** The index of the next launch in {@link #LAUNCHES}. */
+	private int nextLaunch;
+
+	/**
+	 * Constructs the benchmark for the given level.
+	 *
+	 * @param resourceManager
+	 *            an initialized resource manager to load the map from
+	 * @param level
+	 *            the level to simulate
+	 */
+	public PhysicsUpdateBenchmark(ResourceManager resourceManager, int level) {
+		super("Physics.update level " + level);
+		this.resourceManager = resourceManager;
+		this.level = level;
+	}
+
+	@Override
+	public void setUp() throws Exception {
+		engine = createEngineAtSpawn(resourceManager, level);
+		nextLaunch = 0;
+	}
+
+	@Override
+	public long run() {
+		Player player = engine.getPlayer();
+		if (player.isReadyForLaunch()) {
+			engine.launch(LAUNCHES[nextLaunch], LAUNCHES[nextLaunch + 1]);
+			nextLaunch = (nextLaunch + 2) % LAUNCHES.length;
+		}
+		engine.getPhysics().update(DELTA);
+		return engine.getPhysics().getStepCount();
+	}
+}
@@ -0,0 +1,92 @@
+package com.vesalaakso.rbb.benchmarks;
+
+import java.lang.reflect.Constructor;
+
+import org.newdawn.fizzy.Body;
+import org.newdawn.fizzy.CollisionEvent;
+import org.newdawn.fizzy.FizzyContact;
+import org.newdawn.slick.tiled.GroupObject;
+
+import com.vesalaakso.rbb.controller.PlayerCollisionListener;
+import com.vesalaakso.rbb.model.Physics;
+import com.vesalaakso.rbb.model.ResourceManager;
+import com.vesalaakso.rbb.model.SimulationEngine;
+import com.vesalaakso.rbb.model.TileMapObject;
+
+/**
+ * Measures {@link PlayerCollisionListener#collided(CollisionEvent)} for a
+ * collision between the player and a rectangle of the level.
+ *
+ * @author Vesa Laakso
+ */
+public class PlayerCollisionListenerBenchmark extends Benchmark {
+
+	/** The resource manager to load the map from. */
+	private final ResourceManager resourceManager;
+
+	/** The level to collide in. */
+	private final int level;
+
+	/** The listener to measure. */
+	private PlayerCollisionListener listener;
+
+	/** The collision fed to the listener. */
+	private CollisionEvent event;
+
+	/**
+	 * Constructs the benchmark for the given level.
+	 *
+	 * @param resourceManager
+	 *            an initialized resource manager to load the map from
+	 * @param level
+	 *            the level to collide in
+	 */
+	public PlayerCollisionListenerBenchmark(ResourceManager resourceManager,
+			int level) {
+		super("PlayerCollisionListener.collided level " + level);
+		this.resourceManager = resourceManager;
+		this.level = level;
+	}
+
+	@Override
+	public void setUp() throws Exception {
+		SimulationEngine engine =
+			createEngineAtSpawn(resourceManager, level);
+		engine.launch(0, 0);
+
+		Physics physics = engine.getPhysics();
+		Body<?> playerBody = physics.getPlayerBody();
+
+		// Collide with the first rectangle of the level
+		Body<?> otherBody = null;
+		for (Body<?> body : physics.getBodies()) {
+			TileMapObject obj = physics.getTileMapObject(body);
+			if (obj != null
+					&& obj.objectType == GroupObject.ObjectType.RECTANGLE) {
+				otherBody = body;
+				break;
+			}
+		}
+		if (otherBody == null) {
+			throw new IllegalStateException("Level " + level
+					+ " has no rectangles to collide with");
+		}
+
+		// Fizzy only creates events itself, so dig out the constructor.
+		Constructor<CollisionEvent> constructor =
+			CollisionEvent.class.getDeclaredConstructor(Body.class,
+					Body.class, FizzyContact.class);
+		constructor.setAccessible(true);
+		event = constructor.newInstance(playerBody, otherBody, null);
+
+		listener =
+			new PlayerCollisionListener(physics, engine.getPlayer(), null,
+					null);
+	}
+
+	@Override
+	public long run() {
+		listener.collided(event);
+		return 1;
+	}
+}
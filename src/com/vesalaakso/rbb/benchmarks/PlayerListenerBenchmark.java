@@ -0,0 +1,87 @@
+package com.vesalaakso.rbb.benchmarks;
+
+import com.vesalaakso.rbb.controller.PlayerListener;
+import com.vesalaakso.rbb.model.Physics;
+import com.vesalaakso.rbb.model.ResourceManager;
+import com.vesalaakso.rbb.model.SimulationEngine;
+import com.vesalaakso.rbb.model.TileMap;
+
+/**
+ * Measures {@link PlayerListener#update(int)} for a launched player moving
+ * through the level. Between the updates the player is moved half a tile
+ * along a path sweeping the whole level row by row, so the updates cross
+ * cells and enter and leave the areas of the level instead of only finding
+ * out that nothing has changed.
+ *
+ * @author Vesa Laakso
+ */
+public class PlayerListenerBenchmark extends Benchmark {
+
+	/** The delta to update the listener with, one step worth of time. */
+	private static final int DELTA = (int) Math.ceil(Physics.STEP_MILLIS);
+
+	/** The distance the player is moved between the updates. */
+	private static final float MOVE = TileMap.TILE_SIZE * .5f;
+
+	/** The resource manager to load the map from. */
+	private final ResourceManager resourceManager;
+
+	/** The level to check. */
+	private final int level;
+
+	/** The simulation the listener belongs to. */
+	private SimulationEngine engine;
+
+	/** The positions the player is moved through, as x-y pairs. */
+	private float[] path;
+
+	/** The index of the next position in {@link #path}. */
+	private int nextPosition;
+
+	/**
+	 * Constructs the benchmark for the given level.
+	 *
+	 * @param resourceManager
+	 *            an initialized resource manager to load the map from
+	 * @param level
+	 *            the level to check
+	 */
+	public PlayerListenerBenchmark(ResourceManager resourceManager, int level) {
+		super("PlayerListener.update level " + level);
+		this.resourceManager = resourceManager;
+		this.level = level;
+	}
+
+	@Override
+	public void setUp() throws Exception {
+		// Launch the player so that it has an awake body. The physics aren't
+		// stepped, so the body stays where it is and awake.
+		engine = createEngineAtSpawn(resourceManager, level);
+		engine.launch(0, 0);
+
+		// Back and forth every row, so the player never jumps far.
+		TileMap map = engine.getMap();
+		int columns = map.getWidthInTiles() * 2;
+		int rows = map.getHeightInTiles() * 2;
+		path = new float[columns * rows * 2];
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				int x = row % 2 == 0 ? column : columns - 1 - column;
+				int i = (row * columns + column) * 2;
+				path[i] = (x + .5f) * MOVE;
+				path[i + 1] = (row + .5f) * MOVE;
+			}
+		}
+		nextPosition = 0;
+	}
+
+	@Override
+	public long run() {
+		engine.getPlayer().setPosition(path[nextPosition],
+				path[nextPosition + 1]);
+		nextPosition = (nextPosition + 2) % path.length;
+
+		engine.getPlayerListener().update(DELTA);
+		return (long) engine.getPlayer().getHappiness();
+	}
+}
@@ -0,0 +1,44 @@
+package com.vesalaakso.rbb.benchmarks;
+
+import com.vesalaakso.rbb.model.ResourceManager;
+import com.vesalaakso.rbb.model.TileMap;
+
+/**
+ * Measures {@link TileMap#init()}, which stores all the objects of a level.
+ *
+ * @author Vesa Laakso
+ */
+public class TileMapInitBenchmark extends Benchmark {
+
+	/** The resource manager to load the map from. */
+	private final ResourceManager resourceManager;
+
+	/** The level to initialize. */
+	private final int level;
+
+	/**
+	 * Constructs the benchmark for the given level.
+	 *
+	 * @param resourceManager
+	 *            an initialized resource manager to load the map from
+	 * @param level
+	 *            the level to initialize
+	 */
+	public TileMapInitBenchmark(ResourceManager resourceManager, int level) {
+		super("TileMap.init level " + level);
+		this.resourceManager = resourceManager;
+		this.level = level;
+	}
+
+	@Override
+	public void setUp() {
+		// NO-OP
+	}
+
+	@Override
+	public long run() throws Exception {
+		TileMap map = new TileMap(level, resourceManager);
+		map.init();
+		return map.getCollisionObjects().size();
+	}
+}
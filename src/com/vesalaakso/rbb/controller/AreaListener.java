@@ -0,0 +1,33 @@
+package com.vesalaakso.rbb.controller;
+
+import com.vesalaakso.rbb.model.AreaTracker;
+import com.vesalaakso.rbb.model.TileMapObject;
+
+/**
+ * Classes which want to know when the player enters or leaves an area of the
+ * map need to implement this interface. The events are sent by an
+ * {@link AreaTracker}.
+ *
+ * @author Vesa Laakso
+ *
+ * @param <T>
+ *            the type of areas listened to
+ */
+public interface AreaListener<T extends TileMapObject> {
+
+	/**
+	 * Called when the player moves inside an area.
+	 *
+	 * @param area
+	 *            the area the player entered
+	 */
+	public void areaEntered(T area);
+
+	/**
+	 * Called when the player moves outside an area it was inside of.
+	 *
+	 * @param area
+	 *            the area the player left
+	 */
+	public void areaExited(T area);
+}
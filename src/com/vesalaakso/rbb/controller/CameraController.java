@@ -1,6 +1,5 @@
 package com.vesalaakso.rbb.controller;
 
-import org.newdawn.fizzy.Vector;
 import org.newdawn.slick.Input;
 
 import com.vesalaakso.rbb.RubberBandBall;
@@ -43,19 +42,27 @@ public class CameraController extends MouseAdapter implements Updateable,
 	/** The map container to query the current map from for limiting */
 	private TileMapContainer mapContainer;
 
+	/** The camera being controlled. */
+	private Camera camera;
+
 	/**
 	 * Constructs a new CameraController and associates it with the given
-	 * <code>Player</code> and <code>TileMapContainer</code>.
+	 * <code>Player</code>, <code>TileMapContainer</code> and
+	 * <code>Camera</code>.
 	 * 
 	 * @param player
 	 *            the <code>Player</code> this controller will make the Camera
 	 *            follow.
 	 * @param mapContainer
 	 *            the map container to query the current map from for limiting
+	 * @param camera
+	 *            the <code>Camera</code> to control
 	 */
-	public CameraController(Player player, TileMapContainer mapContainer) {
+	public CameraController(Player player, TileMapContainer mapContainer,
+			Camera camera) {
 		this.player = player;
 		this.mapContainer = mapContainer;
+		this.camera = camera;
 	}
 
 	@Override
@@ -149,35 +156,31 @@ public class CameraController extends MouseAdapter implements Updateable,
 
 	/** Updates the camera position and scaling as wanted. */
 	private void updateCamera(int delta) {
-		Camera cam = Camera.get();
-
 		// If scaling target differs enough from the current scale, scale.
-		float camScale = cam.getScaling();
+		float camScale = camera.getScaling();
 		if (Math.abs(camScale - cameraTargetScale) > 1e-5f) {
 			float newScale = Utils.curveValue(camScale, cameraTargetScale, 20);
-			cam.setScaling(newScale);
+			camera.setScaling(newScale);
 		}
 
 		// If the player is in a state that he is ready to be launched or hasn't
 		// been positioned for start yet, move the camera by the speed specified
 		// with mouse position
 		if (player.isReadyForLaunch() || !player.isStartPositioned()) {
-			cam.translate(cameraMoveX * delta, cameraMoveY * delta);
+			camera.translate(cameraMoveX * delta, cameraMoveY * delta);
 		}
 		else {
 			// Glue the camera to the player if one is not ready for launch but
 			// has a start position set.
-			Vector oldP = new Vector(cam.getX(), cam.getY());
-			Vector targetP = new Vector(player.getX(), player.getY());
-			Vector curved = Utils.curvePoints(oldP, targetP, 20);
+			float curvedX = Utils.curveValue(camera.getX(), player.getX(), 20);
+			float curvedY = Utils.curveValue(camera.getY(), player.getY(), 20);
 
-			cam.setPosition(curved.x, curved.y);
+			camera.setPosition(curvedX, curvedY);
 		}
 	}
 
 	/** Limits the camera position and scaling */
 	private void limitCamera() {
-		Camera cam = Camera.get();
 		TileMap map = mapContainer.getMap();
 
 		// Limit camera position based on map height.
@@ -185,27 +188,29 @@ public class CameraController extends MouseAdapter implements Updateable,
 		int mapHeight = map.getHeightInTiles() * TileMap.TILE_SIZE;
 
 		// Position to set the camera to
-		float camX = cam.getX();
-		float camY = cam.getY();
+		float camX = camera.getX();
+		float camY = camera.getY();
 
 		// Current viewport width and height halves in pixels
-		float halfScrW = RubberBandBall.SCREEN_WIDTH / (2 * cam.getScaling());
-		float halfScrH = RubberBandBall.SCREEN_HEIGHT / (2 * cam.getScaling());
+		float halfScrW = RubberBandBall.SCREEN_WIDTH
+				/ (2 * camera.getScaling());
+		float halfScrH = RubberBandBall.SCREEN_HEIGHT
+				/ (2 * camera.getScaling());
 
 		// Limit scaling
 		if (halfScrW * 2 > mapWidth) {
 			float newScale = ((float) RubberBandBall.SCREEN_WIDTH / mapWidth);
-			cam.setScaling(newScale);
+			camera.setScaling(newScale);
 			cameraTargetScale = newScale;
-			halfScrW = RubberBandBall.SCREEN_WIDTH / (2 * cam.getScaling());
-			halfScrH = RubberBandBall.SCREEN_HEIGHT / (2 * cam.getScaling());
+			halfScrW = RubberBandBall.SCREEN_WIDTH / (2 * camera.getScaling());
+			halfScrH = RubberBandBall.SCREEN_HEIGHT / (2 * camera.getScaling());
 		}
 		if (halfScrH * 2 > mapHeight) {
 			float newScale = ((float) RubberBandBall.SCREEN_HEIGHT / mapHeight);
-			cam.setScaling(newScale);
+			camera.setScaling(newScale);
 			cameraTargetScale = newScale;
-			halfScrW = RubberBandBall.SCREEN_WIDTH / (2 * cam.getScaling());
-			halfScrH = RubberBandBall.SCREEN_HEIGHT / (2 * cam.getScaling());
+			halfScrW = RubberBandBall.SCREEN_WIDTH / (2 * camera.getScaling());
+			halfScrH = RubberBandBall.SCREEN_HEIGHT / (2 * camera.getScaling());
 		}
 
 		if (camX < halfScrW) {
@@ -225,7 +230,7 @@ public class CameraController extends MouseAdapter implements Updateable,
 			camY = mapHeight - halfScrH;
 		}
 
-		cam.setPosition(camX, camY);
+		camera.setPosition(camX, camY);
 	}
 
 	/**
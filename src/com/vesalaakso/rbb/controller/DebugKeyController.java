@@ -1,7 +1,20 @@
 package com.vesalaakso.rbb.controller;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+import org.newdawn.slick.util.Log;
+
 import com.vesalaakso.rbb.model.Camera;
+import com.vesalaakso.rbb.model.PhysicsMetrics;
 import com.vesalaakso.rbb.model.Player;
+import com.vesalaakso.rbb.model.replay.Replay;
+import com.vesalaakso.rbb.model.replay.ReplayRecorder;
 import com.vesalaakso.rbb.states.GameState;
 
 /**
@@ -12,12 +25,27 @@ import com.vesalaakso.rbb.states.GameState;
  */
 public class DebugKeyController extends KeyAdapter implements Updateable {
 
+	/** The file physics metrics are written to. */
+	private static final String METRICS_FILE = "physics-metrics.csv";
+
+	/** The directory replays are written to. */
+	private static final String REPLAY_DIR = "replays";
+
 	/** Game for toggling debug state */
 	private GameState game;
 
 	/** <code>Player</code> to debug. */
 	private Player player;
 
+	/** Statistics of the physics world to dump on request. */
+	private PhysicsMetrics physicsMetrics;
+
+	/** Recorder of the tries, whose latest replay is saved on request. */
+	private ReplayRecorder recorder;
+
+	/** The camera whose scaling can be changed. */
+	private Camera camera;
+
 	/** In what direction will the happiness of the player be modified. */
 	private float playerChangeHappiness;
 
@@ -31,10 +59,21 @@ public class DebugKeyController extends KeyAdapter implements Updateable {
 	 *            we want to be able to toggle the debug state and check it.
 	 * @param player
 	 *            we want to debug player, yes.
+	 * @param physicsMetrics
+	 *            the statistics of the physics world to write to a file
+	 * @param recorder
+	 *            the recorder whose latest replay to write to a file
+	 * @param camera
+	 *            the camera whose scaling to change
 	 */
-	public DebugKeyController(GameState game, Player player) {
+	public DebugKeyController(GameState game, Player player,
+			PhysicsMetrics physicsMetrics, ReplayRecorder recorder,
+			Camera camera) {
 		this.game = game;
 		this.player = player;
+		this.physicsMetrics = physicsMetrics;
+		this.recorder = recorder;
+		this.camera = camera;
 	}
 
 	@Override
@@ -64,6 +103,16 @@ public class DebugKeyController extends KeyAdapter implements Updateable {
 			case DBG_CHANGE_TO_PREV_LEVEL:
 				game.changeToPreviousLevel();
 				break;
+			case DBG_DUMP_PHYSICS_METRICS:
+				if (game.isDebugModeToggled()) {
+					dumpPhysicsMetrics();
+				}
+				break;
+			case DBG_SAVE_REPLAY:
+				if (game.isDebugModeToggled()) {
+					saveReplay();
+				}
+				break;
 			default:
 				// Not ours.
 		}
@@ -81,6 +130,66 @@ public class DebugKeyController extends KeyAdapter implements Updateable {
 		}
 	}
 
+	/** Writes the recorded physics metrics to {@link #METRICS_FILE}. */
+	private void dumpPhysicsMetrics() {
+		Writer out = null;
+		try {
+			out = new FileWriter(METRICS_FILE);
+			physicsMetrics.writeCsv(out);
+			Log.info("Physics metrics written to " + METRICS_FILE);
+		}
+		catch (IOException e) {
+			Log.error("Failed to write physics metrics", e);
+		}
+		finally {
+			if (out != null) {
+				try {
+					out.close();
+				}
+				catch (IOException e) {
+					// Nothing to do about it.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the replay of the latest finished try to {@link #REPLAY_DIR},
+	 * named after the level and the current time.
+	 */
+	private void saveReplay() {
+		Replay replay = recorder.getReplay();
+		if (replay == null) {
+			Log.warn("No try has been finished yet, no replay to write");
+			return;
+		}
+
+		File dir = new File(REPLAY_DIR);
+		dir.mkdirs();
+		File file = new File(dir, "level" + replay.getLevel() + "-"
+				+ System.currentTimeMillis() + Replay.EXTENSION);
+
+		OutputStream out = null;
+		try {
+			out = new BufferedOutputStream(new FileOutputStream(file));
+			replay.write(out);
+			Log.info("Replay written to " + file);
+		}
+		catch (IOException e) {
+			Log.error("Failed to write the replay", e);
+		}
+		finally {
+			if (out != null) {
+				try {
+					out.close();
+				}
+				catch (IOException e) {
+					// Nothing to do about it.
+				}
+			}
+		}
+	}
+
 	@Override
 	public void update(int delta) {
 		if (!game.isDebugModeToggled()) {
@@ -92,9 +201,9 @@ public class DebugKeyController extends KeyAdapter implements Updateable {
 		player.setHappiness(player.getHappiness() + playerChangeHappiness
 				* factor);
 
-		float oldScale = Camera.get().getScaling();
+		float oldScale = camera.getScaling();
 		float newScale = oldScale + cameraChangeScale * factor;
-		Camera.get().setScaling(newScale);
+		camera.setScaling(newScale);
 	}
 
 }
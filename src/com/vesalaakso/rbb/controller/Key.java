@@ -35,7 +35,11 @@ public enum Key {
 	/** Debug, changes the level to next. */
 	DBG_CHANGE_TO_NEXT_LEVEL(Input.KEY_N),
 	/** Debug, goes back one level. */
-	DBG_CHANGE_TO_PREV_LEVEL(Input.KEY_B);
+	DBG_CHANGE_TO_PREV_LEVEL(Input.KEY_B),
+	/** Debug, writes the physics metrics to a CSV file. */
+	DBG_DUMP_PHYSICS_METRICS(Input.KEY_M),
+	/** Debug, writes the replay of the latest finished try to a file. */
+	DBG_SAVE_REPLAY(Input.KEY_R);
 
 	/** The Input key constant mapped to the enum */
 	public final int id;
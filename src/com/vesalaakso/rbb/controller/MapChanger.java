@@ -3,25 +3,32 @@ package com.vesalaakso.rbb.controller;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.newdawn.slick.tiled.TiledMapPlus;
 import org.newdawn.slick.util.Log;
 
+import com.vesalaakso.rbb.RubberBandBall;
+
 import com.vesalaakso.rbb.model.GameStatus;
 import com.vesalaakso.rbb.model.ResourceManager;
 import com.vesalaakso.rbb.model.TileMap;
 import com.vesalaakso.rbb.model.TileMapContainer;
 import com.vesalaakso.rbb.model.exceptions.MapException;
+import com.vesalaakso.rbb.model.resources.MapEvictionListener;
 
 /**
  * Handles everything that needs to be updated when the map changes.
  * 
  * @author Vesa Laakso
  */
-public class MapChanger {
+public class MapChanger implements MapEvictionListener {
 
 	/** If map is changing, this is the new map to change to. */
 	private TileMap newMap;
 
-	/** Already initialized maps mapped to their index */
+	/**
+	 * Already initialized maps mapped to their index, as long as the resource
+	 * manager keeps them cached
+	 */
 	private Map<Integer, TileMap> initializedMapsMap =
 		new HashMap<Integer, TileMap>();
 
@@ -53,6 +60,7 @@ public class MapChanger {
 		this.mapContainer = mapContainer;
 		this.gameStatus = gameStatus;
 		this.resourceManager = resourceManager;
+		resourceManager.addMapEvictionListener(this);
 	}
 
 	/**
@@ -67,9 +75,13 @@ public class MapChanger {
 		// Get the new map
 		if (initializedMapsMap.containsKey(newMap)) {
 			this.newMap = initializedMapsMap.get(newMap);
+			// Mark the map as used, so that it stays in the map cache.
+			resourceManager.getMap(newMap);
 		}
 		else {
 			this.newMap = new TileMap(newMap, resourceManager);
+			// Get the parsing going while the old map fades out.
+			resourceManager.prefetchMap(newMap);
 		}
 	}
 
@@ -91,6 +103,21 @@ public class MapChanger {
 
 		// Updating map container map updates the map for all.
 		mapContainer.setMap(newMap);
+
+		// Load the next level while this one is being played.
+		int nextLevel = newMap.getLevel() + 1;
+		if (nextLevel <= RubberBandBall.LEVEL_COUNT) {
+			resourceManager.prefetchMap(nextLevel);
+		}
+	}
+
+	/**
+	 * Forgets the initialized map of a level dropped from the map cache, so
+	 * that it is initialized again from a freshly loaded map when needed.
+	 */
+	@Override
+	public void mapEvicted(int level, TiledMapPlus map) {
+		initializedMapsMap.remove(level);
 	}
 
 }
@@ -0,0 +1,23 @@
+package com.vesalaakso.rbb.controller;
+
+/**
+ * Classes which want to know when the player completes or fails the current
+ * map need to implement this interface.
+ *
+ * @author Vesa Laakso
+ */
+public interface MapResultListener {
+
+	/**
+	 * Called when a player successfully completes the map.
+	 */
+	public void completedMap();
+
+	/**
+	 * Called when a player fails the map.
+	 *
+	 * @param reason
+	 *            the reason why game ended
+	 */
+	public void failedMap(String reason);
+}
@@ -9,7 +9,8 @@ import com.vesalaakso.rbb.model.EffectManager;
 import com.vesalaakso.rbb.model.Physics;
 import com.vesalaakso.rbb.model.Player;
 import com.vesalaakso.rbb.model.TileMapObject;
-import com.vesalaakso.rbb.util.Utils;
+import com.vesalaakso.rbb.model.analytics.Analytics;
+import com.vesalaakso.rbb.model.analytics.EventType;
 
 /**
  * Listens for collisions where the colliding object is the player.
@@ -27,6 +28,9 @@ public class PlayerCollisionListener implements WorldListener {
 	/** Ooh, we can haz effects, yes! */
 	private EffectManager effectManager;
 
+	/** The collisions are recorded to this, <code>null</code> if not. */
+	private Analytics analytics;
+
 	/**
 	 * The physics body where the player last collided to but has not yet been
 	 * separated from
@@ -35,10 +39,10 @@ public class PlayerCollisionListener implements WorldListener {
 
 	/**
 	 * Try to fix the fact that somehow the player can get stuck bouncing
-	 * forever. This attribute contains the timestamp of when the last bounce
-	 * happened to the same body.
+	 * forever. This attribute contains the physics step the last bounce
+	 * happened to the same body on, or -1 if there has been none.
 	 */
-	private long lastBounceFromSameBody;
+	private long lastBounceFromSameBody = -1;
 
 	/**
 	 * Still trying to fix the infinite bouncing problem. This attribute
@@ -53,8 +57,11 @@ public class PlayerCollisionListener implements WorldListener {
 	 */
 	private final static int MAX_BOUNCE_COUNT_FROM_SAME_BODY = 8;
 
-	/** This constant defines the delta to check bounce fixing against */
-	private final static long BOUNCE_BUG_MIN_TIME_DIFF = 350;
+	/**
+	 * This constant defines the delta to check bounce fixing against, in
+	 * physics steps. 21 steps are 350 ms of game time.
+	 */
+	private final static long BOUNCE_BUG_MIN_STEPS = 21;
 
 	/**
 	 * Constructs a new <code>PlayerCollisionListener</code> and lets it know
@@ -67,13 +74,17 @@ public class PlayerCollisionListener implements WorldListener {
 	 *            the {@link Player}-model for the collisions
 	 * @param effectManager
 	 *            the EffectManager which will be used to create effects when
-	 *            needed
+	 *            needed, or <code>null</code> if there should be no effects
+	 * @param analytics
+	 *            the Analytics to record the collisions to, or
+	 *            <code>null</code> if they should not be recorded
 	 */
 	public PlayerCollisionListener(Physics physics, Player player,
-			EffectManager effectManager) {
+			EffectManager effectManager, Analytics analytics) {
 		this.physics = physics;
 		this.player = player;
 		this.effectManager = effectManager;
+		this.analytics = analytics;
 	}
 
 	/**
@@ -81,15 +92,26 @@ public class PlayerCollisionListener implements WorldListener {
 	 */
 	@Override
 	public void collided(CollisionEvent event) {
+		long start = System.nanoTime();
+
 		// Store the last collision body
 		lastCollisionBody = getCollisionBody(event);
 
 		// Add a collision effect based on the collision force
-		Body<?> playerBody = physics.getPlayerBody();
-		float force = 0.0f;
-		force += Math.abs(playerBody.getXVelocity());
-		force += Math.abs(playerBody.getYVelocity());
-		effectManager.addCollisionEffect(player.getX(), player.getY(), force);
+		if (effectManager != null || analytics != null) {
+			Body<?> playerBody = physics.getPlayerBody();
+			float force = 0.0f;
+			force += Math.abs(playerBody.getXVelocity());
+			force += Math.abs(playerBody.getYVelocity());
+			if (effectManager != null) {
+				effectManager.addCollisionEffect(player.getX(), player.getY(),
+						force);
+			}
+			if (analytics != null) {
+				analytics.record(EventType.COLLIDED, player.getX(),
+						player.getY(), force, 0);
+			}
+		}
 
 		TileMapObject tile = physics.getTileMapObject(lastCollisionBody);
 
@@ -103,6 +125,9 @@ public class PlayerCollisionListener implements WorldListener {
 				}
 			}
 		}
+
+		// Keep track of how long handling the collisions takes
+		physics.getMetrics().addListenerNanos(System.nanoTime() - start);
 	}
 
 	/**
@@ -110,27 +135,33 @@ public class PlayerCollisionListener implements WorldListener {
 	 */
 	@Override
 	public void separated(CollisionEvent event) {
+		long start = System.nanoTime();
+
 		Body<?> otherBody = getCollisionBody(event);
 
 		if (otherBody == lastCollisionBody) {
 			// Stop friction simulation as player is no longer on ground.
 			physics.stopSimulatingFriction();
-			// Try to fix the infinite bouncing problem.
-			long timeNow = Utils.getTime();
-			if (lastBounceFromSameBody == 0
-					|| lastBounceFromSameBody + BOUNCE_BUG_MIN_TIME_DIFF > timeNow) {
-				lastBounceFromSameBody = timeNow;
+			// Try to fix the infinite bouncing problem. Steps are counted
+			// instead of time, so that this works the same way when running
+			// without a display, no matter when the try started.
+			long stepNow = physics.getStepCount();
+			if (lastBounceFromSameBody < 0
+					|| lastBounceFromSameBody + BOUNCE_BUG_MIN_STEPS > stepNow) {
+				lastBounceFromSameBody = stepNow;
 				bounceCountFromSameBody++;
 			}
 			else {
-				lastBounceFromSameBody = 0;
+				lastBounceFromSameBody = -1;
 				bounceCountFromSameBody = 0;
 			}
 		}
 		else {
-			lastBounceFromSameBody = 0;
+			lastBounceFromSameBody = -1;
 			bounceCountFromSameBody = 0;
 		}
+
+		physics.getMetrics().addListenerNanos(System.nanoTime() - start);
 	}
 
 	/**
@@ -5,21 +5,34 @@ import java.util.List;
 import org.newdawn.fizzy.Body;
 import org.newdawn.fizzy.Circle;
 
+import com.vesalaakso.rbb.model.AreaTracker;
 import com.vesalaakso.rbb.model.GravityArea;
 import com.vesalaakso.rbb.model.Physics;
 import com.vesalaakso.rbb.model.Player;
 import com.vesalaakso.rbb.model.TileMap;
 import com.vesalaakso.rbb.model.TileMapContainer;
 import com.vesalaakso.rbb.model.TileMapObject;
-import com.vesalaakso.rbb.states.GameState;
+import com.vesalaakso.rbb.model.TileMapObjectType;
+import com.vesalaakso.rbb.model.analytics.Analytics;
+import com.vesalaakso.rbb.model.analytics.EventType;
 
 /**
  * A class which checks where the player moves and if the player happens to
  * touch special stuff in map, do something special.
+ * <p>
+ * The areas are followed with {@link AreaTracker}s, so the special stuff is
+ * only done when the player enters or leaves an area instead of checking
+ * every area on every update.
+ * <p>
+ * Entering a gravity area changes the gravity to the one of the area.
+ * Leaving it changes the gravity to the one of the gravity area entered
+ * most recently that the player is still inside of, if any, so nested areas
+ * work. Otherwise the gravity stays as it was.
  * 
  * @author Vesa Laakso
  */
-public class PlayerListener implements Updateable {
+public class PlayerListener implements Updateable, Resetable,
+		AreaListener<TileMapObject> {
 
 	/** The map container to read map from which to read areas from. */
 	private TileMapContainer mapContainer;
@@ -31,7 +44,24 @@ public class PlayerListener implements Updateable {
 	private Physics physics;
 
 	/** The game to modify when something triggerable happens */
-	private GameState game;
+	private MapResultListener game;
+
+	/** The gravity changes are recorded to this, <code>null</code> if not. */
+	private Analytics analytics;
+
+	/** Follows the safe and finish areas of the map. */
+	private final AreaTracker<TileMapObject> areaTracker =
+		new AreaTracker<TileMapObject>();
+
+	/** Follows the gravity areas of the map. */
+	private final AreaTracker<GravityArea> gravityAreaTracker =
+		new AreaTracker<GravityArea>();
+
+	/** The amount of safe areas the player is inside of. */
+	private int safeAreaCount;
+
+	/** The amount of finish areas the player is inside of. */
+	private int finishAreaCount;
 
 	/**
 	 * Constructs a new listener for player movements and associates it with the
@@ -45,13 +75,17 @@ public class PlayerListener implements Updateable {
 	 *            physics to consult player speed from
 	 * @param game
 	 *            the game to modify when something to trigger happens
+	 * @param analytics
+	 *            the Analytics to record the gravity changes to, or
+	 *            <code>null</code> if they should not be recorded
 	 */
 	public PlayerListener(TileMapContainer mapContainer, Player player,
-			Physics physics, GameState game) {
+			Physics physics, MapResultListener game, Analytics analytics) {
 		this.mapContainer = mapContainer;
 		this.player = player;
 		this.physics = physics;
 		this.game = game;
+		this.analytics = analytics;
 	}
 
 	/**
@@ -69,23 +103,13 @@ public class PlayerListener implements Updateable {
 		}
 
 		boolean happinessChanged = false;
-		boolean inSafeArea = false;
-		boolean inFinishArea = false;
-		List<TileMapObject> safeAreas = map.getSafeAreas();
-		TileMapObject finishArea = map.getFinishArea();
-
-		for (TileMapObject safeArea : safeAreas) {
-			if (player.isInsideArea(safeArea)) {
-				player.setHappiness(1);
-				happinessChanged = true;
-				inSafeArea = true;
-			}
-		}
 
-		if (player.isInsideArea(finishArea)) {
+		areaTracker.update(map.getAreaGrid(), player, this);
+		boolean inSafeArea = safeAreaCount > 0;
+		boolean inFinishArea = finishAreaCount > 0;
+		if (inSafeArea || inFinishArea) {
 			player.setHappiness(1);
 			happinessChanged = true;
-			inFinishArea = true;
 		}
 
 		// If player has stopped and is not in safe area, possibly change to
@@ -102,15 +126,7 @@ public class PlayerListener implements Updateable {
 		}
 
 		// Check for gravity fields.
-		List<GravityArea> gravityAreas = map.getGravityAreas();
-		for (GravityArea gravityArea : gravityAreas) {
-			if (player.isInsideArea(gravityArea)) {
-				// Gravity change time!
-				float xGravity = gravityArea.xGravity;
-				float yGravity = gravityArea.yGravity;
-				physics.setGravity(xGravity, yGravity);
-			}
-		}
+		gravityAreaTracker.update(map.getGravityAreaGrid(), player, this);
 
 		// If happiness hasn't changed because of being inside safe area, set
 		// it to zero if the player is ready to be launched.
@@ -138,4 +154,70 @@ public class PlayerListener implements Updateable {
 		}
 	}
 
+	/**
+	 * @see com.vesalaakso.rbb.controller.AreaListener#areaEntered(TileMapObject)
+	 */
+	@Override
+	public void areaEntered(TileMapObject area) {
+		if (area instanceof GravityArea) {
+			// Gravity change time!
+			changeGravity((GravityArea) area);
+		}
+		else if (area.type == TileMapObjectType.SAFE) {
+			safeAreaCount++;
+		}
+		else if (area.type == TileMapObjectType.FINISH) {
+			finishAreaCount++;
+		}
+	}
+
+	/**
+	 * @see com.vesalaakso.rbb.controller.AreaListener#areaExited(TileMapObject)
+	 */
+	@Override
+	public void areaExited(TileMapObject area) {
+		if (area instanceof GravityArea) {
+			// Back to the gravity of an area the player is still inside of.
+			List<GravityArea> inside = gravityAreaTracker.getAreas();
+			if (!inside.isEmpty()) {
+				changeGravity(inside.get(inside.size() - 1));
+			}
+			return;
+		}
+		if (area.type == TileMapObjectType.SAFE) {
+			safeAreaCount--;
+		}
+		else if (area.type == TileMapObjectType.FINISH) {
+			finishAreaCount--;
+		}
+	}
+
+	/** A helper to change the gravity of the world to the one of the area */
+	private void changeGravity(GravityArea gravityArea) {
+		float xGravity = gravityArea.xGravity;
+		float yGravity = gravityArea.yGravity;
+		if (analytics != null
+				&& (xGravity != physics.getXGravity()
+						|| yGravity != physics.getYGravity())) {
+			analytics.record(EventType.GRAVITY_CHANGED, player.getX(),
+					player.getY(), xGravity, yGravity);
+		}
+		physics.setGravity(xGravity, yGravity);
+	}
+
+	/**
+	 * Forgets the areas the player was inside of, so that they are entered
+	 * again on the next update. Must be called whenever the player or the
+	 * physics world is reset, as the gravity of the world is reset with it.
+	 * 
+	 * @see com.vesalaakso.rbb.controller.Resetable#reset()
+	 */
+	@Override
+	public void reset() {
+		areaTracker.reset();
+		gravityAreaTracker.reset();
+		safeAreaCount = 0;
+		finishAreaCount = 0;
+	}
+
 }
@@ -1,8 +1,10 @@
 package com.vesalaakso.rbb.controller;
 
+import com.vesalaakso.rbb.model.Camera;
 import com.vesalaakso.rbb.model.Player;
 import com.vesalaakso.rbb.model.TileMapContainer;
 import com.vesalaakso.rbb.model.TileMapObject;
+import com.vesalaakso.rbb.model.replay.ReplayRecorder;
 import com.vesalaakso.rbb.util.Utils;
 
 /**
@@ -19,6 +21,12 @@ public class PlayerPositioner extends MouseAdapter {
 	/** Map is queried from this container */
 	private TileMapContainer mapContainer;
 
+	/** The final position is recorded to this recorder */
+	private ReplayRecorder recorder;
+
+	/** Mouse coordinates are translated to the world with this camera */
+	private Camera camera;
+
 	/**
 	 * Constructs a player positioner and associates it with the given player
 	 * and map container.
@@ -27,10 +35,17 @@ public class PlayerPositioner extends MouseAdapter {
 	 *            the player to position
 	 * @param mapContainer
 	 *            the map to query for spawn area
+	 * @param recorder
+	 *            the recorder to record the final position to
+	 * @param camera
+	 *            the camera to translate mouse coordinates with
 	 */
-	public PlayerPositioner(Player player, TileMapContainer mapContainer) {
+	public PlayerPositioner(Player player, TileMapContainer mapContainer,
+			ReplayRecorder recorder, Camera camera) {
 		this.player = player;
 		this.mapContainer = mapContainer;
+		this.recorder = recorder;
+		this.camera = camera;
 	}
 
 	/**
@@ -47,8 +62,8 @@ public class PlayerPositioner extends MouseAdapter {
 		if (player.isStartPositioned() || mapContainer.getMap() == null) {
 			return false;
 		}
-		float x = Utils.screenToWorldX(mouseX);
-		float y = Utils.screenToWorldY(mouseY);
+		float x = camera.screenToWorldX(mouseX);
+		float y = camera.screenToWorldY(mouseY);
 
 		TileMapObject spawn = mapContainer.getMap().getSpawnArea();
 
@@ -77,6 +92,7 @@ public class PlayerPositioner extends MouseAdapter {
 		}
 		if (updatePosition(x, y)) {
 			player.setStartPositioned();
+			recorder.playerPlaced(player.getX(), player.getY());
 		}
 	}
 }
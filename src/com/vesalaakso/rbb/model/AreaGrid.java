@@ -0,0 +1,145 @@
+package com.vesalaakso.rbb.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A uniform grid of the map areas, with one cell for every tile of the map.
+ * Every area is stored in each cell it overlaps, so finding the areas at a
+ * point costs the same no matter how many areas the map has.
+ * <p>
+ * The queries return the areas overlapping the queried cells, so the caller
+ * still needs to check whether the point or rectangle really is inside them.
+ *
+ * @author Vesa Laakso
+ *
+ * @param <T>
+ *            the type of areas stored in the grid
+ */
+public class AreaGrid<T extends TileMapObject> {
+
+	/** Width of the grid in cells. */
+	private final int width;
+
+	/** Height of the grid in cells. */
+	private final int height;
+
+	/** The cells, row by row. A cell without areas is <code>null</code>. */
+	private final List<List<T>> cells;
+
+	/** Returned for cells without any areas. */
+	private final List<T> emptyCell = Collections.emptyList();
+
+	/**
+	 * Constructs an empty grid covering a map of the given size.
+	 *
+	 * @param widthInTiles
+	 *            width of the map in tiles
+	 * @param heightInTiles
+	 *            height of the map in tiles
+	 */
+	public AreaGrid(int widthInTiles, int heightInTiles) {
+		this.width = Math.max(widthInTiles, 1);
+		this.height = Math.max(heightInTiles, 1);
+
+		int cellCount = width * height;
+		cells = new ArrayList<List<T>>(cellCount);
+		for (int i = 0; i < cellCount; i++) {
+			cells.add(null);
+		}
+	}
+
+	/**
+	 * Adds an area to every cell it overlaps.
+	 *
+	 * @param area
+	 *            the area to add
+	 */
+	public void add(T area) {
+		int left = cellX(area.x);
+		int right = cellX(area.x + area.width);
+		int top = cellY(area.y);
+		int bottom = cellY(area.y + area.height);
+
+		for (int y = top; y <= bottom; y++) {
+			for (int x = left; x <= right; x++) {
+				int index = y * width + x;
+				List<T> cell = cells.get(index);
+				if (cell == null) {
+					cell = new ArrayList<T>(1);
+					cells.set(index, cell);
+				}
+				cell.add(area);
+			}
+		}
+	}
+
+	/**
+	 * Gets the areas stored in the cell of the given point. The list is the
+	 * one stored in the grid, so it should NOT be modified.
+	 *
+	 * @param x
+	 *            x-coordinate of the point in world coordinates
+	 * @param y
+	 *            y-coordinate of the point in world coordinates
+	 * @return the areas which might contain the given point
+	 */
+	public List<T> getAreasAt(float x, float y) {
+		List<T> cell = cells.get(cellY(y) * width + cellX(x));
+		if (cell == null) {
+			return emptyCell;
+		}
+		return cell;
+	}
+
+	/**
+	 * Adds the areas stored in the cells the given rectangle overlaps to the
+	 * given list. Every area is added only once.
+	 *
+	 * @param x
+	 *            top left x-coordinate of the rectangle
+	 * @param y
+	 *            top left y-coordinate of the rectangle
+	 * @param rectWidth
+	 *            width of the rectangle
+	 * @param rectHeight
+	 *            height of the rectangle
+	 * @param out
+	 *            the list to add the areas to
+	 */
+	public void getAreasIn(float x, float y, float rectWidth,
+			float rectHeight, List<T> out) {
+		int left = cellX(x);
+		int right = cellX(x + rectWidth);
+		int top = cellY(y);
+		int bottom = cellY(y + rectHeight);
+
+		for (int cy = top; cy <= bottom; cy++) {
+			for (int cx = left; cx <= right; cx++) {
+				List<T> cell = cells.get(cy * width + cx);
+				if (cell == null) {
+					continue;
+				}
+				for (int i = 0, size = cell.size(); i < size; i++) {
+					T area = cell.get(i);
+					if (!out.contains(area)) {
+						out.add(area);
+					}
+				}
+			}
+		}
+	}
+
+	/** Gets the column of the cell for the given x-coordinate. */
+	private int cellX(float x) {
+		int cell = (int) Math.floor(x / TileMap.TILE_SIZE);
+		return Math.min(Math.max(cell, 0), width - 1);
+	}
+
+	/** Gets the row of the cell for the given y-coordinate. */
+	private int cellY(float y) {
+		int cell = (int) Math.floor(y / TileMap.TILE_SIZE);
+		return Math.min(Math.max(cell, 0), height - 1);
+	}
+}
@@ -0,0 +1,136 @@
+package com.vesalaakso.rbb.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vesalaakso.rbb.controller.AreaListener;
+
+/**
+ * Keeps track of the areas of an {@link AreaGrid} the player is inside of and
+ * tells an {@link AreaListener} when the player enters or leaves them.
+ * <p>
+ * Along with the areas, the tracker remembers a box around the player inside
+ * which none of the areas of the current cell can be entered or left. As
+ * long as the player stays in the same cell and inside the box, an update
+ * only looks up the cell and compares the position to the box, so the areas
+ * are only checked when something may really have changed.
+ *
+ * @author Vesa Laakso
+ *
+ * @param <T>
+ *            the type of areas tracked
+ */
+public class AreaTracker<T extends TileMapObject> {
+
+	/** The areas the player is inside of. */
+	private final List<T> inside = new ArrayList<T>();
+
+	/**
+	 * The areas of the cell the player was in on the last check, or
+	 * <code>null</code> if the areas need to be checked on the next update.
+	 */
+	private List<T> cell;
+
+	/** The left edge of the box, not part of the box. */
+	private float minX;
+
+	/** The right edge of the box, not part of the box. */
+	private float maxX;
+
+	/** The top edge of the box, not part of the box. */
+	private float minY;
+
+	/** The bottom edge of the box, not part of the box. */
+	private float maxY;
+
+	/**
+	 * Checks whether the player has entered or left any areas since the last
+	 * update, and tells the listener about them. The areas left are told
+	 * first, then the areas entered, in the order of the grid.
+	 *
+	 * @param grid
+	 *            the grid the areas are stored in
+	 * @param player
+	 *            the player to track
+	 * @param listener
+	 *            the listener to tell about the changes
+	 */
+	public void update(AreaGrid<T> grid, Player player,
+			AreaListener<? super T> listener) {
+		float x = player.getX();
+		float y = player.getY();
+		List<T> candidates = grid.getAreasAt(x, y);
+		if (candidates == cell && minX < x && x < maxX && minY < y
+				&& y < maxY) {
+			// Nothing can have changed.
+			return;
+		}
+		cell = candidates;
+
+		for (int i = 0; i < inside.size(); i++) {
+			T area = inside.get(i);
+			if (!player.isInsideArea(area)) {
+				inside.remove(i--);
+				listener.areaExited(area);
+			}
+		}
+
+		// Shrink the box so that it stays inside the areas the player is in
+		// and outside the others.
+		minX = Float.NEGATIVE_INFINITY;
+		maxX = Float.POSITIVE_INFINITY;
+		minY = Float.NEGATIVE_INFINITY;
+		maxY = Float.POSITIVE_INFINITY;
+		for (int i = 0, size = candidates.size(); i < size; i++) {
+			T area = candidates.get(i);
+			float left = area.x;
+			float right = area.x + area.width;
+			float top = area.y;
+			float bottom = area.y + area.height;
+			if (player.isInsideArea(area)) {
+				minX = Math.max(minX, left);
+				maxX = Math.min(maxX, right);
+				minY = Math.max(minY, top);
+				maxY = Math.min(maxY, bottom);
+				if (!inside.contains(area)) {
+					inside.add(area);
+					listener.areaEntered(area);
+				}
+			}
+			else if (x < left) {
+				maxX = Math.min(maxX, left);
+			}
+			else if (x > right) {
+				minX = Math.max(minX, right);
+			}
+			else if (y < top) {
+				maxY = Math.min(maxY, top);
+			}
+			else {
+				minY = Math.max(minY, bottom);
+			}
+		}
+	}
+
+	/**
+	 * Gets the areas the player is inside of, in the order they were entered.
+	 * The list is the one used by the tracker, so it should NOT be modified.
+	 * When an area is left, it has already been removed from the list by the
+	 * time the listener is told.
+	 *
+	 * @return the areas the player is inside of
+	 */
+	public List<T> getAreas() {
+		return inside;
+	}
+
+	/**
+	 * Forgets the areas the player was inside of without telling anyone, so
+	 * that the areas the player is inside of on the next update are entered
+	 * again.
+	 */
+	public void reset() {
+		inside.clear();
+		cell = null;
+	}
+}
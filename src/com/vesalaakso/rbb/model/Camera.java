@@ -2,20 +2,23 @@ package com.vesalaakso.rbb.model;
 
 import org.newdawn.slick.geom.Vector2f;
 
+import com.vesalaakso.rbb.RubberBandBall;
+
 /**
- * A singleton class epresenting the camera. A camera is used to specify the
- * area of the world which currently will be drawn. Moving the camera will paint
- * a different area of the world and scaling it will scale all stuff painted in
+ * A class representing the camera. A camera is used to specify the area of
+ * the world which currently will be drawn. Moving the camera will paint a
+ * different area of the world and scaling it will scale all stuff painted in
  * world coordinates.
+ * <p>
+ * Every game has a camera of its own, which is handed to everything that
+ * needs to transform between screen and world coordinates, so that several
+ * games can be run side by side in the same JVM.
  * 
  * @author Vesa Laakso
  * 
  */
 public class Camera {
 
-	/** The only instance of this class. */
-	private static final Camera _instance = new Camera();
-	
 	/** The minimum scaling the camera can have */
 	public static final float MIN_SCALING = 0.5f;
 
@@ -31,20 +34,30 @@ public class Camera {
 	/** The scale factor used to scale the whole game. */
 	private float scaling = 1.0f;
 
+	/** Half of the width of the screen the camera draws to. */
+	private final float screenHalfWidth;
+
+	/** Half of the height of the screen the camera draws to. */
+	private final float screenHalfHeight;
+
 	/**
-	 * A private constructor for this class is a singleton and has only one
-	 * instance.
+	 * Constructs a new camera drawing to the whole game screen.
 	 */
-	private Camera() {
+	public Camera() {
+		this(RubberBandBall.SCREEN_WIDTH, RubberBandBall.SCREEN_HEIGHT);
 	}
 
 	/**
-	 * Returns the only instance of this class.
+	 * Constructs a new camera drawing to a screen of the given size.
 	 * 
-	 * @return the one and only instance of <code>Camera</code>.
+	 * @param screenWidth
+	 *            the width of the screen in pixels
+	 * @param screenHeight
+	 *            the height of the screen in pixels
 	 */
-	public static Camera get() {
-		return _instance;
+	public Camera(int screenWidth, int screenHeight) {
+		this.screenHalfWidth = screenWidth * 0.5f;
+		this.screenHalfHeight = screenHeight * 0.5f;
 	}
 
 	/**
@@ -125,4 +138,52 @@ public class Camera {
 		return scaling;
 	}
 
+	/**
+	 * Calculate the current world x-coordinate for the given screen
+	 * x-coordinate.
+	 * 
+	 * @param screenX
+	 *            the screen x-coordinate to transform
+	 * @return world x-coordinate corresponding to the given screen x-coordinate
+	 */
+	public float screenToWorldX(float screenX) {
+		return x + (screenX - screenHalfWidth) / scaling;
+	}
+
+	/**
+	 * Calculate the current world y-coordinate for the given screen
+	 * y-coordinate.
+	 * 
+	 * @param screenY
+	 *            the screen y-coordinate to transform
+	 * @return world y-coordinate corresponding to the given screen y-coordinate
+	 */
+	public float screenToWorldY(float screenY) {
+		return y + (screenY - screenHalfHeight) / scaling;
+	}
+
+	/**
+	 * Calculate the current screen x-coordinate for the given world
+	 * x-coordinate.
+	 * 
+	 * @param worldX
+	 *            the world x-coordinate to transform
+	 * @return screen x-coordinate corresponding to the given world x-coordinate
+	 */
+	public float worldToScreenX(float worldX) {
+		return (worldX - x) * scaling + screenHalfWidth;
+	}
+
+	/**
+	 * Calculate the current screen y-coordinate for the given world
+	 * y-coordinate.
+	 * 
+	 * @param worldY
+	 *            the world y-coordinate to transform
+	 * @return screen y-coordinate corresponding to the given world y-coordinate
+	 */
+	public float worldToScreenY(float worldY) {
+		return (worldY - y) * scaling + screenHalfHeight;
+	}
+
 }
@@ -0,0 +1,183 @@
+package com.vesalaakso.rbb.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.newdawn.slick.tiled.GroupObject;
+
+/**
+ * Rebuilds the area covered by the rectangular collision objects out of as
+ * few rectangles as a greedy pass finds, so that the physics world needs
+ * fewer bodies and the player doesn't bump into the seams between them.
+ * <p>
+ * The levels draw their walls and floors as separate rectangles which touch
+ * along only a part of an edge, so the rectangles can't simply be glued
+ * together. Instead the area is cut along every edge of the objects into a
+ * grid of cells, and the cells are gathered back into rectangles row by row,
+ * making every rectangle as wide as possible before growing it down. A floor
+ * which runs into the top of a wall thus becomes one surface to roll on, and
+ * the rest of the wall is left below it.
+ *
+ * @author Vesa Laakso
+ */
+class CollisionCompactor {
+
+	/** A private constructor as this class has only static methods */
+	private CollisionCompactor() {
+	}
+
+	/** A rectangle covering parts of one or more collision objects. */
+	static class MergedRectangle {
+		/** Top left x-coordinate of the rectangle */
+		final int x;
+		/** Top left y-coordinate of the rectangle */
+		final int y;
+		/** Width of the rectangle */
+		final int width;
+		/** Height of the rectangle */
+		final int height;
+		/** The type all of the covered objects share */
+		final TileMapObjectType type;
+		/** The collision objects this rectangle covers parts of */
+		final List<TileMapObject> objects = new ArrayList<TileMapObject>(1);
+
+		/** Constructs a rectangle, the objects are added afterwards */
+		MergedRectangle(int x, int y, int width, int height,
+				TileMapObjectType type) {
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+			this.type = type;
+		}
+
+		/** Checks whether this rectangle covers a part of the given object */
+		boolean overlaps(TileMapObject obj) {
+			return obj.x < x + width && x < obj.x + obj.width
+					&& obj.y < y + height && y < obj.y + obj.height;
+		}
+	}
+
+	/**
+	 * Covers the rectangular objects of the given list with as few
+	 * rectangles as the greedy pass finds. Only objects of the same type are
+	 * merged. Objects that are not rectangles are left out of the result.
+	 *
+	 * @param objects
+	 *            the collision objects to merge
+	 * @return the merged rectangles, in the order they were found
+	 */
+	static List<MergedRectangle> compact(List<TileMapObject> objects) {
+		List<MergedRectangle> ret = new ArrayList<MergedRectangle>();
+		for (TileMapObjectType type : TileMapObjectType.values()) {
+			List<TileMapObject> rects = new ArrayList<TileMapObject>();
+			for (TileMapObject obj : objects) {
+				if (obj.objectType == GroupObject.ObjectType.RECTANGLE
+						&& obj.type == type) {
+					rects.add(obj);
+				}
+			}
+			if (!rects.isEmpty()) {
+				compact(rects, type, ret);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * A helper to cover the given rectangles of a single type, adding the
+	 * merged rectangles to the given list.
+	 */
+	private static void compact(List<TileMapObject> rects,
+			TileMapObjectType type, List<MergedRectangle> ret) {
+		// Cut the area into cells along every edge.
+		int[] xs = new int[rects.size() * 2];
+		int[] ys = new int[rects.size() * 2];
+		for (int i = 0; i < rects.size(); i++) {
+			TileMapObject obj = rects.get(i);
+			xs[i * 2] = obj.x;
+			xs[i * 2 + 1] = obj.x + obj.width;
+			ys[i * 2] = obj.y;
+			ys[i * 2 + 1] = obj.y + obj.height;
+		}
+		xs = sortedUnique(xs);
+		ys = sortedUnique(ys);
+
+		int columns = xs.length - 1;
+		int rows = ys.length - 1;
+		boolean[][] free = new boolean[columns][rows];
+		for (TileMapObject obj : rects) {
+			int firstColumn = Arrays.binarySearch(xs, obj.x);
+			int lastColumn = Arrays.binarySearch(xs, obj.x + obj.width);
+			int firstRow = Arrays.binarySearch(ys, obj.y);
+			int lastRow = Arrays.binarySearch(ys, obj.y + obj.height);
+			for (int column = firstColumn; column < lastColumn; column++) {
+				for (int row = firstRow; row < lastRow; row++) {
+					free[column][row] = true;
+				}
+			}
+		}
+
+		// Gather the cells back, taking every cell only once.
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				if (!free[column][row]) {
+					continue;
+				}
+
+				int lastColumn = column;
+				while (lastColumn + 1 < columns && free[lastColumn + 1][row]) {
+					lastColumn++;
+				}
+				int lastRow = row;
+				while (lastRow + 1 < rows
+						&& isFree(free, column, lastColumn, lastRow + 1)) {
+					lastRow++;
+				}
+
+				for (int c = column; c <= lastColumn; c++) {
+					for (int r = row; r <= lastRow; r++) {
+						free[c][r] = false;
+					}
+				}
+
+				MergedRectangle merged =
+					new MergedRectangle(xs[column], ys[row],
+							xs[lastColumn + 1] - xs[column], ys[lastRow + 1]
+									- ys[row], type);
+				for (TileMapObject obj : rects) {
+					if (merged.overlaps(obj)) {
+						merged.objects.add(obj);
+					}
+				}
+				ret.add(merged);
+
+				column = lastColumn;
+			}
+		}
+	}
+
+	/** A helper to check whether the given cells of a row are all free */
+	private static boolean isFree(boolean[][] free, int firstColumn,
+			int lastColumn, int row) {
+		for (int column = firstColumn; column <= lastColumn; column++) {
+			if (!free[column][row]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** A helper to sort the given values and to drop the duplicates */
+	private static int[] sortedUnique(int[] values) {
+		Arrays.sort(values);
+		int count = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (count == 0 || values[count - 1] != values[i]) {
+				values[count++] = values[i];
+			}
+		}
+		return Arrays.copyOf(values, count);
+	}
+}
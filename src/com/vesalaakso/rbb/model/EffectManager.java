@@ -1,18 +1,25 @@
 package com.vesalaakso.rbb.model;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
+import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
-import org.newdawn.slick.Sound;
+import org.newdawn.slick.particles.ConfigurableEmitter;
+import org.newdawn.slick.particles.ParticleEmitter;
 import org.newdawn.slick.particles.ParticleIO;
 import org.newdawn.slick.particles.ParticleSystem;
+import org.newdawn.slick.util.Log;
 
 import com.vesalaakso.rbb.controller.Resetable;
 import com.vesalaakso.rbb.controller.Updateable;
+import com.vesalaakso.rbb.model.audio.OpenALSoundBackend;
+import com.vesalaakso.rbb.model.audio.SoundBackend;
+import com.vesalaakso.rbb.model.audio.VoiceManager;
 import com.vesalaakso.rbb.model.resources.Audio;
+import com.vesalaakso.rbb.model.resources.Gfx;
 import com.vesalaakso.rbb.util.Utils;
 
 /**
@@ -35,21 +42,79 @@ public class EffectManager implements Updateable, Resetable {
 	 */
 	private static final float COLLISION_LIMIT_NORMAL = 40.0f;
 
-	/** The resource manager to query for resources. */
+	/** The sound effects are played through this, limiting the voices. */
+	private final VoiceManager voices;
+
+	/** The resource manager to query for the particle images. */
 	private final ResourceManager resourceManager;
 
 	/** Maximum amount of explosions */
 	private static final int MAX_EXPLOSIONS = 40;
 
-	/** 40 explosions running at max, stored here. */
-	private List<ParticleSystem> explosionSystems =
+	/** The amount of explosion systems created up front. */
+	private static final int INITIAL_EXPLOSIONS = 8;
+
+	/** The most particles allowed at once when frames are fast enough. */
+	private static final int MAX_PARTICLE_BUDGET = 1500;
+
+	/**
+	 * The frame time target in milliseconds. When the average frame takes
+	 * longer, less particles are emitted.
+	 */
+	private static final float FRAME_TIME_TARGET = 1000 / 60f + 2;
+
+	/** The smallest fraction of particles still emitted on slow frames. */
+	private static final float MIN_EMISSION_SCALE = 0.25f;
+
+	/** How much the emission scale drops per second of slow frames. */
+	private static final float EMISSION_DEGRADE_RATE = 1.0f;
+
+	/** How much the emission scale recovers per second of fast frames. */
+	private static final float EMISSION_RECOVER_RATE = 0.25f;
+
+	/** The explosion every pooled explosion is duplicated from. */
+	private ParticleSystem explosionPrototype;
+
+	/**
+	 * The private image of Slick's <code>ConfigurableEmitter</code>, or
+	 * <code>null</code> if it couldn't be reached.
+	 */
+	private Field emitterImageField;
+
+	/** Tells a <code>ConfigurableEmitter</code> to load its image file. */
+	private Field emitterUpdateImageField;
+
+	/** The spawn counts of the emitters of the prototype, as min-max pairs. */
+	private float[] prototypeSpawnCounts;
+
+	/** The explosions currently running, the oldest first. */
+	private List<ParticleSystem> activeExplosionSystems =
+		new ArrayList<ParticleSystem>(MAX_EXPLOSIONS);
+
+	/** The finished explosions ready to be used again. */
+	private List<ParticleSystem> freeExplosionSystems =
 		new ArrayList<ParticleSystem>(MAX_EXPLOSIONS);
 
-	/** Amount of running explosion systems */
-	private int runningExplosionSystems = 0;
+	/** The amount of explosion systems created so far. */
+	private int createdExplosionSystems;
+
+	/** The amount of particles alive after the latest update. */
+	private int activeParticleCount;
+
+	/** The average frame time, in milliseconds. */
+	private float averageFrameTime = FRAME_TIME_TARGET;
+
+	/** The fraction of particles emitted, lowered when frames are slow. */
+	private float emissionScale = 1.0f;
+
+	/** The amount of explosions taken from the free list. */
+	private int poolHits;
 
-	/** The ID for the next explosionSystem to initialize. */
-	private int nextExplosionID = 0;
+	/** The amount of explosions that had to be created or stolen. */
+	private int poolMisses;
+
+	/** The amount of explosions skipped as the particle budget was full. */
+	private int droppedExplosions;
 
 	/**
 	 * Constructs a new <code>EffectManager</code> and associates it with the
@@ -59,7 +124,22 @@ public class EffectManager implements Updateable, Resetable {
 	 *            the resource manager to query for sound fx
 	 */
 	public EffectManager(ResourceManager resourceManager) {
+		this(resourceManager, new OpenALSoundBackend(resourceManager));
+	}
+
+	/**
+	 * Constructs a new <code>EffectManager</code> which plays its sound fx
+	 * with the given backend instead of OpenAL.
+	 * 
+	 * @param resourceManager
+	 *            the resource manager to query for particle images
+	 * @param soundBackend
+	 *            the backend to play the sound fx with
+	 */
+	public EffectManager(ResourceManager resourceManager,
+			SoundBackend soundBackend) {
 		this.resourceManager = resourceManager;
+		this.voices = new VoiceManager(soundBackend);
 	}
 
 	/**
@@ -69,34 +149,141 @@ public class EffectManager implements Updateable, Resetable {
 	 *             if failed to load particle systems
 	 */
 	public void init() throws SlickException {
-		explosionSystems.clear();
+		activeExplosionSystems.clear();
+		freeExplosionSystems.clear();
 		try {
-			ParticleSystem explosions =
+			explosionPrototype =
 				ParticleIO.loadConfiguredSystem("explosion.xml");
-			explosions.setVisible(false);
-			explosionSystems.add(explosions);
-			for (int i = 0; i < MAX_EXPLOSIONS - 1; i++) {
-				explosionSystems.add(explosions.duplicate());
-			}
 		}
 		catch (IOException e) {
 			throw new SlickException("Could not load emitter explosion.xml", e);
 		}
+		explosionPrototype.setVisible(false);
+		findEmitterImageFields();
+
+		// Remember the spawn counts, as they are scaled for every explosion.
+		int emitterCount = explosionPrototype.getEmitterCount();
+		prototypeSpawnCounts = new float[emitterCount * 2];
+		for (int i = 0; i < emitterCount; i++) {
+			ParticleEmitter emitter = explosionPrototype.getEmitter(i);
+			if (emitter instanceof ConfigurableEmitter) {
+				ConfigurableEmitter.Range spawnCount =
+					((ConfigurableEmitter) emitter).spawnCount;
+				prototypeSpawnCounts[i * 2] = spawnCount.getMin();
+				prototypeSpawnCounts[i * 2 + 1] = spawnCount.getMax();
+			}
+		}
+
+		createdExplosionSystems = 0;
+		for (int i = 0; i < INITIAL_EXPLOSIONS; i++) {
+			freeExplosionSystems.add(createExplosionSystem());
+		}
+	}
+
+	/** A helper to duplicate a new explosion from the prototype */
+	private ParticleSystem createExplosionSystem() throws SlickException {
+		ParticleSystem system = explosionPrototype.duplicate();
+		system.setVisible(false);
+		useAtlasImages(system);
+		createdExplosionSystems++;
+		return system;
+	}
+
+	/** A helper to reach the fields behind the image of an emitter */
+	private void findEmitterImageFields() {
+		if (emitterImageField != null) {
+			return;
+		}
+		try {
+			Field image = ConfigurableEmitter.class.getDeclaredField("image");
+			Field updateImage =
+				ConfigurableEmitter.class.getDeclaredField("updateImage");
+			image.setAccessible(true);
+			updateImage.setAccessible(true);
+			emitterImageField = image;
+			emitterUpdateImageField = updateImage;
+		}
+		catch (Exception e) {
+			Log.warn("Could not reach the images of particle emitters, "
+					+ "particles will not be drawn from the texture atlas.");
+		}
 	}
 
 	/**
-	 * Updates the particle systems.
+	 * A helper to make the emitters of the given system draw from the texture
+	 * atlas, so that all the explosions are drawn without binding another
+	 * texture. Slick's emitters only load their images by file name, so the
+	 * image is set into them by reflection. Emitters whose image isn't in the
+	 * atlas load it themselves as before.
+	 */
+	private void useAtlasImages(ParticleSystem system) {
+		if (emitterImageField == null) {
+			return;
+		}
+		for (int i = 0, n = system.getEmitterCount(); i < n; i++) {
+			ParticleEmitter emitter = system.getEmitter(i);
+			if (!(emitter instanceof ConfigurableEmitter)) {
+				continue;
+			}
+			ConfigurableEmitter configurable = (ConfigurableEmitter) emitter;
+			Gfx gfx = Gfx.forFileName(configurable.getImageName());
+			Image image = gfx == null ? null : resourceManager.getImage(gfx);
+			if (image == null) {
+				continue;
+			}
+			try {
+				emitterImageField.set(configurable, image);
+				emitterUpdateImageField.setBoolean(configurable, false);
+			}
+			catch (IllegalAccessException e) {
+				Log.warn("Could not set the image of a particle emitter.");
+			}
+		}
+	}
+
+	/**
+	 * Updates the running particle systems and returns the finished ones to
+	 * the pool. Also lowers the amount of particles emitted if the frames
+	 * take longer than they should, and raises it back when they don't.
 	 */
 	@Override
 	public void update(int delta) {
-		for (int i = 0; i < runningExplosionSystems; i++) {
-			ParticleSystem system = explosionSystems.get(i);
+		voices.update(delta);
+
+		averageFrameTime = Utils.curveValue(averageFrameTime, delta, 10);
+		float seconds = delta / 1000f;
+		if (averageFrameTime > FRAME_TIME_TARGET) {
+			emissionScale -= EMISSION_DEGRADE_RATE * seconds;
+		}
+		else {
+			emissionScale += EMISSION_RECOVER_RATE * seconds;
+		}
+		emissionScale = Utils.clamp(emissionScale, MIN_EMISSION_SCALE, 1.0f);
+
+		// Update the running systems, moving the finished ones to the free
+		// list and keeping the rest in order.
+		int particles = 0;
+		int running = 0;
+		int count = activeExplosionSystems.size();
+		for (int i = 0; i < count; i++) {
+			ParticleSystem system = activeExplosionSystems.get(i);
 			system.update(delta);
-			if (system.isVisible() && system.getParticleCount() == 0) {
-				// It has most likely stopped. Force it. Stops it from bugging.
+			int systemParticles = system.getParticleCount();
+			if (systemParticles == 0) {
+				// It has stopped, recycle it.
 				system.setVisible(false);
+				freeExplosionSystems.add(system);
+			}
+			else {
+				activeExplosionSystems.set(running, system);
+				running++;
+				particles += systemParticles;
 			}
 		}
+		for (int i = count - 1; i >= running; i--) {
+			activeExplosionSystems.remove(i);
+		}
+		activeParticleCount = particles;
 	}
 
 	/**
@@ -113,30 +300,32 @@ public class EffectManager implements Updateable, Resetable {
 	public void addCollisionEffect(float worldX, float worldY, float force) {
 		if (force > COLLISION_LIMIT_NORMAL) {
 			// BOOM!
-			Sound boom = resourceManager.getSound(Audio.SOUND_HIT_BIG);
 			float pitch = 1.0f;
 			float volume = (force / COLLISION_LIMIT_NORMAL) * 0.5f;
-			boom.play(pitch, Utils.clamp(volume, 0.5f, 1.5f));
+			voices.play(Audio.SOUND_HIT_BIG, pitch,
+					Utils.clamp(volume, 0.5f, 1.5f));
 			addExplosionEmitter(worldX, worldY);
 		}
 		else if (force > COLLISION_LIMIT_SMALL) {
 			// A normal hit sound
-			Sound clank = resourceManager.getSound(Audio.SOUND_HIT_NORMAL);
 			float pitch = 1.0f;
 			float volume = (force / COLLISION_LIMIT_SMALL) * 0.5f;
-			clank.play(pitch, Utils.clamp(volume, 0.5f, 1.5f));
+			voices.play(Audio.SOUND_HIT_NORMAL, pitch,
+					Utils.clamp(volume, 0.5f, 1.5f));
 		}
 		else {
 			// A small hit sound
-			Sound hit = resourceManager.getSound(Audio.SOUND_HIT_SMALL);
 			float pitch = 1.0f;
 			float volume = (force / COLLISION_LIMIT_SMALL) * 2.0f;
-			hit.play(pitch, Utils.clamp(volume, 0.5f, 1.5f));
+			voices.play(Audio.SOUND_HIT_SMALL, pitch,
+					Utils.clamp(volume, 0.5f, 1.5f));
 		}
 	}
 
 	/**
-	 * Adds an explosion emitter to the given coordinates (in world space)
+	 * Adds an explosion emitter to the given coordinates (in world space),
+	 * unless the particle budget is full. The explosion emits less particles
+	 * when the frames have been slow.
 	 * 
 	 * @param worldX
 	 *            the x-coordinate in the world to add the explosion into
@@ -144,50 +333,167 @@ public class EffectManager implements Updateable, Resetable {
 	 *            the y-coordinate in the world to add the explosion into
 	 */
 	private void addExplosionEmitter(float worldX, float worldY) {
+		if (explosionPrototype == null) {
+			// Not initialized, no particles then.
+			return;
+		}
+		if (activeParticleCount >= getParticleBudget()) {
+			droppedExplosions++;
+			return;
+		}
+
 		// Get the explosion system to set active
-		ParticleSystem system = explosionSystems.get(nextExplosionID);
+		ParticleSystem system = obtainExplosionSystem();
+		if (system == null) {
+			droppedExplosions++;
+			return;
+		}
+
+		// Scale the emitted particles to the budget.
+		for (int i = 0, n = system.getEmitterCount(); i < n; i++) {
+			ParticleEmitter emitter = system.getEmitter(i);
+			if (emitter instanceof ConfigurableEmitter) {
+				ConfigurableEmitter.Range spawnCount =
+					((ConfigurableEmitter) emitter).spawnCount;
+				spawnCount.setMin(scaleSpawnCount(prototypeSpawnCounts[i * 2]));
+				spawnCount.setMax(scaleSpawnCount(prototypeSpawnCounts[i * 2
+						+ 1]));
+			}
+		}
 
 		// Set the systems position and reset it and show it.
 		system.reset();
 		system.setPosition(worldX, worldY);
 		system.setVisible(true);
+		activeExplosionSystems.add(system);
+	}
 
-		// We have a new running system.
-		if (runningExplosionSystems < MAX_EXPLOSIONS) {
-			runningExplosionSystems++;
+	/**
+	 * A helper to get an explosion system from the free list. If there are
+	 * none, a new one is created, or if there are already too many, the
+	 * oldest running one is reused.
+	 */
+	private ParticleSystem obtainExplosionSystem() {
+		int free = freeExplosionSystems.size();
+		if (free > 0) {
+			poolHits++;
+			return freeExplosionSystems.remove(free - 1);
 		}
 
-		// Next time, get the next explosion.
-		nextExplosionID++;
-		if (nextExplosionID == MAX_EXPLOSIONS) {
-			nextExplosionID = 0;
+		poolMisses++;
+		if (createdExplosionSystems < MAX_EXPLOSIONS) {
+			try {
+				return createExplosionSystem();
+			}
+			catch (SlickException e) {
+				Log.warn("Could not create a new explosion", e);
+				return null;
+			}
 		}
+		return activeExplosionSystems.remove(0);
+	}
+
+	/** A helper to scale a spawn count, but never below one particle */
+	private float scaleSpawnCount(float spawnCount) {
+		return Math.max(1, Math.round(spawnCount * emissionScale));
+	}
+
+	/**
+	 * Gets the amount of running particle systems.
+	 * 
+	 * @return amount of particle systems to draw
+	 */
+	public int getParticleSystemCount() {
+		return activeExplosionSystems.size();
+	}
+
+	/**
+	 * Gets a running particle system. Valid indices range from 0 to
+	 * {@link #getParticleSystemCount()} - 1.
+	 * 
+	 * @param index
+	 *            index of the particle system
+	 * @return the particle system in the given index
+	 */
+	public ParticleSystem getParticleSystem(int index) {
+		return activeExplosionSystems.get(index);
+	}
+
+	/**
+	 * Gets the voice manager the sound effects are played through.
+	 * 
+	 * @return the voice manager
+	 */
+	public VoiceManager getVoiceManager() {
+		return voices;
 	}
 
 	/**
-	 * Get the list of particle systems. The list will be backed by a
-	 * <code>LinkedList</code>.
+	 * Gets the amount of particles alive after the latest update.
 	 * 
-	 * @return list of particle systems
+	 * @return amount of particles in all the running systems
 	 */
-	public List<ParticleSystem> getParticleSystems() {
-		List<ParticleSystem> systems = new LinkedList<ParticleSystem>();
-		for (int i = 0; i < runningExplosionSystems; i++) {
-			systems.add(explosionSystems.get(i));
+	public int getActiveParticleCount() {
+		return activeParticleCount;
+	}
+
+	/**
+	 * Gets the amount of particles allowed at once. The budget shrinks with
+	 * {@link #getEmissionScale()} when the frames are slow.
+	 * 
+	 * @return the particle budget
+	 */
+	public int getParticleBudget() {
+		return (int) (MAX_PARTICLE_BUDGET * emissionScale);
+	}
+
+	/**
+	 * Gets the fraction of particles emitted by new explosions, between 0.25
+	 * and 1. Lowered when the frames take longer than the target.
+	 * 
+	 * @return the emission scale
+	 */
+	public float getEmissionScale() {
+		return emissionScale;
+	}
+
+	/**
+	 * Gets the fraction of explosions which could reuse a finished explosion
+	 * instead of creating a new one or cutting a running one short.
+	 * 
+	 * @return the pool hit rate, between 0 and 1, or 1 if there have been no
+	 *         explosions
+	 */
+	public float getPoolHitRate() {
+		int total = poolHits + poolMisses;
+		if (total == 0) {
+			return 1;
 		}
-		return systems;
+		return (float) poolHits / total;
+	}
+
+	/**
+	 * Gets the amount of explosions skipped because the particle budget was
+	 * full.
+	 * 
+	 * @return amount of dropped explosions
+	 */
+	public int getDroppedExplosionCount() {
+		return droppedExplosions;
 	}
 
 	/** Method to reset the systemz */
 	@Override
 	public void reset() {
-		for (int i = 0; i < runningExplosionSystems; i++) {
-			ParticleSystem system = explosionSystems.get(i);
+		for (int i = 0, n = activeExplosionSystems.size(); i < n; i++) {
+			ParticleSystem system = activeExplosionSystems.get(i);
 			system.reset();
 			system.setVisible(false);
+			freeExplosionSystems.add(system);
 		}
-		runningExplosionSystems = 0;
-		nextExplosionID = 0;
+		activeExplosionSystems.clear();
+		activeParticleCount = 0;
+		voices.reset();
 	}
 
 }
@@ -21,6 +21,12 @@ public class GameStatus {
 	 */
 	private int[] scoresPerMap = new int[RubberBandBall.LEVEL_COUNT];
 
+	/** How many times the player has been shot in maps, indexed by level */
+	private int[] shotsPerMap = new int[RubberBandBall.LEVEL_COUNT];
+
+	/** The changes are saved to this, <code>null</code> if not saved */
+	private StatusJournal journal;
+
 	/** The current map level */
 	private int currentLevel;
 
@@ -34,6 +40,19 @@ public class GameStatus {
 		reset();
 	}
 
+	/**
+	 * Restores the status saved in the given journal and saves every change
+	 * made after this to it. The status of the game is saved, the throwaway
+	 * statuses of simulations and predictions are not.
+	 * 
+	 * @param journal
+	 *            the journal to restore the status from and to save it to
+	 */
+	public void setJournal(StatusJournal journal) {
+		this.journal = journal;
+		journal.restore(triesPerMap, scoresPerMap, shotsPerMap);
+	}
+
 	/** Resets what needs to be reset when map is completed. */
 	private void reset() {
 		currentLevel = 0;
@@ -74,6 +93,9 @@ public class GameStatus {
 		}
 
 		triesPerMap[level - 1]++;
+		if (journal != null) {
+			journal.recordTry(level);
+		}
 	}
 
 	/**
@@ -96,6 +118,25 @@ public class GameStatus {
 		return score;
 	}
 
+	/**
+	 * Gets the amount of times the player has been launched in the given map
+	 * over all the tries.
+	 * 
+	 * @param map
+	 *            the map to query for shots
+	 * @return the times the player has been launched in the map
+	 */
+	public int getTotalShotCount(TileMap map) {
+		// Validate the level
+		int level = map.getLevel();
+		if (level <= 0 || level > RubberBandBall.LEVEL_COUNT) {
+			Log.warn("Weird map given for GameStatus#getTotalShotCount()");
+			return 0;
+		}
+
+		return shotsPerMap[level - 1];
+	}
+
 	/**
 	 * Gets the amount of times the player has been launched in the current map.
 	 * 
@@ -110,6 +151,13 @@ public class GameStatus {
 	 */
 	public void increaseCurrentShotCount() {
 		currentShotCount++;
+
+		if (currentLevel > 0) {
+			shotsPerMap[currentLevel - 1]++;
+			if (journal != null) {
+				journal.recordShot(currentLevel);
+			}
+		}
 	}
 
 	/**
@@ -154,6 +202,9 @@ public class GameStatus {
 		if (oldScore == 0 || oldScore > currentShotCount) {
 			// We did better than last time!
 			scoresPerMap[currentLevel - 1] = currentShotCount;
+			if (journal != null) {
+				journal.recordScore(currentLevel, currentShotCount);
+			}
 		}
 
 		currentShotCount = 0;
@@ -170,6 +221,9 @@ public class GameStatus {
 		}
 
 		triesPerMap[currentLevel - 1]++;
+		if (journal != null) {
+			journal.recordTry(currentLevel);
+		}
 		currentShotCount = 0;
 	}
 
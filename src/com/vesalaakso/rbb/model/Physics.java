@@ -1,7 +1,8 @@
 package com.vesalaakso.rbb.model;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -20,6 +21,7 @@ import org.newdawn.slick.util.Log;
 import com.vesalaakso.rbb.controller.PlayerCollisionListener;
 import com.vesalaakso.rbb.controller.Resetable;
 import com.vesalaakso.rbb.controller.Updateable;
+import com.vesalaakso.rbb.model.analytics.Analytics;
 import com.vesalaakso.rbb.model.exceptions.MapException;
 
 /**
@@ -38,12 +40,35 @@ public class Physics implements Updateable, Resetable {
 	 */
 	private static final float MIN_ANGULAR_VELOCITY = 0.1f;
 
+	/** The amount of time simulated in a single physics step, in seconds. */
+	public static final float TIME_STEP = 1 / 40f;
+
+	/**
+	 * The amount of real time a single physics step spans, in milliseconds.
+	 * The game was tuned while one step was taken on every vsynced frame, so
+	 * one step is still taken every 1/60th of a second.
+	 */
+	public static final float STEP_MILLIS = 1000 / 60f;
+
+	/** The delta given to the step listener after every step, in ms. */
+	public static final int STEP_DELTA = Math.round(STEP_MILLIS);
+
+	/**
+	 * Maximum amount of steps taken in a single update, so that a long hitch
+	 * (such as loading a map) doesn't make the simulation try to catch up
+	 * forever.
+	 */
+	private static final int MAX_STEPS_PER_UPDATE = 5;
+
 	/**
 	 * The EffectManager which will create nice little effects as events in the
 	 * physics world will happen.
 	 */
 	private EffectManager effectManager;
 
+	/** The collisions of the player are recorded to this, if not null. */
+	private Analytics analytics;
+
 	/** The <code>World</code> in which The Magic (tm) happens. */
 	private World world;
 
@@ -57,6 +82,25 @@ public class Physics implements Updateable, Resetable {
 	private Map<Body<?>, TileMapObject> bodyTileMap =
 		new HashMap<Body<?>, TileMapObject>();
 
+	/** All the bodies in the world, the player last. */
+	private List<Body<?>> bodies = new ArrayList<Body<?>>();
+
+	/** A read-only view of {@link #bodies} given out to others. */
+	private List<Body<?>> bodiesView = Collections.unmodifiableList(bodies);
+
+	/**
+	 * The bodies covering parts of more than one collidable object, linked to
+	 * all of those objects.
+	 */
+	private Map<Body<?>, List<TileMapObject>> mergedBodyTileMap =
+		new HashMap<Body<?>, List<TileMapObject>>();
+
+	/**
+	 * Should touching rectangles be merged into fewer bodies when the map is
+	 * initialized.
+	 */
+	private boolean compactCollisions = true;
+
 	/** The player whose body will be added to the physics engine. */
 	private Player player;
 
@@ -75,6 +119,18 @@ public class Physics implements Updateable, Resetable {
 	/** <code>TileMapContainer</code> to query the map from */
 	private TileMapContainer mapContainer;
 
+	/** Real time that has passed but has not yet been simulated, in ms */
+	private float accumulator;
+
+	/** The amount of steps simulated since this engine was created */
+	private long stepCount;
+
+	/** Updated after every step, <code>null</code> if nothing is. */
+	private Updateable stepListener;
+
+	/** Statistics about the simulated steps. */
+	private final PhysicsMetrics metrics;
+
 	/**
 	 * Constructs the physics engine and boots it up with default gravity.
 	 * 
@@ -82,7 +138,8 @@ public class Physics implements Updateable, Resetable {
 	 *            the <code>Player</code> bouncing around in the world.
 	 * @param effectManager
 	 *            the <code>EffectManager</code> responsible for all the nice
-	 *            and juicy particles and sound fx
+	 *            and juicy particles and sound fx, or <code>null</code> if
+	 *            no effects should be created (i.e. when running headless)
 	 * @param mapContainer
 	 *            the <code>TileMapContainer</code> to query the current map
 	 *            from
@@ -93,14 +150,63 @@ public class Physics implements Updateable, Resetable {
 		this.effectManager = effectManager;
 		this.world = new World(DEFAULT_GRAVITY);
 		this.mapContainer = mapContainer;
+		this.metrics = new PhysicsMetrics(world);
 	}
 
 	/**
-	 * Makes the physics engine tick. Call on every update.
+	 * Makes the physics engine tick. Call on every update. Takes as many fixed
+	 * steps as fit in the time that has passed since the last update, leaving
+	 * the remainder to be simulated later.
 	 */
 	@Override
 	public void update(int delta) {
-		world.update(1 / 40f);
+		accumulator += delta;
+
+		int steps = 0;
+		while (accumulator >= STEP_MILLIS && steps < MAX_STEPS_PER_UPDATE) {
+			step();
+			accumulator -= STEP_MILLIS;
+			steps++;
+		}
+
+		if (steps == MAX_STEPS_PER_UPDATE) {
+			// We've fallen too far behind, forget about the rest.
+			accumulator = 0;
+		}
+	}
+
+	/**
+	 * Simulates exactly one fixed step of {@link #TIME_STEP} seconds. This is
+	 * independent of the frame rate, so it can be called as fast as wanted
+	 * when running without a display.
+	 */
+	public void step() {
+		long start = System.nanoTime();
+		simulateStep();
+		metrics.record(stepCount, System.nanoTime() - start);
+
+		if (stepListener != null) {
+			stepListener.update(STEP_DELTA);
+		}
+	}
+
+	/**
+	 * Sets the listener updated after every single step. The game, the
+	 * simulation engine and the trajectory prediction all check the areas of
+	 * the player this way, so that a gravity change happens on the same step
+	 * no matter how many steps a frame takes. Replays rely on that.
+	 * 
+	 * @param stepListener
+	 *            the listener to update, or <code>null</code> if none
+	 */
+	public void setStepListener(Updateable stepListener) {
+		this.stepListener = stepListener;
+	}
+
+	/** A helper method which does the actual work of a single step. */
+	private void simulateStep() {
+		world.update(TIME_STEP);
+		stepCount++;
 		if (player == null || !player.isStartPositioned()) {
 			// We've got nothing to do here
 			return;
@@ -156,6 +262,24 @@ public class Physics implements Updateable, Resetable {
 		}
 	}
 
+	/**
+	 * Gets the amount of steps simulated by this physics engine.
+	 * 
+	 * @return the amount of steps simulated so far
+	 */
+	public long getStepCount() {
+		return stepCount;
+	}
+
+	/**
+	 * Gets the statistics recorded about the simulated steps.
+	 * 
+	 * @return the metrics of this physics engine
+	 */
+	public PhysicsMetrics getMetrics() {
+		return metrics;
+	}
+
 	/**
 	 * Initializes the physics world based on the given map.
 	 * 
@@ -168,6 +292,11 @@ public class Physics implements Updateable, Resetable {
 		// Add all collisions
 		List<TileMapObject> colObjs = map.getCollisionObjects();
 
+		// Touching rectangles may be merged in to fewer bodies
+		if (compactCollisions) {
+			addMergedRectangles(colObjs);
+		}
+
 		// The last determinant sign of a polygon
 		float lastDetSign = 0;
 
@@ -186,6 +315,10 @@ public class Physics implements Updateable, Resetable {
 			}
 
 			if (isRectangle) {
+				if (compactCollisions) {
+					// Already added
+					continue;
+				}
 				Rectangle rect = new Rectangle(obj.width, obj.height);
 				body = new StaticBody<Rectangle>(rect, obj.x, obj.y);
 			}
@@ -209,11 +342,7 @@ public class Physics implements Updateable, Resetable {
 				throw new MapException(errStr);
 			}
 
-			// Now we have our pretty body, let's use it as it should be used.
-			body.setRestitution(0); // No bouncing
-			body.setFriction(1); // Friction is set by the colliding object
-			bodyTileMap.put(body, obj);
-			world.add(body);
+			addMapBody(body, obj);
 		}
 
 		// Setup world gravity based on map properties values.
@@ -243,6 +372,63 @@ public class Physics implements Updateable, Resetable {
 		world.setGravity(xGravity, yGravity);
 	}
 
+	/**
+	 * Adds the rectangles in the given list to the world, covering the ones
+	 * that touch each other with as few bodies as
+	 * {@link CollisionCompactor} finds.
+	 * 
+	 * @param colObjs
+	 *            the collidable objects of the map
+	 */
+	private void addMergedRectangles(List<TileMapObject> colObjs) {
+		List<CollisionCompactor.MergedRectangle> merged =
+			CollisionCompactor.compact(colObjs);
+
+		for (CollisionCompactor.MergedRectangle m : merged) {
+			Rectangle rect = new Rectangle(m.width, m.height);
+			StaticBody<Rectangle> body =
+				new StaticBody<Rectangle>(rect, m.x, m.y);
+
+			// The first object stands for the whole body in the usual lookups.
+			// An object cut in to many bodies is linked to each of them.
+			addMapBody(body, m.objects.get(0));
+			if (m.objects.size() > 1) {
+				mergedBodyTileMap.put(body, m.objects);
+			}
+		}
+	}
+
+	/**
+	 * Adds a static body of the map to the world and links it to the given
+	 * collidable object.
+	 * 
+	 * @param body
+	 *            the body to add
+	 * @param obj
+	 *            the collidable object the body was made of
+	 */
+	private void addMapBody(StaticBody<?> body, TileMapObject obj) {
+		// Now we have our pretty body, let's use it as it should be used.
+		body.setRestitution(0); // No bouncing
+		body.setFriction(1); // Friction is set by the colliding object
+		bodyTileMap.put(body, obj);
+		bodies.add(body);
+		world.add(body);
+	}
+
+	/**
+	 * Sets whether touching rectangles should be merged into fewer bodies when
+	 * the map is initialized. Merging gets rid of the seams between floors
+	 * and the walls they run into, which the player would otherwise bump
+	 * into while rolling. Takes effect on the next {@link #reset()}.
+	 * 
+	 * @param compactCollisions
+	 *            <code>true</code> to merge the rectangles
+	 */
+	public void setCollisionCompaction(boolean compactCollisions) {
+		this.compactCollisions = compactCollisions;
+	}
+
 	/**
 	 * Builds a new Polygon based on the given TileMapObject.
 	 * 
@@ -323,11 +509,13 @@ public class Physics implements Updateable, Resetable {
 		playerBody.setAngularDamping(angularDamping);
 
 		// Add the player to the world
+		bodies.add(playerBody);
 		world.add(playerBody);
 
 		// Initialize the listener and add it to the world
 		playerCollisionListener =
-				new PlayerCollisionListener(this, player, effectManager);
+				new PlayerCollisionListener(this, player, effectManager,
+						analytics);
 		world.addBodyListener(playerBody, playerCollisionListener);
 
 		// Also, make the player not yet take part in any collision.
@@ -335,23 +523,30 @@ public class Physics implements Updateable, Resetable {
 	}
 
 	/**
-	 * Gets all the bodies associated with the physics engine in a
-	 * <code>List</code> backed by <code>LinkedList</code>.
+	 * Removes the body of the player from the world, so that a new body is
+	 * added at the current position of the player on the next step. Does
+	 * nothing if the body hasn't been added yet.
+	 */
+	public void removePlayer() {
+		if (playerBody == null) {
+			return;
+		}
+		world.removeBodyListener(playerBody, playerCollisionListener);
+		world.remove(playerBody);
+		bodies.remove(playerBody);
+		playerBody = null;
+		playerCollisionListener = null;
+		frictionSimulationBody = null;
+	}
+
+	/**
+	 * Gets all the bodies associated with the physics engine. The list is kept
+	 * up to date by the engine, so it should NOT be modified.
 	 * 
 	 * @return list of all bodies in the physics world
 	 */
 	public List<Body<?>> getBodies() {
-		List<Body<?>> ret = new LinkedList<Body<?>>();
-
-		// Add all the static tile bodies
-		ret.addAll(bodyTileMap.keySet());
-
-		// If player has a body set, add it too.
-		if (getPlayerBody() != null) {
-			ret.add(getPlayerBody());
-		}
-
-		return ret;
+		return bodiesView;
 	}
 
 	/**
@@ -380,6 +575,29 @@ public class Physics implements Updateable, Resetable {
 		return bodyTileMap.get(body);
 	}
 
+	/**
+	 * Gets all the <code>TileMapObject</code>s a <code>Body</code> covers
+	 * parts of. There are more than one only if the body was merged from many
+	 * rectangles.
+	 * 
+	 * @param body
+	 *            the <code>Body</code> to search for the objects for.
+	 * 
+	 * @return a list of the objects mapped to the given <code>Body</code>,
+	 *         which is empty if none were found. Should NOT be modified.
+	 */
+	public List<TileMapObject> getTileMapObjects(Body<?> body) {
+		List<TileMapObject> merged = mergedBodyTileMap.get(body);
+		if (merged != null) {
+			return merged;
+		}
+		TileMapObject obj = bodyTileMap.get(body);
+		if (obj == null) {
+			return Collections.emptyList();
+		}
+		return Collections.singletonList(obj);
+	}
+
 	/**
 	 * Launches the player by applying a force to him.
 	 * 
@@ -457,6 +675,36 @@ public class Physics implements Updateable, Resetable {
 		return 0;
 	}
 
+	/**
+	 * Sets the analytics the collisions of the player are recorded to. Takes
+	 * effect when the player is next added to the world.
+	 * 
+	 * @param analytics
+	 *            the analytics to record to, or <code>null</code> if the
+	 *            collisions should not be recorded
+	 */
+	public void setAnalytics(Analytics analytics) {
+		this.analytics = analytics;
+	}
+
+	/**
+	 * Gets the current gravity in x-direction.
+	 * 
+	 * @return gravity in x-direction
+	 */
+	public float getXGravity() {
+		return xGravity;
+	}
+
+	/**
+	 * Gets the current gravity in y-direction.
+	 * 
+	 * @return gravity in y-direction
+	 */
+	public float getYGravity() {
+		return yGravity;
+	}
+
 	/**
 	 * Sets the gravity in the world.
 	 * 
@@ -479,19 +727,20 @@ public class Physics implements Updateable, Resetable {
 	 */
 	@Override
 	public void reset() {
-		// Remove old bodies
-		for (Body<?> mapBody : bodyTileMap.keySet()) {
-			world.remove(mapBody);
-		}
+		// Start over with a fresh world instead of removing the old bodies,
+		// so that nothing left behind by the previous map or try can change
+		// how this one plays out. Replays rely on that.
+		world = new World(DEFAULT_GRAVITY);
+		metrics.setWorld(world);
 		bodyTileMap.clear();
-		if (playerBody != null) {
-			playerBody.setActive(false);
-			world.remove(playerBody);
-			playerBody = null;
-		}
+		mergedBodyTileMap.clear();
+		bodies.clear();
+		playerBody = null;
+		playerCollisionListener = null;
 
 		// Reset state
 		frictionSimulationBody = null;
+		accumulator = 0;
 
 		// Re-initialize for the new map.
 		try {
@@ -500,11 +749,6 @@ public class Physics implements Updateable, Resetable {
 		catch (MapException e) {
 			Log.error("There was a problem with changing map in Physics", e);
 		}
-
-		// Re-initialize the player.
-		if (playerCollisionListener != null) {
-			world.removeListener(playerCollisionListener);
-		}
 	}
 
 	/**
@@ -0,0 +1,276 @@
+package com.vesalaakso.rbb.model;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.BodyType;
+import org.newdawn.fizzy.World;
+import org.newdawn.slick.util.Log;
+
+/**
+ * Statistics about what the physics world is doing, recorded on every step.
+ * The latest step can be read with the getters and the last
+ * {@link #HISTORY_SIZE} steps are kept in a ring buffer, which can be written
+ * out as CSV to find the steps where the physics spikes.
+ * <p>
+ * All the samples are stored in preallocated arrays of primitives, so
+ * recording and reading the metrics doesn't allocate anything.
+ *
+ * @author Vesa Laakso
+ */
+public class PhysicsMetrics {
+
+	/** How many steps are kept in the history. */
+	public static final int HISTORY_SIZE = 600;
+
+	/** The header line of the CSV output. */
+	private static final String CSV_HEADER =
+		"step,stepNanos,listenerNanos,bodies,awakeBodies,contacts,proxies";
+
+	/**
+	 * The jbox2d world under fizzy's <code>World</code>, or <code>null</code>
+	 * if it couldn't be reached.
+	 */
+	private org.jbox2d.dynamics.World jboxWorld;
+
+	/** Step numbers of the samples in the history. */
+	private final long[] steps = new long[HISTORY_SIZE];
+
+	/** Time spent in the steps of the history, in nanoseconds. */
+	private final long[] stepNanos = new long[HISTORY_SIZE];
+
+	/** Time spent in the collision listener, in nanoseconds. */
+	private final long[] listenerNanos = new long[HISTORY_SIZE];
+
+	/** Amount of bodies in the world on each step of the history. */
+	private final int[] bodies = new int[HISTORY_SIZE];
+
+	/** Amount of awake moving bodies on each step of the history. */
+	private final int[] awakeBodies = new int[HISTORY_SIZE];
+
+	/** Amount of contacts in the world on each step of the history. */
+	private final int[] contacts = new int[HISTORY_SIZE];
+
+	/** Amount of broadphase proxies on each step of the history. */
+	private final int[] proxies = new int[HISTORY_SIZE];
+
+	/** Index of the latest sample in the history arrays. */
+	private int latest = -1;
+
+	/** Amount of samples stored in the history. */
+	private int sampleCount;
+
+	/** Listener time gathered during the step that is being simulated. */
+	private long pendingListenerNanos;
+
+	/**
+	 * Constructs a new metrics surface for the given world.
+	 *
+	 * @param world
+	 *            the world to gather statistics from
+	 */
+	PhysicsMetrics(World world) {
+		this.jboxWorld = findJBoxWorld(world);
+	}
+
+	/**
+	 * Starts gathering statistics from another world, used when the physics
+	 * engine replaces its world. The history is kept.
+	 *
+	 * @param world
+	 *            the world to gather statistics from
+	 */
+	void setWorld(World world) {
+		this.jboxWorld = findJBoxWorld(world);
+	}
+
+	/**
+	 * Fizzy doesn't let us at the jbox2d world it wraps, so go and get it
+	 * ourselves.
+	 */
+	private static org.jbox2d.dynamics.World findJBoxWorld(World world) {
+		try {
+			Field field = World.class.getDeclaredField("jboxWorld");
+			field.setAccessible(true);
+			return (org.jbox2d.dynamics.World) field.get(world);
+		}
+		catch (Exception e) {
+			Log.warn("Could not reach the jbox2d world, physics metrics "
+					+ "will only contain timings.");
+			return null;
+		}
+	}
+
+	/**
+	 * Adds the given time to the time spent in the collision listener during
+	 * the step that is being simulated.
+	 *
+	 * @param nanos
+	 *            time spent in a listener callback, in nanoseconds
+	 */
+	public void addListenerNanos(long nanos) {
+		pendingListenerNanos += nanos;
+	}
+
+	/**
+	 * Records a sample for a step that has just been simulated.
+	 *
+	 * @param step
+	 *            the number of the step
+	 * @param nanos
+	 *            the time the step took, in nanoseconds
+	 */
+	void record(long step, long nanos) {
+		latest = (latest + 1) % HISTORY_SIZE;
+		if (sampleCount < HISTORY_SIZE) {
+			sampleCount++;
+		}
+
+		steps[latest] = step;
+		stepNanos[latest] = nanos;
+		listenerNanos[latest] = pendingListenerNanos;
+		pendingListenerNanos = 0;
+
+		if (jboxWorld == null) {
+			return;
+		}
+		bodies[latest] = jboxWorld.getBodyCount();
+		contacts[latest] = jboxWorld.getContactCount();
+		proxies[latest] = jboxWorld.getProxyCount();
+
+		int awake = 0;
+		for (Body b = jboxWorld.getBodyList(); b != null; b = b.getNext()) {
+			// Static bodies never fall asleep, so they are not counted.
+			if (b.getType() != BodyType.STATIC && b.isAwake()) {
+				awake++;
+			}
+		}
+		awakeBodies[latest] = awake;
+	}
+
+	/**
+	 * Gets the amount of steps stored in the history.
+	 *
+	 * @return amount of samples, at most {@link #HISTORY_SIZE}
+	 */
+	public int getSampleCount() {
+		return sampleCount;
+	}
+
+	/**
+	 * Gets the number of the latest recorded step.
+	 *
+	 * @return number of the latest step or 0 if none has been recorded
+	 */
+	public long getStep() {
+		return sampleCount == 0 ? 0 : steps[latest];
+	}
+
+	/**
+	 * Gets the time the latest step took.
+	 *
+	 * @return step time in nanoseconds
+	 */
+	public long getStepNanos() {
+		return sampleCount == 0 ? 0 : stepNanos[latest];
+	}
+
+	/**
+	 * Gets the time spent in the collision listener during the latest step.
+	 *
+	 * @return listener time in nanoseconds
+	 */
+	public long getListenerNanos() {
+		return sampleCount == 0 ? 0 : listenerNanos[latest];
+	}
+
+	/**
+	 * Gets the amount of bodies in the world after the latest step.
+	 *
+	 * @return body count
+	 */
+	public int getBodyCount() {
+		return sampleCount == 0 ? 0 : bodies[latest];
+	}
+
+	/**
+	 * Gets the amount of moving bodies that were awake after the latest step.
+	 *
+	 * @return awake body count
+	 */
+	public int getAwakeBodyCount() {
+		return sampleCount == 0 ? 0 : awakeBodies[latest];
+	}
+
+	/**
+	 * Gets the amount of contacts in the world after the latest step.
+	 *
+	 * @return contact count
+	 */
+	public int getContactCount() {
+		return sampleCount == 0 ? 0 : contacts[latest];
+	}
+
+	/**
+	 * Gets the amount of broadphase proxies after the latest step.
+	 *
+	 * @return proxy count
+	 */
+	public int getProxyCount() {
+		return sampleCount == 0 ? 0 : proxies[latest];
+	}
+
+	/**
+	 * Gets the longest step time stored in the history.
+	 *
+	 * @return the longest step time in nanoseconds
+	 */
+	public long getMaxStepNanos() {
+		long max = 0;
+		for (int i = 0; i < sampleCount; i++) {
+			max = Math.max(max, stepNanos[i]);
+		}
+		return max;
+	}
+
+	/**
+	 * Gets the average step time over the history.
+	 *
+	 * @return the average step time in nanoseconds
+	 */
+	public long getAverageStepNanos() {
+		if (sampleCount == 0) {
+			return 0;
+		}
+		long sum = 0;
+		for (int i = 0; i < sampleCount; i++) {
+			sum += stepNanos[i];
+		}
+		return sum / sampleCount;
+	}
+
+	/**
+	 * Writes the history as CSV, oldest step first.
+	 *
+	 * @param out
+	 *            the writer to write to
+	 * @throws IOException
+	 *             if writing failed
+	 */
+	public void writeCsv(Writer out) throws IOException {
+		out.write(CSV_HEADER);
+		out.write('\n');
+
+		int oldest = (latest - sampleCount + 1 + HISTORY_SIZE) % HISTORY_SIZE;
+		for (int n = 0; n < sampleCount; n++) {
+			int i = (oldest + n) % HISTORY_SIZE;
+			out.write(steps[i] + "," + stepNanos[i] + "," + listenerNanos[i]
+					+ "," + bodies[i] + "," + awakeBodies[i] + ","
+					+ contacts[i] + "," + proxies[i]);
+			out.write('\n');
+		}
+		out.flush();
+	}
+}
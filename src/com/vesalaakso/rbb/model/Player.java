@@ -1,5 +1,7 @@
 package com.vesalaakso.rbb.model;
 
+import org.newdawn.slick.util.Log;
+
 import com.vesalaakso.rbb.controller.Resetable;
 import com.vesalaakso.rbb.util.Utils;
 
@@ -10,6 +12,9 @@ import com.vesalaakso.rbb.util.Utils;
  */
 public class Player implements Resetable {
 
+	/** The radius of the ball representing the player. */
+	public static final float RADIUS = 16f;
+
 	/** The map container to query the map <code>Player</code> belongs to. */
 	private TileMapContainer mapContainer;
 
@@ -23,7 +28,7 @@ public class Player implements Resetable {
 	private float yWorld;
 
 	/** Radius of the ball representing the player. */
-	private float radius = 16f;
+	private float radius = RADIUS;
 
 	/** Angle of the player, in radians */
 	private float angle;
@@ -144,7 +149,7 @@ public class Player implements Resetable {
 	 * This method gets called once the player has ended up somewhere.
 	 */
 	public void onStop() {
-		System.out.println("I stopped!");
+		Log.info("Player stopped.");
 		isReadyForLaunch = true;
 	}
 
@@ -1,20 +1,22 @@
 package com.vesalaakso.rbb.model;
 
 import org.newdawn.slick.Image;
-import org.newdawn.slick.Music;
 import org.newdawn.slick.SlickException;
-import org.newdawn.slick.Sound;
-import org.newdawn.slick.UnicodeFont;
+import org.newdawn.slick.tiled.TiledMap;
 import org.newdawn.slick.tiled.TiledMapPlus;
 import org.newdawn.slick.util.Log;
 import org.newdawn.slick.util.ResourceLoader;
 
+import com.vesalaakso.rbb.model.audio.MusicPlayer;
 import com.vesalaakso.rbb.model.resources.Audio;
 import com.vesalaakso.rbb.model.resources.AudioContainer;
 import com.vesalaakso.rbb.model.resources.Font;
 import com.vesalaakso.rbb.model.resources.FontContainer;
 import com.vesalaakso.rbb.model.resources.Gfx;
 import com.vesalaakso.rbb.model.resources.GfxContainer;
+import com.vesalaakso.rbb.model.resources.LoadJob;
+import com.vesalaakso.rbb.model.resources.LoadingQueue;
+import com.vesalaakso.rbb.model.resources.MapEvictionListener;
 import com.vesalaakso.rbb.model.resources.RbbResourceLocation;
 import com.vesalaakso.rbb.model.resources.TiledMapPlusContainer;
 
@@ -40,23 +42,115 @@ public class ResourceManager {
 	/** The effect manager. */
 	private EffectManager effectManager = new EffectManager(this);
 
+	/** The queue of resources being loaded, if loading has been started. */
+	private LoadingQueue loadingQueue;
+
 	/**
-	 * Initializes the resource manager
+	 * Initializes the resource manager, waiting until everything has been
+	 * loaded.
 	 * 
 	 * @throws SlickException
 	 *             if some resource failed to load
 	 */
 	public void init() throws SlickException {
+		startLoading();
+		try {
+			loadingQueue.finishAll();
+		}
+		finally {
+			stopLoading();
+		}
+	}
+
+	/**
+	 * Starts loading all the resources on worker threads. Call
+	 * {@link #continueLoading(long)} on the render thread until it returns
+	 * <code>true</code> to finish loading.
+	 */
+	public void startLoading() {
 		// Add a location for default stuff
 		ResourceLoader.addResourceLocation(new RbbResourceLocation());
 
-		fontContainer.init();
-		audioContainer.init();
-		gfxContainer.init();
-		effectManager.init();
+		loadingQueue = new LoadingQueue();
+		fontContainer.addJobs(loadingQueue);
+		audioContainer.addJobs(loadingQueue);
+		gfxContainer.addJobs(loadingQueue);
+		loadingQueue.add(new LoadJob<Void>() {
+			@Override
+			protected Void loadInBackground() {
+				// Particle systems load their images as they are read.
+				return null;
+			}
+
+			@Override
+			protected void finish(Void loaded) throws SlickException {
+				effectManager.init();
+			}
+		});
+		mapContainer.addJobs(loadingQueue);
+	}
+
+	/**
+	 * Finishes loading the resources that have been loaded in the background,
+	 * such as by uploading textures. Must be called on the render thread.
+	 * 
+	 * @param maxMillis
+	 *            how long to keep finishing resources, at most
+	 * @return <code>true</code> if everything has been loaded
+	 * @throws SlickException
+	 *             if some resource failed to load
+	 */
+	public boolean continueLoading(long maxMillis) throws SlickException {
+		try {
+			if (!loadingQueue.finishReady(maxMillis)) {
+				return false;
+			}
+		}
+		catch (SlickException e) {
+			loadingQueue.shutdown();
+			throw e;
+		}
+		stopLoading();
+		return true;
+	}
+
+	/** A helper to get rid of the loading queue once it's no longer needed. */
+	private void stopLoading() {
+		loadingQueue.shutdown();
+		if (loadingQueue.isFinished()) {
+			Log.info("Resource Manager initialized successfully");
+		}
+	}
+
+	/**
+	 * Gets how far loading the resources is.
+	 * 
+	 * @return the progress between 0 and 1
+	 */
+	public float getLoadingProgress() {
+		if (loadingQueue == null) {
+			return 0;
+		}
+		return loadingQueue.getProgress();
+	}
+
+	/**
+	 * Initializes only the resources that can be loaded without a display,
+	 * which are the maps without their tile set images. The maps are loaded
+	 * when they are first needed. Used when simulating
+	 * the game without rendering anything.
+	 * 
+	 * @throws SlickException
+	 *             if some map failed to load
+	 */
+	public void initHeadless() throws SlickException {
+		ResourceLoader.addResourceLocation(new RbbResourceLocation());
+
+		// Tile set images can't be loaded without an OpenGL context.
+		TiledMap.setHeadless(true);
 
 		mapContainer.init();
-		Log.info("Resource Manager initialized successfully");
+		Log.info("Resource Manager initialized headless");
 	}
 
 	/**
@@ -66,19 +160,17 @@ public class ResourceManager {
 	 *            the font to get
 	 * @return the font the user wanted
 	 */
-	public UnicodeFont getFont(Font font) {
+	public org.newdawn.slick.Font getFont(Font font) {
 		return fontContainer.getFont(font);
 	}
 
 	/**
-	 * Returns a specific music.
+	 * Returns the <code>MusicPlayer</code> the music is streamed with.
 	 * 
-	 * @param audio
-	 *            the {@link Audio} mapped to the music to return
-	 * @return the <code>Music</code> caller wanted.
+	 * @return the music player
 	 */
-	public Music getMusic(Audio audio) {
-		return audioContainer.getMusic(audio);
+	public MusicPlayer getMusicPlayer() {
+		return audioContainer.getMusicPlayer();
 	}
 
 	/**
@@ -88,7 +180,7 @@ public class ResourceManager {
 	 *            the sound to get
 	 * @return the sound one wanted
 	 */
-	public Sound getSound(Audio audio) {
+	public org.newdawn.slick.openal.Audio getSound(Audio audio) {
 		return audioContainer.getSound(audio);
 	}
 
@@ -114,6 +206,28 @@ public class ResourceManager {
 		return mapContainer.getMap(level);
 	}
 
+	/**
+	 * Starts loading the given level in the background, so that getting it
+	 * later doesn't have to wait for parsing. Does nothing if the level has
+	 * been loaded already or doesn't exist.
+	 * 
+	 * @param level
+	 *            the level to load
+	 */
+	public void prefetchMap(int level) {
+		mapContainer.prefetch(level);
+	}
+
+	/**
+	 * Adds a listener to be told when a map is dropped from the map cache.
+	 * 
+	 * @param listener
+	 *            the listener to add
+	 */
+	public void addMapEvictionListener(MapEvictionListener listener) {
+		mapContainer.addEvictionListener(listener);
+	}
+
 	/**
 	 * Returns the <code>EffectManager</code>.
 	 * 
@@ -4,7 +4,9 @@ import org.newdawn.fizzy.Vector;
 import org.newdawn.slick.geom.Vector2f;
 
 import com.vesalaakso.rbb.controller.Resetable;
-import com.vesalaakso.rbb.util.Utils;
+import com.vesalaakso.rbb.model.analytics.Analytics;
+import com.vesalaakso.rbb.model.analytics.EventType;
+import com.vesalaakso.rbb.model.replay.ReplayRecorder;
 
 /**
  * The model for the rubber band which is pulled from the player and defines the
@@ -20,6 +22,15 @@ public class RubberBand implements Resetable {
 	/** The <code>Physics</code> to interact with when the player is launched */
 	private Physics physics;
 
+	/** The launches are recorded to this recorder. */
+	private ReplayRecorder recorder;
+
+	/** The camera used to translate the mouse to world coordinates. */
+	private Camera camera;
+
+	/** The launches are recorded to this, <code>null</code> if not. */
+	private Analytics analytics;
+
 	/** Are we pulling the rubber band currently? */
 	private boolean isPulled;
 
@@ -37,10 +48,21 @@ public class RubberBand implements Resetable {
 	 *            the <code>Player</code> from which the rubber band is pulled
 	 * @param physics
 	 *            the <code>Physics</code> engine behind all The Magic (tm).
+	 * @param recorder
+	 *            the <code>ReplayRecorder</code> to record the launches to
+	 * @param camera
+	 *            the <code>Camera</code> the rubber band is pulled through
+	 * @param analytics
+	 *            the <code>Analytics</code> to record the launches to, or
+	 *            <code>null</code> if they should not be recorded
 	 */
-	public RubberBand(Player player, Physics physics) {
+	public RubberBand(Player player, Physics physics, ReplayRecorder recorder,
+			Camera camera, Analytics analytics) {
 		this.player = player;
 		this.physics = physics;
+		this.recorder = recorder;
+		this.camera = camera;
+		this.analytics = analytics;
 	}
 
 	/**
@@ -59,8 +81,8 @@ public class RubberBand implements Resetable {
 			return false;
 		}
 		// Translate parameters to world coordinates
-		x = Utils.screenToWorldX(x);
-		y = Utils.screenToWorldY(y);
+		x = camera.screenToWorldX(x);
+		y = camera.screenToWorldY(y);
 
 		// Create a start point vector
 		Vector2f point = new Vector2f(x, y);
@@ -92,25 +114,15 @@ public class RubberBand implements Resetable {
 	public void endPull(float endX, float endY) {
 		// Calculate the real end point, with Camera coordinates added to the
 		// vector representing the starting point
-		endX = Utils.screenToWorldX(endX);
-		endY = Utils.screenToWorldY(endY);
+		endX = camera.screenToWorldX(endX);
+		endY = camera.screenToWorldY(endY);
 		currentEndPoint = new Vector(endX, endY);
 		isPulled = false;
 
 		// Ok, now launch the player to somewhere!
-
-		// Calculate the vector between the start point and the end point.
-		Vector2f diffVector = new Vector2f(startPoint.x - endX,
-				startPoint.y - endY);
-
-		// The calculated force to launch the player in both axis is the same
-		// as the scalar projection of the x- and y-axis vectors and the
-		// diffVector.
-		double radAngleX = Math.toRadians(diffVector.getTheta());
-		double radAngleY = Math.toRadians(diffVector.getTheta() - 90);
-
-		float forceX = (float) (Math.cos(radAngleX) * diffVector.length()) / 2;
-		float forceY = (float) (Math.cos(radAngleY) * diffVector.length()) / 2;
+		Vector2f diffVector = getPullVector();
+		float forceX = getForceX();
+		float forceY = getForceY();
 
 		System.out.println("Launching the player!");
 		System.out.println("    diffVector length: " + diffVector.length());
@@ -120,6 +132,11 @@ public class RubberBand implements Resetable {
 
 		player.launch();
 		physics.launchPlayer(forceX, forceY);
+		recorder.playerLaunched(forceX, forceY);
+		if (analytics != null) {
+			analytics.record(EventType.LAUNCHED, player.getX(), player.getY(),
+					forceX, forceY);
+		}
 	}
 
 	/**
@@ -133,11 +150,44 @@ public class RubberBand implements Resetable {
 	 */
 	public void pull(float x, float y) {
 		// Calculate the end point in world coordinates
-		x = Utils.screenToWorldX(x);
-		y = Utils.screenToWorldY(y);
+		x = camera.screenToWorldX(x);
+		y = camera.screenToWorldY(y);
 		currentEndPoint = new Vector(x, y);
 	}
 
+	/** A helper to get the vector between the start point and the end point */
+	private Vector2f getPullVector() {
+		return new Vector2f(startPoint.x - currentEndPoint.x, startPoint.y
+				- currentEndPoint.y);
+	}
+
+	/**
+	 * Gets the force in x-axis the player would be launched with, if the
+	 * rubber band was let go at the current end point. The calculated force to
+	 * launch the player in both axis is the same as the scalar projection of
+	 * the x- and y-axis vectors and the pull vector.
+	 * 
+	 * @return the power of the force in x-axis
+	 */
+	public float getForceX() {
+		Vector2f diffVector = getPullVector();
+		double radAngleX = Math.toRadians(diffVector.getTheta());
+		return (float) (Math.cos(radAngleX) * diffVector.length()) / 2;
+	}
+
+	/**
+	 * Gets the force in y-axis the player would be launched with, if the
+	 * rubber band was let go at the current end point.
+	 * 
+	 * @return the power of the force in y-axis
+	 * @see #getForceX()
+	 */
+	public float getForceY() {
+		Vector2f diffVector = getPullVector();
+		double radAngleY = Math.toRadians(diffVector.getTheta() - 90);
+		return (float) (Math.cos(radAngleY) * diffVector.length()) / 2;
+	}
+
 	/**
 	 * Gets the info of whether the rubber band is being pulled or not.
 	 * 
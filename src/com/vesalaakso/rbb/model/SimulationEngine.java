@@ -0,0 +1,328 @@
+package com.vesalaakso.rbb.model;
+
+import com.vesalaakso.rbb.controller.MapResultListener;
+import com.vesalaakso.rbb.controller.PlayerListener;
+import com.vesalaakso.rbb.model.exceptions.MapException;
+import com.vesalaakso.rbb.model.replay.Replay;
+import com.vesalaakso.rbb.model.replay.ReplayRecorder;
+import com.vesalaakso.rbb.util.Utils;
+
+/**
+ * Runs the game simulation without Slick's <code>GameContainer</code> or any
+ * kind of display. The engine owns the physics world, the player, the game
+ * status and the listener checking where the player moves, and steps them all
+ * with a fixed time step. As nothing is drawn, the simulation can be run as
+ * fast as the machine allows.
+ * <p>
+ * The given <code>ResourceManager</code> must have been initialized, for
+ * example with {@link ResourceManager#initHeadless()}.
+ *
+ * @author Vesa Laakso
+ */
+public class SimulationEngine implements MapResultListener {
+
+	/** The different states a simulated map can be in. */
+	public enum Outcome {
+		/** The map has neither been completed nor failed yet. */
+		RUNNING,
+		/** The player stopped in the finish area. */
+		COMPLETED,
+		/** The player stopped somewhere unsafe. */
+		FAILED;
+	}
+
+	/** The resource manager to load maps from. */
+	private final ResourceManager resourceManager;
+
+	/** The current map is stored in this container. */
+	private final TileMapContainer mapContainer = new TileMapContainer();
+
+	/** The game status the simulated shots and tries are stored in. */
+	private final GameStatus gameStatus = new GameStatus();
+
+	/** The simulated player. */
+	private final Player player;
+
+	/** The physics world the player bounces around in. */
+	private final Physics physics;
+
+	/** Checks whether the player has ended up somewhere special. */
+	private final PlayerListener playerListener;
+
+	/** Records the placements and launches of the current try. */
+	private final ReplayRecorder recorder;
+
+	/** How the current map has ended, if it has. */
+	private Outcome outcome = Outcome.RUNNING;
+
+	/** The reason the current map was failed, if it was. */
+	private String failReason;
+
+	/**
+	 * Constructs a new simulation engine which loads its maps from the given
+	 * resource manager.
+	 *
+	 * @param resourceManager
+	 *            an initialized resource manager to load maps from
+	 */
+	public SimulationEngine(ResourceManager resourceManager) {
+		// No effects, there is nothing to show them with.
+		this(resourceManager, null);
+	}
+
+	/**
+	 * Constructs a new simulation engine which loads its maps from the given
+	 * resource manager and creates the collision effects with the given
+	 * effect manager, like the game does.
+	 *
+	 * @param resourceManager
+	 *            an initialized resource manager to load maps from
+	 * @param effectManager
+	 *            the effect manager to create the collision effects with, or
+	 *            <code>null</code> if no effects should be created
+	 */
+	public SimulationEngine(ResourceManager resourceManager,
+			EffectManager effectManager) {
+		this.resourceManager = resourceManager;
+		player = new Player(mapContainer, gameStatus);
+		physics = new Physics(player, effectManager, mapContainer);
+		playerListener =
+			new PlayerListener(mapContainer, player, physics, this, null);
+		physics.setStepListener(playerListener);
+		recorder = new ReplayRecorder(mapContainer, physics);
+	}
+
+	/**
+	 * Loads the given level and resets the simulation to its start.
+	 *
+	 * @param level
+	 *            the level to load
+	 * @throws MapException
+	 *             if the level contained malformed data
+	 */
+	public void loadLevel(int level) throws MapException {
+		TileMap map = new TileMap(level, resourceManager);
+		map.init();
+		loadMap(map);
+	}
+
+	/**
+	 * Changes to an already initialized map and resets the simulation to its
+	 * start. The map is only read, so the same map can be simulated by many
+	 * engines at once, each in its own thread.
+	 *
+	 * @param map
+	 *            the initialized map to change to
+	 */
+	public void loadMap(TileMap map) {
+		gameStatus.onMapChange(mapContainer.getMap(), map);
+		mapContainer.setMap(map);
+
+		restart();
+	}
+
+	/**
+	 * Resets the player and the physics world to the start of the current
+	 * map.
+	 */
+	public void restart() {
+		player.reset();
+		physics.reset();
+		playerListener.reset();
+		recorder.reset();
+		outcome = Outcome.RUNNING;
+		failReason = null;
+	}
+
+	/**
+	 * Positions the player to the given world coordinates, if they are inside
+	 * the spawn area of the current map.
+	 *
+	 * @param x
+	 *            x-coordinate in the world
+	 * @param y
+	 *            y-coordinate in the world
+	 * @return <code>true</code> if the player was positioned
+	 */
+	public boolean placePlayer(float x, float y) {
+		if (player.isStartPositioned()) {
+			return false;
+		}
+		TileMapObject spawn = mapContainer.getMap().getSpawnArea();
+		if (!Utils.isCircleInsideRect(x, y, player.getRadius(), spawn.x,
+				spawn.y, spawn.width, spawn.height)) {
+			return false;
+		}
+		player.setPosition(x, y);
+		player.setStartPositioned();
+		recorder.playerPlaced(x, y);
+		return true;
+	}
+
+	/**
+	 * Launches the player with the given force, the same way releasing the
+	 * rubber band does.
+	 *
+	 * @param forceX
+	 *            the power of the force in x-axis
+	 * @param forceY
+	 *            the power of the force in y-axis
+	 * @return <code>true</code> if the player was ready and got launched
+	 */
+	public boolean launch(float forceX, float forceY) {
+		if (!player.isStartPositioned() || !player.isReadyForLaunch()) {
+			return false;
+		}
+		if (physics.getPlayerBody() == null) {
+			// The body is added to the world on the next step.
+			step();
+		}
+		player.launch();
+		physics.launchPlayer(forceX, forceY);
+		recorder.playerLaunched(forceX, forceY);
+		return true;
+	}
+
+	/**
+	 * Simulates a single fixed step of {@link Physics#TIME_STEP} seconds.
+	 */
+	public void step() {
+		physics.step();
+	}
+
+	/**
+	 * Simulates as many fixed steps as fit in the given amount of real time,
+	 * the same way as the game does with {@link Physics#update(int)}. Use
+	 * this when the simulation should run in real time.
+	 *
+	 * @param delta
+	 *            the amount of time passed since last update in milliseconds
+	 */
+	public void update(int delta) {
+		physics.update(delta);
+	}
+
+	/**
+	 * Steps the simulation until the player has stopped or the map has been
+	 * completed or failed.
+	 *
+	 * @param maxSteps
+	 *            the maximum amount of steps to take
+	 * @return the amount of steps taken
+	 */
+	public int runUntilStopped(int maxSteps) {
+		int steps = 0;
+		while (steps < maxSteps && outcome == Outcome.RUNNING
+				&& !player.isReadyForLaunch()) {
+			step();
+			steps++;
+		}
+		return steps;
+	}
+
+	@Override
+	public void completedMap() {
+		if (outcome != Outcome.RUNNING) {
+			return;
+		}
+		outcome = Outcome.COMPLETED;
+		gameStatus.onMapCompleted();
+		recorder.finish(outcome, player.getX(), player.getY());
+	}
+
+	@Override
+	public void failedMap(String reason) {
+		if (outcome != Outcome.RUNNING) {
+			return;
+		}
+		outcome = Outcome.FAILED;
+		failReason = reason;
+		gameStatus.onMapFailed();
+		recorder.finish(outcome, player.getX(), player.getY());
+	}
+
+	/**
+	 * Gets how the current map has ended.
+	 *
+	 * @return the outcome of the current map
+	 */
+	public Outcome getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * Gets the reason the current map was failed.
+	 *
+	 * @return the reason of failure or <code>null</code> if the map has not
+	 *         been failed
+	 */
+	public String getFailReason() {
+		return failReason;
+	}
+
+	/**
+	 * Gets the replay of the current try. If the map has not been completed or
+	 * failed yet, the recording is ended at the current step and nothing more
+	 * is recorded until the next {@link #restart()}.
+	 *
+	 * @return the replay or <code>null</code> if the player has not been
+	 *         placed
+	 */
+	public Replay getReplay() {
+		return recorder.finish(outcome, player.getX(), player.getY());
+	}
+
+	/**
+	 * Gets the recorder recording the current try.
+	 *
+	 * @return the replay recorder
+	 */
+	public ReplayRecorder getReplayRecorder() {
+		return recorder;
+	}
+
+	/**
+	 * Gets the current map.
+	 *
+	 * @return current map or <code>null</code> if none has been loaded
+	 */
+	public TileMap getMap() {
+		return mapContainer.getMap();
+	}
+
+	/**
+	 * Gets the simulated player.
+	 *
+	 * @return the player
+	 */
+	public Player getPlayer() {
+		return player;
+	}
+
+	/**
+	 * Gets the physics engine of this simulation.
+	 *
+	 * @return the physics engine
+	 */
+	public Physics getPhysics() {
+		return physics;
+	}
+
+	/**
+	 * Gets the player listener of this simulation.
+	 *
+	 * @return the player listener
+	 */
+	public PlayerListener getPlayerListener() {
+		return playerListener;
+	}
+
+	/**
+	 * Gets the game status of this simulation.
+	 *
+	 * @return the game status
+	 */
+	public GameStatus getGameStatus() {
+		return gameStatus;
+	}
+}
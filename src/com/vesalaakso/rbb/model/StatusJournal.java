@@ -0,0 +1,550 @@
+package com.vesalaakso.rbb.model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.newdawn.slick.util.Log;
+
+/**
+ * Saves the tries, best scores and shots of every map, so that they are kept
+ * over restarts of the game. Every change is appended to a journal as a
+ * small record, and the journal is now and then compacted into a snapshot of
+ * the whole status. At startup the snapshot is read and the records in the
+ * journal after it are replayed, and the journal is compacted right away, so
+ * loading never reads more than a snapshot and a short journal.
+ * <p>
+ * The files are written on a thread of their own, so recording a change
+ * never waits for the disk. Every record has a checksum, so a record cut
+ * short by a crash is dropped when the journal is replayed. A new snapshot
+ * is written next to the old one and synced before it replaces it. Both
+ * files carry a generation, which grows with every compaction, and a
+ * journal is only replayed over the snapshot of the same generation, so
+ * that a crash in the middle of a compaction never replays a record twice.
+ * <p>
+ * The snapshot is:
+ *
+ * <pre>
+ * int     SNAPSHOT_MAGIC
+ * int     VERSION
+ * long    generation
+ * int     level count
+ * int[3]  tries, best score and shots of every level
+ * int     CRC32 of everything before it
+ * </pre>
+ *
+ * The journal is a header followed by records:
+ *
+ * <pre>
+ * int     JOURNAL_MAGIC
+ * int     VERSION
+ * long    generation
+ * record: byte type, byte level, int value, int CRC32 of the first six bytes
+ * </pre>
+ *
+ * @author Vesa Laakso
+ */
+public class StatusJournal {
+
+	/** The first four bytes of a snapshot, "RBBS". */
+	private static final int SNAPSHOT_MAGIC = 0x52424253;
+
+	/** The first four bytes of a journal, "RBBJ". */
+	private static final int JOURNAL_MAGIC = 0x5242424A;
+
+	/** The version of the format, bumped whenever the format changes. */
+	private static final int VERSION = 1;
+
+	/** The size of a journal header in bytes. */
+	private static final int HEADER_SIZE = 16;
+
+	/** The size of a journal record in bytes. */
+	private static final int RECORD_SIZE = 10;
+
+	/** The amount of records appended before the journal is compacted. */
+	private static final int COMPACT_EVERY = 100;
+
+	/** A record of a try failing, the value being unused. */
+	private static final byte TRY = 1;
+
+	/** A record of a new best score, the value being the score. */
+	private static final byte SCORE = 2;
+
+	/** A record of a shot, the value being unused. */
+	private static final byte SHOT = 3;
+
+	/** The snapshot file. */
+	private final File snapshotFile;
+
+	/** The snapshot being written, replacing the snapshot once synced. */
+	private final File newSnapshotFile;
+
+	/** The journal file. */
+	private final File journalFile;
+
+	/** Computes the checksums, only touched by one thread at a time. */
+	private final CRC32 crc = new CRC32();
+
+	/** The saved tries of every level, only touched by the writer. */
+	private int[] tries;
+
+	/** The saved best scores of every level, only touched by the writer. */
+	private int[] scores;
+
+	/** The saved shots of every level, only touched by the writer. */
+	private int[] shots;
+
+	/** The generation of the snapshot and the journal written to. */
+	private long generation;
+
+	/** The journal, open for appending, or <code>null</code> if closed. */
+	private DataOutputStream journal;
+
+	/** The amount of records in the journal. */
+	private int recordCount;
+
+	/** Must the journal be compacted before anything is appended to it. */
+	private boolean compactFirst;
+
+	/** The thread the files are written on, created by restore. */
+	private ExecutorService writer;
+
+	/**
+	 * Constructs a journal saving to the given directory. Nothing is read or
+	 * written before {@link #restore(int[], int[], int[])} is called.
+	 *
+	 * @param dir
+	 *            the directory to save the status to, created if needed
+	 */
+	public StatusJournal(File dir) {
+		snapshotFile = new File(dir, "status.snapshot");
+		newSnapshotFile = new File(dir, "status.snapshot.new");
+		journalFile = new File(dir, "status.journal");
+	}
+
+	/**
+	 * Reads the saved status into the given arrays, indexed by level - 1,
+	 * and starts writing the changes recorded after this. Arrays of a
+	 * different length than what was saved are filled as far as both go. If
+	 * nothing can be read, the arrays are left as they are.
+	 *
+	 * @param triesPerMap
+	 *            the tries of every level
+	 * @param scoresPerMap
+	 *            the best scores of every level
+	 * @param shotsPerMap
+	 *            the shots of every level
+	 */
+	public void restore(int[] triesPerMap, int[] scoresPerMap,
+			int[] shotsPerMap) {
+		if (writer != null) {
+			throw new IllegalStateException("The journal is already restored");
+		}
+
+		// The newer of the snapshots is used, the other one may be left over
+		// from a compaction which didn't finish.
+		long found = readSnapshot(snapshotFile, triesPerMap, scoresPerMap,
+				shotsPerMap);
+		long foundNew = readSnapshot(newSnapshotFile, null, null, null);
+		if (foundNew > found) {
+			found = readSnapshot(newSnapshotFile, triesPerMap, scoresPerMap,
+					shotsPerMap);
+		}
+		generation = Math.max(found, 0);
+
+		replayJournal(triesPerMap, scoresPerMap, shotsPerMap);
+
+		tries = triesPerMap.clone();
+		scores = scoresPerMap.clone();
+		shots = shotsPerMap.clone();
+
+		writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Status journal");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		if (compactFirst) {
+			writer.execute(new Runnable() {
+				@Override
+				public void run() {
+					compact();
+				}
+			});
+		}
+
+		// Let the queued records be written when the game exits.
+		Thread closer = new Thread("Status journal closer") {
+			@Override
+			public void run() {
+				close();
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(closer);
+	}
+
+	/**
+	 * A helper to read a snapshot into the given arrays, or only check it if
+	 * the arrays are <code>null</code>. Returns the generation of the
+	 * snapshot, or -1 if it couldn't be read.
+	 */
+	private long readSnapshot(File file, int[] triesPerMap,
+			int[] scoresPerMap, int[] shotsPerMap) {
+		if (!file.isFile()) {
+			return -1;
+		}
+		try {
+			byte[] bytes = readFully(file);
+			if (bytes.length < 4) {
+				throw new IOException("The snapshot is empty");
+			}
+			crc.reset();
+			crc.update(bytes, 0, bytes.length - 4);
+			DataInputStream in =
+				new DataInputStream(new ByteArrayInputStream(bytes));
+			in.skipBytes(bytes.length - 4);
+			if (in.readInt() != (int) crc.getValue()) {
+				throw new IOException("The snapshot is damaged");
+			}
+
+			in = new DataInputStream(new ByteArrayInputStream(bytes));
+			if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Not a snapshot of this version");
+			}
+			long snapshotGeneration = in.readLong();
+			int levels = in.readInt();
+			if (triesPerMap != null) {
+				for (int i = 0; i < levels; i++) {
+					int levelTries = in.readInt();
+					int levelScore = in.readInt();
+					int levelShots = in.readInt();
+					if (i < triesPerMap.length) {
+						triesPerMap[i] = levelTries;
+						scoresPerMap[i] = levelScore;
+						shotsPerMap[i] = levelShots;
+					}
+				}
+			}
+			return snapshotGeneration;
+		}
+		catch (IOException e) {
+			Log.warn("Ignoring the saved status in " + file + ": "
+					+ e.getMessage());
+			return -1;
+		}
+	}
+
+	/**
+	 * A helper to replay the records of the journal of the current
+	 * generation into the given arrays. Decides whether the journal must be
+	 * compacted before it is appended to.
+	 */
+	private void replayJournal(int[] triesPerMap, int[] scoresPerMap,
+			int[] shotsPerMap) {
+		if (!journalFile.isFile()) {
+			compactFirst = true;
+			return;
+		}
+
+		byte[] bytes;
+		try {
+			bytes = readFully(journalFile);
+		}
+		catch (IOException e) {
+			Log.warn("Failed to read the status journal", e);
+			compactFirst = true;
+			return;
+		}
+
+		DataInputStream in =
+			new DataInputStream(new ByteArrayInputStream(bytes));
+		try {
+			if (in.readInt() != JOURNAL_MAGIC || in.readInt() != VERSION
+					|| in.readLong() != generation) {
+				// Already in the snapshot, or not a journal at all.
+				compactFirst = true;
+				return;
+			}
+		}
+		catch (IOException e) {
+			compactFirst = true;
+			return;
+		}
+
+		int offset = HEADER_SIZE;
+		while (offset + RECORD_SIZE <= bytes.length) {
+			crc.reset();
+			crc.update(bytes, offset, RECORD_SIZE - 4);
+			try {
+				byte type = in.readByte();
+				int level = in.readByte();
+				int value = in.readInt();
+				if (in.readInt() != (int) crc.getValue()) {
+					break;
+				}
+				apply(type, level, value, triesPerMap, scoresPerMap,
+						shotsPerMap);
+			}
+			catch (IOException e) {
+				break;
+			}
+			offset += RECORD_SIZE;
+			recordCount++;
+		}
+
+		if (offset != bytes.length) {
+			Log.warn("Dropped a damaged record at the end of the status "
+					+ "journal");
+			compactFirst = true;
+		}
+		else if (recordCount > 0) {
+			// Keeps the next startup from replaying these again.
+			compactFirst = true;
+		}
+	}
+
+	/** A helper to apply a single record to the given arrays */
+	private static void apply(byte type, int level, int value,
+			int[] triesPerMap, int[] scoresPerMap, int[] shotsPerMap) {
+		int index = level - 1;
+		if (index < 0 || index >= triesPerMap.length) {
+			return;
+		}
+		switch (type) {
+			case TRY:
+				triesPerMap[index]++;
+				break;
+			case SCORE:
+				scoresPerMap[index] = value;
+				break;
+			case SHOT:
+				shotsPerMap[index]++;
+				break;
+			default:
+				Log.warn("Unknown record in the status journal: " + type);
+		}
+	}
+
+	/**
+	 * Records a failed try in the given level.
+	 *
+	 * @param level
+	 *            the level the try was made in
+	 */
+	public void recordTry(int level) {
+		append(TRY, level, 0);
+	}
+
+	/**
+	 * Records a new best score of the given level.
+	 *
+	 * @param level
+	 *            the level completed
+	 * @param score
+	 *            the new best score
+	 */
+	public void recordScore(int level, int score) {
+		append(SCORE, level, score);
+	}
+
+	/**
+	 * Records a shot in the given level.
+	 *
+	 * @param level
+	 *            the level the shot was made in
+	 */
+	public void recordShot(int level) {
+		append(SHOT, level, 0);
+	}
+
+	/** A helper to hand a record over to the writer thread */
+	private void append(final byte type, final int level, final int value) {
+		if (writer == null || writer.isShutdown()) {
+			return;
+		}
+		writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				write(type, level, value);
+			}
+		});
+	}
+
+	/** A helper to write a record, run on the writer thread */
+	private void write(byte type, int level, int value) {
+		apply(type, level, value, tries, scores, shots);
+		try {
+			if (journal == null) {
+				openJournal();
+			}
+			byte[] record = new byte[RECORD_SIZE - 4];
+			record[0] = type;
+			record[1] = (byte) level;
+			record[2] = (byte) (value >>> 24);
+			record[3] = (byte) (value >>> 16);
+			record[4] = (byte) (value >>> 8);
+			record[5] = (byte) value;
+			crc.reset();
+			crc.update(record);
+			journal.write(record);
+			journal.writeInt((int) crc.getValue());
+			journal.flush();
+			recordCount++;
+		}
+		catch (IOException e) {
+			Log.error("Failed to append to the status journal", e);
+			closeJournal();
+			compactFirst = true;
+		}
+
+		if (recordCount >= COMPACT_EVERY) {
+			compact();
+		}
+	}
+
+	/** A helper to open the journal for appending, run on the writer thread */
+	private void openJournal() throws IOException {
+		if (compactFirst) {
+			compact();
+			if (journal != null) {
+				return;
+			}
+			throw new IOException("Could not compact the status journal");
+		}
+		journal =
+			new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(journalFile, true)));
+	}
+
+	/**
+	 * A helper to write the saved status into a new snapshot and to start a
+	 * new journal after it, run on the writer thread.
+	 */
+	private void compact() {
+		closeJournal();
+		long newGeneration = generation + 1;
+		try {
+			File dir = snapshotFile.getParentFile();
+			if (dir != null) {
+				dir.mkdirs();
+			}
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream data = new DataOutputStream(bytes);
+			data.writeInt(SNAPSHOT_MAGIC);
+			data.writeInt(VERSION);
+			data.writeLong(newGeneration);
+			data.writeInt(tries.length);
+			for (int i = 0; i < tries.length; i++) {
+				data.writeInt(tries[i]);
+				data.writeInt(scores[i]);
+				data.writeInt(shots[i]);
+			}
+			crc.reset();
+			crc.update(bytes.toByteArray());
+			data.writeInt((int) crc.getValue());
+
+			FileOutputStream out = new FileOutputStream(newSnapshotFile);
+			try {
+				bytes.writeTo(out);
+				out.flush();
+				out.getFD().sync();
+			}
+			finally {
+				out.close();
+			}
+			if (snapshotFile.exists() && !snapshotFile.delete()) {
+				throw new IOException("Can't replace " + snapshotFile);
+			}
+			if (!newSnapshotFile.renameTo(snapshotFile)) {
+				throw new IOException("Can't rename " + newSnapshotFile);
+			}
+			generation = newGeneration;
+
+			journal =
+				new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(journalFile, false)));
+			journal.writeInt(JOURNAL_MAGIC);
+			journal.writeInt(VERSION);
+			journal.writeLong(generation);
+			journal.flush();
+			recordCount = 0;
+			compactFirst = false;
+		}
+		catch (IOException e) {
+			Log.error("Failed to compact the status journal", e);
+			closeJournal();
+			compactFirst = true;
+		}
+	}
+
+	/** A helper to close the journal, run on the writer thread */
+	private void closeJournal() {
+		if (journal == null) {
+			return;
+		}
+		try {
+			journal.close();
+		}
+		catch (IOException e) {
+			// Nothing to do about it.
+		}
+		journal = null;
+	}
+
+	/**
+	 * Writes the records still queued and closes the files. Waits a moment
+	 * at most, so this is meant to be called when the game exits. Nothing is
+	 * recorded after this.
+	 */
+	public void close() {
+		if (writer == null || writer.isShutdown()) {
+			return;
+		}
+		writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				closeJournal();
+			}
+		});
+		writer.shutdown();
+		try {
+			writer.awaitTermination(1, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** A helper to read a whole file */
+	private static byte[] readFully(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream bytes =
+				new ByteArrayOutputStream((int) file.length());
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				bytes.write(buffer, 0, read);
+			}
+			return bytes.toByteArray();
+		}
+		finally {
+			in.close();
+		}
+	}
+}
@@ -54,6 +54,12 @@ public class TileMap {
 	private List<TileMapObject> collisionObjects =
 			new ArrayList<TileMapObject>();
 
+	/** Spawn, finish, safe and trigger areas indexed by their location. */
+	private AreaGrid<TileMapObject> areaGrid;
+
+	/** Gravity field areas indexed by their location. */
+	private AreaGrid<GravityArea> gravityAreaGrid;
+
 	/** The resource manager to consult for tiled maps */
 	private ResourceManager resourceManager;
 
@@ -149,6 +155,22 @@ public class TileMap {
 			gravityAreas.add(new GravityArea(area, this));
 		}
 
+		// Index the areas so that they can be found by location.
+		areaGrid = new AreaGrid<TileMapObject>(map.getWidth(), map.getHeight());
+		areaGrid.add(spawnArea);
+		areaGrid.add(finishArea);
+		for (TileMapObject area : triggerAreas) {
+			areaGrid.add(area);
+		}
+		for (TileMapObject area : safeAreas) {
+			areaGrid.add(area);
+		}
+		gravityAreaGrid =
+			new AreaGrid<GravityArea>(map.getWidth(), map.getHeight());
+		for (GravityArea area : gravityAreas) {
+			gravityAreaGrid.add(area);
+		}
+
 		// Store collision objects
 		for (GroupObject area : map.getObjectGroup("collisions").getObjects()) {
 			TileMapObject newObj = new TileMapObject(area, this);
@@ -250,6 +272,25 @@ public class TileMap {
 		return gravityAreas;
 	}
 
+	/**
+	 * Returns the spawn, finish, safe and trigger areas indexed by their
+	 * location.
+	 * 
+	 * @return grid of the areas
+	 */
+	public AreaGrid<TileMapObject> getAreaGrid() {
+		return areaGrid;
+	}
+
+	/**
+	 * Returns the gravity fields indexed by their location.
+	 * 
+	 * @return grid of the gravity fields
+	 */
+	public AreaGrid<GravityArea> getGravityAreaGrid() {
+		return gravityAreaGrid;
+	}
+
 	/**
 	 * Returns the collidable objects in a list that should NOT be modified.
 	 * 
@@ -1,5 +1,6 @@
 package com.vesalaakso.rbb.model;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
@@ -120,36 +121,41 @@ public class TileMapObject {
 			return null;
 		}
 
-		// First look if there's a safe area above us
-		List<TileMapObject> safeAreas = map.getSafeAreas();
-		for (TileMapObject area : safeAreas) {
-			if (this.isBelow(area)) {
-				return area;
+		// Only the areas in the tile row right above us can be directly
+		// above us.
+		List<TileMapObject> candidates = new ArrayList<TileMapObject>();
+		map.getAreaGrid().getAreasIn(x, y - 1, width, 0, candidates);
+
+		// Safe areas are preferred over trigger areas, then the spawn area
+		// and finally the finish area.
+		TileMapObject found = null;
+		int foundPriority = Integer.MAX_VALUE;
+		for (TileMapObject area : candidates) {
+			int priority = abovePriority(area);
+			if (priority < foundPriority && this.isBelow(area)) {
+				found = area;
+				foundPriority = priority;
 			}
 		}
 
-		// Then look for trigger areas
-		List<TileMapObject> triggerAreas = map.getTriggerAreas();
-		for (TileMapObject area : triggerAreas) {
-			if (this.isBelow(area)) {
-				return area;
-			}
-		}
-
-		// Then we look if it was the spawn area.
-		TileMapObject spawnArea = map.getSpawnArea();
-		if (this.isBelow(spawnArea)) {
-			return spawnArea;
-		}
+		// If none was found, it's null time.
+		return found;
+	}
 
-		// And finally the finish area, no more.
-		TileMapObject finishArea = map.getFinishArea();
-		if (this.isBelow(finishArea)) {
-			return finishArea;
+	/** The order in which areas above an object are preferred */
+	private static int abovePriority(TileMapObject area) {
+		switch (area.type) {
+			case SAFE:
+				return 0;
+			case TRIGGER:
+				return 1;
+			case SPAWN:
+				return 2;
+			case FINISH:
+				return 3;
+			default:
+				return Integer.MAX_VALUE;
 		}
-
-		// If none was found, it's null time.
-		return null;
 	}
 
 	/** Used to check whether the given object was directly above this one */
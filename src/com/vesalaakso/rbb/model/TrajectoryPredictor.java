@@ -0,0 +1,209 @@
+package com.vesalaakso.rbb.model;
+
+import com.vesalaakso.rbb.controller.MapResultListener;
+import com.vesalaakso.rbb.controller.PlayerListener;
+import com.vesalaakso.rbb.controller.Resetable;
+import com.vesalaakso.rbb.controller.Updateable;
+
+/**
+ * Predicts the path the player would fly along if the {@link RubberBand} was
+ * let go right now. The prediction is simulated in a physics world of its
+ * own, which has the same static collision bodies as the real one, using the
+ * current gravity of the real world. Gravity areas along the way change the
+ * gravity just like they would in the real game.
+ * <p>
+ * A prediction is started over whenever the pull changes, and the whole
+ * path is simulated on that same update. The pull changes on almost every
+ * frame while dragging, so simulating the path over several frames would
+ * only ever show the start of it. The whole path takes well under a
+ * millisecond to simulate.
+ * <p>
+ * The prediction is a preview and not a promise. The world of the ghost is
+ * reused from one prediction to the next. The real player, meanwhile,
+ * carries its spin and contacts from earlier in the try. So the real path
+ * may drift away from the predicted one, most of all after a few bounces.
+ *
+ * @author Vesa Laakso
+ */
+public class TrajectoryPredictor implements Updateable, Resetable,
+		MapResultListener {
+
+	/**
+	 * The amount of steps predicted, two seconds of game time as one step is
+	 * taken every {@link Physics#STEP_MILLIS}.
+	 */
+	public static final int PREDICTED_STEPS = 120;
+
+	/** The rubber band whose pull is predicted. */
+	private final RubberBand rubberBand;
+
+	/** The real player, where the predicted path starts from. */
+	private final Player player;
+
+	/** The real physics, where the gravity is copied from. */
+	private final Physics physics;
+
+	/** The player flying along the predicted path. */
+	private final Player ghost;
+
+	/** The physics world the prediction is simulated in. */
+	private final Physics ghostPhysics;
+
+	/** Changes the gravity of the prediction in gravity areas. */
+	private final PlayerListener ghostListener;
+
+	/** The predicted positions of the player, as x-y pairs. */
+	private final float[] points = new float[PREDICTED_STEPS * 2];
+
+	/** The amount of positions predicted so far. */
+	private int pointCount;
+
+	/** Is there a prediction for the current pull. */
+	private boolean hasPrediction;
+
+	/** Is the prediction still being simulated. */
+	private boolean predicting;
+
+	/** The x-force of the current prediction. */
+	private float forceX;
+
+	/** The y-force of the current prediction. */
+	private float forceY;
+
+	/**
+	 * Constructs a new predictor for the given rubber band.
+	 *
+	 * @param rubberBand
+	 *            the rubber band whose pull to predict
+	 * @param player
+	 *            the player the rubber band is pulled from
+	 * @param physics
+	 *            the physics the player is simulated with
+	 * @param mapContainer
+	 *            the container to query the current map from
+	 */
+	public TrajectoryPredictor(RubberBand rubberBand, Player player,
+			Physics physics, TileMapContainer mapContainer) {
+		this.rubberBand = rubberBand;
+		this.player = player;
+		this.physics = physics;
+		// The ghost has a game status of its own, so that the predicted
+		// launches don't count as shots.
+		ghost = new Player(mapContainer, new GameStatus());
+		ghostPhysics = new Physics(ghost, null, mapContainer);
+		ghostListener =
+			new PlayerListener(mapContainer, ghost, ghostPhysics, this, null);
+		ghostPhysics.setStepListener(ghostListener);
+	}
+
+	/** Builds the prediction world for the current map. */
+	@Override
+	public void reset() {
+		ghost.reset();
+		ghostPhysics.reset();
+		ghostListener.reset();
+		pointCount = 0;
+		hasPrediction = false;
+		predicting = false;
+	}
+
+	/** Predicts the whole path again if the pull has changed. */
+	@Override
+	public void update(int delta) {
+		if (!rubberBand.isPulled()) {
+			pointCount = 0;
+			hasPrediction = false;
+			predicting = false;
+			return;
+		}
+
+		float newForceX = rubberBand.getForceX();
+		float newForceY = rubberBand.getForceY();
+		if (!hasPrediction || newForceX != forceX || newForceY != forceY) {
+			startPrediction(newForceX, newForceY);
+			while (predicting) {
+				stepPrediction();
+			}
+		}
+	}
+
+	/** A helper to launch the ghost from the position of the player */
+	private void startPrediction(float newForceX, float newForceY) {
+		forceX = newForceX;
+		forceY = newForceY;
+		pointCount = 0;
+		hasPrediction = true;
+		predicting = true;
+
+		ghostPhysics.removePlayer();
+		ghost.reset();
+		ghostListener.reset();
+		ghost.setPosition(player.getX(), player.getY());
+		ghost.setStartPositioned();
+		ghostPhysics.setGravity(physics.getXGravity(), physics.getYGravity());
+
+		// The body of the ghost is added to the world on the first step.
+		ghostPhysics.step();
+		ghost.launch();
+		ghostPhysics.launchPlayer(forceX, forceY);
+	}
+
+	/** A helper to simulate one step of the prediction */
+	private void stepPrediction() {
+		ghostPhysics.step();
+
+		points[pointCount * 2] = ghost.getX();
+		points[pointCount * 2 + 1] = ghost.getY();
+		pointCount++;
+
+		if (pointCount == PREDICTED_STEPS || ghost.isReadyForLaunch()) {
+			predicting = false;
+		}
+	}
+
+	/** The ghost stopped in the finish area, so there is nothing more. */
+	@Override
+	public void completedMap() {
+		predicting = false;
+	}
+
+	/** The ghost stopped somewhere unsafe, so there is nothing more. */
+	@Override
+	public void failedMap(String reason) {
+		predicting = false;
+	}
+
+	/**
+	 * Gets the amount of predicted positions. This is less than
+	 * {@link #PREDICTED_STEPS} if the ghost stopped before that.
+	 *
+	 * @return the amount of predicted positions
+	 */
+	public int getPointCount() {
+		return pointCount;
+	}
+
+	/**
+	 * Gets the x-coordinate of the given predicted position.
+	 *
+	 * @param index
+	 *            the index of the position, the first being the position
+	 *            after the first step
+	 * @return x-coordinate in the world
+	 */
+	public float getPointX(int index) {
+		return points[index * 2];
+	}
+
+	/**
+	 * Gets the y-coordinate of the given predicted position.
+	 *
+	 * @param index
+	 *            the index of the position, the first being the position
+	 *            after the first step
+	 * @return y-coordinate in the world
+	 */
+	public float getPointY(int index) {
+		return points[index * 2 + 1];
+	}
+}
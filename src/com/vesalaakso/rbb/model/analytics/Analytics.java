@@ -0,0 +1,293 @@
+package com.vesalaakso.rbb.model.analytics;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.zip.GZIPOutputStream;
+
+import org.newdawn.slick.util.Log;
+
+/**
+ * Collects events of the game, such as where the player fails and how it is
+ * launched, into files for {@link HeatmapAggregator} to study later.
+ * <p>
+ * Recording an event only publishes it to a lock-free ring, so the game
+ * thread never waits for the disk. A writer thread of its own drains the
+ * ring every now and then into gzipped files, starting a new file when the
+ * current one has grown large enough and deleting the oldest files when
+ * there are too many. Only one thread may record events.
+ * <p>
+ * A file is:
+ *
+ * <pre>
+ * int     MAGIC
+ * int     VERSION
+ * event:  byte type, int level, long time in ms, float x, float y,
+ *         float first value, float second value
+ * </pre>
+ *
+ * See {@link EventType} for the values of every type.
+ *
+ * @author Vesa Laakso
+ */
+public class Analytics {
+
+	/** The first four bytes of an event file, "RBBE". */
+	static final int MAGIC = 0x52424245;
+
+	/** The version of the format, bumped whenever the format changes. */
+	static final int VERSION = 1;
+
+	/** The extension of the event files. */
+	static final String EXTENSION = ".rbe.gz";
+
+	/** The amount of events waiting to be written the ring holds. */
+	private static final int RING_CAPACITY = 4096;
+
+	/** The size of an event in a file. */
+	private static final int EVENT_SIZE = 29;
+
+	/** The amount of uncompressed bytes written before a new file. */
+	private static final int MAX_FILE_BYTES = 1024 * 1024;
+
+	/** The amount of files kept, the oldest ones are deleted. */
+	private static final int MAX_FILES = 20;
+
+	/** The time the writer waits between draining the ring, in ms. */
+	private static final long DRAIN_INTERVAL_MILLIS = 250;
+
+	/** The directory the files are written to. */
+	private final File dir;
+
+	/** The events waiting to be written. */
+	private final EventRing ring = new EventRing(RING_CAPACITY);
+
+	/** Names the files of this run of the game. */
+	private final String session =
+		new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+
+	/** The writer thread, <code>null</code> until started. */
+	private Thread writer;
+
+	/** The level being played, only touched by the recording thread. */
+	private int level;
+
+	/** Has the writer been asked to stop. */
+	private volatile boolean closed;
+
+	/** The file being written, only touched by the writer. */
+	private DataOutputStream out;
+
+	/** The uncompressed bytes in the current file. */
+	private int fileBytes;
+
+	/** The number of the next file of this session. */
+	private int fileNumber;
+
+	/** Has writing failed, after which the events are only thrown away. */
+	private boolean failed;
+
+	/**
+	 * Constructs a new analytics writing to the given directory. Nothing is
+	 * recorded before {@link #start()} is called.
+	 *
+	 * @param dir
+	 *            the directory to write the event files to, created if needed
+	 */
+	public Analytics(File dir) {
+		this.dir = dir;
+	}
+
+	/** Starts the writer thread. */
+	public void start() {
+		if (writer != null) {
+			return;
+		}
+		writer = new Thread(new Writer(), "Analytics writer");
+		writer.setDaemon(true);
+		writer.start();
+
+		// Let the events still in the ring be written when the game exits.
+		Thread closer = new Thread("Analytics closer") {
+			@Override
+			public void run() {
+				close();
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(closer);
+	}
+
+	/**
+	 * Sets the level the events recorded after this happen in.
+	 *
+	 * @param level
+	 *            the level being played
+	 */
+	public void setLevel(int level) {
+		this.level = level;
+	}
+
+	/**
+	 * Records an event in the current level. Only publishes the event to the
+	 * ring, so this can be called on every frame. Does nothing if the
+	 * analytics hasn't been started or has been closed.
+	 *
+	 * @param type
+	 *            the type of the event
+	 * @param x
+	 *            the x-coordinate of the player
+	 * @param y
+	 *            the y-coordinate of the player
+	 * @param a
+	 *            the first value of the event, see {@link EventType}
+	 * @param b
+	 *            the second value of the event, see {@link EventType}
+	 */
+	public void record(EventType type, float x, float y, float a, float b) {
+		if (writer == null || closed) {
+			return;
+		}
+		ring.publish(type, level, System.currentTimeMillis(), x, y, a, b);
+	}
+
+	/**
+	 * Writes the events still in the ring and stops the writer. Waits a
+	 * moment at most, so this is meant to be called when the game exits.
+	 */
+	public void close() {
+		if (writer == null || closed) {
+			return;
+		}
+		closed = true;
+		writer.interrupt();
+		try {
+			writer.join(1000);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Drains the ring into the files until closed. */
+	private class Writer implements Runnable, EventRing.Sink {
+		@Override
+		public void run() {
+			while (!closed) {
+				drain();
+				try {
+					Thread.sleep(DRAIN_INTERVAL_MILLIS);
+				}
+				catch (InterruptedException e) {
+					// Closed, drain what is left.
+				}
+			}
+			drain();
+			closeFile();
+
+			int dropped = ring.getDroppedCount();
+			if (dropped > 0) {
+				Log.warn("Analytics dropped " + dropped
+						+ " events, the writer fell behind");
+			}
+		}
+
+		/** A helper to drain the ring into the current file */
+		private void drain() {
+			try {
+				ring.drain(this);
+			}
+			catch (IOException e) {
+				Log.error("Failed to write analytics, recording no more", e);
+				failed = true;
+				closeFile();
+			}
+		}
+
+		@Override
+		public void event(byte type, int level, long time, float x, float y,
+				float a, float b) throws IOException {
+			if (failed) {
+				return;
+			}
+			if (out == null) {
+				openFile();
+			}
+			out.writeByte(type);
+			out.writeInt(level);
+			out.writeLong(time);
+			out.writeFloat(x);
+			out.writeFloat(y);
+			out.writeFloat(a);
+			out.writeFloat(b);
+			fileBytes += EVENT_SIZE;
+			if (fileBytes >= MAX_FILE_BYTES) {
+				closeFile();
+			}
+		}
+
+		/** A helper to start a new file and to delete the oldest ones */
+		private void openFile() throws IOException {
+			dir.mkdirs();
+			String name =
+				String.format("events-%s-%03d%s", session, fileNumber++,
+						EXTENSION);
+			out =
+				new DataOutputStream(new BufferedOutputStream(
+						new GZIPOutputStream(new FileOutputStream(new File(
+								dir, name)))));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			fileBytes = 8;
+
+			// The names sort by time, the oldest first.
+			File[] files = listEventFiles(dir);
+			for (int i = 0; i < files.length - MAX_FILES; i++) {
+				if (!files[i].delete()) {
+					Log.warn("Failed to delete old analytics " + files[i]);
+				}
+			}
+		}
+
+		/** A helper to finish the current file */
+		private void closeFile() {
+			if (out == null) {
+				return;
+			}
+			try {
+				out.close();
+			}
+			catch (IOException e) {
+				Log.error("Failed to finish the analytics file", e);
+			}
+			out = null;
+		}
+	}
+
+	/**
+	 * Lists the event files in the given directory, sorted by name so that
+	 * the oldest one is first.
+	 *
+	 * @param dir
+	 *            the directory to list
+	 * @return the event files, empty if there are none
+	 */
+	static File[] listEventFiles(File dir) {
+		File[] files = dir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File parent, String name) {
+				return name.endsWith(EXTENSION);
+			}
+		});
+		if (files == null) {
+			return new File[0];
+		}
+		Arrays.sort(files);
+		return files;
+	}
+}
@@ -0,0 +1,148 @@
+package com.vesalaakso.rbb.model.analytics;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed size ring of events, published by the game thread and drained by
+ * the writer thread without locks. The events are stored in preallocated
+ * arrays, so publishing an event only writes a slot and moves a counter.
+ * <p>
+ * There must be only one thread publishing and only one thread draining. If
+ * the ring is full, the published event is dropped instead of waiting for
+ * the writer.
+ *
+ * @author Vesa Laakso
+ */
+class EventRing {
+
+	/** The amount of slots minus one, the amount being a power of two. */
+	private final int mask;
+
+	/** The type of the event in every slot, as the ordinal. */
+	private final byte[] types;
+
+	/** The level of the event in every slot. */
+	private final int[] levels;
+
+	/** The time of the event in every slot, in ms. */
+	private final long[] times;
+
+	/** The x-coordinate of the player in every slot. */
+	private final float[] xs;
+
+	/** The y-coordinate of the player in every slot. */
+	private final float[] ys;
+
+	/** The first value of the event in every slot. */
+	private final float[] as;
+
+	/** The second value of the event in every slot. */
+	private final float[] bs;
+
+	/** The amount of events published, written by the publisher only. */
+	private final AtomicLong published = new AtomicLong();
+
+	/** The amount of events drained, written by the drainer only. */
+	private final AtomicLong drained = new AtomicLong();
+
+	/** The amount of events dropped because the ring was full. */
+	private volatile int dropped;
+
+	/**
+	 * Constructs a new ring.
+	 *
+	 * @param capacity
+	 *            the amount of events the ring holds, a power of two
+	 */
+	EventRing(int capacity) {
+		if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+			throw new IllegalArgumentException(
+					"The capacity must be a power of two");
+		}
+		mask = capacity - 1;
+		types = new byte[capacity];
+		levels = new int[capacity];
+		times = new long[capacity];
+		xs = new float[capacity];
+		ys = new float[capacity];
+		as = new float[capacity];
+		bs = new float[capacity];
+	}
+
+	/**
+	 * Publishes an event. Must only be called by the publishing thread.
+	 *
+	 * @return <code>false</code> if the ring was full and the event dropped
+	 */
+	boolean publish(EventType type, int level, long time, float x, float y,
+			float a, float b) {
+		long sequence = published.get();
+		if (sequence - drained.get() > mask) {
+			dropped++;
+			return false;
+		}
+
+		int slot = (int) sequence & mask;
+		types[slot] = (byte) type.ordinal();
+		levels[slot] = level;
+		times[slot] = time;
+		xs[slot] = x;
+		ys[slot] = y;
+		as[slot] = a;
+		bs[slot] = b;
+
+		// Makes the slot visible to the drainer before the new count.
+		published.lazySet(sequence + 1);
+		return true;
+	}
+
+	/**
+	 * Hands every published event to the given sink and frees their slots.
+	 * Must only be called by the draining thread.
+	 *
+	 * @param sink
+	 *            the sink to hand the events to
+	 * @return the amount of events drained
+	 * @throws IOException
+	 *             if the sink failed, in which case the events handed to it
+	 *             so far are freed
+	 */
+	int drain(Sink sink) throws IOException {
+		long first = drained.get();
+		long last = published.get();
+		long sequence = first;
+		try {
+			for (; sequence < last; sequence++) {
+				int slot = (int) sequence & mask;
+				sink.event(types[slot], levels[slot], times[slot], xs[slot],
+						ys[slot], as[slot], bs[slot]);
+			}
+		}
+		finally {
+			drained.lazySet(sequence);
+		}
+		return (int) (sequence - first);
+	}
+
+	/**
+	 * Gets the amount of events dropped because the ring was full.
+	 *
+	 * @return the amount of dropped events
+	 */
+	int getDroppedCount() {
+		return dropped;
+	}
+
+	/** Receives the drained events. */
+	interface Sink {
+		/**
+		 * Receives a single event.
+		 *
+		 * @throws IOException
+		 *             if the event could not be handled
+		 */
+		void event(byte type, int level, long time, float x, float y,
+				float a, float b) throws IOException;
+	}
+}
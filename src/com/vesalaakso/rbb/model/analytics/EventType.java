@@ -0,0 +1,38 @@
+package com.vesalaakso.rbb.model.analytics;
+
+/**
+ * The kinds of events the game reports to {@link Analytics}. Every event has
+ * the position of the player and two values, whose meaning depends on the
+ * kind of the event.
+ *
+ * @author Vesa Laakso
+ */
+public enum EventType {
+	/** The player stopped outside a safe area. No values. */
+	FAILED,
+	/** The player stopped in the finish area. No values. */
+	COMPLETED,
+	/** The player was launched. The values are the x- and y-force. */
+	LAUNCHED,
+	/** The player hit something. The first value is the force of the hit. */
+	COLLIDED,
+	/** The player entered another gravity. The values are the gravity. */
+	GRAVITY_CHANGED;
+
+	/** All the types, indexed by their ordinals. */
+	private static final EventType[] VALUES = values();
+
+	/**
+	 * Gets the type with the given ordinal.
+	 *
+	 * @param ordinal
+	 *            the ordinal of the type
+	 * @return the type, or <code>null</code> if there is no such type
+	 */
+	public static EventType forOrdinal(int ordinal) {
+		if (ordinal < 0 || ordinal >= VALUES.length) {
+			return null;
+		}
+		return VALUES[ordinal];
+	}
+}
@@ -0,0 +1,294 @@
+package com.vesalaakso.rbb.model.analytics;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+import javax.imageio.ImageIO;
+
+import com.vesalaakso.rbb.model.TileMap;
+
+/**
+ * Builds heatmaps of the events written by {@link Analytics}, so that one
+ * can see where players fail and how they launch the ball. Run by the
+ * <code>analytics-heatmaps</code> Ant target.
+ * <p>
+ * For every level, the places the player stopped at are counted in cells of
+ * a tile and drawn into <code>level&lt;n&gt;-stops.png</code>, failures in
+ * red and completions in green. The launches are counted by their direction
+ * and force into <code>level&lt;n&gt;-launches.csv</code>.
+ *
+ * @author Vesa Laakso
+ */
+public class HeatmapAggregator {
+
+	/** The size of a cell of the stop heatmap, in pixels of the level. */
+	private static final float CELL_SIZE = TileMap.TILE_SIZE;
+
+	/** The size of a cell in the heatmap image, in pixels. */
+	private static final int CELL_PIXELS = 8;
+
+	/** The amount of directions the launches are counted in. */
+	private static final int DIRECTIONS = 16;
+
+	/** The amount of force ranges the launches are counted in. */
+	private static final int FORCE_BINS = 8;
+
+	/** The events of every level, by the level. */
+	private final Map<Integer, Level> levels = new TreeMap<Integer, Level>();
+
+	/** The greatest force of all the launches, for the force ranges. */
+	private float maxForce;
+
+	/** A private constructor, heatmaps are built with {@link #main}. */
+	private HeatmapAggregator() {
+	}
+
+	/**
+	 * A helper to read the events of a single file. A file cut short, which
+	 * happens if the game didn't exit cleanly, is read as far as it goes.
+	 */
+	private int read(File file) throws IOException {
+		DataInputStream in =
+			new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+					new FileInputStream(file))));
+		int count = 0;
+		try {
+			if (in.readInt() != Analytics.MAGIC
+					|| in.readInt() != Analytics.VERSION) {
+				throw new IOException("Not an event file of this version");
+			}
+			while (true) {
+				EventType type = EventType.forOrdinal(in.readByte());
+				int level = in.readInt();
+				in.readLong();
+				float x = in.readFloat();
+				float y = in.readFloat();
+				float a = in.readFloat();
+				float b = in.readFloat();
+				if (type != null) {
+					add(type, level, x, y, a, b);
+				}
+				count++;
+			}
+		}
+		catch (EOFException e) {
+			// The end of the file, or as far as it was written.
+		}
+		finally {
+			in.close();
+		}
+		return count;
+	}
+
+	/** A helper to count a single event */
+	private void add(EventType type, int level, float x, float y, float a,
+			float b) {
+		Level counts = levels.get(level);
+		if (counts == null) {
+			counts = new Level();
+			levels.put(level, counts);
+		}
+
+		switch (type) {
+			case FAILED:
+				counts.addStop(x, y, false);
+				break;
+			case COMPLETED:
+				counts.addStop(x, y, true);
+				break;
+			case LAUNCHED:
+				counts.addLaunch(a, b);
+				maxForce =
+					Math.max(maxForce, (float) Math.sqrt(a * a + b * b));
+				break;
+			default:
+				// Not in the heatmaps.
+		}
+	}
+
+	/** A helper to write the heatmaps of every level */
+	private void write(File outputDir) throws IOException {
+		outputDir.mkdirs();
+		for (Map.Entry<Integer, Level> entry : levels.entrySet()) {
+			int level = entry.getKey();
+			Level counts = entry.getValue();
+			if (counts.stopCount > 0) {
+				writeStops(counts, new File(outputDir, "level" + level
+						+ "-stops.png"));
+			}
+			if (counts.launchCount > 0) {
+				writeLaunches(counts, new File(outputDir, "level" + level
+						+ "-launches.csv"));
+			}
+			System.out.println(String.format(
+					"Level %d: %d stops, %d launches", level, counts.stopCount,
+					counts.launchCount));
+		}
+	}
+
+	/** A helper to draw the stop heatmap of a level */
+	private void writeStops(Level counts, File file) throws IOException {
+		int width = counts.maxCellX + 1;
+		int height = counts.maxCellY + 1;
+		int max = 1;
+		for (int[] cell : counts.stops.values()) {
+			max = Math.max(max, Math.max(cell[0], cell[1]));
+		}
+
+		BufferedImage image =
+			new BufferedImage(width * CELL_PIXELS, height * CELL_PIXELS,
+					BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		for (Map.Entry<Long, int[]> entry : counts.stops.entrySet()) {
+			int cellX = (int) (entry.getKey() >> 32);
+			int cellY = (int) (long) entry.getKey();
+			int[] cell = entry.getValue();
+			// A square root, so that a few stops still show next to many.
+			float failed = (float) Math.sqrt((float) cell[0] / max);
+			float completed = (float) Math.sqrt((float) cell[1] / max);
+			g.setColor(new Color(failed, completed, 0));
+			g.fillRect(cellX * CELL_PIXELS, cellY * CELL_PIXELS, CELL_PIXELS,
+					CELL_PIXELS);
+		}
+		g.dispose();
+		ImageIO.write(image, "png", file);
+	}
+
+	/** A helper to write the launch counts of a level */
+	private void writeLaunches(Level counts, File file) throws IOException {
+		PrintWriter out =
+			new PrintWriter(new OutputStreamWriter(new FileOutputStream(file),
+					"UTF-8"));
+		try {
+			// The force ranges are the same for every level.
+			int[][] launches = new int[DIRECTIONS][FORCE_BINS];
+			for (int i = 0; i < counts.launchCount; i++) {
+				float forceX = counts.launchForces[i * 2];
+				float forceY = counts.launchForces[i * 2 + 1];
+				double angle = Math.atan2(forceY, forceX);
+				if (angle < 0) {
+					angle += 2 * Math.PI;
+				}
+				int direction =
+					(int) Math.round(angle / (2 * Math.PI) * DIRECTIONS)
+							% DIRECTIONS;
+				float force =
+					(float) Math.sqrt(forceX * forceX + forceY * forceY);
+				int bin =
+					maxForce > 0 ? Math.min(FORCE_BINS - 1,
+							(int) (force / maxForce * FORCE_BINS)) : 0;
+				launches[direction][bin]++;
+			}
+
+			out.println("direction (degrees),force from,force to,launches");
+			float binSize = maxForce / FORCE_BINS;
+			for (int d = 0; d < DIRECTIONS; d++) {
+				for (int f = 0; f < FORCE_BINS; f++) {
+					int count = launches[d][f];
+					if (count > 0) {
+						out.println(String.format(Locale.ROOT,
+								"%d,%.1f,%.1f,%d", d * 360 / DIRECTIONS, f
+										* binSize, (f + 1) * binSize, count));
+					}
+				}
+			}
+		}
+		finally {
+			out.close();
+		}
+		if (out.checkError()) {
+			throw new IOException("Failed to write " + file);
+		}
+	}
+
+	/**
+	 * Builds the heatmaps of all the event files in a directory.
+	 *
+	 * @param args
+	 *            the directory of the event files and the directory to write
+	 *            the heatmaps to
+	 * @throws Exception
+	 *             if the events could not be read or the heatmaps written
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err.println("Usage: HeatmapAggregator <event directory> "
+					+ "<output directory>");
+			System.exit(1);
+		}
+
+		File[] files = Analytics.listEventFiles(new File(args[0]));
+		HeatmapAggregator aggregator = new HeatmapAggregator();
+		int events = 0;
+		for (File file : files) {
+			events += aggregator.read(file);
+		}
+
+		System.out.println(String.format("Read %d events from %d files",
+				events, files.length));
+		aggregator.write(new File(args[1]));
+	}
+
+	/** The counted events of a single level. */
+	private static class Level {
+		/** Failed and completed stops in every cell, keyed by x and y. */
+		final Map<Long, int[]> stops = new TreeMap<Long, int[]>();
+
+		/** The x- and y-force of every launch, grown when needed. */
+		float[] launchForces = new float[64];
+
+		/** The rightmost cell with stops. */
+		int maxCellX;
+
+		/** The lowest cell with stops. */
+		int maxCellY;
+
+		/** The amount of stops. */
+		int stopCount;
+
+		/** The amount of launches. */
+		int launchCount;
+
+		/** Counts a stop in the cell of the given position. */
+		void addStop(float x, float y, boolean completed) {
+			int cellX = Math.max(0, (int) (x / CELL_SIZE));
+			int cellY = Math.max(0, (int) (y / CELL_SIZE));
+			Long key = ((long) cellX << 32) | cellY;
+			int[] cell = stops.get(key);
+			if (cell == null) {
+				cell = new int[2];
+				stops.put(key, cell);
+			}
+			cell[completed ? 1 : 0]++;
+			maxCellX = Math.max(maxCellX, cellX);
+			maxCellY = Math.max(maxCellY, cellY);
+			stopCount++;
+		}
+
+		/** Stores a launch, to be counted once all the forces are known. */
+		void addLaunch(float forceX, float forceY) {
+			if (launchCount * 2 == launchForces.length) {
+				float[] grown = new float[launchForces.length * 2];
+				System.arraycopy(launchForces, 0, grown, 0, launchForces.length);
+				launchForces = grown;
+			}
+			launchForces[launchCount * 2] = forceX;
+			launchForces[launchCount * 2 + 1] = forceY;
+			launchCount++;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.vesalaakso.rbb.model.audio;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.newdawn.slick.util.ResourceLoader;
+
+import ibxm.IBXM;
+import ibxm.Module;
+import ibxm.OpenALMODPlayer;
+
+/**
+ * Renders a tracker module, such as an XM file, with IBXM. A module is only
+ * a few patterns and samples, so the audio is mixed as it is read instead of
+ * being decoded beforehand.
+ *
+ * @author Vesa Laakso
+ */
+public class ModuleMusicDecoder implements MusicDecoder {
+
+	/** The sample rate modules are mixed at. */
+	private static final int RATE = 48000;
+
+	/** The bytes in a single frame of mixed audio, 16-bit stereo. */
+	private static final int FRAME_BYTES = 4;
+
+	/** The mixer playing the module. */
+	private final IBXM ibxm = new IBXM(RATE);
+
+	/** The module being played. */
+	private final Module module;
+
+	/** The length of the module, in frames. */
+	private final int duration;
+
+	/** The frames left before the module ends. */
+	private int remaining;
+
+	/**
+	 * Loads the given module for playing.
+	 *
+	 * @param fileName
+	 *            the module file to load
+	 * @throws IOException
+	 *             if the module couldn't be loaded
+	 */
+	public ModuleMusicDecoder(String fileName) throws IOException {
+		InputStream in = ResourceLoader.getResourceAsStream(fileName);
+		try {
+			module = OpenALMODPlayer.loadModule(in);
+		}
+		finally {
+			in.close();
+		}
+		ibxm.set_module(module);
+		duration = ibxm.calculate_song_duration();
+		remaining = duration;
+	}
+
+	@Override
+	public int getChannels() {
+		return 2;
+	}
+
+	@Override
+	public int getRate() {
+		return RATE;
+	}
+
+	@Override
+	public int read(byte[] data) {
+		int frames = Math.min(data.length / FRAME_BYTES, remaining);
+		if (frames == 0) {
+			return -1;
+		}
+		ibxm.get_audio(data, frames);
+		remaining -= frames;
+		return frames * FRAME_BYTES;
+	}
+
+	@Override
+	public void rewind() {
+		ibxm.set_module(module);
+		remaining = duration;
+	}
+
+	@Override
+	public void close() {
+		// Nothing but memory is held.
+	}
+}
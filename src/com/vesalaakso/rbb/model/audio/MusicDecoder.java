@@ -0,0 +1,49 @@
+package com.vesalaakso.rbb.model.audio;
+
+import java.io.IOException;
+
+/**
+ * Decodes a music track a piece at a time into 16-bit PCM in the native byte
+ * order, so that a {@link MusicPlayer} never has to hold a whole decoded
+ * track in memory.
+ *
+ * @author Vesa Laakso
+ */
+public interface MusicDecoder {
+
+	/**
+	 * Gets the amount of channels in the decoded audio.
+	 *
+	 * @return 1 for mono, 2 for stereo
+	 */
+	public int getChannels();
+
+	/**
+	 * Gets the sample rate of the decoded audio.
+	 *
+	 * @return the sample rate in Hz
+	 */
+	public int getRate();
+
+	/**
+	 * Decodes the next piece of the track.
+	 *
+	 * @param data
+	 *            the array to decode into
+	 * @return the amount of bytes decoded, or -1 if the track has ended
+	 * @throws IOException
+	 *             if the track couldn't be read
+	 */
+	public int read(byte[] data) throws IOException;
+
+	/**
+	 * Starts the track over from the beginning.
+	 *
+	 * @throws IOException
+	 *             if the track couldn't be read
+	 */
+	public void rewind() throws IOException;
+
+	/** Releases everything the decoder holds. */
+	public void close();
+}
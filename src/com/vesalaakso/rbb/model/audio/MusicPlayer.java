@@ -0,0 +1,394 @@
+package com.vesalaakso.rbb.model.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.openal.AL10;
+import org.newdawn.slick.openal.SoundStore;
+import org.newdawn.slick.util.Log;
+import org.newdawn.slick.util.ResourceLoader;
+
+/**
+ * Plays music tracks by streaming them, so that no track is ever decoded
+ * whole. OGG files and tracker modules are supported.
+ * <p>
+ * A background thread decodes each playing track into a small ring of
+ * chunks, and {@link #update(int)} moves the decoded chunks into a few
+ * OpenAL buffers queued on the source of the track. Two tracks can play at
+ * once, so that changing the track fades the old one out while the new one
+ * fades in. Tracks loop until another one is played.
+ *
+ * @author Vesa Laakso
+ */
+public class MusicPlayer {
+
+	/** The time it takes to fade from a track to another, in ms. */
+	public static final int CROSSFADE_MILLIS = 1500;
+
+	/** The amount of OpenAL buffers queued for each track. */
+	private static final int BUFFER_COUNT = 3;
+
+	/** The amount of decoded chunks waiting for each track. */
+	private static final int RING_SIZE = 4;
+
+	/** The size of a decoded chunk, about 85 ms of 48 kHz stereo audio. */
+	private static final int CHUNK_BYTES = 16384;
+
+	/** The tracks, one fading in or playing and one fading out. */
+	private final Track[] tracks = { new Track(), new Track() };
+
+	/**
+	 * Guards the state the game thread shares with the decoder thread: the
+	 * file, generation and ring of every track.
+	 */
+	private final Object lock = new Object();
+
+	/** Used to queue and unqueue a single buffer. */
+	private final IntBuffer bufferId = BufferUtils.createIntBuffer(1);
+
+	/** Used to upload a decoded chunk to OpenAL. */
+	private final ByteBuffer upload = BufferUtils.createByteBuffer(CHUNK_BYTES);
+
+	/** The track fading in or playing, or <code>null</code> if none is. */
+	private Track current;
+
+	/** The volume of the music, 1 being the normal volume. */
+	private float volume = 1;
+
+	/** Have the sources been created and the decoder thread started. */
+	private volatile boolean initialized;
+
+	/**
+	 * Creates the sources for the music and starts the decoder thread. Does
+	 * nothing if sound doesn't work, in which case there will be no music.
+	 */
+	public void init() {
+		if (initialized || !SoundStore.get().soundWorks()) {
+			return;
+		}
+
+		IntBuffer ids = BufferUtils.createIntBuffer(BUFFER_COUNT);
+		for (Track track : tracks) {
+			AL10.alGetError();
+			ids.clear().limit(1);
+			AL10.alGenSources(ids);
+			if (AL10.alGetError() != AL10.AL_NO_ERROR) {
+				Log.error("Failed to create music sources, playing no music.");
+				return;
+			}
+			track.source = ids.get(0);
+
+			ids.clear();
+			AL10.alGenBuffers(ids);
+			ids.get(track.freeBuffers);
+			track.freeCount = BUFFER_COUNT;
+		}
+
+		Thread decoder = new Thread(new Decoder(), "Music decoder");
+		decoder.setDaemon(true);
+		decoder.start();
+		initialized = true;
+	}
+
+	/**
+	 * Starts playing the given music file, fading out the music played
+	 * before. Does nothing if the file is already playing.
+	 *
+	 * @param fileName
+	 *            the OGG file or tracker module to play
+	 */
+	public void play(String fileName) {
+		if (!initialized
+				|| (current != null && fileName.equals(current.fileName))) {
+			return;
+		}
+
+		// If the file is still fading out, it is simply faded back in.
+		Track next = null;
+		for (Track track : tracks) {
+			if (track != current && fileName.equals(track.fileName)) {
+				next = track;
+			}
+		}
+		if (next == null) {
+			next = tracks[0] == current ? tracks[1] : tracks[0];
+			stop(next);
+			synchronized (lock) {
+				next.fileName = fileName;
+				lock.notify();
+			}
+		}
+
+		next.targetGain = 1;
+		if (current != null) {
+			current.targetGain = 0;
+		}
+		current = next;
+	}
+
+	/**
+	 * Sets the volume of the music. The volume is further scaled by the
+	 * music volume of Slick's sound store.
+	 *
+	 * @param volume
+	 *            the volume, 1 being the normal volume
+	 */
+	public void setVolume(float volume) {
+		this.volume = volume;
+	}
+
+	/**
+	 * Fades the tracks and keeps their sources fed with decoded audio.
+	 *
+	 * @param delta
+	 *            the time passed since the last update, in ms
+	 */
+	public void update(int delta) {
+		if (!initialized) {
+			return;
+		}
+
+		SoundStore store = SoundStore.get();
+		float masterGain =
+			store.isMusicOn() ? volume * store.getMusicVolume() : 0;
+		float fade = (float) delta / CROSSFADE_MILLIS;
+		for (Track track : tracks) {
+			if (track.fileName == null) {
+				continue;
+			}
+
+			if (track.gain < track.targetGain) {
+				track.gain = Math.min(track.targetGain, track.gain + fade);
+			}
+			else if (track.gain > track.targetGain) {
+				track.gain = Math.max(track.targetGain, track.gain - fade);
+			}
+			if (track.gain == 0 && track.targetGain == 0) {
+				stop(track);
+				continue;
+			}
+
+			stream(track);
+			AL10.alSourcef(track.source, AL10.AL_GAIN, track.gain * masterGain);
+		}
+	}
+
+	/** A helper to queue the decoded chunks of the given track */
+	private void stream(Track track) {
+		int processed =
+			AL10.alGetSourcei(track.source, AL10.AL_BUFFERS_PROCESSED);
+		for (int i = 0; i < processed; i++) {
+			bufferId.clear();
+			AL10.alSourceUnqueueBuffers(track.source, bufferId);
+			track.freeBuffers[track.freeCount++] = bufferId.get(0);
+		}
+
+		while (track.freeCount > 0) {
+			int format;
+			int rate;
+			synchronized (lock) {
+				if (track.count == 0) {
+					break;
+				}
+				int slot = track.head;
+				upload.clear();
+				upload.put(track.chunks[slot], 0, track.lengths[slot]);
+				upload.flip();
+				format = track.formats[slot];
+				rate = track.rates[slot];
+				track.head = (slot + 1) % RING_SIZE;
+				track.count--;
+				lock.notify();
+			}
+
+			int buffer = track.freeBuffers[--track.freeCount];
+			AL10.alBufferData(buffer, format, upload, rate);
+			bufferId.clear();
+			bufferId.put(0, buffer);
+			AL10.alSourceQueueBuffers(track.source, bufferId);
+		}
+
+		// Starts the source, or restarts it if the decoder fell behind.
+		int state = AL10.alGetSourcei(track.source, AL10.AL_SOURCE_STATE);
+		if (state != AL10.AL_PLAYING
+				&& AL10.alGetSourcei(track.source, AL10.AL_BUFFERS_QUEUED) > 0) {
+			AL10.alSourcePlay(track.source);
+		}
+	}
+
+	/** A helper to stop the given track and forget what was decoded */
+	private void stop(Track track) {
+		AL10.alSourceStop(track.source);
+		int queued = AL10.alGetSourcei(track.source, AL10.AL_BUFFERS_QUEUED);
+		for (int i = 0; i < queued; i++) {
+			bufferId.clear();
+			AL10.alSourceUnqueueBuffers(track.source, bufferId);
+			track.freeBuffers[track.freeCount++] = bufferId.get(0);
+		}
+		track.gain = 0;
+		track.targetGain = 0;
+
+		synchronized (lock) {
+			track.fileName = null;
+			track.generation++;
+			track.failed = false;
+			track.head = 0;
+			track.count = 0;
+		}
+	}
+
+	/** A helper to open the decoder for the given file */
+	private static MusicDecoder openDecoder(String fileName)
+			throws IOException {
+		if (!ResourceLoader.resourceExists(fileName)) {
+			throw new IOException("No such music file: " + fileName);
+		}
+		if (fileName.toLowerCase().endsWith(".ogg")) {
+			return new OggMusicDecoder(fileName);
+		}
+		return new ModuleMusicDecoder(fileName);
+	}
+
+	/** The state of a single track. */
+	private static class Track {
+		/** The OpenAL source the track plays in. */
+		int source;
+
+		/** The OpenAL buffers not queued to the source. */
+		final int[] freeBuffers = new int[BUFFER_COUNT];
+
+		/** The amount of free buffers. */
+		int freeCount;
+
+		/** The current gain of the track. */
+		float gain;
+
+		/** The gain the track is fading towards. */
+		float targetGain;
+
+		/** The file being played, or <code>null</code> if the track is free. */
+		String fileName;
+
+		/** Grows every time the track is stopped, so old chunks are dropped. */
+		int generation;
+
+		/** Couldn't the file be decoded. */
+		boolean failed;
+
+		/** The decoded chunks. */
+		final byte[][] chunks = new byte[RING_SIZE][CHUNK_BYTES];
+
+		/** The amount of bytes in every chunk. */
+		final int[] lengths = new int[RING_SIZE];
+
+		/** The OpenAL format of every chunk. */
+		final int[] formats = new int[RING_SIZE];
+
+		/** The sample rate of every chunk. */
+		final int[] rates = new int[RING_SIZE];
+
+		/** The index of the oldest decoded chunk. */
+		int head;
+
+		/** The amount of decoded chunks. */
+		int count;
+
+		/** The decoder, only touched by the decoder thread. */
+		MusicDecoder decoder;
+
+		/** The generation the decoder was opened for. */
+		int decoderGeneration = -1;
+	}
+
+	/**
+	 * Decodes chunks for the tracks until their rings are full, then waits
+	 * for the game thread to use some of them.
+	 */
+	private class Decoder implements Runnable {
+		@Override
+		public void run() {
+			while (true) {
+				Track track;
+				int generation;
+				String fileName;
+				int slot;
+				synchronized (lock) {
+					while ((track = findWork()) == null) {
+						try {
+							lock.wait();
+						}
+						catch (InterruptedException e) {
+							return;
+						}
+					}
+					generation = track.generation;
+					fileName = track.fileName;
+					slot = (track.head + track.count) % RING_SIZE;
+				}
+
+				// The slot is past the decoded chunks, so the game thread
+				// won't read it until it is committed below.
+				try {
+					decode(track, generation, fileName, slot);
+				}
+				catch (IOException e) {
+					Log.error("Failed to decode music " + fileName, e);
+					synchronized (lock) {
+						if (track.generation == generation) {
+							track.failed = true;
+						}
+					}
+				}
+			}
+		}
+
+		/** A helper to find a track which has room for a chunk */
+		private Track findWork() {
+			for (Track track : tracks) {
+				if (track.fileName != null && !track.failed
+						&& track.count < RING_SIZE) {
+					return track;
+				}
+			}
+			return null;
+		}
+
+		/** A helper to decode a chunk into the given slot */
+		private void decode(Track track, int generation, String fileName,
+				int slot) throws IOException {
+			if (track.decoder == null || track.decoderGeneration != generation) {
+				if (track.decoder != null) {
+					track.decoder.close();
+					track.decoder = null;
+				}
+				track.decoder = openDecoder(fileName);
+				track.decoderGeneration = generation;
+			}
+
+			MusicDecoder decoder = track.decoder;
+			byte[] chunk = track.chunks[slot];
+			int length = decoder.read(chunk);
+			if (length < 0) {
+				decoder.rewind();
+				length = decoder.read(chunk);
+				if (length < 0) {
+					throw new IOException("Music file has no audio");
+				}
+			}
+			int format =
+				decoder.getChannels() == 1 ? AL10.AL_FORMAT_MONO16
+						: AL10.AL_FORMAT_STEREO16;
+
+			synchronized (lock) {
+				if (track.generation == generation) {
+					track.lengths[slot] = length;
+					track.formats[slot] = format;
+					track.rates[slot] = decoder.getRate();
+					track.count++;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.vesalaakso.rbb.model.audio;
+
+import java.io.IOException;
+
+import org.newdawn.slick.openal.OggInputStream;
+import org.newdawn.slick.util.ResourceLoader;
+
+/**
+ * Decodes an OGG Vorbis file straight from the stream it is read from.
+ *
+ * @author Vesa Laakso
+ */
+public class OggMusicDecoder implements MusicDecoder {
+
+	/** The file the track is read from. */
+	private final String fileName;
+
+	/** The stream the track is decoded from. */
+	private OggInputStream stream;
+
+	/**
+	 * Opens the given OGG file for decoding.
+	 *
+	 * @param fileName
+	 *            the file to decode
+	 * @throws IOException
+	 *             if the file couldn't be opened
+	 */
+	public OggMusicDecoder(String fileName) throws IOException {
+		this.fileName = fileName;
+		stream = open();
+	}
+
+	/** A helper to open the stream from the beginning of the file */
+	private OggInputStream open() throws IOException {
+		return new OggInputStream(ResourceLoader.getResourceAsStream(fileName));
+	}
+
+	@Override
+	public int getChannels() {
+		return stream.getChannels();
+	}
+
+	@Override
+	public int getRate() {
+		return stream.getRate();
+	}
+
+	@Override
+	public int read(byte[] data) throws IOException {
+		return stream.read(data, 0, data.length);
+	}
+
+	@Override
+	public void rewind() throws IOException {
+		close();
+		stream = open();
+	}
+
+	@Override
+	public void close() {
+		try {
+			stream.close();
+		}
+		catch (IOException e) {
+			// Nothing more will be read from it anyway.
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package com.vesalaakso.rbb.model.audio;
+
+import org.lwjgl.openal.AL10;
+import org.newdawn.slick.openal.SoundStore;
+
+import com.vesalaakso.rbb.model.ResourceManager;
+import com.vesalaakso.rbb.model.resources.Audio;
+
+/**
+ * Plays the sound effects of a {@link ResourceManager} through Slick's
+ * OpenAL sound store. A voice is the index of the OpenAL source the sound
+ * was played in.
+ *
+ * @author Vesa Laakso
+ */
+public class OpenALSoundBackend implements SoundBackend {
+
+	/** The resource manager to query for the sounds. */
+	private final ResourceManager resourceManager;
+
+	/**
+	 * Constructs a new backend playing the sounds of the given resource
+	 * manager.
+	 *
+	 * @param resourceManager
+	 *            the resource manager to query for the sounds
+	 */
+	public OpenALSoundBackend(ResourceManager resourceManager) {
+		this.resourceManager = resourceManager;
+	}
+
+	@Override
+	public int play(Audio audio, float pitch, float volume) {
+		org.newdawn.slick.openal.Audio sound = resourceManager.getSound(audio);
+		SoundStore store = SoundStore.get();
+		if (sound == null || !store.soundWorks()) {
+			return -1;
+		}
+		// Scaled by the sound volume just like Slick's Sound does.
+		return sound.playAsSoundEffect(pitch, volume * store.getSoundVolume(),
+				false);
+	}
+
+	@Override
+	public boolean isPlaying(int voice) {
+		SoundStore store = SoundStore.get();
+		if (voice < 0 || !store.soundWorks()) {
+			return false;
+		}
+		int state =
+			AL10.alGetSourcei(store.getSource(voice), AL10.AL_SOURCE_STATE);
+		return state == AL10.AL_PLAYING;
+	}
+
+	@Override
+	public void stop(int voice) {
+		if (voice >= 0 && SoundStore.get().soundWorks()) {
+			SoundStore.get().stopSoundEffect(voice);
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.vesalaakso.rbb.model.audio;
+
+import com.vesalaakso.rbb.model.resources.Audio;
+
+/**
+ * Plays sound effects for a {@link VoiceManager}. Every play of a sound is a
+ * voice, identified by the number given when it was started, so that the
+ * voice manager can follow and stop single plays.
+ *
+ * @author Vesa Laakso
+ */
+public interface SoundBackend {
+
+	/**
+	 * Starts playing the given sound.
+	 *
+	 * @param audio
+	 *            the sound to play
+	 * @param pitch
+	 *            the pitch to play the sound at, 1 being the normal pitch
+	 * @param volume
+	 *            the volume to play the sound at, 1 being the normal volume
+	 * @return a non-negative number identifying the voice, or -1 if the sound
+	 *         couldn't be played
+	 */
+	public int play(Audio audio, float pitch, float volume);
+
+	/**
+	 * Checks whether the given voice is still playing.
+	 *
+	 * @param voice
+	 *            the voice returned by {@link #play(Audio, float, float)}
+	 * @return <code>true</code> if the voice is playing
+	 */
+	public boolean isPlaying(int voice);
+
+	/**
+	 * Stops the given voice.
+	 *
+	 * @param voice
+	 *            the voice returned by {@link #play(Audio, float, float)}
+	 */
+	public void stop(int voice);
+}
@@ -0,0 +1,291 @@
+package com.vesalaakso.rbb.model.audio;
+
+import com.vesalaakso.rbb.model.resources.Audio;
+
+/**
+ * Limits how many times each sound effect plays at once and how often it is
+ * started, so that a ball bouncing madly on a slab doesn't start dozens of
+ * voices every second.
+ * <p>
+ * Sounds asked to be played are started on the next {@link #update(int)}.
+ * All the requests of the same sound until then are merged into a single,
+ * louder play. If the sound was started less than the minimum re-trigger
+ * interval ago, the merged request waits until the interval has passed.
+ * Every sound has a fixed amount of voices; when they are all playing, the
+ * quietest one is stopped to make room for a louder one, and a quieter one
+ * is dropped.
+ * <p>
+ * Time only advances in {@link #update(int)} and the sounds are played
+ * through a {@link SoundBackend}, so the manager works the same with a fake
+ * backend as it does with the real one.
+ *
+ * @author Vesa Laakso
+ */
+public class VoiceManager {
+
+	/** The default amount of voices each sound can play at once. */
+	public static final int DEFAULT_MAX_VOICES = 3;
+
+	/** The default minimum time between starting the same sound, in ms. */
+	public static final int DEFAULT_MIN_RETRIGGER_MILLIS = 60;
+
+	/** How much every merged request adds of its volume to the merged play. */
+	private static final float MERGE_BOOST = 0.25f;
+
+	/** The loudest volume a merged play can have. */
+	private static final float MAX_VOLUME = 1.5f;
+
+	/** The backend the sounds are played with. */
+	private final SoundBackend backend;
+
+	/** The amount of voices each sound can play at once. */
+	private final int maxVoices;
+
+	/** The minimum time between starting the same sound, in ms. */
+	private final int minRetriggerMillis;
+
+	/** The state of every sound, indexed by the ordinal of the sound. */
+	private final Channel[] channels = new Channel[Audio.values().length];
+
+	/** The time passed in updates, in ms. */
+	private long time;
+
+	/** The amount of voices started. */
+	private int playCount;
+
+	/** The amount of requests merged into another one. */
+	private int mergedCount;
+
+	/** The amount of voices stopped to make room for a louder one. */
+	private int stolenCount;
+
+	/** The amount of merged requests that weren't played at all. */
+	private int droppedCount;
+
+	/**
+	 * Constructs a new voice manager with the default limits.
+	 *
+	 * @param backend
+	 *            the backend to play the sounds with
+	 */
+	public VoiceManager(SoundBackend backend) {
+		this(backend, DEFAULT_MAX_VOICES, DEFAULT_MIN_RETRIGGER_MILLIS);
+	}
+
+	/**
+	 * Constructs a new voice manager.
+	 *
+	 * @param backend
+	 *            the backend to play the sounds with
+	 * @param maxVoices
+	 *            the amount of voices each sound can play at once, at least 1
+	 * @param minRetriggerMillis
+	 *            the minimum time between starting the same sound, in ms
+	 */
+	public VoiceManager(SoundBackend backend, int maxVoices,
+			int minRetriggerMillis) {
+		if (maxVoices < 1) {
+			throw new IllegalArgumentException("At least one voice is needed");
+		}
+		this.backend = backend;
+		this.maxVoices = maxVoices;
+		this.minRetriggerMillis = minRetriggerMillis;
+		for (Audio audio : Audio.values()) {
+			channels[audio.ordinal()] =
+				new Channel(audio, maxVoices, minRetriggerMillis);
+		}
+	}
+
+	/**
+	 * Asks for the given sound to be played on the next update. If the sound
+	 * has already been asked for since the last time it was started, the
+	 * requests are merged.
+	 *
+	 * @param audio
+	 *            the sound to play
+	 * @param pitch
+	 *            the pitch to play the sound at, 1 being the normal pitch
+	 * @param volume
+	 *            the volume to play the sound at, 1 being the normal volume
+	 */
+	public void play(Audio audio, float pitch, float volume) {
+		Channel channel = channels[audio.ordinal()];
+		if (!channel.pending) {
+			channel.pending = true;
+			channel.pendingPitch = pitch;
+			channel.pendingVolume = volume;
+			channel.mergedVolume = 0;
+			return;
+		}
+
+		// Merge with the earlier request, the loudest one leading.
+		mergedCount++;
+		if (volume > channel.pendingVolume) {
+			channel.mergedVolume += channel.pendingVolume;
+			channel.pendingPitch = pitch;
+			channel.pendingVolume = volume;
+		}
+		else {
+			channel.mergedVolume += volume;
+		}
+	}
+
+	/**
+	 * Starts the requested sounds whose re-trigger interval has passed.
+	 *
+	 * @param delta
+	 *            the time passed since the last update, in ms
+	 */
+	public void update(int delta) {
+		time += delta;
+		for (Channel channel : channels) {
+			if (channel.pending
+					&& time - channel.lastPlayTime >= minRetriggerMillis) {
+				start(channel);
+			}
+		}
+	}
+
+	/** A helper to start the pending request of the given sound */
+	private void start(Channel channel) {
+		channel.pending = false;
+		float volume =
+			Math.min(MAX_VOLUME, channel.pendingVolume + MERGE_BOOST
+					* channel.mergedVolume);
+
+		// Forget the voices which have ended.
+		for (int i = channel.voiceCount - 1; i >= 0; i--) {
+			if (!backend.isPlaying(channel.voices[i])) {
+				channel.remove(i);
+			}
+		}
+
+		if (channel.voiceCount == maxVoices) {
+			int quietest = 0;
+			for (int i = 1; i < channel.voiceCount; i++) {
+				if (channel.volumes[i] < channel.volumes[quietest]) {
+					quietest = i;
+				}
+			}
+			if (channel.volumes[quietest] > volume) {
+				// Everything playing is louder, this one wouldn't be heard.
+				droppedCount++;
+				return;
+			}
+			backend.stop(channel.voices[quietest]);
+			channel.remove(quietest);
+			stolenCount++;
+		}
+
+		int voice = backend.play(channel.audio, channel.pendingPitch, volume);
+		if (voice < 0) {
+			droppedCount++;
+			return;
+		}
+
+		// The backend may reuse a voice which ended in another sound.
+		for (Channel other : channels) {
+			for (int i = other.voiceCount - 1; i >= 0; i--) {
+				if (other.voices[i] == voice) {
+					other.remove(i);
+				}
+			}
+		}
+
+		channel.voices[channel.voiceCount] = voice;
+		channel.volumes[channel.voiceCount] = volume;
+		channel.voiceCount++;
+		channel.lastPlayTime = time;
+		playCount++;
+	}
+
+	/** Forgets all the requests which haven't been played yet. */
+	public void reset() {
+		for (Channel channel : channels) {
+			channel.pending = false;
+		}
+	}
+
+	/**
+	 * Gets the amount of voices started so far.
+	 *
+	 * @return the amount of started voices
+	 */
+	public int getPlayCount() {
+		return playCount;
+	}
+
+	/**
+	 * Gets the amount of requests that were merged into another request
+	 * instead of starting a voice of their own.
+	 *
+	 * @return the amount of merged requests
+	 */
+	public int getMergedCount() {
+		return mergedCount;
+	}
+
+	/**
+	 * Gets the amount of voices stopped to make room for a louder one.
+	 *
+	 * @return the amount of stolen voices
+	 */
+	public int getStolenCount() {
+		return stolenCount;
+	}
+
+	/**
+	 * Gets the amount of requests that were not played, as all the voices
+	 * were playing louder or the backend couldn't play the sound.
+	 *
+	 * @return the amount of dropped requests
+	 */
+	public int getDroppedCount() {
+		return droppedCount;
+	}
+
+	/** The voices and the pending request of a single sound. */
+	private static class Channel {
+		/** The sound of this channel. */
+		final Audio audio;
+
+		/** The voices started and maybe still playing. */
+		final int[] voices;
+
+		/** The volumes the voices were started at. */
+		final float[] volumes;
+
+		/** The amount of voices. */
+		int voiceCount;
+
+		/** The time the sound was last started, in ms. */
+		long lastPlayTime;
+
+		/** Has the sound been asked for since it was last started. */
+		boolean pending;
+
+		/** The pitch of the loudest request. */
+		float pendingPitch;
+
+		/** The volume of the loudest request. */
+		float pendingVolume;
+
+		/** The sum of the volumes of the other requests. */
+		float mergedVolume;
+
+		/** Constructs a new channel which can be started right away. */
+		Channel(Audio audio, int maxVoices, int minRetriggerMillis) {
+			this.audio = audio;
+			voices = new int[maxVoices];
+			volumes = new float[maxVoices];
+			lastPlayTime = -minRetriggerMillis;
+		}
+
+		/** Removes the voice in the given index. */
+		void remove(int index) {
+			voiceCount--;
+			voices[index] = voices[voiceCount];
+			volumes[index] = volumes[voiceCount];
+		}
+	}
+}
@@ -0,0 +1,291 @@
+package com.vesalaakso.rbb.model.replay;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.vesalaakso.rbb.model.SimulationEngine.Outcome;
+
+/**
+ * A recorded try of a level: where the player was placed, every launch and
+ * how the try ended. The player input is stored together with the physics
+ * step it happened on, so that {@link ReplayPlayer} can feed it to the
+ * simulation at exactly the same moments and check that the try ends the
+ * same way.
+ * <p>
+ * Replays are written as a compact big-endian binary stream: {@link #MAGIC},
+ * {@link #VERSION}, the level, the step, x and y of the placement, the amount
+ * of launches followed by the step, x-force and y-force of each, and finally
+ * the last step, the outcome as a byte and the x and y of the player at the
+ * end. Floats are stored as they are, so nothing is lost.
+ *
+ * @author Vesa Laakso
+ */
+public class Replay {
+
+	/** The bytes every replay starts with, "RBBR". */
+	public static final int MAGIC = 0x52424252;
+
+	/** The version of the format, increased whenever the format changes. */
+	public static final int VERSION = 1;
+
+	/** The file extension of replays. */
+	public static final String EXTENSION = ".rbr";
+
+	/** The level the try was on. */
+	private final int level;
+
+	/** The step the player was placed on. */
+	private final int placeStep;
+
+	/** The x-coordinate the player was placed to. */
+	private final float placeX;
+
+	/** The y-coordinate the player was placed to. */
+	private final float placeY;
+
+	/** The steps the player was launched on. */
+	private final int[] launchSteps;
+
+	/** The x-forces of the launches. */
+	private final float[] launchForceX;
+
+	/** The y-forces of the launches. */
+	private final float[] launchForceY;
+
+	/** The step the try ended on. */
+	private final int endStep;
+
+	/** How the try ended. */
+	private final Outcome outcome;
+
+	/** The x-coordinate of the player at the end. */
+	private final float endX;
+
+	/** The y-coordinate of the player at the end. */
+	private final float endY;
+
+	/**
+	 * Constructs a new replay. The arrays are not copied.
+	 */
+	Replay(int level, int placeStep, float placeX, float placeY,
+			int[] launchSteps, float[] launchForceX, float[] launchForceY,
+			int endStep, Outcome outcome, float endX, float endY) {
+		this.level = level;
+		this.placeStep = placeStep;
+		this.placeX = placeX;
+		this.placeY = placeY;
+		this.launchSteps = launchSteps;
+		this.launchForceX = launchForceX;
+		this.launchForceY = launchForceY;
+		this.endStep = endStep;
+		this.outcome = outcome;
+		this.endX = endX;
+		this.endY = endY;
+	}
+
+	/**
+	 * Reads a replay written by {@link #write(OutputStream)}.
+	 *
+	 * @param in
+	 *            the stream to read from, left open
+	 * @return the replay
+	 * @throws IOException
+	 *             if the stream could not be read or it didn't contain a
+	 *             replay of this version
+	 */
+	public static Replay read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != MAGIC) {
+			throw new IOException("Not a replay");
+		}
+		int version = data.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported replay version " + version);
+		}
+
+		int level = data.readInt();
+		int placeStep = data.readInt();
+		float placeX = data.readFloat();
+		float placeY = data.readFloat();
+
+		int launchCount = data.readInt();
+		if (launchCount < 0) {
+			throw new IOException("Corrupted replay");
+		}
+		int[] launchSteps = new int[launchCount];
+		float[] launchForceX = new float[launchCount];
+		float[] launchForceY = new float[launchCount];
+		for (int i = 0; i < launchCount; i++) {
+			launchSteps[i] = data.readInt();
+			launchForceX[i] = data.readFloat();
+			launchForceY[i] = data.readFloat();
+		}
+
+		int endStep = data.readInt();
+		int outcome = data.readByte();
+		if (outcome < 0 || outcome >= Outcome.values().length) {
+			throw new IOException("Corrupted replay");
+		}
+		float endX = data.readFloat();
+		float endY = data.readFloat();
+
+		return new Replay(level, placeStep, placeX, placeY, launchSteps,
+				launchForceX, launchForceY, endStep, Outcome.values()[outcome],
+				endX, endY);
+	}
+
+	/**
+	 * Writes this replay to the given stream.
+	 *
+	 * @param out
+	 *            the stream to write to, left open
+	 * @throws IOException
+	 *             if the replay could not be written
+	 */
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(level);
+		data.writeInt(placeStep);
+		data.writeFloat(placeX);
+		data.writeFloat(placeY);
+		data.writeInt(launchSteps.length);
+		for (int i = 0; i < launchSteps.length; i++) {
+			data.writeInt(launchSteps[i]);
+			data.writeFloat(launchForceX[i]);
+			data.writeFloat(launchForceY[i]);
+		}
+		data.writeInt(endStep);
+		data.writeByte(outcome.ordinal());
+		data.writeFloat(endX);
+		data.writeFloat(endY);
+		data.flush();
+	}
+
+	/**
+	 * Gets the level the try was on.
+	 *
+	 * @return the level
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Gets the step the player was placed on, counted from the start of the
+	 * try.
+	 *
+	 * @return the step of the placement
+	 */
+	public int getPlaceStep() {
+		return placeStep;
+	}
+
+	/**
+	 * Gets the x-coordinate the player was placed to.
+	 *
+	 * @return x-coordinate in the world
+	 */
+	public float getPlaceX() {
+		return placeX;
+	}
+
+	/**
+	 * Gets the y-coordinate the player was placed to.
+	 *
+	 * @return y-coordinate in the world
+	 */
+	public float getPlaceY() {
+		return placeY;
+	}
+
+	/**
+	 * Gets the amount of launches during the try.
+	 *
+	 * @return the amount of launches
+	 */
+	public int getLaunchCount() {
+		return launchSteps.length;
+	}
+
+	/**
+	 * Gets the step the given launch happened on, counted from the start of
+	 * the try.
+	 *
+	 * @param index
+	 *            the index of the launch
+	 * @return the step of the launch
+	 */
+	public int getLaunchStep(int index) {
+		return launchSteps[index];
+	}
+
+	/**
+	 * Gets the x-force of the given launch.
+	 *
+	 * @param index
+	 *            the index of the launch
+	 * @return the power of the force in x-axis
+	 */
+	public float getLaunchForceX(int index) {
+		return launchForceX[index];
+	}
+
+	/**
+	 * Gets the y-force of the given launch.
+	 *
+	 * @param index
+	 *            the index of the launch
+	 * @return the power of the force in y-axis
+	 */
+	public float getLaunchForceY(int index) {
+		return launchForceY[index];
+	}
+
+	/**
+	 * Gets the step the try ended on, counted from the start of the try.
+	 *
+	 * @return the last step
+	 */
+	public int getEndStep() {
+		return endStep;
+	}
+
+	/**
+	 * Gets how the try ended.
+	 *
+	 * @return the outcome of the try
+	 */
+	public Outcome getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * Gets the x-coordinate of the player at the end of the try.
+	 *
+	 * @return x-coordinate in the world
+	 */
+	public float getEndX() {
+		return endX;
+	}
+
+	/**
+	 * Gets the y-coordinate of the player at the end of the try.
+	 *
+	 * @return y-coordinate in the world
+	 */
+	public float getEndY() {
+		return endY;
+	}
+
+	@Override
+	public String toString() {
+		return "level " + level + ", " + launchSteps.length + " launches, "
+				+ outcome + " at step " + endStep + " at (" + endX + ", "
+				+ endY + ")";
+	}
+}
@@ -0,0 +1,196 @@
+package com.vesalaakso.rbb.model.replay;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.newdawn.slick.util.Log;
+
+import com.vesalaakso.rbb.model.Player;
+import com.vesalaakso.rbb.model.ResourceManager;
+import com.vesalaakso.rbb.model.SimulationEngine;
+import com.vesalaakso.rbb.model.exceptions.MapException;
+
+/**
+ * Plays replays back through a {@link SimulationEngine} as fast as possible
+ * and checks that every try ends exactly the way it was recorded, down to
+ * the last bit of the position of the player. A replay that doesn't match
+ * means that the physics have changed or that the recording wasn't
+ * deterministic.
+ *
+ * @author Vesa Laakso
+ */
+public class ReplayPlayer {
+
+	/** The engine the replays are played with. */
+	private final SimulationEngine engine;
+
+	/** What was wrong with the latest replay, <code>null</code> if nothing. */
+	private String mismatch;
+
+	/**
+	 * Constructs a new replay player.
+	 *
+	 * @param engine
+	 *            the engine to play the replays with
+	 */
+	public ReplayPlayer(SimulationEngine engine) {
+		this.engine = engine;
+	}
+
+	/**
+	 * Plays the given replay from start to end.
+	 *
+	 * @param replay
+	 *            the replay to play
+	 * @return <code>true</code> if the try ended exactly like it was
+	 *         recorded; if not, {@link #getMismatch()} tells the difference
+	 * @throws MapException
+	 *             if the level of the replay couldn't be loaded
+	 */
+	public boolean play(Replay replay) throws MapException {
+		mismatch = null;
+		engine.loadLevel(replay.getLevel());
+		ReplayRecorder recorder = engine.getReplayRecorder();
+
+		stepTo(recorder, replay.getPlaceStep());
+		if (!engine.placePlayer(replay.getPlaceX(), replay.getPlaceY())) {
+			mismatch = "The player couldn't be placed";
+			return false;
+		}
+
+		for (int i = 0; i < replay.getLaunchCount(); i++) {
+			stepTo(recorder, replay.getLaunchStep(i));
+			if (recorder.getStep() != replay.getLaunchStep(i)
+					|| !engine.launch(replay.getLaunchForceX(i),
+							replay.getLaunchForceY(i))) {
+				mismatch = "Launch " + (i + 1) + " at step "
+						+ replay.getLaunchStep(i) + " was not possible";
+				return false;
+			}
+		}
+
+		stepTo(recorder, replay.getEndStep());
+
+		Player player = engine.getPlayer();
+		if (engine.getOutcome() != replay.getOutcome()
+				|| !sameBits(player.getX(), replay.getEndX())
+				|| !sameBits(player.getY(), replay.getEndY())) {
+			mismatch = "Ended " + engine.getOutcome() + " at ("
+					+ player.getX() + ", " + player.getY() + ") instead of "
+					+ replay.getOutcome() + " at (" + replay.getEndX() + ", "
+					+ replay.getEndY() + ")";
+			return false;
+		}
+		return true;
+	}
+
+	/** A helper to step the engine until the given step of the try */
+	private void stepTo(ReplayRecorder recorder, int step) {
+		while (recorder.getStep() < step) {
+			engine.step();
+		}
+	}
+
+	/** A helper to compare two floats bit by bit */
+	private static boolean sameBits(float a, float b) {
+		return Float.floatToIntBits(a) == Float.floatToIntBits(b);
+	}
+
+	/**
+	 * Tells how the latest played replay differed from the recording.
+	 *
+	 * @return the difference or <code>null</code> if the replay matched
+	 */
+	public String getMismatch() {
+		return mismatch;
+	}
+
+	/**
+	 * Reads a replay from a file.
+	 *
+	 * @param file
+	 *            the file to read
+	 * @return the replay in the file
+	 * @throws IOException
+	 *             if the file couldn't be read or it wasn't a replay
+	 */
+	public static Replay readReplay(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			return Replay.read(in);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Plays the given replay files, or every replay in the given directories,
+	 * without a display. Exits with a non-zero status if any of them doesn't
+	 * match its recording.
+	 *
+	 * @param args
+	 *            the replay files and directories to play
+	 * @throws Exception
+	 *             if the resources couldn't be loaded
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.err.println("Usage: ReplayPlayer <replay file or directory>"
+					+ "...");
+			System.exit(1);
+		}
+
+		// Don't let the map loading info drown the results.
+		Log.setVerbose(false);
+
+		List<File> files = new ArrayList<File>();
+		for (String arg : args) {
+			File file = new File(arg);
+			File[] replays = file.listFiles(new FilenameFilter() {
+				@Override
+				public boolean accept(File dir, String name) {
+					return name.endsWith(Replay.EXTENSION);
+				}
+			});
+			if (replays == null) {
+				files.add(file);
+			}
+			else {
+				Arrays.sort(replays);
+				files.addAll(Arrays.asList(replays));
+			}
+		}
+
+		ResourceManager resourceManager = new ResourceManager();
+		resourceManager.initHeadless();
+		ReplayPlayer player = new ReplayPlayer(new SimulationEngine(
+				resourceManager));
+
+		int failures = 0;
+		for (File file : files) {
+			Replay replay = readReplay(file);
+			if (player.play(replay)) {
+				System.out.println("OK       " + file + ": " + replay);
+			}
+			else {
+				System.out.println("MISMATCH " + file + ": "
+						+ player.getMismatch());
+				failures++;
+			}
+		}
+
+		System.out.println(files.size() - failures + " of " + files.size()
+				+ " replays matched");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package com.vesalaakso.rbb.model.replay;
+
+import com.vesalaakso.rbb.controller.Resetable;
+import com.vesalaakso.rbb.model.Physics;
+import com.vesalaakso.rbb.model.SimulationEngine.Outcome;
+import com.vesalaakso.rbb.model.TileMapContainer;
+
+/**
+ * Records the player input of a try into a {@link Replay}. A new recording is
+ * started every time the recorder is reset, which has to happen together
+ * with resetting the {@link Physics}, as the steps are counted from there.
+ * Nothing is recorded before the first reset.
+ *
+ * @author Vesa Laakso
+ */
+public class ReplayRecorder implements Resetable {
+
+	/** The amount of launches there is room for at first. */
+	private static final int INITIAL_LAUNCHES = 8;
+
+	/** The map being played is queried from this container. */
+	private final TileMapContainer mapContainer;
+
+	/** The physics engine whose steps are counted. */
+	private final Physics physics;
+
+	/** The step count of the physics engine when the try started. */
+	private long startStep;
+
+	/** The level the try is on. */
+	private int level;
+
+	/** Has the player been placed yet. */
+	private boolean placed;
+
+	/** The step the player was placed on. */
+	private int placeStep;
+
+	/** The x-coordinate the player was placed to. */
+	private float placeX;
+
+	/** The y-coordinate the player was placed to. */
+	private float placeY;
+
+	/** The steps of the launches, grown when needed. */
+	private int[] launchSteps = new int[INITIAL_LAUNCHES];
+
+	/** The x-forces of the launches. */
+	private float[] launchForceX = new float[INITIAL_LAUNCHES];
+
+	/** The y-forces of the launches. */
+	private float[] launchForceY = new float[INITIAL_LAUNCHES];
+
+	/** The amount of launches so far. */
+	private int launchCount;
+
+	/** Is a try being recorded, false from its end until the next reset. */
+	private boolean recording;
+
+	/** The latest finished replay, <code>null</code> if there is none. */
+	private Replay replay;
+
+	/**
+	 * Constructs a new recorder.
+	 *
+	 * @param mapContainer
+	 *            the container to query the level being played from
+	 * @param physics
+	 *            the physics engine the player is simulated with
+	 */
+	public ReplayRecorder(TileMapContainer mapContainer, Physics physics) {
+		this.mapContainer = mapContainer;
+		this.physics = physics;
+	}
+
+	/** Starts recording a new try. */
+	@Override
+	public void reset() {
+		startStep = physics.getStepCount();
+		level = mapContainer.getMap() == null ? 0 : mapContainer.getMap()
+				.getLevel();
+		placed = false;
+		launchCount = 0;
+		recording = true;
+	}
+
+	/**
+	 * Gets the amount of physics steps taken since the try started.
+	 *
+	 * @return the current step of the try
+	 */
+	public int getStep() {
+		return (int) (physics.getStepCount() - startStep);
+	}
+
+	/**
+	 * Records placing the player in the spawn area.
+	 *
+	 * @param x
+	 *            x-coordinate in the world
+	 * @param y
+	 *            y-coordinate in the world
+	 */
+	public void playerPlaced(float x, float y) {
+		if (!recording) {
+			return;
+		}
+		placed = true;
+		placeStep = getStep();
+		placeX = x;
+		placeY = y;
+	}
+
+	/**
+	 * Records a launch of the player. Must be called after the player body has
+	 * been given the force.
+	 *
+	 * @param forceX
+	 *            the power of the force in x-axis
+	 * @param forceY
+	 *            the power of the force in y-axis
+	 */
+	public void playerLaunched(float forceX, float forceY) {
+		if (!recording) {
+			return;
+		}
+		if (launchCount == launchSteps.length) {
+			int[] steps = new int[launchCount * 2];
+			float[] forcesX = new float[launchCount * 2];
+			float[] forcesY = new float[launchCount * 2];
+			System.arraycopy(launchSteps, 0, steps, 0, launchCount);
+			System.arraycopy(launchForceX, 0, forcesX, 0, launchCount);
+			System.arraycopy(launchForceY, 0, forcesY, 0, launchCount);
+			launchSteps = steps;
+			launchForceX = forcesX;
+			launchForceY = forcesY;
+		}
+		launchSteps[launchCount] = getStep();
+		launchForceX[launchCount] = forceX;
+		launchForceY[launchCount] = forceY;
+		launchCount++;
+	}
+
+	/**
+	 * Ends the recording of the try. Calling this again before the next reset
+	 * returns the same replay. Nothing is recorded after this until the next
+	 * reset.
+	 *
+	 * @param outcome
+	 *            how the try ended
+	 * @param x
+	 *            the x-coordinate of the player at the end
+	 * @param y
+	 *            the y-coordinate of the player at the end
+	 * @return the recorded try or <code>null</code> if the player was never
+	 *         placed, in which case the recording goes on
+	 */
+	public Replay finish(Outcome outcome, float x, float y) {
+		if (recording) {
+			if (!placed) {
+				return null;
+			}
+			int[] steps = new int[launchCount];
+			float[] forceX = new float[launchCount];
+			float[] forceY = new float[launchCount];
+			System.arraycopy(launchSteps, 0, steps, 0, launchCount);
+			System.arraycopy(launchForceX, 0, forceX, 0, launchCount);
+			System.arraycopy(launchForceY, 0, forceY, 0, launchCount);
+			replay = new Replay(level, placeStep, placeX, placeY, steps,
+					forceX, forceY, getStep(), outcome, x, y);
+			recording = false;
+		}
+		return replay;
+	}
+
+	/**
+	 * Gets the latest finished replay, which is kept even after a new try has
+	 * started.
+	 *
+	 * @return the replay of the latest finished try or <code>null</code> if
+	 *         no try has been finished
+	 */
+	public Replay getReplay() {
+		return replay;
+	}
+}
@@ -1,12 +1,14 @@
 package com.vesalaakso.rbb.model.resources;
 
+import java.io.IOException;
 import java.util.EnumMap;
 
-import org.newdawn.slick.Music;
 import org.newdawn.slick.SlickException;
-import org.newdawn.slick.Sound;
+import org.newdawn.slick.openal.SoundStore;
 import org.newdawn.slick.util.ResourceLoader;
 
+import com.vesalaakso.rbb.model.audio.MusicPlayer;
+
 /**
  * Handles audio and music loading and saving.
  * 
@@ -14,13 +16,19 @@ import org.newdawn.slick.util.ResourceLoader;
  */
 public class AudioContainer {
 
-	/** All music files are stored in this map */
-	private EnumMap<Audio, Music> musics =
-			new EnumMap<Audio, Music>(Audio.class);
+	/**
+	 * The music is streamed by this player instead of being loaded here, so
+	 * that no track has to be decoded whole.
+	 */
+	private final MusicPlayer musicPlayer = new MusicPlayer();
 
-	/** All sound effect files are stored in this map */
-	private EnumMap<Audio, Sound> sounds =
-			new EnumMap<Audio, Sound>(Audio.class);
+	/**
+	 * All sound effect files are stored in this map. They are kept as the
+	 * OpenAL audio beneath Slick's <code>Sound</code>, which tells the source
+	 * every play ended up in, so that single plays can be stopped.
+	 */
+	private EnumMap<Audio, org.newdawn.slick.openal.Audio> sounds =
+			new EnumMap<Audio, org.newdawn.slick.openal.Audio>(Audio.class);
 
 	/**
 	 * Initializes all the audio files.
@@ -29,36 +37,58 @@ public class AudioContainer {
 	 *             if something went wrong with audio loading
 	 */
 	public void init() throws SlickException {
-		musics.put(Audio.MUSIC_BACKGROUND, loadMusic(Audio.MUSIC_BACKGROUND));
 		sounds.put(Audio.SOUND_HIT_SMALL, loadSound(Audio.SOUND_HIT_SMALL));
 		sounds.put(Audio.SOUND_HIT_NORMAL, loadSound(Audio.SOUND_HIT_NORMAL));
 		sounds.put(Audio.SOUND_HIT_BIG, loadSound(Audio.SOUND_HIT_BIG));
+		musicPlayer.init();
 	}
 
-	/** A helper to load a music file */
-	private Music loadMusic(Audio audio) throws SlickException {
-		Music m;
-		m = new Music(ResourceLoader.getResource(audio.fileName));
-		return m;
+	/**
+	 * Adds a job for loading all the audio files to the given queue. OpenAL
+	 * isn't tied to the render thread, so the files are both decoded and
+	 * uploaded on a worker thread. They are loaded one after another, as
+	 * Slick's sound store can't be used from many threads at once.
+	 * 
+	 * @param queue
+	 *            the queue to add the job to
+	 */
+	public void addJobs(LoadingQueue queue) {
+		queue.add(new LoadJob<Void>() {
+			@Override
+			protected Void loadInBackground() throws Exception {
+				init();
+				return null;
+			}
+
+			@Override
+			protected void finish(Void loaded) {
+				// Everything was done already.
+			}
+		});
 	}
 
 	/** A helper to load a sound file */
-	private Sound loadSound(Audio audio) throws SlickException {
-		Sound s;
-		s = new Sound(ResourceLoader.getResource(audio.fileName));
-		return s;
+	private org.newdawn.slick.openal.Audio loadSound(Audio audio)
+			throws SlickException {
+		SoundStore store = SoundStore.get();
+		store.init();
+		try {
+			return store.getOgg(audio.fileName,
+					ResourceLoader.getResourceAsStream(audio.fileName));
+		}
+		catch (IOException e) {
+			throw new SlickException("Failed to load sound " + audio.fileName,
+					e);
+		}
 	}
 
 	/**
-	 * Gets the special music.
+	 * Gets the player the music is streamed with.
 	 * 
-	 * @param audio
-	 *            the music to get
-	 * @return the music one wanted
+	 * @return the music player
 	 */
-	public Music getMusic(Audio audio) {
-		Music m = musics.get(audio);
-		return m;
+	public MusicPlayer getMusicPlayer() {
+		return musicPlayer;
 	}
 
 	/**
@@ -68,8 +98,8 @@ public class AudioContainer {
 	 *            the sound to get
 	 * @return the sound one wanted
 	 */
-	public Sound getSound(Audio audio) {
-		Sound s = sounds.get(audio);
+	public org.newdawn.slick.openal.Audio getSound(Audio audio) {
+		org.newdawn.slick.openal.Audio s = sounds.get(audio);
 		return s;
 	}
 }
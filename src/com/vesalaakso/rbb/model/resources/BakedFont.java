@@ -0,0 +1,195 @@
+package com.vesalaakso.rbb.model.resources;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
+
+import org.newdawn.slick.AngelCodeFont;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.font.effects.ConfigurableEffect;
+import org.newdawn.slick.font.effects.Effect;
+import org.newdawn.slick.opengl.ImageData;
+import org.newdawn.slick.util.ResourceLoader;
+
+/**
+ * A font whose glyphs were rasterized beforehand by {@link FontBaker}, so
+ * that loading it is only decoding a single image. A baked font is an
+ * AngelCode font file and the image of its glyphs, named after the font
+ * file, the size and the effects of the font. Changing any of them makes the
+ * game rasterize the font from the font file again until it is baked anew.
+ * <p>
+ * The font file also has the line height of the original font, as the
+ * AngelCode font would otherwise guess it from the glyphs.
+ *
+ * @author Vesa Laakso
+ */
+final class BakedFont extends AngelCodeFont {
+
+	/** The directory the baked fonts are in. */
+	static final String DIR = "fonts";
+
+	/** The first character baked, the same as <code>addAsciiGlyphs</code>. */
+	static final int FIRST_CHAR = 32;
+
+	/** The last character baked, the same as <code>addAsciiGlyphs</code>. */
+	static final int LAST_CHAR = 127;
+
+	/**
+	 * The version of the baked fonts. Increase this whenever the way the
+	 * fonts are baked changes, so that old baked fonts are ignored.
+	 */
+	private static final int VERSION = 1;
+
+	/** The line height of the original font. */
+	private final int lineHeight;
+
+	/**
+	 * Constructs a baked font out of the given font file and image.
+	 *
+	 * @param ref
+	 *            the baked font, without an extension
+	 * @param image
+	 *            the image of the glyphs
+	 * @param lineHeight
+	 *            the line height of the original font
+	 * @throws SlickException
+	 *             if the font file could not be read
+	 */
+	private BakedFont(String ref, Image image, int lineHeight)
+			throws SlickException {
+		super(ref + ".fnt", image);
+		this.lineHeight = lineHeight;
+	}
+
+	@Override
+	public int getLineHeight() {
+		return lineHeight;
+	}
+
+	/**
+	 * Gets the name of the baked font for the given font and effects.
+	 *
+	 * @param font
+	 *            the font
+	 * @param effects
+	 *            the effects the glyphs are drawn with
+	 * @return the name of the baked font without an extension, relative to
+	 *         the data directory
+	 */
+	static String getRef(Font font, List<Effect> effects) {
+		StringBuilder chain = new StringBuilder();
+		chain.append(VERSION);
+		for (Effect effect : effects) {
+			chain.append('|').append(effect.getClass().getName());
+			if (effect instanceof ConfigurableEffect) {
+				for (Object value : ((ConfigurableEffect) effect).getValues()) {
+					chain.append(';').append(
+							((ConfigurableEffect.Value) value).getString());
+				}
+			}
+		}
+
+		String name = font.fileName;
+		int dot = name.lastIndexOf('.');
+		if (dot > 0) {
+			name = name.substring(0, dot);
+		}
+		return DIR + "/" + name + "-" + font.size + "-"
+				+ Integer.toHexString(chain.toString().hashCode());
+	}
+
+	/**
+	 * Reads a baked font without OpenGL. Create the font out of the returned
+	 * data on the render thread.
+	 *
+	 * @param ref
+	 *            the baked font, from {@link #getRef(Font, List)}
+	 * @return the data of the baked font or <code>null</code> if the font
+	 *         hasn't been baked
+	 * @throws IOException
+	 *             if the baked font could not be read
+	 */
+	static Data read(String ref) throws IOException {
+		String fntRef = ref + ".fnt";
+		if (!ResourceLoader.resourceExists(fntRef)
+				|| !ResourceLoader.resourceExists(ref + ".png")) {
+			return null;
+		}
+
+		int lineHeight = -1;
+		BufferedReader in =
+			new BufferedReader(new InputStreamReader(
+					ResourceLoader.getResourceAsStream(fntRef), "UTF-8"));
+		try {
+			String line;
+			while ((line = in.readLine()) != null && lineHeight < 0) {
+				if (line.startsWith("common ")) {
+					lineHeight = parseMetric(line, "lineHeight=");
+				}
+			}
+		}
+		finally {
+			in.close();
+		}
+		if (lineHeight < 0) {
+			throw new IOException("No line height in " + fntRef);
+		}
+
+		return new Data(ref, ImageDecoder.decode(ref + ".png", null),
+				lineHeight);
+	}
+
+	/** A helper to parse a metric such as "base=30" from a line */
+	private static int parseMetric(String line, String metric)
+			throws IOException {
+		int start = line.indexOf(metric);
+		if (start < 0) {
+			return -1;
+		}
+		start += metric.length();
+		int end = line.indexOf(' ', start);
+		if (end < 0) {
+			end = line.length();
+		}
+		try {
+			return Integer.parseInt(line.substring(start, end));
+		}
+		catch (NumberFormatException e) {
+			throw new IOException("Invalid " + metric + " in " + line);
+		}
+	}
+
+	/** A baked font read on a worker thread. */
+	static class Data {
+		/** The baked font, without an extension. */
+		private final String ref;
+
+		/** The decoded image of the glyphs. */
+		private final ImageData image;
+
+		/** The line height of the original font. */
+		private final int lineHeight;
+
+		/** Constructs the data of a read font. */
+		Data(String ref, ImageData image, int lineHeight) {
+			this.ref = ref;
+			this.image = image;
+			this.lineHeight = lineHeight;
+		}
+
+		/**
+		 * Creates the font. Must be called on the render thread.
+		 *
+		 * @return the baked font
+		 * @throws SlickException
+		 *             if the font could not be created
+		 */
+		BakedFont create() throws SlickException {
+			// The glyphs are drawn at whole pixels, as UnicodeFont draws them.
+			return new BakedFont(ref, new Image(image, Image.FILTER_NEAREST),
+					lineHeight);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.vesalaakso.rbb.model.resources;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import org.newdawn.slick.util.ResourceLoader;
+
+/**
+ * The binary level format written by {@link LevelCompiler} and read by
+ * {@link CompiledTiledMap}. A compiled level holds everything of a TMX file
+ * the game needs, already decoded, so that loading it is mostly copying.
+ * <p>
+ * All values are big-endian. The file starts with {@link #MAGIC},
+ * {@link #VERSION} and the {@link #checksum(byte[]) checksum} of the TMX file
+ * the level was compiled from, followed by the string table: the amount of
+ * strings and
+ * each string as its length in bytes and the UTF-8 bytes. Everywhere else
+ * strings are stored as indices to the table. Property lists are stored as
+ * their size, or -1 if there were none, followed by name and value pairs.
+ * <p>
+ * After the string table come
+ * <ul>
+ * <li>the map: width, height, tile width, tile height and properties</li>
+ * <li>the tile sets: their amount and for each the name, first GID, tile
+ * width, tile height, spacing, margin, image source, transparent color or -1
+ * and the amount of tiles with properties, followed by the local id and the
+ * properties of each such tile</li>
+ * <li>the tile layers: their amount and for each the name, width, height,
+ * opacity as a float, visibility as 0 or 1, properties and the GIDs of the
+ * tiles, row by row</li>
+ * <li>the object groups: their amount and for each the name, width, height,
+ * opacity as a float, visibility, color such as "#ff3b3b", properties and
+ * the amount of objects, followed by the name, type, object type, x, y,
+ * width, height, GID, properties, amount of points and the points as x and y
+ * floats of each object</li>
+ * </ul>
+ *
+ * @author Vesa Laakso
+ */
+final class CompiledLevel {
+
+	/** The bytes every compiled level starts with, "RBBL". */
+	static final int MAGIC = 0x5242424c;
+
+	/**
+	 * The version of the format. Increase this whenever the format changes, so
+	 * that old compiled levels are ignored instead of misread.
+	 */
+	static final int VERSION = 2;
+
+	/** The file extension of compiled levels. */
+	static final String EXTENSION = ".rbl";
+
+	/** A private constructor as this class has only static methods */
+	private CompiledLevel() {
+	}
+
+	/**
+	 * Gets the contents of a compiled level. If the level is a file of its own,
+	 * it is memory-mapped instead of read.
+	 *
+	 * @param ref
+	 *            the compiled level to get
+	 * @return the contents of the level or <code>null</code> if the level
+	 *         hasn't been compiled
+	 * @throws IOException
+	 *             if the level could not be read
+	 */
+	static ByteBuffer read(String ref) throws IOException {
+		if (!ResourceLoader.resourceExists(ref)) {
+			return null;
+		}
+
+		URL url = ResourceLoader.getResource(ref);
+		if ("file".equals(url.getProtocol())) {
+			try {
+				return map(new File(url.toURI()));
+			}
+			catch (URISyntaxException e) {
+				// Fall back to reading it like any other resource.
+			}
+		}
+
+		// The level is inside a jar, so it has to be read.
+		InputStream in = ResourceLoader.getResourceAsStream(ref);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return ByteBuffer.wrap(out.toByteArray());
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Calculates the checksum of a TMX file, stored in the levels compiled
+	 * from it. A compiled level whose checksum doesn't match the TMX file next
+	 * to it is out of date.
+	 *
+	 * @param tmx
+	 *            the contents of the TMX file
+	 * @return the checksum of the contents
+	 */
+	static int checksum(byte[] tmx) {
+		CRC32 crc = new CRC32();
+		crc.update(tmx);
+		return (int) crc.getValue();
+	}
+
+	/** A helper to memory-map a whole file */
+	private static ByteBuffer map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		}
+		finally {
+			// The mapping stays valid after the file has been closed.
+			raf.close();
+		}
+	}
+}
@@ -0,0 +1,411 @@
+package com.vesalaakso.rbb.model.resources;
+
+import java.io.ByteArrayInputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.tiled.GroupObject;
+import org.newdawn.slick.tiled.Layer;
+import org.newdawn.slick.tiled.ObjectGroup;
+import org.newdawn.slick.tiled.TileSet;
+import org.newdawn.slick.tiled.TiledMapPlus;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * A map read from a level compiled by {@link LevelCompiler}. See
+ * {@link CompiledLevel} for the format.
+ * <p>
+ * The tile data is copied straight into the layers. Slick can build the tile
+ * sets, object groups and objects only out of DOM elements, so they are
+ * described to Slick with small elements created in memory. That way they
+ * end up exactly as if they were parsed from the TMX file, without parsing
+ * any XML or decoding the layer data.
+ *
+ * @author Vesa Laakso
+ */
+class CompiledTiledMap extends TiledMapPlus {
+
+	/** The map <code>TiledMap</code> parses before the level is read in. */
+	private static final byte[] EMPTY_MAP =
+		("<map orientation=\"orthogonal\" width=\"0\" height=\"0\""
+				+ " tilewidth=\"0\" tileheight=\"0\"/>").getBytes();
+
+	/** The data of an empty layer, zlib compressed and base64 encoded. */
+	private static final String EMPTY_LAYER_DATA = "eJwDAAAAAAE=";
+
+	/** Mask for the GID bits of a tile, the rest are flipping flags. */
+	private static final int GID_MASK = 0x1fffffff;
+
+	/** The charset the strings are stored in. */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** Indices of the layers by their name. */
+	private final Map<String, Integer> layerIds =
+		new HashMap<String, Integer>();
+
+	/** Indices of the object groups by their name. */
+	private final Map<String, Integer> objectGroupIds =
+		new HashMap<String, Integer>();
+
+	/** Indices of the tile sets by their name. */
+	private final Map<String, Integer> tileSetIds =
+		new HashMap<String, Integer>();
+
+	/** The image sources of the tile sets, relative to the tiles location. */
+	private final List<String> tileSetImageSources = new ArrayList<String>();
+
+	/** The transparent colors of the tile set images, -1 if none. */
+	private final List<Integer> tileSetTransparentColors =
+		new ArrayList<Integer>();
+
+	/** The checksum of the TMX file the level was compiled from. */
+	private int sourceChecksum;
+
+	/** The string table of the level, while reading. */
+	private String[] strings;
+
+	/** The document the elements for Slick are created in, while reading. */
+	private Document document;
+
+	/**
+	 * Reads a compiled level.
+	 *
+	 * @param buffer
+	 *            the contents of the compiled level
+	 * @param tilesLocation
+	 *            the location the tile set images are in
+	 * @throws SlickException
+	 *             if the level was not a compiled level of the current version
+	 *             or it was malformed
+	 */
+	CompiledTiledMap(ByteBuffer buffer, String tilesLocation)
+			throws SlickException {
+		super(new ByteArrayInputStream(EMPTY_MAP), tilesLocation);
+
+		try {
+			document =
+				DocumentBuilderFactory.newInstance().newDocumentBuilder()
+						.newDocument();
+			read(buffer);
+		}
+		catch (ParserConfigurationException e) {
+			throw new SlickException("Failed to create a DOM document", e);
+		}
+		catch (BufferUnderflowException e) {
+			throw new SlickException("The compiled level was truncated", e);
+		}
+		finally {
+			strings = null;
+			document = null;
+		}
+	}
+
+	/** A helper to read the whole level */
+	private void read(ByteBuffer buffer) throws SlickException {
+		if (buffer.getInt() != CompiledLevel.MAGIC) {
+			throw new SlickException("Not a compiled level");
+		}
+		int version = buffer.getInt();
+		if (version != CompiledLevel.VERSION) {
+			throw new SlickException("The level was compiled with version "
+					+ version + " instead of " + CompiledLevel.VERSION);
+		}
+		sourceChecksum = buffer.getInt();
+
+		readStrings(buffer);
+
+		width = buffer.getInt();
+		height = buffer.getInt();
+		tileWidth = buffer.getInt();
+		tileHeight = buffer.getInt();
+		props = readProperties(buffer);
+
+		int tileSetCount = buffer.getInt();
+		for (int i = 0; i < tileSetCount; i++) {
+			readTileSet(buffer, i);
+		}
+
+		int layerCount = buffer.getInt();
+		for (int i = 0; i < layerCount; i++) {
+			readLayer(buffer, i);
+		}
+
+		int objectGroupCount = buffer.getInt();
+		for (int i = 0; i < objectGroupCount; i++) {
+			readObjectGroup(buffer, i);
+		}
+	}
+
+	/** A helper to read the string table */
+	private void readStrings(ByteBuffer buffer) {
+		strings = new String[buffer.getInt()];
+		byte[] bytes = new byte[64];
+		for (int i = 0; i < strings.length; i++) {
+			int length = buffer.getInt();
+			if (length > bytes.length) {
+				bytes = new byte[length];
+			}
+			buffer.get(bytes, 0, length);
+			strings[i] = new String(bytes, 0, length, UTF_8);
+		}
+	}
+
+	/** A helper to read a string as an index to the string table */
+	private String readString(ByteBuffer buffer) {
+		return strings[buffer.getInt()];
+	}
+
+	/** A helper to read properties, <code>null</code> if there were none */
+	private Properties readProperties(ByteBuffer buffer) {
+		int count = buffer.getInt();
+		if (count < 0) {
+			return null;
+		}
+		Properties properties = new Properties();
+		for (int i = 0; i < count; i++) {
+			properties.setProperty(readString(buffer), readString(buffer));
+		}
+		return properties;
+	}
+
+	/**
+	 * A helper to read properties as a <code>properties</code> element under
+	 * the given element, the way they are in TMX files.
+	 */
+	private void readPropertiesElement(ByteBuffer buffer, Element parent) {
+		int count = buffer.getInt();
+		if (count < 0) {
+			return;
+		}
+		Element properties = document.createElement("properties");
+		for (int i = 0; i < count; i++) {
+			Element property = document.createElement("property");
+			property.setAttribute("name", readString(buffer));
+			property.setAttribute("value", readString(buffer));
+			properties.appendChild(property);
+		}
+		parent.appendChild(properties);
+	}
+
+	/** A helper to read a single tile set */
+	private void readTileSet(ByteBuffer buffer, int index)
+			throws SlickException {
+		Element element = document.createElement("tileset");
+		element.setAttribute("name", readString(buffer));
+		element.setAttribute("firstgid", Integer.toString(buffer.getInt()));
+		element.setAttribute("tilewidth", Integer.toString(buffer.getInt()));
+		element.setAttribute("tileheight", Integer.toString(buffer.getInt()));
+		element.setAttribute("spacing", Integer.toString(buffer.getInt()));
+		element.setAttribute("margin", Integer.toString(buffer.getInt()));
+
+		String source = readString(buffer);
+		int transparent = buffer.getInt();
+		Element image = document.createElement("image");
+		image.setAttribute("source", source);
+		if (transparent >= 0) {
+			image.setAttribute("trans", Integer.toHexString(transparent));
+		}
+		element.appendChild(image);
+
+		int tileCount = buffer.getInt();
+		for (int i = 0; i < tileCount; i++) {
+			Element tile = document.createElement("tile");
+			tile.setAttribute("id", Integer.toString(buffer.getInt()));
+			readPropertiesElement(buffer, tile);
+			element.appendChild(tile);
+		}
+
+		// The images are loaded by TiledMapPlusContainer.
+		TileSet tileSet = new TileSet(this, element, false);
+		tileSet.index = index;
+		if (index > 0) {
+			tileSets.get(index - 1).setLimit(tileSet.firstGID - 1);
+		}
+		tileSets.add(tileSet);
+		tileSetIds.put(tileSet.name, index);
+		tileSetImageSources.add(source);
+		tileSetTransparentColors.add(transparent);
+	}
+
+	/** A helper to read a single tile layer */
+	private void readLayer(ByteBuffer buffer, int index)
+			throws SlickException {
+		// The layer is created empty and the tiles are filled in directly.
+		Element element = document.createElement("layer");
+		element.setAttribute("name", readString(buffer));
+		element.setAttribute("width", "0");
+		element.setAttribute("height", "0");
+		Element data = document.createElement("data");
+		data.setAttribute("encoding", "base64");
+		data.setAttribute("compression", "zlib");
+		data.appendChild(document.createTextNode(EMPTY_LAYER_DATA));
+		element.appendChild(data);
+
+		Layer layer = new Layer(this, element);
+		layer.index = index;
+		layer.width = buffer.getInt();
+		layer.height = buffer.getInt();
+		layer.opacity = buffer.getFloat();
+		layer.visible = buffer.getInt() != 0;
+		layer.props = readProperties(buffer);
+
+		int[] gids = new int[layer.width * layer.height];
+		buffer.asIntBuffer().get(gids);
+		buffer.position(buffer.position() + gids.length * 4);
+
+		// Resolve the tile sets just like Layer does when parsing.
+		layer.data = new int[layer.width][layer.height][3];
+		for (int y = 0; y < layer.height; y++) {
+			for (int x = 0; x < layer.width; x++) {
+				int gid = gids[y * layer.width + x];
+				int[] tile = layer.data[x][y];
+				if (gid == 0) {
+					tile[0] = -1;
+					continue;
+				}
+				TileSet tileSet = findTileSet(gid & GID_MASK);
+				if (tileSet != null) {
+					tile[0] = tileSet.index;
+					tile[1] = (gid & GID_MASK) - tileSet.firstGID;
+				}
+				tile[2] = gid;
+			}
+		}
+
+		layers.add(layer);
+		layerIds.put(layer.name, index);
+	}
+
+	/** A helper to read a single object group and its objects */
+	private void readObjectGroup(ByteBuffer buffer, int index)
+			throws SlickException {
+		Element element = document.createElement("objectgroup");
+		element.setAttribute("name", readString(buffer));
+		element.setAttribute("width", Integer.toString(buffer.getInt()));
+		element.setAttribute("height", Integer.toString(buffer.getInt()));
+		element.setAttribute("opacity", Float.toString(buffer.getFloat()));
+		element.setAttribute("visible", Integer.toString(buffer.getInt()));
+		element.setAttribute("color", readString(buffer));
+		readPropertiesElement(buffer, element);
+
+		ObjectGroup group = new ObjectGroup(element, this);
+		group.index = index;
+
+		HashMap<String, Integer> objectIds = new HashMap<String, Integer>();
+		int objectCount = buffer.getInt();
+		for (int i = 0; i < objectCount; i++) {
+			GroupObject obj = readObject(buffer);
+			obj.index = i;
+			group.objects.add(obj);
+			objectIds.put(obj.name, i);
+		}
+		group.setObjectNameMapping(objectIds);
+
+		objectGroups.add(group);
+		objectGroupIds.put(group.name, index);
+	}
+
+	/** A helper to read a single object */
+	private GroupObject readObject(ByteBuffer buffer) throws SlickException {
+		Element element = document.createElement("object");
+		element.setAttribute("name", readString(buffer));
+		element.setAttribute("type", readString(buffer));
+		GroupObject.ObjectType objectType =
+			GroupObject.ObjectType.values()[buffer.getInt()];
+		element.setAttribute("x", Integer.toString(buffer.getInt()));
+		element.setAttribute("y", Integer.toString(buffer.getInt()));
+		element.setAttribute("width", Integer.toString(buffer.getInt()));
+		element.setAttribute("height", Integer.toString(buffer.getInt()));
+		int gid = buffer.getInt();
+		if (gid != -1) {
+			element.setAttribute("gid", Integer.toString(gid));
+		}
+		readPropertiesElement(buffer, element);
+
+		int pointCount = buffer.getInt();
+		if (objectType == GroupObject.ObjectType.POLYGON
+				|| objectType == GroupObject.ObjectType.POLYLINE) {
+			StringBuilder points = new StringBuilder();
+			for (int i = 0; i < pointCount; i++) {
+				if (i > 0) {
+					points.append(' ');
+				}
+				points.append(buffer.getFloat()).append(',')
+						.append(buffer.getFloat());
+			}
+
+			Element poly =
+				document.createElement(objectType.name().toLowerCase());
+			poly.setAttribute("points", points.toString());
+			element.appendChild(poly);
+		}
+		else {
+			buffer.position(buffer.position() + pointCount * 8);
+		}
+
+		return new GroupObject(element, this);
+	}
+
+	/**
+	 * Gets the checksum of the TMX file the level was compiled from.
+	 *
+	 * @return the checksum, see {@link CompiledLevel#checksum(byte[])}
+	 */
+	int getSourceChecksum() {
+		return sourceChecksum;
+	}
+
+	/**
+	 * Gets the source of the image of a tile set, relative to the tiles
+	 * location of the map.
+	 *
+	 * @param index
+	 *            the index of the tile set
+	 * @return the source of the image
+	 */
+	String getTileSetImageSource(int index) {
+		return tileSetImageSources.get(index);
+	}
+
+	/**
+	 * Gets the color to make transparent in the image of a tile set.
+	 *
+	 * @param index
+	 *            the index of the tile set
+	 * @return the rgb-color or -1 if nothing is made transparent
+	 */
+	int getTileSetTransparentColor(int index) {
+		return tileSetTransparentColors.get(index);
+	}
+
+	@Override
+	public Layer getLayer(String name) {
+		return layers.get(layerIds.get(name));
+	}
+
+	@Override
+	public int getLayerID(String name) {
+		return layerIds.get(name);
+	}
+
+	@Override
+	public ObjectGroup getObjectGroup(String groupName) {
+		return objectGroups.get(objectGroupIds.get(groupName));
+	}
+
+	@Override
+	public int getTilesetID(String name) {
+		return tileSetIds.get(name);
+	}
+}
@@ -0,0 +1,305 @@
+package com.vesalaakso.rbb.model.resources;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.UnicodeFont;
+import org.newdawn.slick.font.Glyph;
+import org.newdawn.slick.font.GlyphPage;
+import org.newdawn.slick.font.effects.Effect;
+import org.newdawn.slick.util.Log;
+import org.newdawn.slick.util.ResourceLoader;
+
+/**
+ * Bakes the fonts into the format described in {@link BakedFont}, so that
+ * the game doesn't need to rasterize the glyphs every time it starts. The
+ * glyphs are drawn the same way <code>UnicodeFont</code> draws them and
+ * packed on shelves into a single image. Run by the <code>bake-fonts</code>
+ * Ant target.
+ * <p>
+ * The glyphs are placed at whole pixels, so a long string may end up a pixel
+ * or two narrower or wider than with <code>UnicodeFont</code>.
+ *
+ * @author Vesa Laakso
+ */
+public class FontBaker {
+
+	/** Empty pixels between the glyphs. */
+	private static final int PADDING = 1;
+
+	/** The widest image tried before giving up. */
+	private static final int MAX_SIZE = 1024;
+
+	/** The size of the scratch image the glyphs are drawn to. */
+	private static final int SCRATCH_SIZE = 256;
+
+	/** The font being baked. */
+	private final UnicodeFont font;
+
+	/** The glyphs of the font, in the order of their characters. */
+	private final List<BakedGlyph> glyphs = new ArrayList<BakedGlyph>();
+
+	/** A private constructor, fonts are baked with {@link #bake}. */
+	private FontBaker(UnicodeFont font) {
+		this.font = font;
+	}
+
+	/**
+	 * Bakes a single font.
+	 *
+	 * @param font
+	 *            the font to bake
+	 * @param outputDir
+	 *            the directory to write the baked font to
+	 * @return the name of the baked font without an extension
+	 * @throws SlickException
+	 *             if the font could not be loaded
+	 * @throws IOException
+	 *             if the baked font could not be written or the glyphs don't
+	 *             fit into a single image
+	 */
+	public static String bake(Font font, File outputDir)
+			throws SlickException, IOException {
+		List<Effect> effects = FontContainer.createEffects(font);
+		UnicodeFont f = new UnicodeFont(font.fileName, font.size, false, false);
+		f.getEffects().addAll(effects);
+
+		String ref = BakedFont.getRef(font, effects);
+		String name = ref.substring(ref.lastIndexOf('/') + 1);
+		new FontBaker(f).write(new File(outputDir, name));
+		return name;
+	}
+
+	/** A helper to bake the font into the given files, without extensions */
+	private void write(File output) throws IOException {
+		java.awt.Font awtFont = font.getFont();
+		for (int c = BakedFont.FIRST_CHAR; c <= BakedFont.LAST_CHAR; c++) {
+			if (awtFont.canDisplay(c)) {
+				glyphs.add(layout(c));
+			}
+		}
+
+		BufferedImage page = pack();
+		draw(page);
+		ImageIO.write(page, "png", new File(output.getPath() + ".png"));
+		writeMetrics(new File(output.getPath() + ".fnt"), output.getName(),
+				page);
+	}
+
+	/** A helper to lay out a single glyph the way UnicodeFont does */
+	private BakedGlyph layout(int codePoint) {
+		char[] chars = Character.toChars(codePoint);
+		GlyphVector vector =
+			font.getFont().layoutGlyphVector(GlyphPage.renderContext, chars, 0,
+					chars.length, java.awt.Font.LAYOUT_LEFT_TO_RIGHT);
+		Rectangle bounds =
+			vector.getGlyphPixelBounds(0, GlyphPage.renderContext, 0, 0);
+		if (codePoint == ' ') {
+			bounds.width = font.getSpaceWidth();
+		}
+
+		BakedGlyph baked = new BakedGlyph();
+		baked.glyph = new Glyph(codePoint, bounds, vector, 0, font);
+		baked.xOffset = bounds.x - font.getPaddingLeft();
+		baked.advance =
+			Math.round(vector.getGlyphMetrics(0).getAdvanceX())
+					+ font.getPaddingLeft() + font.getPaddingRight()
+					+ font.getPaddingAdvanceX();
+		return baked;
+	}
+
+	/**
+	 * A helper to place the glyphs on shelves, the tallest first, and to
+	 * create an image they fit in
+	 */
+	private BufferedImage pack() throws IOException {
+		List<BakedGlyph> tallestFirst = new ArrayList<BakedGlyph>(glyphs);
+		Collections.sort(tallestFirst, new Comparator<BakedGlyph>() {
+			@Override
+			public int compare(BakedGlyph a, BakedGlyph b) {
+				return b.glyph.getHeight() - a.glyph.getHeight();
+			}
+		});
+
+		for (int width = 64; width <= MAX_SIZE; width *= 2) {
+			int height = shelve(tallestFirst, width);
+			if (height <= width) {
+				return new BufferedImage(width, height,
+						BufferedImage.TYPE_INT_ARGB);
+			}
+		}
+		throw new IOException("The glyphs don't fit into a " + MAX_SIZE
+				+ " pixel image");
+	}
+
+	/**
+	 * A helper to place the given glyphs on shelves in an image of the given
+	 * width. Returns the height of the image needed.
+	 */
+	private int shelve(List<BakedGlyph> tallestFirst, int width) {
+		int x = PADDING;
+		int y = PADDING;
+		int shelfHeight = 0;
+		for (BakedGlyph baked : tallestFirst) {
+			int w = baked.glyph.getWidth();
+			int h = baked.glyph.getHeight();
+			if (x + w + PADDING > width && x > PADDING) {
+				// Start a new shelf, this one is full.
+				x = PADDING;
+				y += shelfHeight + PADDING;
+				shelfHeight = 0;
+			}
+			if (x + w + PADDING > width) {
+				// Too wide for the whole image.
+				return Integer.MAX_VALUE;
+			}
+			baked.x = x;
+			baked.y = y;
+			x += w + PADDING;
+			shelfHeight = Math.max(shelfHeight, h);
+		}
+		return y + shelfHeight + PADDING;
+	}
+
+	/**
+	 * A helper to draw every glyph with the effects of the font and to copy
+	 * them to their places in the given image. Mirrors what
+	 * <code>GlyphPage</code> does.
+	 */
+	private void draw(BufferedImage page) throws IOException {
+		BufferedImage scratch =
+			new BufferedImage(SCRATCH_SIZE, SCRATCH_SIZE,
+					BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = (Graphics2D) scratch.getGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+				RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS,
+				RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+
+		List<Effect> effects = font.getEffects();
+		for (BakedGlyph baked : glyphs) {
+			Glyph glyph = baked.glyph;
+			int w = glyph.getWidth();
+			int h = glyph.getHeight();
+			if (w == 0 || h == 0 || glyph.getShape() == null) {
+				continue;
+			}
+			if (w > SCRATCH_SIZE || h > SCRATCH_SIZE) {
+				throw new IOException("Glyph " + glyph.getCodePoint()
+						+ " is too large to bake");
+			}
+
+			g.setComposite(AlphaComposite.Clear);
+			g.fillRect(0, 0, SCRATCH_SIZE, SCRATCH_SIZE);
+			g.setComposite(AlphaComposite.SrcOver);
+			g.setColor(java.awt.Color.white);
+			for (Effect effect : effects) {
+				effect.draw(scratch, g, font, glyph);
+			}
+
+			page.getRaster().setDataElements(baked.x, baked.y, w, h,
+					scratch.getRaster().getDataElements(0, 0, w, h, null));
+		}
+		g.dispose();
+	}
+
+	/** A helper to write the AngelCode font file of the baked font */
+	private void writeMetrics(File file, String name, BufferedImage page)
+			throws IOException {
+		PrintWriter out =
+			new PrintWriter(new OutputStreamWriter(new FileOutputStream(file),
+					"UTF-8"));
+		try {
+			java.awt.Font awtFont = font.getFont();
+			out.println(String.format("info face=\"%s\" size=%d bold=0 "
+					+ "italic=0 charset=\"\" unicode=0 stretchH=100 smooth=1 "
+					+ "aa=1 padding=%d,%d,%d,%d spacing=%d,%d",
+					awtFont.getFontName(), awtFont.getSize(),
+					font.getPaddingTop(), font.getPaddingRight(),
+					font.getPaddingBottom(), font.getPaddingLeft(), PADDING,
+					PADDING));
+			out.println(String.format("common lineHeight=%d base=%d "
+					+ "descent=%d leading=%d scaleW=%d scaleH=%d pages=1 "
+					+ "packed=0", font.getLineHeight(), font.getAscent(),
+					font.getDescent(), font.getLeading(), page.getWidth(),
+					page.getHeight()));
+			out.println(String.format("page id=0 file=\"%s.png\"", name));
+			out.println(String.format("chars count=%d", glyphs.size()));
+			for (BakedGlyph baked : glyphs) {
+				Glyph glyph = baked.glyph;
+				out.println(String.format("char id=%d x=%d y=%d width=%d "
+						+ "height=%d xoffset=%d yoffset=%d xadvance=%d page=0 "
+						+ "chnl=0", glyph.getCodePoint(), baked.x, baked.y,
+						glyph.getWidth(), glyph.getHeight(), baked.xOffset,
+						glyph.getYOffset(), baked.advance));
+			}
+		}
+		finally {
+			out.close();
+		}
+		if (out.checkError()) {
+			throw new IOException("Failed to write " + file);
+		}
+	}
+
+	/**
+	 * Bakes all the fonts.
+	 *
+	 * @param args
+	 *            the directory to write the baked fonts to
+	 * @throws Exception
+	 *             if a font could not be baked
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 1) {
+			System.err.println("Usage: FontBaker <output directory>");
+			System.exit(1);
+		}
+
+		// Don't let the font loading info drown the results.
+		Log.setVerbose(false);
+
+		ResourceLoader.addResourceLocation(new RbbResourceLocation());
+
+		File outputDir = new File(args[0]);
+		outputDir.mkdirs();
+
+		for (Font font : Font.values()) {
+			String name = bake(font, outputDir);
+			System.out.println(String.format("Baked %s into %s", font, name));
+		}
+	}
+
+	/** A glyph and its place in the baked image. */
+	private static class BakedGlyph {
+		/** The glyph, laid out by UnicodeFont. */
+		Glyph glyph;
+
+		/** The place of the glyph in the baked image. */
+		int x, y;
+
+		/** How far right from the pen the glyph is drawn. */
+		int xOffset;
+
+		/** How far the pen moves after the glyph. */
+		int advance;
+	}
+}
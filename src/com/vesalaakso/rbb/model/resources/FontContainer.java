@@ -1,6 +1,8 @@
 package com.vesalaakso.rbb.model.resources;
 
 import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.List;
 
@@ -14,14 +16,18 @@ import org.newdawn.slick.util.Log;
 /**
  * A class used to load all the fonts and to query for different fonts when
  * needed.
+ * <p>
+ * Fonts baked by {@link FontBaker} are loaded as they are. Fonts which
+ * haven't been baked, or whose effects have changed since, are rasterized
+ * from the font files with <code>UnicodeFont</code>.
  * 
  * @author Vesa Laakso
  */
 public class FontContainer {
 
 	/** All the fonts are stored in this map. */
-	private EnumMap<Font, UnicodeFont> fonts = new EnumMap<Font, UnicodeFont>(
-			Font.class);
+	private EnumMap<Font, org.newdawn.slick.Font> fonts =
+		new EnumMap<Font, org.newdawn.slick.Font>(Font.class);
 
 	/**
 	 * Initializes all the fonts.
@@ -30,49 +36,121 @@ public class FontContainer {
 	 *             if something went wrong with font loading
 	 */
 	public void init() throws SlickException {
-		UnicodeFont font;
-		List<Effect> fEffects;
-
-		// Menu item
-		font = loadFont(Font.MENU_ITEM);
-		fEffects = font.getEffects();
-		fEffects.add(new ColorEffect(Color.getHSBColor(0.55f, 1.0f, 0.75f)));
-		font.addAsciiGlyphs();
-		font.loadGlyphs();
-		fonts.put(Font.MENU_ITEM, font);
-
-		// Menu item hilighted
-		font = loadFont(Font.MENU_ITEM_HILIGHTED);
-		fEffects = font.getEffects();
-		fEffects.add(new ShadowEffect(new Color(255, 255, 255), 1, 1, 0.75f));
-		fEffects.add(new ColorEffect(Color.getHSBColor(0.55f, 1.0f, 0.75f)));
-		font.addAsciiGlyphs();
-		font.loadGlyphs();
-		fonts.put(Font.MENU_ITEM_HILIGHTED, font);
-
-		// Regular text
-		font = loadFont(Font.REGULAR);
-		fEffects = font.getEffects();
-		fEffects.add(new ColorEffect(Color.getHSBColor(0.0f, 0.0f, 0.95f)));
-		font.addAsciiGlyphs();
-		font.loadGlyphs();
-		fonts.put(Font.REGULAR, font);
-
-		// Scores in game
-		font = loadFont(Font.SCORE);
-		fEffects = font.getEffects();
-		fEffects.add(new ColorEffect(Color.getHSBColor(0.0f, 0.0f, 0.95f)));
-		font.addAsciiGlyphs();
-		font.loadGlyphs();
-		fonts.put(Font.SCORE, font);
-
-		// Best score ;)
-		font = loadFont(Font.SCORE_BEST);
-		fEffects = font.getEffects();
-		fEffects.add(new ColorEffect(Color.getHSBColor(0.3f, 0.35f, 0.95f)));
-		font.addAsciiGlyphs();
-		font.loadGlyphs();
-		fonts.put(Font.SCORE_BEST, font);
+		for (Font font : Font.values()) {
+			fonts.put(font, finishFont(readFont(font)));
+		}
+	}
+
+	/**
+	 * Adds a job for loading all the fonts to the given queue. The baked
+	 * glyph images are decoded, or the font files read and the glyphs laid
+	 * out, on a worker thread, and the textures are created on the render
+	 * thread. The fonts are created one after another, as
+	 * <code>UnicodeFont</code> shares a scratch image between all fonts.
+	 * 
+	 * @param queue
+	 *            the queue to add the job to
+	 */
+	public void addJobs(LoadingQueue queue) {
+		queue.add(new LoadJob<EnumMap<Font, Object>>() {
+			@Override
+			protected EnumMap<Font, Object> loadInBackground()
+					throws SlickException {
+				EnumMap<Font, Object> read =
+					new EnumMap<Font, Object>(Font.class);
+				for (Font font : Font.values()) {
+					read.put(font, readFont(font));
+				}
+				return read;
+			}
+
+			@Override
+			protected void finish(EnumMap<Font, Object> read)
+					throws SlickException {
+				for (Font font : read.keySet()) {
+					fonts.put(font, finishFont(read.get(font)));
+				}
+			}
+		});
+	}
+
+	/**
+	 * A helper to read a font without OpenGL. Returns the baked font data if
+	 * the font has been baked, otherwise a <code>UnicodeFont</code> with its
+	 * effects and glyphs set up but not yet loaded.
+	 */
+	private Object readFont(Font font) throws SlickException {
+		List<Effect> effects = createEffects(font);
+		String ref = BakedFont.getRef(font, effects);
+		try {
+			BakedFont.Data baked = BakedFont.read(ref);
+			if (baked != null) {
+				return baked;
+			}
+			Log.warn("Font " + font + " has not been baked into " + ref
+					+ ", rasterizing it instead. Run the bake-fonts target.");
+		}
+		catch (IOException e) {
+			Log.warn("Failed to read the baked font " + ref
+					+ ", rasterizing it instead.", e);
+		}
+
+		UnicodeFont f = loadFont(font);
+		f.getEffects().addAll(effects);
+		f.addAsciiGlyphs();
+		return f;
+	}
+
+	/**
+	 * A helper to create the textures of a font read by
+	 * {@link #readFont(Font)}. Must be called on the render thread.
+	 */
+	private org.newdawn.slick.Font finishFont(Object read)
+			throws SlickException {
+		if (read instanceof BakedFont.Data) {
+			return ((BakedFont.Data) read).create();
+		}
+		UnicodeFont f = (UnicodeFont) read;
+		f.loadGlyphs();
+		return f;
+	}
+
+	/**
+	 * Creates the effects the glyphs of the given font are drawn with.
+	 * 
+	 * @param font
+	 *            the font
+	 * @return the effects, in the order they are drawn in
+	 */
+	static List<Effect> createEffects(Font font) {
+		List<Effect> fEffects = new ArrayList<Effect>();
+
+		switch (font) {
+			case MENU_ITEM:
+				fEffects.add(new ColorEffect(Color.getHSBColor(0.55f, 1.0f,
+						0.75f)));
+				break;
+			case MENU_ITEM_HILIGHTED:
+				fEffects.add(new ShadowEffect(new Color(255, 255, 255), 1, 1,
+						0.75f));
+				fEffects.add(new ColorEffect(Color.getHSBColor(0.55f, 1.0f,
+						0.75f)));
+				break;
+			case REGULAR:
+			case SCORE:
+				fEffects.add(new ColorEffect(Color.getHSBColor(0.0f, 0.0f,
+						0.95f)));
+				break;
+			case SCORE_BEST:
+				// Best score ;)
+				fEffects.add(new ColorEffect(Color.getHSBColor(0.3f, 0.35f,
+						0.95f)));
+				break;
+			default:
+				Log.warn("No effects defined for font " + font);
+		}
+
+		return fEffects;
 	}
 
 	/**
@@ -98,8 +176,8 @@ public class FontContainer {
 	 *            to get
 	 * @return the font one wanted
 	 */
-	public UnicodeFont getFont(Font font) {
-		UnicodeFont ret = fonts.get(font);
+	public org.newdawn.slick.Font getFont(Font font) {
+		org.newdawn.slick.Font ret = fonts.get(font);
 		if (ret == null) {
 			Log.warn("FontContainer did not contain font " + font);
 		}
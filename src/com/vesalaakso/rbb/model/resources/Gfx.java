@@ -7,24 +7,59 @@ package com.vesalaakso.rbb.model.resources;
  */
 public enum Gfx {
 	/** Menu background */
-	BACKGROUND_MENU("main-menu_bg.png"),
+	BACKGROUND_MENU("main-menu_bg.png", false),
 	/** Game background */
-	BACKGROUND_GAME("spacebg.png"),
+	BACKGROUND_GAME("spacebg.png", false),
 	/** Game play information image */
-	GAMEPLAY("gameplay.png"),
+	GAMEPLAY("gameplay.png", false),
 	/** A gravitation arrow for maps */
-	MAP_GRAV_ARROW("grav-arrow.png");
+	MAP_GRAV_ARROW("grav-arrow.png", true),
+	/** The flash particle of an explosion */
+	PARTICLE_FLASH("inital-flash.tga", true),
+	/** The white hot core particle of an explosion */
+	PARTICLE_CORE("whitecore-new-2.tga", true),
+	/** The fireball particle of an explosion */
+	PARTICLE_FIREBALL("fireball.tga", true),
+	/** The smoke particle of an explosion */
+	PARTICLE_SMOKE("smoke.tga", true);
 
 	/** The string for the file name of graphics file */
 	String fileName;
 
+	/**
+	 * Is the graphics packed into the texture atlas instead of having a
+	 * texture of its own. Small sprites are packed so that drawing them
+	 * doesn't need to bind another texture.
+	 */
+	final boolean packed;
+
 	/**
 	 * Constructs the enum and associates it with the given file name.
 	 * 
 	 * @param fileName
 	 *            the file name to associate with the enum
+	 * @param packed
+	 *            should the graphics be packed into the texture atlas
 	 */
-	Gfx(String fileName) {
+	Gfx(String fileName, boolean packed) {
 		this.fileName = fileName;
+		this.packed = packed;
+	}
+
+	/**
+	 * Finds the graphics loaded from the given file.
+	 * 
+	 * @param fileName
+	 *            the file name to look for
+	 * @return the graphics with the given file name or <code>null</code> if
+	 *         there is none
+	 */
+	public static Gfx forFileName(String fileName) {
+		for (Gfx gfx : values()) {
+			if (gfx.fileName.equals(fileName)) {
+				return gfx;
+			}
+		}
+		return null;
 	}
 }
@@ -1,12 +1,17 @@
 package com.vesalaakso.rbb.model.resources;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.List;
 
 import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
+import org.newdawn.slick.opengl.ImageData;
 
 /**
- * Handles graphics loading and saving.
+ * Handles graphics loading and saving. Small sprites are packed into a
+ * {@link TextureAtlas}, the rest get a texture of their own.
  * 
  * @author Vesa Laakso
  */
@@ -15,6 +20,9 @@ public class GfxContainer {
 	/** All graphics files are stored in this map */
 	private EnumMap<Gfx, Image> images = new EnumMap<Gfx, Image>(Gfx.class);
 
+	/** The atlas the packed graphics are stored in, once loaded. */
+	private TextureAtlas atlas;
+
 	/**
 	 * Initializes all the graphics files.
 	 * 
@@ -26,7 +34,65 @@ public class GfxContainer {
 		images.put(Gfx.BACKGROUND_MENU, loadImage(Gfx.BACKGROUND_MENU));
 		images.put(Gfx.BACKGROUND_GAME, loadImage(Gfx.BACKGROUND_GAME));
 		images.put(Gfx.GAMEPLAY, loadImage(Gfx.GAMEPLAY));
-		images.put(Gfx.MAP_GRAV_ARROW, loadImage(Gfx.MAP_GRAV_ARROW));
+		try {
+			atlas = TextureAtlas.pack(getPackedGfx());
+		}
+		catch (IOException e) {
+			throw new SlickException("Failed to pack the texture atlas", e);
+		}
+		atlas.upload();
+	}
+
+	/**
+	 * Adds jobs for loading all the graphics files to the given queue. The
+	 * images are decoded on worker threads and only uploaded as textures on
+	 * the render thread. The packed images are packed on a worker thread
+	 * too, and uploaded as a single texture.
+	 * 
+	 * @param queue
+	 *            the queue to add the jobs to
+	 */
+	public void addJobs(LoadingQueue queue) {
+		queue.add(new LoadJob<TextureAtlas>() {
+			@Override
+			protected TextureAtlas loadInBackground() throws Exception {
+				return TextureAtlas.pack(getPackedGfx());
+			}
+
+			@Override
+			protected void finish(TextureAtlas loaded) throws SlickException {
+				loaded.upload();
+				atlas = loaded;
+			}
+		});
+
+		for (final Gfx gfx : Gfx.values()) {
+			if (gfx.packed) {
+				continue;
+			}
+			queue.add(new LoadJob<ImageData>() {
+				@Override
+				protected ImageData loadInBackground() throws Exception {
+					return ImageDecoder.decode(gfx.fileName, null);
+				}
+
+				@Override
+				protected void finish(ImageData loaded) {
+					images.put(gfx, new Image(loaded));
+				}
+			});
+		}
+	}
+
+	/** A helper to list the graphics packed into the atlas */
+	private static List<Gfx> getPackedGfx() {
+		List<Gfx> packed = new ArrayList<Gfx>();
+		for (Gfx gfx : Gfx.values()) {
+			if (gfx.packed) {
+				packed.add(gfx);
+			}
+		}
+		return packed;
 	}
 
 	/** A helper to load an image file */
@@ -44,6 +110,9 @@ public class GfxContainer {
 	 * @return the graphics one wanted
 	 */
 	public Image getImage(Gfx gfx) {
+		if (gfx.packed) {
+			return atlas == null ? null : atlas.getImage(gfx);
+		}
 		Image img = images.get(gfx);
 		return img;
 	}
@@ -0,0 +1,71 @@
+package com.vesalaakso.rbb.model.resources;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.newdawn.slick.opengl.ImageDataFactory;
+import org.newdawn.slick.opengl.LoadableImageData;
+import org.newdawn.slick.util.ResourceLoader;
+
+/**
+ * Decodes image files into pixel data without OpenGL, so that images can be
+ * decoded on a worker thread and only uploaded as textures on the render
+ * thread.
+ *
+ * @author Vesa Laakso
+ */
+class ImageDecoder {
+
+	/** A private constructor as this class has only static methods */
+	private ImageDecoder() {
+	}
+
+	/**
+	 * Decodes the given image file. Create the <code>Image</code> out of the
+	 * returned data on the render thread.
+	 *
+	 * @param ref
+	 *            the image file to decode
+	 * @param transparent
+	 *            the rgb-color to make transparent or <code>null</code>
+	 * @return the decoded pixel data
+	 * @throws IOException
+	 *             if the image could not be read
+	 */
+	static LoadableImageData decode(String ref, int[] transparent)
+			throws IOException {
+		LoadableImageData data = ImageDataFactory.getImageDataFor(ref);
+		decodeInto(data, ref, transparent);
+		return data;
+	}
+
+	/**
+	 * Decodes the given image file into the given image data and returns the
+	 * decoded pixels. Some of Slick's decoders, such as the TGA one, only
+	 * hand out the pixels here and not from the data afterwards.
+	 *
+	 * @param data
+	 *            the image data to decode into, from
+	 *            <code>ImageDataFactory</code>
+	 * @param ref
+	 *            the image file to decode
+	 * @param transparent
+	 *            the rgb-color to make transparent or <code>null</code>
+	 * @return the decoded pixels, rows of the texture width of the data
+	 * @throws IOException
+	 *             if the image could not be read
+	 */
+	static ByteBuffer decodeInto(LoadableImageData data, String ref,
+			int[] transparent) throws IOException {
+		InputStream in =
+			new BufferedInputStream(ResourceLoader.getResourceAsStream(ref));
+		try {
+			return data.loadImage(in, false, transparent);
+		}
+		finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,351 @@
+package com.vesalaakso.rbb.model.resources;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.tiled.GroupObject;
+import org.newdawn.slick.tiled.Layer;
+import org.newdawn.slick.tiled.ObjectGroup;
+import org.newdawn.slick.tiled.TileSet;
+import org.newdawn.slick.tiled.TiledMap;
+import org.newdawn.slick.tiled.TiledMapPlus;
+import org.newdawn.slick.util.Log;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Compiles TMX levels into the binary format described in
+ * {@link CompiledLevel}, so that the game doesn't need to parse XML or decode
+ * the layer data when loading a level. Run by the <code>compile-levels</code>
+ * Ant target.
+ *
+ * @author Vesa Laakso
+ */
+public class LevelCompiler {
+
+	/** The strings of the level and their indices in the string table. */
+	private final Map<String, Integer> strings =
+		new LinkedHashMap<String, Integer>();
+
+	/** Everything after the string table. */
+	private final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+
+	/** Used to write {@link #bodyBytes}. */
+	private final DataOutputStream body = new DataOutputStream(bodyBytes);
+
+	/** Parses the tile sets of the level. */
+	private final DocumentBuilder builder;
+
+	/** Constructs a new compiler for a single level. */
+	private LevelCompiler() throws SlickException {
+		try {
+			builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+		}
+		catch (Exception e) {
+			throw new SlickException("Failed to create a DOM parser", e);
+		}
+	}
+
+	/**
+	 * Compiles a single level.
+	 *
+	 * @param tmx
+	 *            the TMX file of the level
+	 * @param output
+	 *            the file to write the compiled level to
+	 * @throws SlickException
+	 *             if the level could not be parsed or it used something the
+	 *             compiled format doesn't support
+	 * @throws IOException
+	 *             if the compiled level could not be written
+	 */
+	public static void compile(File tmx, File output) throws SlickException,
+			IOException {
+		new LevelCompiler().write(tmx, output);
+	}
+
+	/** A helper to compile the level and write it to the output */
+	private void write(File tmx, File output) throws SlickException,
+			IOException {
+		String dir = tmx.getParent();
+
+		byte[] source = readFully(tmx);
+		SourceMap map = new SourceMap(new ByteArrayInputStream(source), dir);
+
+		body.writeInt(map.getWidth());
+		body.writeInt(map.getHeight());
+		body.writeInt(map.getTileWidth());
+		body.writeInt(map.getTileHeight());
+		writeProperties(map.getProperties());
+
+		writeTileSets(tmx, map);
+
+		body.writeInt(map.getLayerCount());
+		for (Layer layer : map.getLayers()) {
+			writeLayer(layer);
+		}
+
+		body.writeInt(map.getObjectGroupCount());
+		for (ObjectGroup group : map.getObjectGroups()) {
+			writeObjectGroup(group);
+		}
+
+		DataOutputStream out =
+			new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(output)));
+		try {
+			out.writeInt(CompiledLevel.MAGIC);
+			out.writeInt(CompiledLevel.VERSION);
+			out.writeInt(CompiledLevel.checksum(source));
+			out.writeInt(strings.size());
+			for (String str : strings.keySet()) {
+				byte[] bytes = str.getBytes("UTF-8");
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			bodyBytes.writeTo(out);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/** A helper to read a whole file into memory */
+	private static byte[] readFully(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/** A helper to write a string as an index to the string table */
+	private void writeString(String str) throws IOException {
+		if (str == null) {
+			str = "";
+		}
+		Integer index = strings.get(str);
+		if (index == null) {
+			index = strings.size();
+			strings.put(str, index);
+		}
+		body.writeInt(index);
+	}
+
+	/** A helper to write properties, which may be <code>null</code> */
+	private void writeProperties(Properties properties) throws IOException {
+		if (properties == null) {
+			body.writeInt(-1);
+			return;
+		}
+		body.writeInt(properties.size());
+		for (String name : properties.stringPropertyNames()) {
+			writeString(name);
+			writeString(properties.getProperty(name));
+		}
+	}
+
+	/**
+	 * A helper to write the tile sets. <code>TileSet</code> doesn't keep the
+	 * image source or the ids of the tiles with properties, so they are read
+	 * from the TMX file and from the tile set files it refers to.
+	 */
+	private void writeTileSets(File tmx, TiledMapPlus map)
+			throws SlickException, IOException {
+		NodeList sets = parse(tmx).getElementsByTagName("tileset");
+		if (sets.getLength() != map.getTileSetCount()) {
+			throw new SlickException("Found " + sets.getLength()
+					+ " tile sets instead of " + map.getTileSetCount());
+		}
+
+		body.writeInt(map.getTileSetCount());
+		for (int i = 0; i < map.getTileSetCount(); i++) {
+			Element set = (Element) sets.item(i);
+			String source = set.getAttribute("source");
+			if (source.length() > 0) {
+				set = parse(new File(tmx.getParentFile(), source));
+			}
+
+			TileSet tileSet = map.getTileSet(i);
+			writeString(tileSet.name);
+			body.writeInt(tileSet.firstGID);
+			body.writeInt(tileSet.tileWidth);
+			body.writeInt(tileSet.tileHeight);
+			body.writeInt(tileSet.tileSpacing);
+			body.writeInt(tileSet.tileMargin);
+
+			Element image = (Element) set.getElementsByTagName("image").item(0);
+			writeString(image.getAttribute("source"));
+			String trans = image.getAttribute("trans");
+			body.writeInt(trans.length() > 0 ? Integer.parseInt(trans, 16) : -1);
+
+			NodeList tiles = set.getElementsByTagName("tile");
+			body.writeInt(tiles.getLength());
+			for (int t = 0; t < tiles.getLength(); t++) {
+				int id = Integer.parseInt(((Element) tiles.item(t))
+						.getAttribute("id"));
+				body.writeInt(id);
+				writeProperties(tileSet.getProperties(tileSet.firstGID + id));
+			}
+		}
+	}
+
+	/** A helper to parse an XML file */
+	private Element parse(File file) throws SlickException {
+		try {
+			return builder.parse(file).getDocumentElement();
+		}
+		catch (Exception e) {
+			throw new SlickException("Failed to parse " + file, e);
+		}
+	}
+
+	/** A helper to write a single tile layer */
+	private void writeLayer(Layer layer) throws IOException {
+		writeString(layer.name);
+		body.writeInt(layer.width);
+		body.writeInt(layer.height);
+		body.writeFloat(layer.opacity);
+		body.writeInt(layer.visible ? 1 : 0);
+		writeProperties(layer.props);
+
+		for (int y = 0; y < layer.height; y++) {
+			for (int x = 0; x < layer.width; x++) {
+				body.writeInt(layer.data[x][y][2]);
+			}
+		}
+	}
+
+	/** A helper to write a single object group and its objects */
+	private void writeObjectGroup(ObjectGroup group) throws SlickException,
+			IOException {
+		writeString(group.name);
+		body.writeInt(group.width);
+		body.writeInt(group.height);
+		body.writeFloat(group.opacity);
+		body.writeInt(group.visible ? 1 : 0);
+		writeString(String.format("#%02x%02x%02x", group.color.getRed(),
+				group.color.getGreen(), group.color.getBlue()));
+		writeProperties(group.props);
+
+		body.writeInt(group.objects.size());
+		for (GroupObject obj : group.objects) {
+			writeObject(obj);
+		}
+	}
+
+	/** A helper to write a single object */
+	private void writeObject(GroupObject obj) throws SlickException,
+			IOException {
+		writeString(obj.name);
+		writeString(obj.type);
+		body.writeInt(obj.getObjectType().ordinal());
+		body.writeInt(obj.x);
+		body.writeInt(obj.y);
+		body.writeInt(obj.width);
+		body.writeInt(obj.height);
+		body.writeInt(obj.gid);
+		writeProperties(obj.props);
+
+		switch (obj.getObjectType()) {
+			case POLYGON:
+				float[] points = obj.getPolygon().getPoints();
+				body.writeInt(points.length / 2);
+				for (float point : points) {
+					body.writeFloat(point);
+				}
+				break;
+			case POLYLINE:
+				// GroupObject doesn't give out the points of a polyline.
+				throw new SlickException("Polyline object " + obj.name
+						+ " can't be compiled");
+			default:
+				body.writeInt(0);
+		}
+	}
+
+	/**
+	 * Compiles every TMX file in a directory.
+	 *
+	 * @param args
+	 *            the directory of the TMX files and the directory to write the
+	 *            compiled levels to
+	 * @throws Exception
+	 *             if some level could not be compiled
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err.println("Usage: LevelCompiler <level directory> "
+					+ "<output directory>");
+			System.exit(1);
+		}
+
+		// Don't let the map loading info drown the results.
+		Log.setVerbose(false);
+
+		// The tile set images are not needed.
+		TiledMap.setHeadless(true);
+
+		File levelDir = new File(args[0]);
+		File outputDir = new File(args[1]);
+		outputDir.mkdirs();
+
+		File[] files = levelDir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".tmx");
+			}
+		});
+		if (files == null) {
+			throw new IOException("Can't list " + levelDir);
+		}
+		Arrays.sort(files);
+
+		for (File tmx : files) {
+			String name = tmx.getName();
+			name = name.substring(0, name.length() - 4);
+			File output = new File(outputDir, name + CompiledLevel.EXTENSION);
+
+			compile(tmx, output);
+			System.out.println(String.format("Compiled %s (%d bytes -> %d)",
+					tmx.getName(), tmx.length(), output.length()));
+		}
+	}
+
+	/** A <code>TiledMapPlus</code> which gives out its map properties. */
+	private static class SourceMap extends TiledMapPlus {
+		/** Parses the map in the given stream. */
+		SourceMap(InputStream in, String tilesLocation) throws SlickException {
+			super(in, tilesLocation);
+		}
+
+		/** Gets the properties of the map, <code>null</code> if none. */
+		Properties getProperties() {
+			return props;
+		}
+	}
+}
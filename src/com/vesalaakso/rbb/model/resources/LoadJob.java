@@ -0,0 +1,39 @@
+package com.vesalaakso.rbb.model.resources;
+
+import org.newdawn.slick.SlickException;
+
+/**
+ * A resource loaded in two parts. The heavy lifting, such as reading and
+ * decoding files, is done on a worker thread of a {@link LoadingQueue}, and
+ * whatever needs OpenGL, such as uploading textures, is done afterwards on the
+ * render thread.
+ *
+ * @author Vesa Laakso
+ *
+ * @param <T>
+ *            the type of the data passed from the worker thread to the render
+ *            thread
+ */
+public abstract class LoadJob<T> {
+
+	/**
+	 * Does the part of the loading which doesn't need OpenGL. Called on a
+	 * worker thread, so this must not touch OpenGL or anything the render
+	 * thread uses.
+	 *
+	 * @return the data needed to finish loading on the render thread
+	 * @throws Exception
+	 *             if loading failed
+	 */
+	protected abstract T loadInBackground() throws Exception;
+
+	/**
+	 * Finishes loading on the render thread.
+	 *
+	 * @param loaded
+	 *            the data returned by {@link #loadInBackground()}
+	 * @throws SlickException
+	 *             if loading failed
+	 */
+	protected abstract void finish(T loaded) throws SlickException;
+}
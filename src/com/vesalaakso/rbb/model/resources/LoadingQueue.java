@@ -0,0 +1,183 @@
+package com.vesalaakso.rbb.model.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.newdawn.slick.SlickException;
+
+/**
+ * Runs the background parts of {@link LoadJob}s on a pool of worker threads
+ * and lets the render thread finish them one by one, in the order they were
+ * added. The render thread can keep drawing the loading screen in between.
+ *
+ * @author Vesa Laakso
+ */
+public class LoadingQueue {
+
+	/** The worker threads. */
+	private final ExecutorService executor;
+
+	/** All the added jobs, in the order they were added. */
+	private final List<PendingJob<?>> jobs = new ArrayList<PendingJob<?>>();
+
+	/** Amount of jobs finished on the render thread. */
+	private int finishedCount;
+
+	/** Constructs a queue with a worker thread for each processor. */
+	public LoadingQueue() {
+		int threads = Runtime.getRuntime().availableProcessors();
+		executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count;
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Resource loader " + (++count));
+				// Don't keep the game running if it's closed while loading.
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Adds a job to the queue and starts its background part on a worker
+	 * thread.
+	 *
+	 * @param <T>
+	 *            the type of the data passed to the render thread
+	 * @param job
+	 *            the job to add
+	 */
+	public <T> void add(final LoadJob<T> job) {
+		Future<T> future = executor.submit(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				return job.loadInBackground();
+			}
+		});
+		jobs.add(new PendingJob<T>(job, future));
+	}
+
+	/**
+	 * Finishes the jobs whose background part is done, in the order they were
+	 * added, until one is still running in the background or the given time
+	 * has passed. Must be called on the render thread.
+	 *
+	 * @param maxMillis
+	 *            how long to keep finishing jobs, at most
+	 * @return <code>true</code> if all of the jobs have been finished
+	 * @throws SlickException
+	 *             if a job failed
+	 */
+	public boolean finishReady(long maxMillis) throws SlickException {
+		long end = System.currentTimeMillis() + maxMillis;
+		while (finishedCount < jobs.size()
+				&& jobs.get(finishedCount).future.isDone()) {
+			finishNext();
+			if (System.currentTimeMillis() >= end) {
+				break;
+			}
+		}
+		return isFinished();
+	}
+
+	/**
+	 * Finishes all the jobs, waiting for the background parts when needed.
+	 * Must be called on the render thread.
+	 *
+	 * @throws SlickException
+	 *             if a job failed
+	 */
+	public void finishAll() throws SlickException {
+		while (!isFinished()) {
+			finishNext();
+		}
+	}
+
+	/** A helper which finishes the next job, waiting for it if needed. */
+	private void finishNext() throws SlickException {
+		PendingJob<?> pending = jobs.get(finishedCount);
+		finishedCount++;
+		pending.finish();
+	}
+
+	/**
+	 * Checks whether all the added jobs have been finished.
+	 *
+	 * @return <code>true</code> if there is nothing left to load
+	 */
+	public boolean isFinished() {
+		return finishedCount == jobs.size();
+	}
+
+	/**
+	 * Gets how far the loading is, counting both the background and the
+	 * render thread parts of the jobs.
+	 *
+	 * @return the progress between 0 and 1
+	 */
+	public float getProgress() {
+		if (jobs.isEmpty()) {
+			return 1;
+		}
+		int done = finishedCount;
+		for (int i = finishedCount; i < jobs.size(); i++) {
+			if (jobs.get(i).future.isDone()) {
+				done++;
+			}
+		}
+		// Background parts still running count as zero, finished jobs as two.
+		return (float) (done + finishedCount) / (jobs.size() * 2);
+	}
+
+	/** Stops the worker threads. Call when the queue is no longer needed. */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * A job and the result of its background part.
+	 *
+	 * @param <T>
+	 *            the type of the data passed to the render thread
+	 */
+	private static class PendingJob<T> {
+		/** The job */
+		private final LoadJob<T> job;
+
+		/** The result of the background part of the job */
+		private final Future<T> future;
+
+		/** Constructs a pending job. */
+		PendingJob(LoadJob<T> job, Future<T> future) {
+			this.job = job;
+			this.future = future;
+		}
+
+		/** Waits for the background part and finishes the job. */
+		void finish() throws SlickException {
+			T loaded;
+			try {
+				loaded = future.get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SlickException("Interrupted while loading", e);
+			}
+			catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof SlickException) {
+					throw (SlickException) cause;
+				}
+				throw new SlickException("Failed to load a resource", cause);
+			}
+			job.finish(loaded);
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package com.vesalaakso.rbb.model.resources;
+
+import org.newdawn.slick.tiled.TiledMapPlus;
+
+/**
+ * Classes which hold on to maps given by {@link TiledMapPlusContainer} need to
+ * implement this interface, so that they can let go of the maps once the
+ * container has dropped them from its cache.
+ *
+ * @author Vesa Laakso
+ */
+public interface MapEvictionListener {
+
+	/**
+	 * Called when a map has been dropped from the cache. The tile set images
+	 * of the map may have been destroyed, so the map must not be drawn any
+	 * more.
+	 *
+	 * @param level
+	 *            the level of the dropped map
+	 * @param map
+	 *            the dropped map
+	 */
+	public void mapEvicted(int level, TiledMapPlus map);
+}
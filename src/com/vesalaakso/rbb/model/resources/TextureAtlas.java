@@ -0,0 +1,191 @@
+package com.vesalaakso.rbb.model.resources;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+
+import org.newdawn.slick.Image;
+import org.newdawn.slick.ImageBuffer;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.opengl.ImageData;
+import org.newdawn.slick.opengl.ImageDataFactory;
+import org.newdawn.slick.opengl.LoadableImageData;
+
+/**
+ * Packs small images into a single texture, so that drawing them one after
+ * another doesn't need a texture bind for each. The images are decoded and
+ * packed without OpenGL, so that it can be done on a worker thread, and the
+ * atlas is uploaded as a single texture on the render thread. After that
+ * every packed image is a sub-image of the atlas.
+ * <p>
+ * The images are packed on shelves, the tallest first, into the narrowest
+ * power of two wide texture they fit in.
+ *
+ * @author Vesa Laakso
+ */
+class TextureAtlas {
+
+	/** Empty pixels around every image, so filtering doesn't bleed them. */
+	private static final int PADDING = 2;
+
+	/** The widest atlas tried before giving up. */
+	private static final int MAX_SIZE = 2048;
+
+	/** The position and size of every packed image, as x, y, w and h. */
+	private final EnumMap<Gfx, int[]> regions =
+			new EnumMap<Gfx, int[]>(Gfx.class);
+
+	/** The packed images as sub-images of the atlas, once uploaded. */
+	private final EnumMap<Gfx, Image> images =
+			new EnumMap<Gfx, Image>(Gfx.class);
+
+	/** The packed pixels, until the atlas is uploaded. */
+	private ImageBuffer pixels;
+
+	/** The uploaded atlas. */
+	private Image atlas;
+
+	/** A private constructor, atlases are created with {@link #pack(List)}. */
+	private TextureAtlas() {
+	}
+
+	/**
+	 * Decodes the given graphics and packs them into an atlas. Doesn't need
+	 * OpenGL, so this can be called on a worker thread.
+	 *
+	 * @param gfxs
+	 *            the graphics to pack
+	 * @return the packed atlas, to be uploaded with {@link #upload()}
+	 * @throws IOException
+	 *             if an image could not be read or the images don't fit into
+	 *             a single texture
+	 */
+	static TextureAtlas pack(List<Gfx> gfxs) throws IOException {
+		final EnumMap<Gfx, LoadableImageData> datas =
+			new EnumMap<Gfx, LoadableImageData>(Gfx.class);
+		EnumMap<Gfx, ByteBuffer> buffers =
+			new EnumMap<Gfx, ByteBuffer>(Gfx.class);
+		for (Gfx gfx : gfxs) {
+			LoadableImageData data =
+				ImageDataFactory.getImageDataFor(gfx.fileName);
+			buffers.put(gfx, ImageDecoder.decodeInto(data, gfx.fileName, null));
+			datas.put(gfx, data);
+		}
+
+		List<Gfx> tallestFirst = new ArrayList<Gfx>(gfxs);
+		Collections.sort(tallestFirst, new Comparator<Gfx>() {
+			@Override
+			public int compare(Gfx a, Gfx b) {
+				return datas.get(b).getHeight() - datas.get(a).getHeight();
+			}
+		});
+
+		TextureAtlas result = new TextureAtlas();
+		for (int width = 64; width <= MAX_SIZE; width *= 2) {
+			int height = result.shelve(tallestFirst, datas, width);
+			if (height <= width) {
+				result.pixels = new ImageBuffer(width, height);
+				break;
+			}
+		}
+		if (result.pixels == null) {
+			throw new IOException("The images don't fit into a "
+					+ MAX_SIZE + " pixel atlas");
+		}
+
+		for (Gfx gfx : gfxs) {
+			result.copy(gfx, datas.get(gfx), buffers.get(gfx));
+		}
+		return result;
+	}
+
+	/**
+	 * A helper to place the given images on shelves in an atlas of the given
+	 * width. Returns the height of the atlas needed.
+	 */
+	private int shelve(List<Gfx> tallestFirst,
+			EnumMap<Gfx, LoadableImageData> datas, int width) {
+		regions.clear();
+		int x = PADDING;
+		int y = PADDING;
+		int shelfHeight = 0;
+		for (Gfx gfx : tallestFirst) {
+			ImageData data = datas.get(gfx);
+			int w = data.getWidth();
+			int h = data.getHeight();
+			if (x + w + PADDING > width && x > PADDING) {
+				// Start a new shelf, this one is full.
+				x = PADDING;
+				y += shelfHeight + PADDING;
+				shelfHeight = 0;
+			}
+			if (x + w + PADDING > width) {
+				// Too wide for the whole atlas.
+				return Integer.MAX_VALUE;
+			}
+			regions.put(gfx, new int[] { x, y, w, h });
+			x += w + PADDING;
+			shelfHeight = Math.max(shelfHeight, h);
+		}
+		return y + shelfHeight + PADDING;
+	}
+
+	/** A helper to copy the pixels of the given image into its region */
+	private void copy(Gfx gfx, ImageData data, ByteBuffer from)
+			throws IOException {
+		ImageData.Format format = data.getFormat();
+		if (format != ImageData.Format.RGBA && format != ImageData.Format.RGB) {
+			throw new IOException("Can't pack " + format + " image "
+					+ gfx.fileName);
+		}
+		int components = format.getColorComponents();
+		int fromStride = data.getTexWidth() * components;
+
+		int[] region = regions.get(gfx);
+		byte[] to = pixels.getRGBA();
+		int toStride = pixels.getTexWidth() * 4;
+		for (int row = 0; row < region[3]; row++) {
+			int fromIndex = row * fromStride;
+			int toIndex = (region[1] + row) * toStride + region[0] * 4;
+			for (int col = 0; col < region[2]; col++) {
+				to[toIndex++] = from.get(fromIndex++);
+				to[toIndex++] = from.get(fromIndex++);
+				to[toIndex++] = from.get(fromIndex++);
+				to[toIndex++] =
+					components == 4 ? from.get(fromIndex++) : (byte) 255;
+			}
+		}
+	}
+
+	/**
+	 * Uploads the atlas as a texture. Must be called on the render thread.
+	 *
+	 * @throws SlickException
+	 *             if the texture could not be created
+	 */
+	void upload() throws SlickException {
+		atlas = new Image(pixels);
+		pixels = null;
+		for (Gfx gfx : regions.keySet()) {
+			int[] region = regions.get(gfx);
+			images.put(gfx, atlas.getSubImage(region[0], region[1], region[2],
+					region[3]));
+		}
+	}
+
+	/**
+	 * Gets a packed image.
+	 *
+	 * @param gfx
+	 *            the graphics to get
+	 * @return the graphics as a sub-image of the atlas, or <code>null</code>
+	 *         if it wasn't packed or the atlas hasn't been uploaded
+	 */
+	Image getImage(Gfx gfx) {
+		return images.get(gfx);
+	}
+}
@@ -1,56 +1,183 @@
 package com.vesalaakso.rbb.model.resources;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
+import org.newdawn.slick.opengl.ImageData;
+import org.newdawn.slick.tiled.TileSet;
+import org.newdawn.slick.tiled.TiledMap;
 import org.newdawn.slick.tiled.TiledMapPlus;
 import org.newdawn.slick.util.Log;
+import org.newdawn.slick.util.ResourceLoader;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
 import com.vesalaakso.rbb.RubberBandBall;
 
 /**
- * A class used to load all the Tiled tile maps and to query for different
- * levels when needed.
+ * A class used to load the Tiled tile maps and to query for different levels
+ * when needed.
+ * <p>
+ * The maps are loaded lazily, when they are first asked for, and kept in a
+ * cache of the {@link #CACHE_SIZE} most recently used maps. When a map drops
+ * out of the cache, the tile set textures no other cached map uses are
+ * destroyed and the {@link MapEvictionListener}s are told about it. Levels
+ * can be prefetched with {@link #prefetch(int)}, which parses the map and
+ * decodes its tile set images on a worker thread, so that getting the map
+ * later only needs to upload the textures.
+ * <p>
+ * Levels compiled by {@link LevelCompiler} are used when they exist, as they
+ * load much faster than the TMX files.
+ * <p>
+ * All methods must be called on the render thread.
  * 
  * @author Vesa Laakso
  */
 public class TiledMapPlusContainer {
 
-	/** All the levels are stored in this array */
-	private TiledMapPlus[] maps = new TiledMapPlus[RubberBandBall.LEVEL_COUNT];
+	/** The directory the maps and their tile sets are in. */
+	private static final String LEVEL_DIR = "levels";
+
+	/**
+	 * How many maps are kept in the cache. At least the current and the
+	 * prefetched next map need to fit in.
+	 */
+	public static final int CACHE_SIZE = 3;
+
+	/** The cached maps by their level, least recently used first. */
+	private final LinkedHashMap<Integer, LoadedMap> maps =
+		new LinkedHashMap<Integer, LoadedMap>(CACHE_SIZE + 1, 0.75f, true);
+
+	/** The maps being loaded in the background by their level. */
+	private final Map<Integer, Future<LoadedMap>> prefetched =
+		new HashMap<Integer, Future<LoadedMap>>();
+
+	/** The uploaded tile set images, so that maps can share them. */
+	private final Map<String, Image> tileSetImages =
+		new HashMap<String, Image>();
+
+	/** How many of the cached maps use each tile set image. */
+	private final Map<String, Integer> tileSetImageUsers =
+		new HashMap<String, Integer>();
+
+	/** The ones to tell when a map has been dropped from the cache. */
+	private final List<MapEvictionListener> evictionListeners =
+		new ArrayList<MapEvictionListener>();
+
+	/** The thread maps are prefetched in, created when first needed. */
+	private ExecutorService prefetcher;
+
+	/** Should the tile set images be loaded. */
+	private boolean loadTileSets = true;
+
+	/** Has the container been initialized already. */
+	private boolean initialized;
 
 	/**
-	 * Initializes all the maps.
+	 * Initializes the container. No maps are loaded yet. If
+	 * <code>TiledMap</code> has been set headless, no tile set images are
+	 * loaded.
+	 */
+	public void init() {
+		if (initialized) {
+			return;
+		}
+		initialized = true;
+		loadTileSets = !TiledMap.isHeadless();
+
+		// The tile sets are loaded separately and maps are parsed on other
+		// threads, so the parsing must never touch them.
+		TiledMap.setHeadless(true);
+	}
+
+	/**
+	 * Initializes the container and adds a job for loading the first level to
+	 * the given queue, so that the game can start without waiting for it.
 	 * 
-	 * @throws SlickException
-	 *             if something went wrong with map loading
+	 * @param queue
+	 *            the queue to add the job to
 	 */
-	public void init() throws SlickException {
-		// Load all levels
-		for (int level = 1; level <= RubberBandBall.LEVEL_COUNT; level++) {
-			try {
-				maps[level - 1] = loadMap(level);
+	public void addJobs(LoadingQueue queue) {
+		init();
+		queue.add(new LoadJob<LoadedMap>() {
+			@Override
+			protected LoadedMap loadInBackground() throws SlickException {
+				return loadMap(1);
 			}
-			catch (SlickException e) {
-				throw new SlickException("Failed to load level " + level, e);
+
+			@Override
+			protected void finish(LoadedMap loaded) throws SlickException {
+				cache(1, loaded);
 			}
-			Log.info("Loaded level " + level);
-		}
+		});
 	}
 
-	/** A helper to load a single map */
-	private TiledMapPlus loadMap(int level) throws SlickException {
-		String mapFilename = level + ".tmx";
-		if (level >= 0 && level <= 9) {
-			// Keep map file name zero padded if necessary
-			mapFilename = "0" + mapFilename;
+	/**
+	 * Starts loading the given level in the background, unless it has been
+	 * loaded already. Does nothing for levels that don't exist.
+	 * 
+	 * @param level
+	 *            the level to load
+	 */
+	public void prefetch(final int level) {
+		if (level < 1 || level > RubberBandBall.LEVEL_COUNT
+				|| maps.containsKey(level) || prefetched.containsKey(level)) {
+			return;
+		}
+
+		if (prefetcher == null) {
+			prefetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Map prefetcher");
+					t.setDaemon(true);
+					return t;
+				}
+			});
 		}
 
-		TiledMapPlus map = new TiledMapPlus("levels/" + mapFilename);
-		return map;
+		prefetched.put(level, prefetcher.submit(new Callable<LoadedMap>() {
+			@Override
+			public LoadedMap call() throws SlickException {
+				return loadMap(level);
+			}
+		}));
+	}
+
+	/**
+	 * Adds a listener to be told when maps are dropped from the cache.
+	 * 
+	 * @param listener
+	 *            the listener to add
+	 */
+	public void addEvictionListener(MapEvictionListener listener) {
+		evictionListeners.add(listener);
 	}
 
 	/**
 	 * Gets the map for the given level or <code>null</code>, if map for the
-	 * given level was not found.
+	 * given level was not found. Loads the map if it isn't in the cache,
+	 * waiting for the prefetch of the map if there is one.
 	 * 
 	 * @param level
 	 *            the level to get
@@ -63,13 +190,313 @@ public class TiledMapPlusContainer {
 			return null;
 		}
 
-		TiledMapPlus map = maps[level - 1];
+		LoadedMap loaded = maps.get(level);
+		if (loaded != null) {
+			return loaded.map;
+		}
+
+		try {
+			Future<LoadedMap> future = prefetched.remove(level);
+			if (future != null) {
+				loaded = waitFor(future);
+			}
+			else {
+				loaded = loadMap(level);
+			}
+			cache(level, loaded);
+		}
+		catch (SlickException e) {
+			Log.error("Failed to load level " + level, e);
+			return null;
+		}
+
+		return loaded.map;
+	}
+
+	/** A helper to wait for a prefetched map */
+	private static LoadedMap waitFor(Future<LoadedMap> future)
+			throws SlickException {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SlickException("Interrupted while loading a map", e);
+		}
+		catch (ExecutionException e) {
+			throw new SlickException("Failed to prefetch a map", e.getCause());
+		}
+	}
+
+	/**
+	 * Uploads the tile set images of the given map and adds it to the cache,
+	 * dropping the least recently used maps if the cache is full.
+	 */
+	private void cache(int level, LoadedMap loaded) throws SlickException {
+		if (loadTileSets) {
+			setTileSetImages(loaded);
+		}
+		maps.put(level, loaded);
+		Log.info("Loaded level " + level);
+
+		Iterator<Map.Entry<Integer, LoadedMap>> it =
+			maps.entrySet().iterator();
+		while (maps.size() > CACHE_SIZE) {
+			Map.Entry<Integer, LoadedMap> eldest = it.next();
+			it.remove();
+			evict(eldest.getKey(), eldest.getValue());
+		}
+	}
+
+	/**
+	 * Releases the tile set images of a map dropped from the cache, unless
+	 * some other cached map still uses them, and tells the listeners.
+	 */
+	private void evict(int level, LoadedMap loaded) {
+		for (String ref : loaded.imageRefs) {
+			int users = tileSetImageUsers.get(ref) - 1;
+			if (users > 0) {
+				tileSetImageUsers.put(ref, users);
+				continue;
+			}
+			tileSetImageUsers.remove(ref);
+			Image image = tileSetImages.remove(ref);
+			try {
+				image.destroy();
+			}
+			catch (SlickException e) {
+				Log.warn("Failed to destroy tile set image " + ref);
+			}
+		}
+
+		for (MapEvictionListener listener : evictionListeners) {
+			listener.mapEvicted(level, loaded.map);
+		}
+		Log.info("Dropped level " + level + " from the cache");
+	}
+
+	/**
+	 * A helper to load a single map, without uploading anything. The compiled
+	 * level is used if there is one and it was compiled from the current TMX
+	 * file, otherwise the TMX file is parsed. Called on worker threads, so
+	 * this must not touch the state of the container.
+	 */
+	private LoadedMap loadMap(int level) throws SlickException {
+		String mapName = Integer.toString(level);
+		if (level >= 0 && level <= 9) {
+			// Keep map file name zero padded if necessary
+			mapName = "0" + mapName;
+		}
+
+		// The TMX file is read even when the level has been compiled, to
+		// check that the compiled level isn't out of date. Only a compiled
+		// level is needed, though.
+		String tmxRef = LEVEL_DIR + "/" + mapName + ".tmx";
+		byte[] tmx = null;
+		if (ResourceLoader.resourceExists(tmxRef)) {
+			tmx = readFully(tmxRef);
+		}
+
+		LoadedMap loaded =
+			loadCompiledMap(LEVEL_DIR + "/" + mapName + CompiledLevel.EXTENSION,
+					tmx);
+		if (loaded != null) {
+			return loaded;
+		}
+		if (tmx == null) {
+			throw new SlickException("Level " + level + " was not found");
+		}
+
+		loaded = new LoadedMap();
+		loaded.map =
+			new TiledMapPlus(new ByteArrayInputStream(tmx), LEVEL_DIR);
+		if (loadTileSets) {
+			decodeTileSetImages(tmx, loaded);
+		}
+		return loaded;
+	}
+
+	/**
+	 * A helper to load a compiled level. Returns <code>null</code> if the
+	 * level hasn't been compiled, the compiled level can't be used or it was
+	 * compiled from another version of the given TMX file, so that the TMX
+	 * file is used instead.
+	 */
+	private LoadedMap loadCompiledMap(String ref, byte[] tmx)
+			throws SlickException {
+		CompiledTiledMap map;
+		try {
+			ByteBuffer buffer = CompiledLevel.read(ref);
+			if (buffer == null) {
+				return null;
+			}
+			map = new CompiledTiledMap(buffer, LEVEL_DIR);
+		}
+		catch (IOException e) {
+			Log.warn("Failed to read " + ref + ", using the TMX file instead");
+			return null;
+		}
+		catch (SlickException e) {
+			Log.warn("Can't use " + ref + ", using the TMX file instead: "
+					+ e.getMessage());
+			return null;
+		}
+		if (tmx != null
+				&& map.getSourceChecksum() != CompiledLevel.checksum(tmx)) {
+			Log.warn(ref + " is out of date, using the TMX file instead. "
+					+ "Run the compile-levels target to update it.");
+			return null;
+		}
+
+		LoadedMap loaded = new LoadedMap();
+		loaded.map = map;
+		if (loadTileSets) {
+			for (int i = 0; i < map.getTileSetCount(); i++) {
+				decodeTileSetImage(loaded,
+						LEVEL_DIR + "/" + map.getTileSetImageSource(i),
+						map.getTileSetTransparentColor(i));
+			}
+		}
+		return loaded;
+	}
 
-		if (map == null) {
-			Log.warn("A null map was stored in TiledMapPlusContainer for level "
-					+ level);
+	/** A helper to read a whole resource into memory */
+	private static byte[] readFully(String ref) throws SlickException {
+		InputStream in = ResourceLoader.getResourceAsStream(ref);
+		try {
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					out.write(buffer, 0, read);
+				}
+				return out.toByteArray();
+			}
+			finally {
+				in.close();
+			}
 		}
+		catch (IOException e) {
+			throw new SlickException("Failed to read " + ref, e);
+		}
+	}
+
+	/**
+	 * Finds the images of the tile sets of the given map file, in the same
+	 * order <code>TiledMap</code> stores the tile sets, and decodes them.
+	 */
+	private static void decodeTileSetImages(byte[] tmx, LoadedMap loaded)
+			throws SlickException {
+		try {
+			DocumentBuilder builder =
+				DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			Element root =
+				builder.parse(new ByteArrayInputStream(tmx))
+						.getDocumentElement();
+
+			NodeList sets = root.getElementsByTagName("tileset");
+			for (int i = 0; i < sets.getLength(); i++) {
+				Element set = (Element) sets.item(i);
+
+				// The tile set may be stored in a file of its own
+				String source = set.getAttribute("source");
+				if (source.length() > 0) {
+					byte[] tsx = readFully(LEVEL_DIR + "/" + source);
+					set =
+						builder.parse(new ByteArrayInputStream(tsx))
+								.getDocumentElement();
+				}
+
+				Element image =
+					(Element) set.getElementsByTagName("image").item(0);
+				String trans = image.getAttribute("trans");
+				decodeTileSetImage(loaded,
+						LEVEL_DIR + "/" + image.getAttribute("source"),
+						trans.length() > 0 ? Integer.parseInt(trans, 16) : -1);
+			}
+		}
+		catch (SlickException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new SlickException("Failed to decode tile set images", e);
+		}
+	}
+
+	/**
+	 * Decodes a single tile set image of the given map.
+	 *
+	 * @param loaded
+	 *            the map to add the decoded image to
+	 * @param ref
+	 *            the image to decode
+	 * @param trans
+	 *            the rgb-color to make transparent or -1 for none
+	 */
+	private static void decodeTileSetImage(LoadedMap loaded, String ref,
+			int trans) throws SlickException {
+		// The color to make transparent, the same way TileSet does.
+		int[] transparent = null;
+		if (trans >= 0) {
+			transparent =
+				new int[] { (trans >> 16) & 0xff, (trans >> 8) & 0xff,
+						trans & 0xff };
+		}
+
+		loaded.imageRefs.add(ref);
+		try {
+			loaded.imageData.add(ImageDecoder.decode(ref, transparent));
+		}
+		catch (IOException e) {
+			throw new SlickException("Failed to decode " + ref, e);
+		}
+	}
+
+	/**
+	 * Uploads the decoded tile set images of the given map and hands them to
+	 * its tile sets. Must be called on the render thread.
+	 */
+	private void setTileSetImages(LoadedMap loaded) throws SlickException {
+		TiledMapPlus map = loaded.map;
+		if (map.getTileSetCount() != loaded.imageRefs.size()) {
+			throw new SlickException("Found " + loaded.imageRefs.size()
+					+ " tile set images for " + map.getTileSetCount()
+					+ " tile sets");
+		}
+
+		for (int i = 0; i < map.getTileSetCount(); i++) {
+			String ref = loaded.imageRefs.get(i);
+			Image image = tileSetImages.get(ref);
+			if (image == null) {
+				image = new Image(loaded.imageData.get(i), Image.FILTER_NEAREST);
+				tileSetImages.put(ref, image);
+			}
+
+			Integer users = tileSetImageUsers.get(ref);
+			tileSetImageUsers.put(ref, users == null ? 1 : users + 1);
+
+			TileSet tileSet = map.getTileSet(i);
+			tileSet.imageref = ref;
+			tileSet.setTileSetImage(image);
+		}
+
+		// The pixels are in the textures now.
+		loaded.imageData.clear();
+	}
+
+	/**
+	 * A parsed map, the references of its tile set images and the decoded
+	 * images, until they have been uploaded.
+	 */
+	private static class LoadedMap {
+		/** The parsed map, without tile set images */
+		private TiledMapPlus map;
+
+		/** The references of the tile set images, in tile set order */
+		private List<String> imageRefs = new ArrayList<String>();
 
-		return map;
+		/** The decoded tile set images, in tile set order */
+		private List<ImageData> imageData = new ArrayList<ImageData>();
 	}
 }
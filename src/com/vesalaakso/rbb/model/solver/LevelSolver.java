@@ -0,0 +1,465 @@
+package com.vesalaakso.rbb.model.solver;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.newdawn.slick.util.Log;
+
+import com.vesalaakso.rbb.RubberBandBall;
+import com.vesalaakso.rbb.model.Player;
+import com.vesalaakso.rbb.model.ResourceManager;
+import com.vesalaakso.rbb.model.SimulationEngine;
+import com.vesalaakso.rbb.model.SimulationEngine.Outcome;
+import com.vesalaakso.rbb.model.TileMap;
+import com.vesalaakso.rbb.model.TileMapObject;
+
+/**
+ * Finds out whether levels can be completed and with how few shots, by
+ * simulating lots of random shots without a display. The first shot is tried
+ * from random places in the spawn area, and the shots which leave the player
+ * resting in a safe area are continued with another round of random shots,
+ * until some shot sequence completes the level.
+ * <p>
+ * The shots are simulated in parallel. Every worker thread has a
+ * {@link SimulationEngine} of its own, and with it a physics world of its
+ * own, so the only thing the workers share is the map, which is only read.
+ * As the shots are drawn from a seeded random generator, the same settings
+ * always give the same results.
+ *
+ * @author Vesa Laakso
+ */
+public class LevelSolver {
+
+	/** The strongest launch tried by default. */
+	public static final float DEFAULT_MAX_FORCE = 150f;
+
+	/** How many shots are tried per shot count by default. */
+	public static final int DEFAULT_SAMPLES = 4000;
+
+	/** The most shots a solution may have. */
+	private static final int MAX_SHOTS = 4;
+
+	/** How many different resting places are continued from. */
+	private static final int BEAM_WIDTH = 32;
+
+	/** Shots lasting longer than this many steps are given up. */
+	private static final int MAX_STEPS_PER_SHOT = 3600;
+
+	/** Resting places closer than this are considered the same place. */
+	private static final float REST_CELL_SIZE = TileMap.TILE_SIZE;
+
+	/** How many shots a worker simulates at a time. */
+	private static final int BATCH_SIZE = 32;
+
+	/** Runs the simulations. */
+	private final ExecutorService executor;
+
+	/** The engine of each worker thread. */
+	private final ThreadLocal<SimulationEngine> engines;
+
+	/** How many shots are tried per shot count. */
+	private final int samples;
+
+	/** The strongest launch tried. */
+	private final float maxForce;
+
+	/** Draws the shots to try. */
+	private final Random random;
+
+	/** The amount of shot sequences simulated so far. */
+	private long simulatedSequences;
+
+	/**
+	 * Constructs a new solver.
+	 *
+	 * @param resourceManager
+	 *            an initialized resource manager, given to the engines
+	 * @param threadCount
+	 *            the amount of worker threads
+	 * @param samples
+	 *            how many shots to try per shot count
+	 * @param maxForce
+	 *            the strongest launch to try in either axis
+	 * @param seed
+	 *            the seed of the random shots
+	 */
+	public LevelSolver(final ResourceManager resourceManager, int threadCount,
+			int samples, float maxForce, long seed) {
+		this.samples = samples;
+		this.maxForce = maxForce;
+		this.random = new Random(seed);
+
+		executor =
+			Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+				private int count;
+
+				@Override
+				public synchronized Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Level solver " + ++count);
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+		engines = new ThreadLocal<SimulationEngine>() {
+			@Override
+			protected SimulationEngine initialValue() {
+				return new SimulationEngine(resourceManager);
+			}
+		};
+	}
+
+	/**
+	 * Searches for the shortest sequence of shots completing the given map.
+	 *
+	 * @param map
+	 *            the initialized map to solve
+	 * @return the shortest solution found or <code>null</code> if none was
+	 *         found within the maximum amount of shots
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the workers
+	 * @throws ExecutionException
+	 *             if a simulation failed
+	 */
+	public Plan solve(TileMap map) throws InterruptedException,
+			ExecutionException {
+		List<Plan> frontier = new ArrayList<Plan>();
+
+		for (int shots = 1; shots <= MAX_SHOTS; shots++) {
+			List<Plan> candidates = new ArrayList<Plan>(samples);
+			for (int i = 0; i < samples; i++) {
+				if (shots == 1) {
+					candidates.add(randomFirstShot(map));
+				}
+				else {
+					Plan from = frontier.get(i % frontier.size());
+					candidates.add(from.withShot(randomForce(), randomForce()));
+				}
+			}
+
+			Result[] results = simulateAll(map, candidates);
+
+			Set<Long> restingPlaces = new HashSet<Long>();
+			List<Plan> next = new ArrayList<Plan>();
+			for (int i = 0; i < results.length; i++) {
+				Result result = results[i];
+				if (result == null) {
+					continue;
+				}
+				if (result.outcome == Outcome.COMPLETED) {
+					return candidates.get(i);
+				}
+				if (result.outcome == Outcome.RUNNING
+						&& next.size() < BEAM_WIDTH
+						&& restingPlaces.add(restingPlace(result))) {
+					next.add(candidates.get(i));
+				}
+			}
+
+			if (next.isEmpty()) {
+				// Nowhere safe to continue from.
+				return null;
+			}
+			frontier = next;
+		}
+		return null;
+	}
+
+	/** A helper to draw a random first shot from the spawn area */
+	private Plan randomFirstShot(TileMap map) {
+		TileMapObject spawn = map.getSpawnArea();
+		float r = Player.RADIUS;
+		float x = spawn.x + r + random.nextFloat() * (spawn.width - 2 * r);
+		float y = spawn.y + r + random.nextFloat() * (spawn.height - 2 * r);
+		return new Plan(x, y, new float[0]).withShot(randomForce(),
+				randomForce());
+	}
+
+	/** A helper to draw a random force of a launch */
+	private float randomForce() {
+		return (random.nextFloat() * 2 - 1) * maxForce;
+	}
+
+	/** A helper to identify the resting place of the player */
+	private static long restingPlace(Result result) {
+		long cellX = (long) Math.floor(result.x / REST_CELL_SIZE);
+		long cellY = (long) Math.floor(result.y / REST_CELL_SIZE);
+		return (cellX << 32) ^ (cellY & 0xffffffffL);
+	}
+
+	/**
+	 * A helper to simulate the given plans in parallel. Plans which couldn't
+	 * be played through get a <code>null</code> result.
+	 */
+	private Result[] simulateAll(final TileMap map, final List<Plan> plans)
+			throws InterruptedException, ExecutionException {
+		final Result[] results = new Result[plans.size()];
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+
+		for (int start = 0; start < plans.size(); start += BATCH_SIZE) {
+			final int from = start;
+			final int to = Math.min(start + BATCH_SIZE, plans.size());
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					SimulationEngine engine = engines.get();
+					for (int i = from; i < to; i++) {
+						// Every index is written by one task only.
+						results[i] = simulate(engine, map, plans.get(i));
+					}
+					return null;
+				}
+			}));
+		}
+
+		// Waiting for the futures also makes the results visible here.
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		simulatedSequences += plans.size();
+		return results;
+	}
+
+	/** A helper to play a single plan through with the given engine */
+	private static Result simulate(SimulationEngine engine, TileMap map,
+			Plan plan) {
+		if (engine.getMap() != map) {
+			engine.loadMap(map);
+		}
+		else {
+			engine.restart();
+		}
+
+		if (!engine.placePlayer(plan.placeX, plan.placeY)) {
+			return null;
+		}
+
+		Player player = engine.getPlayer();
+		for (int i = 0; i < plan.getShotCount(); i++) {
+			if (!engine.launch(plan.getForceX(i), plan.getForceY(i))) {
+				return null;
+			}
+			engine.runUntilStopped(MAX_STEPS_PER_SHOT);
+			if (engine.getOutcome() != Outcome.RUNNING) {
+				break;
+			}
+			if (!player.isReadyForLaunch()) {
+				// Still moving after all this time, give up.
+				return null;
+			}
+		}
+
+		return new Result(engine.getOutcome(), player.getX(), player.getY());
+	}
+
+	/**
+	 * Gets the amount of shot sequences simulated so far. A sequence counts
+	 * once however many shots it has.
+	 *
+	 * @return the amount of simulated shot sequences
+	 */
+	public long getSimulatedSequences() {
+		return simulatedSequences;
+	}
+
+	/** Stops the worker threads. */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * A sequence of shots: where the player is placed and the forces of the
+	 * launches.
+	 */
+	public static class Plan {
+		/** The x-coordinate the player is placed to. */
+		private final float placeX;
+
+		/** The y-coordinate the player is placed to. */
+		private final float placeY;
+
+		/** The x- and y-forces of each launch, one after another. */
+		private final float[] forces;
+
+		/** Constructs a new plan, the forces are not copied. */
+		Plan(float placeX, float placeY, float[] forces) {
+			this.placeX = placeX;
+			this.placeY = placeY;
+			this.forces = forces;
+		}
+
+		/** Gets a copy of this plan with one more launch at the end. */
+		Plan withShot(float forceX, float forceY) {
+			float[] more = new float[forces.length + 2];
+			System.arraycopy(forces, 0, more, 0, forces.length);
+			more[forces.length] = forceX;
+			more[forces.length + 1] = forceY;
+			return new Plan(placeX, placeY, more);
+		}
+
+		/**
+		 * Gets the x-coordinate the player is placed to.
+		 *
+		 * @return x-coordinate in the world
+		 */
+		public float getPlaceX() {
+			return placeX;
+		}
+
+		/**
+		 * Gets the y-coordinate the player is placed to.
+		 *
+		 * @return y-coordinate in the world
+		 */
+		public float getPlaceY() {
+			return placeY;
+		}
+
+		/**
+		 * Gets the amount of launches.
+		 *
+		 * @return the amount of shots
+		 */
+		public int getShotCount() {
+			return forces.length / 2;
+		}
+
+		/**
+		 * Gets the x-force of the given launch.
+		 *
+		 * @param index
+		 *            the index of the launch
+		 * @return the power of the force in x-axis
+		 */
+		public float getForceX(int index) {
+			return forces[index * 2];
+		}
+
+		/**
+		 * Gets the y-force of the given launch.
+		 *
+		 * @param index
+		 *            the index of the launch
+		 * @return the power of the force in y-axis
+		 */
+		public float getForceY(int index) {
+			return forces[index * 2 + 1];
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format(Locale.US, "place (%.1f, %.1f)", placeX,
+					placeY));
+			for (int i = 0; i < getShotCount(); i++) {
+				sb.append(String.format(Locale.US, ", launch (%.2f, %.2f)",
+						getForceX(i), getForceY(i)));
+			}
+			return sb.toString();
+		}
+	}
+
+	/** How a simulated plan ended. */
+	private static class Result {
+		/** The outcome of the map after the last shot. */
+		final Outcome outcome;
+
+		/** The x-coordinate of the player at the end. */
+		final float x;
+
+		/** The y-coordinate of the player at the end. */
+		final float y;
+
+		/** Constructs a new result. */
+		Result(Outcome outcome, float x, float y) {
+			this.outcome = outcome;
+			this.x = x;
+			this.y = y;
+		}
+	}
+
+	/**
+	 * Solves the given levels, or all of them, and prints the smallest amount
+	 * of shots found for each. Options: <code>-samples n</code> for the
+	 * amount of shots tried per shot count, <code>-force f</code> for the
+	 * strongest launch and <code>-threads n</code> for the amount of worker
+	 * threads.
+	 *
+	 * @param args
+	 *            the options and the levels to solve
+	 * @throws Exception
+	 *             if the resources couldn't be loaded or a simulation failed
+	 */
+	public static void main(String[] args) throws Exception {
+		int samples = DEFAULT_SAMPLES;
+		float maxForce = DEFAULT_MAX_FORCE;
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<Integer> levels = new ArrayList<Integer>();
+
+		for (int i = 0; i < args.length; i++) {
+			if ("-samples".equals(args[i]) && i + 1 < args.length) {
+				samples = Integer.parseInt(args[++i]);
+			}
+			else if ("-force".equals(args[i]) && i + 1 < args.length) {
+				maxForce = Float.parseFloat(args[++i]);
+			}
+			else if ("-threads".equals(args[i]) && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			}
+			else {
+				levels.add(Integer.parseInt(args[i]));
+			}
+		}
+		if (levels.isEmpty()) {
+			for (int level = 1; level <= RubberBandBall.LEVEL_COUNT; level++) {
+				levels.add(level);
+			}
+		}
+
+		// Don't let the simulation info drown the results.
+		Log.setVerbose(false);
+
+		ResourceManager resourceManager = new ResourceManager();
+		resourceManager.initHeadless();
+
+		System.out.println(String.format(Locale.US,
+				"Trying %d shots per shot count with forces up to %.1f "
+						+ "on %d threads", samples, maxForce, threads));
+
+		for (int level : levels) {
+			TileMap map = new TileMap(level, resourceManager);
+			map.init();
+
+			LevelSolver solver =
+				new LevelSolver(resourceManager, threads, samples, maxForce,
+						level);
+			long start = System.nanoTime();
+			Plan plan;
+			try {
+				plan = solver.solve(map);
+			}
+			finally {
+				solver.shutdown();
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			String found =
+				plan == null ? "no solution within " + MAX_SHOTS + " shots"
+						: plan.getShotCount() + " shots: " + plan;
+			System.out.println(String.format(Locale.US,
+					"Level %d: %s (%d sequences in %.1f s, %.0f per second)",
+					level, found, solver.getSimulatedSequences(), seconds,
+					solver.getSimulatedSequences() / seconds));
+		}
+	}
+}
@@ -3,6 +3,7 @@ package com.vesalaakso.rbb.states;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.newdawn.slick.Color;
 import org.newdawn.slick.GameContainer;
 import org.newdawn.slick.Graphics;
 import org.newdawn.slick.SlickException;
@@ -15,6 +16,8 @@ import org.newdawn.slick.state.transition.Transition;
 import com.vesalaakso.rbb.RubberBandBall;
 import com.vesalaakso.rbb.model.ResourceManager;
 import com.vesalaakso.rbb.model.resources.Font;
+import com.vesalaakso.rbb.view.TextBatch;
+import com.vesalaakso.rbb.view.TextRun;
 
 /**
  * An abstract class for variety of menus
@@ -51,6 +54,15 @@ public abstract class AbstractMenuState extends BasicGameState {
 	/** The state to move to on next update call. */
 	private State moveToState;
 
+	/** The texts of the menu items are drawn with this. */
+	private final TextBatch textBatch = new TextBatch();
+
+	/**
+	 * The color of the texts, read once as <code>Graphics</code> gives a new
+	 * copy of it every time.
+	 */
+	private Color textColor;
+
 	/**
 	 * Constructs a new menu state and associates it with the given resource
 	 * manager.
@@ -103,20 +115,17 @@ public abstract class AbstractMenuState extends BasicGameState {
 		// Background.
 		renderBackground(g, resourceManager);
 
-		g.setFont(resourceManager.getFont(Font.MENU_ITEM));
-
-		float lineHeight = g.getFont().getLineHeight();
+		float lineHeight =
+			resourceManager.getFont(Font.MENU_ITEM).getLineHeight();
+		if (textColor == null) {
+			textColor = g.getColor();
+		}
 
 		for (int i = 0, size = menuItems.size(); i < size; i++) {
 			MenuItem item = menuItems.get(i);
 
 			// If we've currently selected this item, hilight it.
-			if (item == selected) {
-				g.setFont(resourceManager.getFont(Font.MENU_ITEM_HILIGHTED));
-			}
-			else {
-				g.setFont(resourceManager.getFont(Font.MENU_ITEM));
-			}
+			TextRun run = item == selected ? item.hilightedRun : item.run;
 
 			float topY = ITEM_START_Y + i * ITEM_OFFSET_Y;
 
@@ -124,8 +133,9 @@ public abstract class AbstractMenuState extends BasicGameState {
 
 			float textX = ITEM_X + (ITEM_WIDTH - item.textWidth) / 2;
 			float textY = topY + (ITEM_HEIGHT - lineHeight) / 2;
-			g.drawString(item.text, textX, textY);
+			textBatch.add(run, textX, textY, textColor);
 		}
+		textBatch.flush();
 	}
 
 	@Override
@@ -207,6 +217,10 @@ public abstract class AbstractMenuState extends BasicGameState {
 		final State nextState;
 		/** The width of the given text in pixels */
 		final float textWidth;
+		/** The text laid out in the menu item font */
+		final TextRun run = new TextRun();
+		/** The text laid out in the hilighted menu item font */
+		final TextRun hilightedRun = new TextRun();
 		/** The numerical ID for this menu */
 		final int id;
 
@@ -224,8 +238,10 @@ public abstract class AbstractMenuState extends BasicGameState {
 			this.id = id;
 			this.text = text;
 			this.nextState = nextState;
-			this.textWidth =
-				resourceManager.getFont(Font.MENU_ITEM).getWidth(text);
+			run.set(resourceManager.getFont(Font.MENU_ITEM), text);
+			hilightedRun.set(resourceManager.getFont(Font.MENU_ITEM_HILIGHTED),
+					text);
+			this.textWidth = run.getWidth();
 		}
 	}
 }
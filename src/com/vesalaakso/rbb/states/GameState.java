@@ -1,5 +1,6 @@
 package com.vesalaakso.rbb.states;
 
+import java.io.File;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -19,6 +20,7 @@ import com.vesalaakso.rbb.controller.CameraController;
 import com.vesalaakso.rbb.controller.DebugKeyController;
 import com.vesalaakso.rbb.controller.InputMaster;
 import com.vesalaakso.rbb.controller.MapChanger;
+import com.vesalaakso.rbb.controller.MapResultListener;
 import com.vesalaakso.rbb.controller.MenuKeyController;
 import com.vesalaakso.rbb.controller.PlayerListener;
 import com.vesalaakso.rbb.controller.PlayerPositioner;
@@ -31,27 +33,38 @@ import com.vesalaakso.rbb.model.Physics;
 import com.vesalaakso.rbb.model.Player;
 import com.vesalaakso.rbb.model.ResourceManager;
 import com.vesalaakso.rbb.model.RubberBand;
+import com.vesalaakso.rbb.model.SimulationEngine.Outcome;
 import com.vesalaakso.rbb.model.TileMapContainer;
 import com.vesalaakso.rbb.model.TileMapObject;
+import com.vesalaakso.rbb.model.TrajectoryPredictor;
+import com.vesalaakso.rbb.model.analytics.Analytics;
+import com.vesalaakso.rbb.model.analytics.EventType;
 import com.vesalaakso.rbb.model.exceptions.MapException;
+import com.vesalaakso.rbb.model.resources.Audio;
+import com.vesalaakso.rbb.model.replay.ReplayRecorder;
 import com.vesalaakso.rbb.view.BackgroundPainter;
 import com.vesalaakso.rbb.view.DebugPrintPainter;
 import com.vesalaakso.rbb.view.GameStatusPainter;
 import com.vesalaakso.rbb.view.PainterContainer;
 import com.vesalaakso.rbb.view.ParticleSystemPainter;
+import com.vesalaakso.rbb.view.PhysicsMetricsPainter;
 import com.vesalaakso.rbb.view.PhysicsPainter;
 import com.vesalaakso.rbb.view.PlayerPainter;
 import com.vesalaakso.rbb.view.RubberBandPainter;
 import com.vesalaakso.rbb.view.TileMapAreaPainter;
 import com.vesalaakso.rbb.view.TileMapBackLayerPainter;
 import com.vesalaakso.rbb.view.TileMapOverLayerPainter;
+import com.vesalaakso.rbb.view.WorldView;
 
 /**
  * The state which handles the game logic.
  * 
  * @author Vesa Laakso
  */
-public class GameState extends BasicGameState {
+public class GameState extends BasicGameState implements MapResultListener {
+
+	/** The directory the analytics events are written to. */
+	public static final String ANALYTICS_DIR = "analytics";
 
 	/**
 	 * The current map is always stored in this <code>TileMapContainer</code>.
@@ -60,6 +73,9 @@ public class GameState extends BasicGameState {
 	 */
 	private final TileMapContainer mapContainer = new TileMapContainer();
 
+	/** The camera this game is viewed through. */
+	private final Camera camera = new Camera();
+
 	/** The current game status is stored in this attribute. */
 	private final GameStatus gameStatus;
 
@@ -93,9 +109,19 @@ public class GameState extends BasicGameState {
 	/** The player is controlled by this rubber band! */
 	private RubberBand rubberBand;
 
+	/** Predicts where the player flies when the rubber band is let go. */
+	private TrajectoryPredictor trajectoryPredictor;
+
 	/** Of course we need physics, here it is! */
 	private Physics physics;
 
+	/** Records the tries so that they can be replayed. */
+	private ReplayRecorder replayRecorder;
+
+	/** Records what happens in the levels, for the heatmaps. */
+	private final Analytics analytics =
+		new Analytics(new File(ANALYTICS_DIR));
+
 	/** Resources are always a nice addition, take this! */
 	private ResourceManager resourceManager;
 
@@ -137,23 +163,30 @@ public class GameState extends BasicGameState {
 		this.gameStatus = gameStatus;
 		this.mapChanger =
 			new MapChanger(mapContainer, gameStatus, resourceManager);
-		this.painterContainer = new PainterContainer(resourceManager);
+		this.painterContainer = new PainterContainer(resourceManager, camera);
 	}
 
 	/** A helper method which adds all the painters in the correct order. */
 	private void addPainters() {
-		painterContainer.addPainter(new BackgroundPainter());
-		painterContainer.addPainter(new TileMapAreaPainter(mapContainer));
-		painterContainer.addPainter(new TileMapBackLayerPainter(mapContainer));
+		WorldView view = painterContainer.getWorldView();
+		painterContainer.addPainter(new BackgroundPainter(camera));
+		painterContainer.addPainter(new TileMapAreaPainter(mapContainer, view));
+		painterContainer.addPainter(new TileMapBackLayerPainter(mapContainer,
+				view));
 		painterContainer.addPainter(new PlayerPainter(player));
-		painterContainer.addPainter(new TileMapOverLayerPainter(mapContainer));
-		painterContainer.addPainter(new RubberBandPainter(rubberBand));
+		painterContainer.addPainter(new TileMapOverLayerPainter(mapContainer,
+				view));
+		painterContainer.addPainter(new RubberBandPainter(rubberBand,
+				trajectoryPredictor));
 		painterContainer.addPainter(new ParticleSystemPainter(resourceManager
-				.getEffectManager()));
-		painterContainer.addPainter(new GameStatusPainter(gameStatus));
-		painterContainer.addDebugPainter(new PhysicsPainter(physics));
-		painterContainer
-				.addDebugPainter(new DebugPrintPainter(physics, player));
+				.getEffectManager(), view));
+		painterContainer.addPainter(new GameStatusPainter(gameStatus,
+				mapContainer));
+		painterContainer.addDebugPainter(new PhysicsPainter(physics, view));
+		painterContainer.addDebugPainter(new DebugPrintPainter(physics, player,
+				camera));
+		painterContainer.addDebugPainter(new PhysicsMetricsPainter(physics
+				.getMetrics()));
 	}
 
 	/**
@@ -162,13 +195,14 @@ public class GameState extends BasicGameState {
 	 */
 	private void addControllers(Input input) {
 		inputMaster = new InputMaster(input);
-		inputMaster
-				.addMouseListener(new CameraController(player, mapContainer));
+		inputMaster.addMouseListener(new CameraController(player, mapContainer,
+				camera));
 		inputMaster.addKeyListener(new MenuKeyController(this));
 		inputMaster.addMouseListener(new RubberBandController(rubberBand));
-		inputMaster.addKeyListener(new DebugKeyController(this, player));
-		inputMaster
-				.addMouseListener(new PlayerPositioner(player, mapContainer));
+		inputMaster.addKeyListener(new DebugKeyController(this, player,
+				physics.getMetrics(), replayRecorder, camera));
+		inputMaster.addMouseListener(new PlayerPositioner(player,
+				mapContainer, replayRecorder, camera));
 	}
 
 	/**
@@ -180,14 +214,19 @@ public class GameState extends BasicGameState {
 		resetables.add(player);
 		resetables.add(rubberBand);
 		resetables.add(physics);
+		resetables.add(playerListener);
+		// The recorder counts steps from the physics reset.
+		resetables.add(replayRecorder);
+		resetables.add(trajectoryPredictor);
 		resetables.add(resourceManager.getEffectManager());
 	}
 
 	/** A helper method which adds all updateables. */
 	private void addUpdateables() {
 		updateables.add(inputMaster);
+		updateables.add(trajectoryPredictor);
+		// The player listener is updated by the physics after every step.
 		updateables.add(physics);
-		updateables.add(playerListener);
 		updateables.add(resourceManager.getEffectManager());
 	}
 
@@ -209,13 +248,20 @@ public class GameState extends BasicGameState {
 
 		// Reset camera at the middle of the spawn area
 		TileMapObject spawn = mapContainer.getMap().getSpawnArea();
-		Camera cam = Camera.get();
-		cam.setPosition(spawn.x + spawn.width / 2, spawn.y + spawn.height / 2);
+		camera.setPosition(spawn.x + spawn.width / 2, spawn.y + spawn.height / 2);
 
 		for (Resetable r : resetables) {
 			r.reset();
 		}
 
+		analytics.setLevel(mapContainer.getMap().getLevel());
+
+		// Levels can have music of their own, crossfaded from the last one.
+		String music =
+			mapContainer.getMap().getTiledMap()
+					.getMapProperty("music", Audio.MUSIC_BACKGROUND.fileName);
+		resourceManager.getMusicPlayer().play(music);
+
 		// This has been done now.
 		renderInitializedBeforeEnter = true;
 	}
@@ -282,10 +328,17 @@ public class GameState extends BasicGameState {
 	 * @param reason
 	 *            the reason why game ended
 	 */
+	@Override
 	public void failedMap(String reason) {
+		if (isLeavingMap()) {
+			// Already failed or completed on an earlier step of this frame.
+			return;
+		}
 		// TODO: something better and moar graphical.
 		System.out.println("GAME OVER -- " + reason);
 		System.out.println(gameStatus);
+		replayRecorder.finish(Outcome.FAILED, player.getX(), player.getY());
+		analytics.record(EventType.FAILED, player.getX(), player.getY(), 0, 0);
 		resetLevel();
 		gameStatus.onMapFailed();
 	}
@@ -293,14 +346,27 @@ public class GameState extends BasicGameState {
 	/**
 	 * Called when a player successfully completes the map.
 	 */
+	@Override
 	public void completedMap() {
+		if (isLeavingMap()) {
+			// Already failed or completed on an earlier step of this frame.
+			return;
+		}
 		// TODO: something better and moar graphical.
 		System.out.println("Yay!");
 		System.out.println(gameStatus);
+		replayRecorder.finish(Outcome.COMPLETED, player.getX(), player.getY());
+		analytics.record(EventType.COMPLETED, player.getX(), player.getY(), 0,
+				0);
 		changeToNextLevel();
 		gameStatus.onMapCompleted();
 	}
 
+	/** A helper to check if the map is left on the next update */
+	private boolean isLeavingMap() {
+		return stopAtNextUpdate || changeToLevel > 0;
+	}
+
 	/**
 	 * From slick: Initialise the state. It should load any resources it needs
 	 * at this stage
@@ -317,17 +383,30 @@ public class GameState extends BasicGameState {
 		// Construct the object representing the player
 		player = new Player(mapContainer, gameStatus);
 
+		// Start writing down what happens
+		analytics.start();
+
 		// Physics world, too
 		physics =
 			new Physics(player, resourceManager.getEffectManager(),
 					mapContainer);
+		physics.setAnalytics(analytics);
+
+		// Record every try
+		replayRecorder = new ReplayRecorder(mapContainer, physics);
 
 		// Add the rubber band to the game
-		rubberBand = new RubberBand(player, physics);
+		rubberBand =
+			new RubberBand(player, physics, replayRecorder, camera, analytics);
+
+		// And a look into the future for it
+		trajectoryPredictor =
+			new TrajectoryPredictor(rubberBand, player, physics, mapContainer);
 
 		// The player listener. Oh yes.
 		playerListener =
-			new PlayerListener(mapContainer, player, physics, this);
+			new PlayerListener(mapContainer, player, physics, this, analytics);
+		physics.setStepListener(playerListener);
 
 		// Add the painters next
 		addPainters();
@@ -361,7 +440,7 @@ public class GameState extends BasicGameState {
 		// Initialize some positions before rendering, because of transitions.
 		resetBeforeRender();
 
-		painterContainer.paintAll(g, this);
+		painterContainer.paintAll(g, isDebugModeToggled());
 	}
 
 	@Override
@@ -11,7 +11,7 @@ import com.vesalaakso.rbb.model.ResourceManager;
 
 /**
  * A class used to load the resources and display a nice string telling what is
- * happening.
+ * happening and how far the loading is.
  * 
  * @author Vesa Laakso
  */
@@ -20,9 +20,18 @@ public class LoadState extends BasicGameState {
 	/** The resource manager to initialize */
 	private ResourceManager resourceManager;
 
+	/**
+	 * How long to spend finishing loaded resources on every update, so that
+	 * the progress keeps being drawn.
+	 */
+	private static final long MAX_LOAD_MILLIS_PER_UPDATE = 50;
+
 	/** True if the initial "please wait" string has been rendered. */
 	private boolean statusRendered;
 
+	/** True if loading the resources has been started. */
+	private boolean loadingStarted;
+
 	/**
 	 * Constructs the load state and associates it with the given resource
 	 * manager.
@@ -44,7 +53,8 @@ public class LoadState extends BasicGameState {
 	public void render(GameContainer container, StateBasedGame game, Graphics g)
 			throws SlickException {
 
-		String loadStr = "Please wait, loading resources...";
+		int percent = Math.round(resourceManager.getLoadingProgress() * 100);
+		String loadStr = "Please wait, loading resources... " + percent + "%";
 
 		float textWidth = g.getFont().getWidth(loadStr);
 
@@ -57,12 +67,17 @@ public class LoadState extends BasicGameState {
 	@Override
 	public void update(GameContainer container, StateBasedGame game, int delta)
 			throws SlickException {
-		if (statusRendered) {
-			// Initialize resource manager after the "Please wait" text has been
+		if (!statusRendered) {
+			return;
+		}
+		if (!loadingStarted) {
+			// Start loading resources after the "Please wait" text has been
 			// rendered.
-			resourceManager.init();
-
-			// Then change to the main menu state.
+			resourceManager.startLoading();
+			loadingStarted = true;
+		}
+		else if (resourceManager.continueLoading(MAX_LOAD_MILLIS_PER_UPDATE)) {
+			// Everything is loaded, change to the main menu state.
 			game.enterState(State.MAIN_MENU.ordinal());
 		}
 	}
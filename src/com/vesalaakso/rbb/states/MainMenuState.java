@@ -5,11 +5,11 @@ import java.util.List;
 import org.newdawn.slick.GameContainer;
 import org.newdawn.slick.Graphics;
 import org.newdawn.slick.Image;
-import org.newdawn.slick.Music;
 import org.newdawn.slick.SlickException;
 import org.newdawn.slick.state.StateBasedGame;
 
 import com.vesalaakso.rbb.model.ResourceManager;
+import com.vesalaakso.rbb.model.audio.MusicPlayer;
 import com.vesalaakso.rbb.model.resources.Audio;
 import com.vesalaakso.rbb.model.resources.Gfx;
 
@@ -51,9 +51,9 @@ public class MainMenuState extends AbstractMenuState {
 		menuItems.add(new MenuItem(EXIT_BUTTON, "Exit", null));
 
 		// MUSIC!
-		Music m = resourceManager.getMusic(Audio.MUSIC_BACKGROUND);
-		m.loop();
+		MusicPlayer m = resourceManager.getMusicPlayer();
 		m.setVolume(0.33f);
+		m.play(Audio.MUSIC_BACKGROUND.fileName);
 	}
 
 	@Override
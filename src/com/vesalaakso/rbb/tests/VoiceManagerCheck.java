@@ -0,0 +1,213 @@
+package com.vesalaakso.rbb.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vesalaakso.rbb.model.audio.SoundBackend;
+import com.vesalaakso.rbb.model.audio.VoiceManager;
+import com.vesalaakso.rbb.model.resources.Audio;
+
+/**
+ * Drives a {@link VoiceManager} through a fake {@link SoundBackend} which only
+ * records what it is asked to do, and checks that the requests are merged,
+ * re-triggering is limited, voices are stolen and the volume is capped the
+ * way they should be. Exits with a non-zero status if anything is off. Needs
+ * neither a display nor a sound device.
+ *
+ * @author Vesa Laakso
+ */
+public class VoiceManagerCheck {
+
+	/** The length of a single frame in milliseconds. */
+	private static final int FRAME_DELTA = 16;
+
+	/** The amount of checks that failed. */
+	private int failures;
+
+	/** A helper to report a single check */
+	private void check(boolean ok, String description) {
+		System.out.println((ok ? "OK       " : "FAILED   ") + description);
+		if (!ok) {
+			failures++;
+		}
+	}
+
+	/** A helper to compare volumes, which are sums of floats */
+	private static boolean same(float a, float b) {
+		return Math.abs(a - b) < 1e-5f;
+	}
+
+	/** Requests of the same sound before an update are played as one. */
+	private void checkMerging() {
+		FakeBackend backend = new FakeBackend();
+		VoiceManager voices = new VoiceManager(backend);
+
+		voices.play(Audio.SOUND_HIT_NORMAL, 1.2f, 0.4f);
+		voices.play(Audio.SOUND_HIT_NORMAL, 0.8f, 0.6f);
+		voices.play(Audio.SOUND_HIT_NORMAL, 1.0f, 0.2f);
+		voices.update(FRAME_DELTA);
+
+		check(backend.plays.size() == 1,
+				"three requests in a frame start a single voice");
+		Play play = backend.plays.get(0);
+		check(play.pitch == 0.8f, "the merged play has the loudest pitch");
+		check(same(play.volume, 0.6f + 0.25f * (0.4f + 0.2f)),
+				"the merged play is louder than the loudest request");
+		check(voices.getMergedCount() == 2, "two requests were merged");
+	}
+
+	/** The same sound isn't started again within the re-trigger interval. */
+	private void checkRetrigger() {
+		FakeBackend backend = new FakeBackend();
+		VoiceManager voices = new VoiceManager(backend);
+
+		voices.play(Audio.SOUND_HIT_SMALL, 1, 1);
+		voices.update(FRAME_DELTA);
+		check(backend.plays.size() == 1, "the first request plays at once");
+
+		voices.play(Audio.SOUND_HIT_SMALL, 1, 1);
+		int waited = 0;
+		while (backend.plays.size() == 1 && waited < 1000) {
+			voices.update(FRAME_DELTA);
+			waited += FRAME_DELTA;
+		}
+		check(backend.plays.size() == 2, "the second request plays later");
+		check(waited >= VoiceManager.DEFAULT_MIN_RETRIGGER_MILLIS
+				&& waited < VoiceManager.DEFAULT_MIN_RETRIGGER_MILLIS
+						+ FRAME_DELTA, "the second request waited "
+				+ waited + " ms for the "
+				+ VoiceManager.DEFAULT_MIN_RETRIGGER_MILLIS + " ms interval");
+
+		voices.play(Audio.SOUND_HIT_BIG, 1, 1);
+		voices.update(FRAME_DELTA);
+		check(backend.plays.size() == 3,
+				"another sound isn't held back by the interval");
+	}
+
+	/** The quietest voice makes room for a louder one, not a quieter one. */
+	private void checkStealing() {
+		FakeBackend backend = new FakeBackend();
+		VoiceManager voices = new VoiceManager(backend);
+
+		float[] volumes = { 0.5f, 0.8f, 0.3f };
+		for (float volume : volumes) {
+			voices.play(Audio.SOUND_HIT_BIG, 1, volume);
+			updateFor(voices, VoiceManager.DEFAULT_MIN_RETRIGGER_MILLIS);
+		}
+		check(backend.playing.size() == VoiceManager.DEFAULT_MAX_VOICES,
+				"all the voices of the sound are playing");
+
+		voices.play(Audio.SOUND_HIT_BIG, 1, 0.6f);
+		updateFor(voices, VoiceManager.DEFAULT_MIN_RETRIGGER_MILLIS);
+		check(backend.stopped.size() == 1
+				&& backend.stopped.get(0) == backend.plays.get(2).voice,
+				"a louder play stops the quietest voice");
+		check(backend.plays.size() == 4, "the louder play is started");
+		check(voices.getStolenCount() == 1, "one voice was stolen");
+
+		voices.play(Audio.SOUND_HIT_BIG, 1, 0.2f);
+		updateFor(voices, VoiceManager.DEFAULT_MIN_RETRIGGER_MILLIS);
+		check(backend.plays.size() == 4 && backend.stopped.size() == 1,
+				"a play quieter than every voice is dropped");
+		check(voices.getDroppedCount() == 1, "one play was dropped");
+
+		// A voice which has ended frees its place without stealing.
+		backend.playing.remove(Integer.valueOf(backend.plays.get(0).voice));
+		voices.play(Audio.SOUND_HIT_BIG, 1, 0.1f);
+		updateFor(voices, VoiceManager.DEFAULT_MIN_RETRIGGER_MILLIS);
+		check(backend.plays.size() == 5 && voices.getStolenCount() == 1,
+				"an ended voice makes room for even a quiet play");
+	}
+
+	/** However many requests are merged, the volume stays under the cap. */
+	private void checkVolumeCap() {
+		FakeBackend backend = new FakeBackend();
+		VoiceManager voices = new VoiceManager(backend);
+
+		for (int i = 0; i < 5; i++) {
+			voices.play(Audio.SOUND_HIT_NORMAL, 1, 1);
+		}
+		voices.update(FRAME_DELTA);
+		check(backend.plays.size() == 1 && same(backend.plays.get(0).volume,
+				1.5f), "five merged requests are capped to volume 1.5");
+	}
+
+	/** A helper to update the manager for at least the given time */
+	private static void updateFor(VoiceManager voices, int millis) {
+		for (int passed = 0; passed < millis; passed += FRAME_DELTA) {
+			voices.update(FRAME_DELTA);
+		}
+	}
+
+	/**
+	 * Runs all the checks.
+	 *
+	 * @param args
+	 *            not used
+	 */
+	public static void main(String[] args) {
+		VoiceManagerCheck check = new VoiceManagerCheck();
+		check.checkMerging();
+		check.checkRetrigger();
+		check.checkStealing();
+		check.checkVolumeCap();
+
+		if (check.failures > 0) {
+			System.err.println(check.failures + " checks failed!");
+			System.exit(1);
+		}
+	}
+
+	/** A single play asked from the fake backend. */
+	private static class Play {
+		/** The voice given to the play. */
+		final int voice;
+
+		/** The pitch of the play. */
+		final float pitch;
+
+		/** The volume of the play. */
+		final float volume;
+
+		/** Constructs a new play. */
+		Play(int voice, float pitch, float volume) {
+			this.voice = voice;
+			this.pitch = pitch;
+			this.volume = volume;
+		}
+	}
+
+	/**
+	 * A backend which plays nothing, but records the plays and keeps every
+	 * voice playing until told otherwise.
+	 */
+	private static class FakeBackend implements SoundBackend {
+		/** The plays in the order they were asked. */
+		final List<Play> plays = new ArrayList<Play>();
+
+		/** The voices playing. */
+		final List<Integer> playing = new ArrayList<Integer>();
+
+		/** The voices stopped, in the order they were stopped. */
+		final List<Integer> stopped = new ArrayList<Integer>();
+
+		@Override
+		public int play(Audio audio, float pitch, float volume) {
+			int voice = plays.size();
+			plays.add(new Play(voice, pitch, volume));
+			playing.add(voice);
+			return voice;
+		}
+
+		@Override
+		public boolean isPlaying(int voice) {
+			return playing.contains(voice);
+		}
+
+		@Override
+		public void stop(int voice) {
+			playing.remove(Integer.valueOf(voice));
+			stopped.add(voice);
+		}
+	}
+}
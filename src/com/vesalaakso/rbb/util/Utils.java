@@ -1,11 +1,7 @@
 package com.vesalaakso.rbb.util;
 
-import org.lwjgl.Sys;
 import org.newdawn.fizzy.Vector;
 
-import com.vesalaakso.rbb.RubberBandBall;
-import com.vesalaakso.rbb.model.Camera;
-
 /**
  * Some static methods to aid in various little things.
  * 
@@ -69,96 +65,13 @@ public class Utils {
 	}
 
 	/**
-	 * Calculate the current world x-coordinate for the given screen
-	 * x-coordinate.
-	 * 
-	 * @param screenX
-	 *            the screen x-coordinate to transform
-	 * @return world x-coordinate corresponding to the given screen x-coordinate
-	 */
-	public static float screenToWorldX(float screenX) {
-		// Need to calc half of the width of the screen for this
-		float screenHalfWidth = RubberBandBall.SCREEN_WIDTH * 0.5f;
-
-		// Camera.
-		Camera cam = Camera.get();
-
-		// Calculate the screen coordinate
-		float x = cam.getX() + (screenX - screenHalfWidth) / cam.getScaling();
-
-		return x;
-	}
-
-	/**
-	 * Calculate the current world y-coordinate for the given screen
-	 * y-coordinate.
-	 * 
-	 * @param screenY
-	 *            the screen y-coordinate to transform
-	 * @return world y-coordinate corresponding to the given screen y-coordinate
-	 */
-	public static float screenToWorldY(float screenY) {
-		// Need to calc half of the height of the screen for this
-		float screenHalfHeight = RubberBandBall.SCREEN_HEIGHT * 0.5f;
-
-		// Camera.
-		Camera cam = Camera.get();
-
-		// Calculate the screen coordinate
-		float y = cam.getY() + (screenY - screenHalfHeight) / cam.getScaling();
-
-		return y;
-	}
-
-	/**
-	 * Calculate the current screen x-coordinate for the given world
-	 * x-coordinate.
-	 * 
-	 * @param worldX
-	 *            the world x-coordinate to transform
-	 * @return screen x-coordinate corresponding to the given world x-coordinate
-	 */
-	public static float worldToScreenX(float worldX) {
-		// Need to calc half of the width of the screen for this
-		float screenHalfWidth = RubberBandBall.SCREEN_WIDTH * 0.5f;
-
-		// Camera.
-		Camera cam = Camera.get();
-
-		// Calculate the world coordinate
-		float x = (worldX - cam.getX()) * cam.getScaling() + screenHalfWidth;
-
-		return x;
-	}
-
-	/**
-	 * Calculate the current screen y-coordinate for the given world
-	 * y-coordinate.
-	 * 
-	 * @param worldY
-	 *            the world y-coordinate to transform
-	 * @return screen y-coordinate corresponding to the given world y-coordinate
-	 */
-	public static float worldToScreenY(float worldY) {
-		// Need to calc half of the height of the screen for this
-		float screenHalfHeight = RubberBandBall.SCREEN_HEIGHT * 0.5f;
-
-		// Camera.
-		Camera cam = Camera.get();
-
-		// Calculate the world coordinate
-		float y = (worldY - cam.getY()) * cam.getScaling() + screenHalfHeight;
-
-		return y;
-	}
-
-	/**
-	 * Get the accurate system time
+	 * Get the accurate system time. Doesn't need LWJGL, so it works without a
+	 * display, too.
 	 * 
 	 * @return The system time in milliseconds
 	 */
 	public static long getTime() {
-		return (Sys.getTime() * 1000) / Sys.getTimerResolution();
+		return System.nanoTime() / 1000000;
 	}
 
 	/**
@@ -284,4 +197,46 @@ public class Utils {
 		return true;
 	}
 
+	/**
+	 * Appends the given value with the given amount of decimals to the given
+	 * <code>StringBuilder</code>. Works like <code>String.format</code> with
+	 * <code>"%.nf"</code> but without creating any objects, so it can be
+	 * used when drawing every frame.
+	 * 
+	 * @param sb
+	 *            the <code>StringBuilder</code> to append to
+	 * @param value
+	 *            the value to append
+	 * @param decimals
+	 *            amount of decimals to append, must be >= 0
+	 * @return the given <code>StringBuilder</code>
+	 */
+	public static StringBuilder appendDecimal(StringBuilder sb, double value,
+			int decimals) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return sb.append(value);
+		}
+
+		long multiplier = 1;
+		for (int i = 0; i < decimals; i++) {
+			multiplier *= 10;
+		}
+		long scaled = Math.round(Math.abs(value) * multiplier);
+
+		if (value < 0 && scaled != 0) {
+			sb.append('-');
+		}
+		sb.append(scaled / multiplier);
+		if (decimals > 0) {
+			sb.append('.');
+			long fraction = scaled % multiplier;
+			// Pad with zeros, such as .05
+			for (long m = multiplier / 10; m > fraction && m > 1; m /= 10) {
+				sb.append('0');
+			}
+			sb.append(fraction);
+		}
+		return sb;
+	}
+
 }
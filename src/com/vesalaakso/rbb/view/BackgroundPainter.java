@@ -14,6 +14,19 @@ import com.vesalaakso.rbb.model.resources.Gfx;
  */
 public class BackgroundPainter implements Painter {
 
+	/** The background moves slowly along with this camera. */
+	private Camera camera;
+
+	/**
+	 * Constructs a new background painter.
+	 * 
+	 * @param camera
+	 *            the camera the background moves along with
+	 */
+	public BackgroundPainter(Camera camera) {
+		this.camera = camera;
+	}
+
 	/**
 	 * @see com.vesalaakso.rbb.view.Painter#isDrawnToWorldCoordinates()
 	 * 
@@ -25,6 +38,16 @@ public class BackgroundPainter implements Painter {
 		return false;
 	}
 
+	/**
+	 * @see com.vesalaakso.rbb.view.Painter#isVisible(WorldView)
+	 * 
+	 * @return <code>true</code>, as the background covers the whole screen.
+	 */
+	@Override
+	public boolean isVisible(WorldView view) {
+		return true;
+	}
+
 	/**
 	 * @see com.vesalaakso.rbb.view.Painter#paint(Graphics, ResourceManager)
 	 */
@@ -34,8 +57,8 @@ public class BackgroundPainter implements Painter {
 		Image bgImg = resManager.getImage(Gfx.BACKGROUND_GAME);
 
 		// Calculate coordinates based on camera coordinates
-		float x = Camera.get().getX() * -.1f;
-		float y = Camera.get().getY() * -.1f;
+		float x = camera.getX() * -.1f;
+		float y = camera.getY() * -.1f;
 
 		g.drawImage(bgImg, x, y);
 	}
@@ -3,10 +3,12 @@ package com.vesalaakso.rbb.view;
 import org.lwjgl.input.Mouse;
 import org.newdawn.fizzy.Body;
 import org.newdawn.fizzy.Circle;
+import org.newdawn.slick.Color;
 import org.newdawn.slick.Graphics;
 
 import com.vesalaakso.rbb.RubberBandBall;
 import com.vesalaakso.rbb.model.Camera;
+import com.vesalaakso.rbb.model.EffectManager;
 import com.vesalaakso.rbb.model.Physics;
 import com.vesalaakso.rbb.model.Player;
 import com.vesalaakso.rbb.model.ResourceManager;
@@ -26,6 +28,21 @@ public class DebugPrintPainter implements Painter {
 	/** Also the player would be nice to print coordinates and angle from */
 	private Player player;
 
+	/** The camera to print the state of and to translate the mouse with */
+	private Camera camera;
+
+	/** The row being drawn is built in here, reused for every row. */
+	private final StringBuilder row = new StringBuilder();
+
+	/** The rows, laid out again only when their text changes. */
+	private final TextRun[] rows = new TextRun[11];
+
+	/** All the rows are drawn with this. */
+	private final TextBatch batch = new TextBatch();
+
+	/** The color of the rows, read from the first <code>Graphics</code>. */
+	private Color color;
+
 	/**
 	 * Constructs a new painter for drawing debug info on the screen.
 	 * 
@@ -33,10 +50,13 @@ public class DebugPrintPainter implements Painter {
 	 *            the Physics world to draw information from
 	 * @param player
 	 *            the Player to visualize with text
+	 * @param camera
+	 *            the Camera the game is viewed through
 	 */
-	public DebugPrintPainter(Physics physics, Player player) {
+	public DebugPrintPainter(Physics physics, Player player, Camera camera) {
 		this.physics = physics;
 		this.player = player;
+		this.camera = camera;
 	}
 
 	/**
@@ -49,6 +69,16 @@ public class DebugPrintPainter implements Painter {
 		return false;
 	}
 
+	/**
+	 * @see com.vesalaakso.rbb.view.Painter#isVisible(WorldView)
+	 * 
+	 * @return <code>true</code>, as debug text is drawn fixed to the screen.
+	 */
+	@Override
+	public boolean isVisible(WorldView view) {
+		return true;
+	}
+
 	/**
 	 * @see com.vesalaakso.rbb.view.Painter#paint(Graphics, ResourceManager)
 	 */
@@ -56,46 +86,97 @@ public class DebugPrintPainter implements Painter {
 	public void paint(Graphics g, ResourceManager resManager) {
 		// Player body
 		Body<Circle> body = physics.getPlayerBody();
-		// Camera
-		Camera cam = Camera.get();
 
 		// Mouse y flipped because of LWJGL and slick difference.
 		int mouseY = RubberBandBall.SCREEN_HEIGHT - Mouse.getY();
 		int mouseX = Mouse.getX();
 		
 		// Mouse in world coords
-		float mouseWX = Utils.screenToWorldX(mouseX);
-		float mouseWY = Utils.screenToWorldY(mouseY);
-
-		// String array to loop through and draw
-		String[] rows = {
-				String.format("Player position: (%.1f; %.1f)",
-						player.getX(), player.getY()),
-				String.format("Player angle: %.1f",
-						Math.toDegrees(player.getAngle())),
-				String.format("Player velocity: (%.1f; %.1f)",
-						(body != null ? body.getXVelocity() : 0),
-						(body != null ? body.getYVelocity() : 0)),
-				String.format("Player sleeping: %b", 
-						(body != null ? body.isSleeping() : true)),
-				String.format("Player happiness: %.2f", player.getHappiness()),
-				"------",
-				String.format("Camera position: (%.1f; %.1f)", cam.getX(),
-						cam.getY()),
-				String.format("Camera scale: %.3f", cam.getScaling()),
-				String.format("Mouse position (screen): (%d, %d)",
-						mouseX, mouseY),
-				String.format("Mouse position (world): (%.1f; %.1f)",
-						mouseWX, mouseWY)
-		};
-
-		// Set the font
-		g.setFont(resManager.getFont(Font.REGULAR));
-
-		// Loop through all strings.
-		for (int i = 0; i < rows.length; i++) {
-			g.drawString(rows[i], 10, 60 + i * 15);
+		float mouseWX = camera.screenToWorldX(mouseX);
+		float mouseWY = camera.screenToWorldY(mouseY);
+
+		// The rows are drawn with these
+		org.newdawn.slick.Font font = resManager.getFont(Font.REGULAR);
+		if (color == null) {
+			color = g.getColor();
+		}
+
+		// Build and draw the rows one by one, without String.format, as this
+		// is done on every frame.
+		row.append("Player position: ");
+		appendPoint(player.getX(), player.getY());
+		drawRow(font, color, 0);
+
+		row.append("Player angle: ");
+		Utils.appendDecimal(row, Math.toDegrees(player.getAngle()), 1);
+		drawRow(font, color, 1);
+
+		row.append("Player velocity: ");
+		appendPoint((body != null ? body.getXVelocity() : 0),
+				(body != null ? body.getYVelocity() : 0));
+		drawRow(font, color, 2);
+
+		row.append("Player sleeping: ");
+		row.append(body != null ? body.isSleeping() : true);
+		drawRow(font, color, 3);
+
+		row.append("Player happiness: ");
+		Utils.appendDecimal(row, player.getHappiness(), 2);
+		drawRow(font, color, 4);
+
+		row.append("------");
+		drawRow(font, color, 5);
+
+		row.append("Camera position: ");
+		appendPoint(camera.getX(), camera.getY());
+		drawRow(font, color, 6);
+
+		row.append("Camera scale: ");
+		Utils.appendDecimal(row, camera.getScaling(), 3);
+		drawRow(font, color, 7);
+
+		row.append("Mouse position (screen): (");
+		row.append(mouseX).append(", ").append(mouseY).append(')');
+		drawRow(font, color, 8);
+
+		row.append("Mouse position (world): ");
+		appendPoint(mouseWX, mouseWY);
+		drawRow(font, color, 9);
+
+		EffectManager effects = resManager.getEffectManager();
+		row.append("Particles: ").append(effects.getActiveParticleCount());
+		row.append(" / ").append(effects.getParticleBudget());
+		row.append(" in ").append(effects.getParticleSystemCount());
+		row.append(" systems (pool hits ");
+		Utils.appendDecimal(row, effects.getPoolHitRate() * 100, 1);
+		row.append(" %, dropped ").append(effects.getDroppedExplosionCount());
+		row.append(')');
+		drawRow(font, color, 10);
+
+		batch.flush();
+	}
+
+	/** A helper which appends a point such as (1.0; 2.0) to the row. */
+	private void appendPoint(float x, float y) {
+		row.append('(');
+		Utils.appendDecimal(row, x, 1);
+		row.append("; ");
+		Utils.appendDecimal(row, y, 1);
+		row.append(')');
+	}
+
+	/**
+	 * A helper which adds the row built so far to the batch and clears it.
+	 * The row is laid out again only if its text has changed.
+	 */
+	private void drawRow(org.newdawn.slick.Font font, Color color,
+			int index) {
+		if (rows[index] == null) {
+			rows[index] = new TextRun();
 		}
+		rows[index].set(font, row);
+		batch.add(rows[index], 10, 60 + index * 15, color);
+		row.setLength(0);
 	}
 
 }
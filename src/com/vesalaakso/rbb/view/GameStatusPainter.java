@@ -1,10 +1,13 @@
 package com.vesalaakso.rbb.view;
 
+import org.newdawn.slick.Color;
 import org.newdawn.slick.Graphics;
 
 import com.vesalaakso.rbb.RubberBandBall;
 import com.vesalaakso.rbb.model.GameStatus;
 import com.vesalaakso.rbb.model.ResourceManager;
+import com.vesalaakso.rbb.model.TileMap;
+import com.vesalaakso.rbb.model.TileMapContainer;
 import com.vesalaakso.rbb.model.resources.Font;
 
 /**
@@ -17,15 +20,46 @@ public class GameStatusPainter implements Painter {
 	/** The GameStatus to paint */
 	private GameStatus gameStatus;
 
+	/** The container to get the current map from. */
+	private TileMapContainer mapContainer;
+
+	/**
+	 * The shots over all the tries of the current map, laid out again only
+	 * when the count changes.
+	 */
+	private final TextRun totalShots = new TextRun();
+
+	/** The shot count, laid out again only when the count changes. */
+	private final TextRun shots = new TextRun();
+
+	/** The try count, laid out again only when the count changes. */
+	private final TextRun tries = new TextRun();
+
+	/** The best score, laid out again only when the score changes. */
+	private final TextRun best = new TextRun();
+
+	/** All the status text is drawn with this. */
+	private final TextBatch batch = new TextBatch();
+
+	/**
+	 * The color of the text, read from <code>Graphics</code> on the first
+	 * paint only, as reading it creates a new object every time.
+	 */
+	private Color color;
+
 	/**
 	 * Constructs a new painter for drawing the game status, which is given as a
 	 * parameter.
 	 * 
 	 * @param gameStatus
 	 *            the game status to draw
+	 * @param mapContainer
+	 *            the container to get the current map from
 	 */
-	public GameStatusPainter(GameStatus gameStatus) {
+	public GameStatusPainter(GameStatus gameStatus,
+			TileMapContainer mapContainer) {
 		this.gameStatus = gameStatus;
+		this.mapContainer = mapContainer;
 	}
 
 	/**
@@ -37,26 +71,49 @@ public class GameStatusPainter implements Painter {
 		return false;
 	}
 
+	/**
+	 * @see com.vesalaakso.rbb.view.Painter#isVisible(WorldView)
+	 * 
+	 * @return <code>true</code>, as game state is drawn at a static position
+	 *         in screen
+	 */
+	@Override
+	public boolean isVisible(WorldView view) {
+		return true;
+	}
+
 	/**
 	 * @see com.vesalaakso.rbb.view.Painter#paint(Graphics, ResourceManager)
 	 */
 	@Override
 	public void paint(Graphics g, ResourceManager resManager) {
-		g.setFont(resManager.getFont(Font.SCORE));
+		org.newdawn.slick.Font font = resManager.getFont(Font.SCORE);
 
 		float x = RubberBandBall.SCREEN_WIDTH - 200;
-		float y1 = RubberBandBall.SCREEN_HEIGHT - 80;
+		float y0 = RubberBandBall.SCREEN_HEIGHT - 100;
+		float y1 = y0 + 20;
 		float y2 = y1 + 20;
 		float y3 = y2 + 20;
 
-		String shotsStr = "Shots: " + gameStatus.getCurrentShotCount();
-		String triesStr = "Tries: " + gameStatus.getCurrentTryCount();
-		String bestStr = "Best: " + gameStatus.getCurrentBest();
-		g.drawString(shotsStr, x, y1);
-		g.drawString(triesStr, x, y2);
+		// The total is restored from the journal, so it counts the shots of
+		// the earlier sessions as well.
+		TileMap map = mapContainer.getMap();
+		int total = map == null ? 0 : gameStatus.getTotalShotCount(map);
+		totalShots.setNumber(font, "Total shots: ", total);
+		shots.setNumber(font, "Shots: ", gameStatus.getCurrentShotCount());
+		tries.setNumber(font, "Tries: ", gameStatus.getCurrentTryCount());
 
 		// Font is different for teh best one
-		g.setFont(resManager.getFont(Font.SCORE_BEST));
-		g.drawString(bestStr, x, y3);
+		best.setNumber(resManager.getFont(Font.SCORE_BEST), "Best: ",
+				gameStatus.getCurrentBest());
+
+		if (color == null) {
+			color = g.getColor();
+		}
+		batch.add(totalShots, x, y0, color);
+		batch.add(shots, x, y1, color);
+		batch.add(tries, x, y2, color);
+		batch.add(best, x, y3, color);
+		batch.flush();
 	}
 }
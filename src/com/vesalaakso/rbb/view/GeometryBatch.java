@@ -0,0 +1,321 @@
+package com.vesalaakso.rbb.view;
+
+import java.nio.FloatBuffer;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.opengl.Texture;
+import org.newdawn.slick.opengl.TextureImpl;
+import org.newdawn.slick.opengl.renderer.ImmediateModeOGLRenderer;
+import org.newdawn.slick.opengl.renderer.Renderer;
+import org.newdawn.slick.opengl.renderer.SGL;
+
+/**
+ * Collects filled rectangles, lines and images into vertex arrays and draws
+ * them with a few OpenGL calls when {@link #flush()} is called,
+ * instead of one immediate mode call per shape like <code>Graphics</code>
+ * does. Every vertex has its own color, so shapes can be tinted separately.
+ * <p>
+ * A flush draws all the filled rectangles first, then all the lines and then
+ * all the images, so shapes of the same kind should not rely on being drawn
+ * in a certain order relative to shapes of another kind. All the images
+ * between two flushes should share the same texture; adding an image of
+ * another texture flushes the batch first.
+ *
+ * @author Vesa Laakso
+ */
+class GeometryBatch {
+
+	/** How many line segments a quarter of a circle is drawn with. */
+	private static final int SEGMENTS_PER_QUARTER = 6;
+
+	/** Cosines of the angles of the segment ends of a quarter circle. */
+	private static final float[] COS = new float[SEGMENTS_PER_QUARTER + 1];
+
+	/** Sines of the angles of the segment ends of a quarter circle. */
+	private static final float[] SIN = new float[SEGMENTS_PER_QUARTER + 1];
+
+	static {
+		for (int i = 0; i <= SEGMENTS_PER_QUARTER; i++) {
+			double angle = Math.PI / 2 * i / SEGMENTS_PER_QUARTER;
+			COS[i] = (float) Math.cos(angle);
+			SIN[i] = (float) Math.sin(angle);
+		}
+	}
+
+	/** The vertices of the filled rectangles. */
+	private final Vertices quads = new Vertices();
+
+	/** The vertices of the lines. */
+	private final Vertices lines = new Vertices();
+
+	/** The vertices of the images. */
+	private final Vertices sprites = new Vertices();
+
+	/** The texture of the images, <code>null</code> if there are none. */
+	private Texture spriteTexture;
+
+	/** Used to hand the vertices to OpenGL, grown when needed. */
+	private FloatBuffer buffer = BufferUtils.createFloatBuffer(1024);
+
+	/**
+	 * Adds a filled rectangle.
+	 *
+	 * @param x
+	 *            the x-coordinate of the top left corner
+	 * @param y
+	 *            the y-coordinate of the top left corner
+	 * @param width
+	 *            the width of the rectangle
+	 * @param height
+	 *            the height of the rectangle
+	 * @param color
+	 *            the color to fill the rectangle with
+	 */
+	void fillRect(float x, float y, float width, float height, Color color) {
+		quads.add(x, y, 0, 0, color);
+		quads.add(x + width, y, 0, 0, color);
+		quads.add(x + width, y + height, 0, 0, color);
+		quads.add(x, y + height, 0, 0, color);
+	}
+
+	/**
+	 * Adds a line.
+	 *
+	 * @param x1
+	 *            the x-coordinate of the start of the line
+	 * @param y1
+	 *            the y-coordinate of the start of the line
+	 * @param x2
+	 *            the x-coordinate of the end of the line
+	 * @param y2
+	 *            the y-coordinate of the end of the line
+	 * @param color
+	 *            the color of the line
+	 */
+	void drawLine(float x1, float y1, float x2, float y2, Color color) {
+		lines.add(x1, y1, 0, 0, color);
+		lines.add(x2, y2, 0, 0, color);
+	}
+
+	/**
+	 * Adds the outline of a rectangle.
+	 *
+	 * @param x
+	 *            the x-coordinate of the top left corner
+	 * @param y
+	 *            the y-coordinate of the top left corner
+	 * @param width
+	 *            the width of the rectangle
+	 * @param height
+	 *            the height of the rectangle
+	 * @param color
+	 *            the color of the outline
+	 */
+	void drawRect(float x, float y, float width, float height, Color color) {
+		drawRoundRect(x, y, width, height, 0, color);
+	}
+
+	/**
+	 * Adds the outline of a rectangle with rounded corners.
+	 *
+	 * @param x
+	 *            the x-coordinate of the top left corner
+	 * @param y
+	 *            the y-coordinate of the top left corner
+	 * @param width
+	 *            the width of the rectangle
+	 * @param height
+	 *            the height of the rectangle
+	 * @param radius
+	 *            the radius of the corners
+	 * @param color
+	 *            the color of the outline
+	 */
+	void drawRoundRect(float x, float y, float width, float height,
+			float radius, Color color) {
+		radius = Math.min(radius, Math.min(width, height) / 2);
+		float left = x + radius;
+		float top = y + radius;
+		float right = x + width - radius;
+		float bottom = y + height - radius;
+
+		drawLine(left, y, right, y, color);
+		drawLine(x + width, top, x + width, bottom, color);
+		drawLine(right, y + height, left, y + height, color);
+		drawLine(x, bottom, x, top, color);
+
+		if (radius > 0) {
+			drawCorner(right, top, radius, 1, -1, color);
+			drawCorner(right, bottom, radius, 1, 1, color);
+			drawCorner(left, bottom, radius, -1, 1, color);
+			drawCorner(left, top, radius, -1, -1, color);
+		}
+	}
+
+	/**
+	 * Adds the outline of a circle.
+	 *
+	 * @param centerX
+	 *            the x-coordinate of the center
+	 * @param centerY
+	 *            the y-coordinate of the center
+	 * @param radius
+	 *            the radius of the circle
+	 * @param color
+	 *            the color of the outline
+	 */
+	void drawCircle(float centerX, float centerY, float radius, Color color) {
+		drawCorner(centerX, centerY, radius, 1, -1, color);
+		drawCorner(centerX, centerY, radius, 1, 1, color);
+		drawCorner(centerX, centerY, radius, -1, 1, color);
+		drawCorner(centerX, centerY, radius, -1, -1, color);
+	}
+
+	/** A helper to add a quarter of a circle in the given direction */
+	private void drawCorner(float centerX, float centerY, float radius,
+			int dirX, int dirY, Color color) {
+		for (int i = 0; i < SEGMENTS_PER_QUARTER; i++) {
+			drawLine(centerX + dirX * COS[i] * radius, centerY + dirY * SIN[i]
+					* radius, centerX + dirX * COS[i + 1] * radius, centerY
+					+ dirY * SIN[i + 1] * radius, color);
+		}
+	}
+
+	/**
+	 * Adds an image, tinted with the given color.
+	 *
+	 * @param image
+	 *            the image to draw
+	 * @param x
+	 *            the x-coordinate of the top left corner
+	 * @param y
+	 *            the y-coordinate of the top left corner
+	 * @param color
+	 *            the color to tint the image with
+	 */
+	void drawImage(Image image, float x, float y, Color color) {
+		Texture texture = image.getTexture();
+		if (spriteTexture != null && spriteTexture != texture) {
+			flush();
+		}
+		spriteTexture = texture;
+
+		float u1 = image.getTextureOffsetX();
+		float v1 = image.getTextureOffsetY();
+		float u2 = u1 + image.getTextureWidth();
+		float v2 = v1 + image.getTextureHeight();
+		float width = image.getWidth();
+		float height = image.getHeight();
+
+		sprites.add(x, y, u1, v1, color);
+		sprites.add(x + width, y, u2, v1, color);
+		sprites.add(x + width, y + height, u2, v2, color);
+		sprites.add(x, y + height, u1, v2, color);
+	}
+
+	/**
+	 * Draws everything added since the last flush and empties the batch. The
+	 * current color is left undefined, so it must be set again before drawing
+	 * anything else. {@link PainterContainer} does that after every painter.
+	 * <p>
+	 * If Slick has been given a renderer which doesn't draw with OpenGL, as
+	 * when painting without a display, the batch is emptied without drawing.
+	 */
+	void flush() {
+		if (quads.count == 0 && lines.count == 0 && sprites.count == 0) {
+			return;
+		}
+
+		// Whatever Slick has buffered must be drawn before the batch.
+		SGL renderer = Renderer.get();
+		renderer.flush();
+		if (!(renderer instanceof ImmediateModeOGLRenderer)) {
+			quads.count = 0;
+			lines.count = 0;
+			sprites.count = 0;
+			spriteTexture = null;
+			return;
+		}
+
+		GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+		GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
+
+		TextureImpl.bindNone();
+		draw(quads, GL11.GL_QUADS, false);
+		draw(lines, GL11.GL_LINES, false);
+
+		if (sprites.count > 0) {
+			spriteTexture.bind();
+			GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+			draw(sprites, GL11.GL_QUADS, true);
+			GL11.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		}
+		spriteTexture = null;
+
+		GL11.glDisableClientState(GL11.GL_COLOR_ARRAY);
+		GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+	}
+
+	/** A helper to draw and empty the given vertices */
+	private void draw(Vertices vertices, int mode, boolean textured) {
+		if (vertices.count == 0) {
+			return;
+		}
+
+		int floats = vertices.count * Vertices.SIZE;
+		if (buffer.capacity() < floats) {
+			buffer =
+				BufferUtils.createFloatBuffer(Math.max(floats,
+						buffer.capacity() * 2));
+		}
+		buffer.clear();
+		buffer.put(vertices.data, 0, floats);
+
+		int stride = Vertices.SIZE * 4;
+		buffer.position(0);
+		GL11.glVertexPointer(2, stride, buffer);
+		if (textured) {
+			buffer.position(2);
+			GL11.glTexCoordPointer(2, stride, buffer);
+		}
+		buffer.position(4);
+		GL11.glColorPointer(4, stride, buffer);
+
+		GL11.glDrawArrays(mode, 0, vertices.count);
+		vertices.count = 0;
+	}
+
+	/** Interleaved vertices, each a position, texture coordinates and color. */
+	private static class Vertices {
+		/** How many floats each vertex takes. */
+		static final int SIZE = 8;
+
+		/** The vertices, grown when needed. */
+		float[] data = new float[SIZE * 64];
+
+		/** How many vertices there are. */
+		int count;
+
+		/** Adds a vertex. */
+		void add(float x, float y, float u, float v, Color color) {
+			int i = count * SIZE;
+			if (i + SIZE > data.length) {
+				float[] grown = new float[data.length * 2];
+				System.arraycopy(data, 0, grown, 0, i);
+				data = grown;
+			}
+			data[i] = x;
+			data[i + 1] = y;
+			data[i + 2] = u;
+			data[i + 3] = v;
+			data[i + 4] = color.r;
+			data[i + 5] = color.g;
+			data[i + 6] = color.b;
+			data[i + 7] = color.a;
+			count++;
+		}
+	}
+}
@@ -26,6 +26,18 @@ interface Painter {
 	 */
 	public boolean isDrawnToWorldCoordinates();
 
+	/**
+	 * Checks whether anything this painter draws is on the screen. Called
+	 * before every {@link #paint}, which is skipped if this returns
+	 * <code>false</code>. Painters drawn to screen coordinates can always
+	 * return <code>true</code>.
+	 * 
+	 * @param view
+	 *            the area of the world currently on the screen
+	 * @return <code>true</code>, if the painter needs to paint this frame
+	 */
+	public boolean isVisible(WorldView view);
+
 	/**
 	 * Painting happens inside this method.
 	 * 
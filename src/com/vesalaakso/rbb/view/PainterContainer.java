@@ -1,6 +1,6 @@
 package com.vesalaakso.rbb.view;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.newdawn.slick.Color;
@@ -8,8 +8,6 @@ import org.newdawn.slick.Graphics;
 
 import com.vesalaakso.rbb.model.Camera;
 import com.vesalaakso.rbb.model.ResourceManager;
-import com.vesalaakso.rbb.states.GameState;
-import com.vesalaakso.rbb.util.Utils;
 
 /**
  * Every instance of classes that implement {@link Painter} interface are stored
@@ -21,26 +19,42 @@ import com.vesalaakso.rbb.util.Utils;
 public class PainterContainer {
 
 	/** Everything that is to be painted. */
-	private List<Painter> painters = new LinkedList<Painter>();
+	private List<Painter> painters = new ArrayList<Painter>();
 
 	/** Everything that is to be painted in debug mode */
-	private List<Painter> debugPainters = new LinkedList<Painter>();
+	private List<Painter> debugPainters = new ArrayList<Painter>();
+
+	/**
+	 * The color every painter starts drawing with. Stored once, as querying
+	 * the color from <code>Graphics</code> creates a new object every time.
+	 */
+	private Color baseColor;
+
+	/** The camera the world is drawn through. */
+	private final Camera camera;
+
+	/** The area of the world on the screen, updated every frame. */
+	private final WorldView worldView;
 
 	/** The resource manager to use when needing to query for resources. */
 	private ResourceManager resManager;
 
 	/**
 	 * Constructs the painter container and associates it with the given
-	 * resource manager. The resource manager will be passed on to all painters
-	 * later on, when <code>paint()</code> method is called for all
-	 * {@link Painter}s.
+	 * resource manager and camera. The resource manager will be passed on to
+	 * all painters later on, when <code>paint()</code> method is called for
+	 * all {@link Painter}s.
 	 * 
 	 * @param resManager
 	 *            the resource manager to use when painters need to get a
 	 *            resource, such as a loaded font
+	 * @param camera
+	 *            the camera to draw the world through
 	 */
-	public PainterContainer(ResourceManager resManager) {
+	public PainterContainer(ResourceManager resManager, Camera camera) {
 		this.resManager = resManager;
+		this.camera = camera;
+		this.worldView = new WorldView(camera);
 	}
 
 	/**
@@ -68,43 +82,67 @@ public class PainterContainer {
 	}
 
 	/**
-	 * Draws every painter in the order they were added.
+	 * Gets the area of the world on the screen, which is updated before
+	 * painting every frame. Painters can use it to skip drawing the objects
+	 * which are off-screen.
+	 * 
+	 * @return the area of the world on the screen
+	 */
+	public WorldView getWorldView() {
+		return worldView;
+	}
+
+	/**
+	 * Draws every painter in the order they were added, skipping the ones
+	 * which have nothing on the screen.
 	 * 
 	 * @param g
 	 *            <code>Graphics</code>-object which will be used to draw stuff
 	 *            to screen.
-	 * @param game
-	 *            the game to draw
+	 * @param debugMode
+	 *            <code>true</code> if the debug painters should be drawn, too
 	 */
-	public void paintAll(Graphics g, GameState game) {
+	public void paintAll(Graphics g, boolean debugMode) {
 		// Anti-aliasing for all!
 		g.setAntiAlias(true);
 
-		// Camera, to a prettier variable.
-		Camera cam = Camera.get();
-
 		// Game scale is set by camera.
-		float scaling = cam.getScaling();
-
-		// All of the painters to be drawn. If we're not in debug mode,
-		// allPainters is the same as regular painters. If we are in debug mode,
-		// then allPainters is the combination of this.painters and
-		// this.debugPainters.
-		List<Painter> allPainters;
-		if (game.isDebugModeToggled()) {
-			allPainters = new LinkedList<Painter>();
-			allPainters.addAll(painters);
-			allPainters.addAll(debugPainters);
+		float scaling = camera.getScaling();
+
+		// Find out what is on the screen this frame.
+		worldView.update();
+
+		// Every painter starts with the same color.
+		if (baseColor == null) {
+			baseColor = g.getColor();
 		}
-		else {
-			allPainters = painters;
+		g.setColor(baseColor);
+
+		// The amount of painters to be drawn. If we are in debug mode, the
+		// debug painters are drawn after the regular painters.
+		int painterCount = painters.size();
+		int allPainterCount = painterCount;
+		if (debugMode) {
+			allPainterCount += debugPainters.size();
 		}
 
 		// Flag which controls whether world translation has been enabled or
 		// not.
 		boolean isWorldTranslationOn = false;
 
-		for (Painter p : allPainters) {
+		for (int i = 0; i < allPainterCount; i++) {
+			Painter p;
+			if (i < painterCount) {
+				p = painters.get(i);
+			}
+			else {
+				p = debugPainters.get(i - painterCount);
+			}
+
+			if (!p.isVisible(worldView)) {
+				continue;
+			}
+
 			if (p.isDrawnToWorldCoordinates() != isWorldTranslationOn) {
 				// We wanted translation to world coordinates or back to screen
 				// coordinates. That translation is always based on the fact
@@ -113,8 +151,8 @@ public class PainterContainer {
 				// world space and then translating to or out of that coordinate
 				// space.
 
-				float transX = Utils.screenToWorldX(0);
-				float transY = Utils.screenToWorldY(0);
+				float transX = camera.screenToWorldX(0);
+				float transY = camera.screenToWorldY(0);
 
 				// Flip the flag.
 				isWorldTranslationOn = !isWorldTranslationOn;
@@ -133,16 +171,11 @@ public class PainterContainer {
 				}
 			}
 
-			// Store the color before drawing this Painter
-			Color origColor = g.getColor();
-
 			// Paint.
 			p.paint(g, resManager);
 
-			// Restore color, if needed.
-			if (g.getColor().equals(origColor) == false) {
-				g.setColor(origColor);
-			}
+			// Restore color for the next painter.
+			g.setColor(baseColor);
 		}
 
 		// Clear transformation stack, if needed
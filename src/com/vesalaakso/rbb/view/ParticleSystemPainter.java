@@ -1,7 +1,5 @@
 package com.vesalaakso.rbb.view;
 
-import java.util.List;
-
 import org.newdawn.slick.Graphics;
 import org.newdawn.slick.particles.ParticleSystem;
 
@@ -15,18 +13,31 @@ import com.vesalaakso.rbb.model.ResourceManager;
  */
 public class ParticleSystemPainter implements Painter {
 
+	/**
+	 * How far from its position a particle system can draw particles. Systems
+	 * further than this off the screen are not rendered.
+	 */
+	private static final float MAX_PARTICLE_REACH = 400f;
+
 	/** The EffectManager associated with this Painter. */
 	private EffectManager effectManager;
 
+	/** The area of the world on the screen. */
+	private WorldView view;
+
 	/**
 	 * Constructs a new <code>ParticleSystemPainter</code> and associates it
 	 * with the given <code>EffectManager</code>.
 	 * 
 	 * @param effectManager
 	 *            the <code>EffectManager</code> whose particles will be drawn.
+	 * @param view
+	 *            the area of the world on the screen, particle systems outside
+	 *            of it are not rendered
 	 */
-	public ParticleSystemPainter(EffectManager effectManager) {
+	public ParticleSystemPainter(EffectManager effectManager, WorldView view) {
 		this.effectManager = effectManager;
+		this.view = view;
 	}
 
 	/**
@@ -40,17 +51,29 @@ public class ParticleSystemPainter implements Painter {
 		return true;
 	}
 
+	/**
+	 * @see com.vesalaakso.rbb.view.Painter#isVisible(WorldView)
+	 * 
+	 * @return <code>true</code>, if there are any particle systems.
+	 */
+	@Override
+	public boolean isVisible(WorldView view) {
+		return effectManager.getParticleSystemCount() > 0;
+	}
+
 	/**
 	 * @see com.vesalaakso.rbb.view.Painter#paint(Graphics, ResourceManager)
 	 */
 	@Override
 	public void paint(Graphics g, ResourceManager resManager) {
-		// Get all of the ParticleSystems there are.
-		List<ParticleSystem> systems = effectManager.getParticleSystems();
-
-		// Loop through them all and render them.
-		for (ParticleSystem ps : systems) {
-			ps.render();
+		// Loop through all of the ParticleSystems there are and render them.
+		int count = effectManager.getParticleSystemCount();
+		for (int i = 0; i < count; i++) {
+			ParticleSystem ps = effectManager.getParticleSystem(i);
+			if (view.intersectsCircle(ps.getPositionX(), ps.getPositionY(),
+					MAX_PARTICLE_REACH)) {
+				ps.render();
+			}
 		}
 	}
 
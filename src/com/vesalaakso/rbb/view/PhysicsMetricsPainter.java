@@ -0,0 +1,123 @@
+package com.vesalaakso.rbb.view;
+
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Graphics;
+
+import com.vesalaakso.rbb.model.PhysicsMetrics;
+import com.vesalaakso.rbb.model.ResourceManager;
+import com.vesalaakso.rbb.model.resources.Font;
+import com.vesalaakso.rbb.util.Utils;
+
+/**
+ * A Painter to draw the statistics of the physics world, so that the steps
+ * where the physics spikes can be spotted while playing.
+ *
+ * @author Vesa Laakso
+ */
+public class PhysicsMetricsPainter implements Painter {
+
+	/** The metrics to draw. */
+	private PhysicsMetrics metrics;
+
+	/** The row being drawn is built in here, reused for every row. */
+	private final StringBuilder row = new StringBuilder();
+
+	/** The rows, laid out again only when their text changes. */
+	private final TextRun[] rows = new TextRun[5];
+
+	/** All the rows are drawn with this. */
+	private final TextBatch batch = new TextBatch();
+
+	/** The color of the rows, read from the first <code>Graphics</code>. */
+	private Color color;
+
+	/**
+	 * Constructs a new painter for drawing physics statistics on the screen.
+	 *
+	 * @param metrics
+	 *            the metrics to draw
+	 */
+	public PhysicsMetricsPainter(PhysicsMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @see com.vesalaakso.rbb.view.Painter#isDrawnToWorldCoordinates()
+	 *
+	 * @return <code>false</code>, as debug text is drawn fixed to the screen.
+	 */
+	@Override
+	public boolean isDrawnToWorldCoordinates() {
+		return false;
+	}
+
+	/**
+	 * @see com.vesalaakso.rbb.view.Painter#isVisible(WorldView)
+	 *
+	 * @return <code>true</code>, as debug text is drawn fixed to the screen.
+	 */
+	@Override
+	public boolean isVisible(WorldView view) {
+		return true;
+	}
+
+	/**
+	 * @see com.vesalaakso.rbb.view.Painter#paint(Graphics, ResourceManager)
+	 */
+	@Override
+	public void paint(Graphics g, ResourceManager resManager) {
+		// The rows are drawn with these
+		org.newdawn.slick.Font font = resManager.getFont(Font.REGULAR);
+		if (color == null) {
+			color = g.getColor();
+		}
+
+		row.append("Physics step: ").append(metrics.getStep());
+		drawRow(font, color, 0);
+
+		row.append("Step time: ");
+		appendMillis(metrics.getStepNanos());
+		row.append(" (avg ");
+		appendMillis(metrics.getAverageStepNanos());
+		row.append(", max ");
+		appendMillis(metrics.getMaxStepNanos());
+		row.append(')');
+		drawRow(font, color, 1);
+
+		row.append("Collision listener time: ");
+		appendMillis(metrics.getListenerNanos());
+		drawRow(font, color, 2);
+
+		row.append("Bodies: ").append(metrics.getBodyCount());
+		row.append(" (").append(metrics.getAwakeBodyCount()).append(" awake)");
+		drawRow(font, color, 3);
+
+		row.append("Contacts: ").append(metrics.getContactCount());
+		row.append(", proxies: ").append(metrics.getProxyCount());
+		drawRow(font, color, 4);
+
+		batch.flush();
+	}
+
+	/** A helper which appends the given nanoseconds as milliseconds. */
+	private void appendMillis(long nanos) {
+		Utils.appendDecimal(row, nanos / 1e6, 3);
+		row.append(" ms");
+	}
+
+	/**
+	 * A helper which adds the row built so far to the batch, below the rows
+	 * of {@link DebugPrintPainter}, and clears it. The row is laid out again
+	 * only if its text has changed.
+	 */
+	private void drawRow(org.newdawn.slick.Font font, Color color,
+			int index) {
+		if (rows[index] == null) {
+			rows[index] = new TextRun();
+		}
+		rows[index].set(font, row);
+		batch.add(rows[index], 10, 225 + index * 15, color);
+		row.setLength(0);
+	}
+
+}
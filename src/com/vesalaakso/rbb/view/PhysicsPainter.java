@@ -24,6 +24,12 @@ public class PhysicsPainter implements Painter {
 	/** The associated <code>Physics</code>-model. */
 	private Physics physics;
 
+	/** The area of the world on the screen. */
+	private WorldView view;
+
+	/** Collects the outlines of every body to draw them with one call. */
+	private final GeometryBatch batch = new GeometryBatch();
+
 	/**
 	 * Constructs the painter and associates it with the given
 	 * <code>Physics</code> model.
@@ -31,9 +37,13 @@ public class PhysicsPainter implements Painter {
 	 * @param physics
 	 *            the <code>Physics</code> model holding the information about
 	 *            every body in the world.
+	 * @param view
+	 *            the area of the world on the screen, bodies outside of it are
+	 *            not drawn
 	 */
-	public PhysicsPainter(Physics physics) {
+	public PhysicsPainter(Physics physics, WorldView view) {
 		this.physics = physics;
+		this.view = view;
 	}
 
 	/**
@@ -48,6 +58,17 @@ public class PhysicsPainter implements Painter {
 		return true;
 	}
 
+	/**
+	 * @see com.vesalaakso.rbb.view.Painter#isVisible(WorldView)
+	 * 
+	 * @return <code>true</code>, every body is checked separately when
+	 *         painting.
+	 */
+	@Override
+	public boolean isVisible(WorldView view) {
+		return true;
+	}
+
 	/**
 	 * @see com.vesalaakso.rbb.view.Painter#paint(Graphics, ResourceManager)
 	 */
@@ -57,12 +78,18 @@ public class PhysicsPainter implements Painter {
 		List<Body<?>> bodies = physics.getBodies();
 
 		// Loop through them and draw them.
-		for (Body<?> b : bodies) {
+		for (int bodyIndex = 0; bodyIndex < bodies.size(); bodyIndex++) {
+			Body<?> b = bodies.get(bodyIndex);
+			if (!isOnScreen(b)) {
+				continue;
+			}
+
+			Color color;
 			if (b.isSleeping() || b.isStatic() || !b.isActive()) {
-				g.setColor(Color.white);
+				color = Color.white;
 			}
 			else {
-				g.setColor(Color.red);
+				color = Color.red;
 			}
 
 			float bx = b.getX();
@@ -79,17 +106,18 @@ public class PhysicsPainter implements Painter {
 
 			if (shape instanceof Rectangle) {
 				Rectangle rect = (Rectangle) shape;
-				g.drawRect(bx, by, rect.getWidth(), rect.getHeight());
+				batch.drawRect(bx, by, rect.getWidth(), rect.getHeight(),
+						color);
 			}
 			else if (shape instanceof Circle) {
 				Circle c = (Circle) shape;
 				float r = c.getRadius();
 				// Draw the outer bounds
-				g.drawOval(bx - r, by - r, r * 2, r * 2);
+				batch.drawCircle(bx, by, r, color);
 				// And then a line representing the angle.
-				g.drawLine(bx, by,
+				batch.drawLine(bx, by,
 						bx + (float) Math.cos(b.getRotation()) * r,
-						by + (float) Math.sin(b.getRotation()) * r);
+						by + (float) Math.sin(b.getRotation()) * r, color);
 			}
 			else if (shape instanceof Polygon) {
 				Polygon p = (Polygon) shape;
@@ -106,10 +134,48 @@ public class PhysicsPainter implements Painter {
 						x2 = p.getPointX(0);
 						y2 = p.getPointY(0);
 					}
-					g.drawLine(bx + x1, by + y1, bx + x2, by + y2);
+					batch.drawLine(bx + x1, by + y1, bx + x2, by + y2,
+							color);
 				}
 			}
 		}
+
+		batch.flush();
+	}
+
+	/** A helper to check whether any of the given body is on the screen */
+	private boolean isOnScreen(Body<?> b) {
+		float bx = b.getX();
+		float by = b.getY();
+		Shape shape = b.getShape();
+
+		if (shape instanceof Rectangle) {
+			Rectangle rect = (Rectangle) shape;
+			return view.intersects(bx, by, rect.getWidth(), rect.getHeight());
+		}
+		else if (shape instanceof Circle) {
+			return view.intersectsCircle(bx, by, ((Circle) shape).getRadius());
+		}
+		else if (shape instanceof Polygon) {
+			Polygon p = (Polygon) shape;
+			int count = p.getPointCount();
+			if (count == 0) {
+				return false;
+			}
+			float minX = p.getPointX(0), maxX = minX;
+			float minY = p.getPointY(0), maxY = minY;
+			for (int i = 1; i < count; i++) {
+				minX = Math.min(minX, p.getPointX(i));
+				maxX = Math.max(maxX, p.getPointX(i));
+				minY = Math.min(minY, p.getPointY(i));
+				maxY = Math.max(maxY, p.getPointY(i));
+			}
+			return view.intersects(bx + minX, by + minY, maxX - minX, maxY
+					- minY);
+		}
+
+		// Unknown shapes are not drawn anyway.
+		return false;
 	}
 
 }
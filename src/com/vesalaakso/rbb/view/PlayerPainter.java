@@ -75,6 +75,17 @@ public class PlayerPainter implements Painter {
 		return true;
 	}
 
+	/**
+	 * @see com.vesalaakso.rbb.view.Painter#isVisible(WorldView)
+	 * 
+	 * @return <code>true</code>, if the player is on the screen.
+	 */
+	@Override
+	public boolean isVisible(WorldView view) {
+		return view.intersectsCircle(player.getX(), player.getY(),
+				player.getRadius());
+	}
+
 	/**
 	 * @see com.vesalaakso.rbb.view.Painter#paint(Graphics, ResourceManager)
 	 */
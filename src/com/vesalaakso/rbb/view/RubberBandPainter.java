@@ -6,26 +6,47 @@ import org.newdawn.slick.Graphics;
 
 import com.vesalaakso.rbb.model.ResourceManager;
 import com.vesalaakso.rbb.model.RubberBand;
+import com.vesalaakso.rbb.model.TrajectoryPredictor;
 
 /**
- * Class responsible for drawing the <code>RubberBand</code>.
+ * Class responsible for drawing the <code>RubberBand</code> and the path the
+ * player is predicted to fly along when the rubber band is let go.
  * 
  * @author Vesa Laakso
  */
 public class RubberBandPainter implements Painter {
 
+	/** A dot is drawn on the predicted path every this many steps. */
+	private static final int DOT_INTERVAL = 4;
+
+	/** The width and height of the dots on the predicted path. */
+	private static final float DOT_SIZE = 4;
+
 	/** The RubberBand to draw. */
 	private RubberBand rubberBand;
 
+	/** The predictor of the path of the player. */
+	private TrajectoryPredictor predictor;
+
+	/** The dots of the predicted path are drawn with this batch. */
+	private final GeometryBatch batch = new GeometryBatch();
+
+	/** The color of the dot being drawn, faded along the path. */
+	private final Color dotColor = new Color(Color.pink);
+
 	/**
 	 * Constructs a new RubberBandPainter and associates it with the given
 	 * <code>RubberBand</code>.
 	 * 
 	 * @param rubberBand
 	 *            the {@link RubberBand} to associate this Painter with.
+	 * @param predictor
+	 *            the {@link TrajectoryPredictor} predicting the launch
 	 */
-	public RubberBandPainter(RubberBand rubberBand) {
+	public RubberBandPainter(RubberBand rubberBand,
+			TrajectoryPredictor predictor) {
 		this.rubberBand = rubberBand;
+		this.predictor = predictor;
 	}
 
 	/**
@@ -39,6 +60,29 @@ public class RubberBandPainter implements Painter {
 		return true;
 	}
 
+	/**
+	 * @see com.vesalaakso.rbb.view.Painter#isVisible(WorldView)
+	 * 
+	 * @return <code>true</code>, if the rubber band is being pulled and some
+	 *         of it or its predicted path is on the screen.
+	 */
+	@Override
+	public boolean isVisible(WorldView view) {
+		if (!rubberBand.isPulled()) {
+			return false;
+		}
+		if (predictor.getPointCount() > 0) {
+			// The path may be anywhere, the dots are cheap to draw anyway.
+			return true;
+		}
+		Vector p1 = rubberBand.getStartPoint();
+		Vector p2 = rubberBand.getEndPoint();
+		float x = Math.min(p1.x, p2.x);
+		float y = Math.min(p1.y, p2.y);
+		return view.intersects(x, y, Math.abs(p1.x - p2.x),
+				Math.abs(p1.y - p2.y));
+	}
+
 	/**
 	 * @see com.vesalaakso.rbb.view.Painter#paint(Graphics, ResourceManager)
 	 */
@@ -48,6 +92,8 @@ public class RubberBandPainter implements Painter {
 			// Don't paint the rubber band unless it's being pulled.
 			return;
 		}
+		drawPredictedPath();
+
 		Vector p1 = rubberBand.getStartPoint();
 		Vector p2 = rubberBand.getEndPoint();
 
@@ -61,4 +107,17 @@ public class RubberBandPainter implements Painter {
 		g.setLineWidth(oldLineWidth);
 	}
 
+	/** A helper to draw the predicted path as dots fading away */
+	private void drawPredictedPath() {
+		int count = predictor.getPointCount();
+		float half = DOT_SIZE / 2;
+		for (int i = DOT_INTERVAL - 1; i < count; i += DOT_INTERVAL) {
+			dotColor.a = 1 - (float) i / TrajectoryPredictor.PREDICTED_STEPS;
+			batch.fillRect(predictor.getPointX(i) - half,
+					predictor.getPointY(i) - half, DOT_SIZE, DOT_SIZE,
+					dotColor);
+		}
+		batch.flush();
+	}
+
 }
@@ -0,0 +1,56 @@
+package com.vesalaakso.rbb.view;
+
+import org.newdawn.slick.Color;
+
+/**
+ * Collects the glyphs of {@link TextRun}s and draws them with a few OpenGL
+ * calls when {@link #flush()} is called, instead of one string at a time.
+ * Runs in the same font share a texture, so all the text in a font is drawn
+ * with a single call. Runs which weren't laid out into glyphs are drawn by
+ * their fonts right away.
+ *
+ * @author Vesa Laakso
+ */
+public class TextBatch {
+
+	/** The batch the glyphs are collected into. */
+	private final GeometryBatch batch = new GeometryBatch();
+
+	/**
+	 * Adds a run of text.
+	 *
+	 * @param run
+	 *            the text to draw
+	 * @param x
+	 *            the x-coordinate of the left edge of the text
+	 * @param y
+	 *            the y-coordinate of the top edge of the text
+	 * @param color
+	 *            the color to draw the text with
+	 */
+	public void add(TextRun run, float x, float y, Color color) {
+		if (run.getFont() == null) {
+			return;
+		}
+		if (!run.isLaidOut()) {
+			// Keeps the order of the text the same as it was added in.
+			batch.flush();
+			run.getFont().drawString(x, y, run.getString(), color);
+			return;
+		}
+
+		for (int i = 0, count = run.getGlyphCount(); i < count; i++) {
+			batch.drawImage(run.getGlyph(i), x + run.getGlyphX(i),
+					y + run.getGlyphY(i), color);
+		}
+	}
+
+	/**
+	 * Draws all the text added since the last flush and empties the batch.
+	 * The current color is left undefined, so it must be set again before
+	 * drawing anything else.
+	 */
+	public void flush() {
+		batch.flush();
+	}
+}
@@ -0,0 +1,212 @@
+package com.vesalaakso.rbb.view;
+
+import org.newdawn.slick.AngelCodeFont;
+import org.newdawn.slick.Font;
+import org.newdawn.slick.Image;
+
+/**
+ * A string laid out in a font once, to be drawn by a {@link TextBatch} as
+ * many times as wanted. The run is laid out again only when its font or text
+ * changes, so a string which stays the same from frame to frame is measured
+ * and split into glyphs only once.
+ * <p>
+ * Text in an AngelCode font, which the baked fonts are, is laid out into the
+ * images of its glyphs, so that the batch can draw it with the rest of the
+ * text. Text in any other font is drawn by the font itself.
+ *
+ * @author Vesa Laakso
+ */
+public class TextRun {
+
+	/** The font the run is laid out in. */
+	private Font font;
+
+	/** The text of the run. */
+	private final StringBuilder text = new StringBuilder();
+
+	/**
+	 * The text as a string, for fonts which draw the text themselves. Not
+	 * built for the text which is laid out into glyphs.
+	 */
+	private String string = "";
+
+	/** The label of the number set with {@link #setNumber}. */
+	private String label;
+
+	/** The number set with {@link #setNumber}. */
+	private int number;
+
+	/** The width of the text in pixels. */
+	private int width;
+
+	/** Has the text been laid out into glyphs. */
+	private boolean laidOut;
+
+	/** The images of the glyphs, in the order they are drawn. */
+	private Image[] glyphs = new Image[16];
+
+	/** The position of every glyph relative to the run, as x and y. */
+	private float[] offsets = new float[32];
+
+	/** The amount of glyphs. */
+	private int glyphCount;
+
+	/**
+	 * Sets the font and the text of the run. The run is laid out again only
+	 * if either of them has changed.
+	 *
+	 * @param font
+	 *            the font to lay the text out in
+	 * @param newText
+	 *            the text
+	 * @return <code>true</code> if the run was laid out again
+	 */
+	public boolean set(Font font, CharSequence newText) {
+		if (font == this.font && contentEquals(newText)) {
+			return false;
+		}
+		label = null;
+		this.font = font;
+		text.setLength(0);
+		text.append(newText);
+		layout();
+		return true;
+	}
+
+	/**
+	 * Sets the text of the run to the given label followed by the given
+	 * number, such as "Shots: 3". The run is laid out again only if the font,
+	 * the label or the number has changed, so the text isn't even built when
+	 * the number stays the same.
+	 *
+	 * @param font
+	 *            the font to lay the text out in
+	 * @param newLabel
+	 *            the text before the number
+	 * @param newNumber
+	 *            the number
+	 * @return <code>true</code> if the run was laid out again
+	 */
+	public boolean setNumber(Font font, String newLabel, int newNumber) {
+		if (font == this.font && newLabel.equals(label)
+				&& newNumber == number) {
+			return false;
+		}
+		this.font = font;
+		label = newLabel;
+		number = newNumber;
+		text.setLength(0);
+		text.append(newLabel).append(newNumber);
+		layout();
+		return true;
+	}
+
+	/** A helper to check whether the text of the run is the given text */
+	private boolean contentEquals(CharSequence other) {
+		int length = text.length();
+		if (other.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (text.charAt(i) != other.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** A helper to measure the text and to split it into glyphs */
+	private void layout() {
+		width = font.getWidth(text);
+		glyphCount = 0;
+		laidOut = font instanceof AngelCodeFont;
+		if (!laidOut) {
+			// The font may keep the text around, so it gets a copy.
+			string = text.toString();
+			return;
+		}
+		string = null;
+
+		// The same placement AngelCodeFont uses when it draws the text.
+		AngelCodeFont angelCodeFont = (AngelCodeFont) font;
+		int x = 0;
+		AngelCodeFont.Glyph last = null;
+		for (int i = 0, length = text.length(); i < length; i++) {
+			AngelCodeFont.Glyph glyph = angelCodeFont.getGlyph(text.charAt(i));
+			if (glyph == null) {
+				continue;
+			}
+			if (last != null) {
+				x += last.getKerning(glyph.id);
+			}
+			last = glyph;
+			if (glyph.width > 0 && glyph.height > 0) {
+				add(glyph.image, x + glyph.xoffset, glyph.yoffset);
+			}
+			x += glyph.xadvance;
+		}
+	}
+
+	/** A helper to add a glyph, growing the arrays when needed */
+	private void add(Image image, float x, float y) {
+		if (glyphCount == glyphs.length) {
+			Image[] grownGlyphs = new Image[glyphCount * 2];
+			System.arraycopy(glyphs, 0, grownGlyphs, 0, glyphCount);
+			glyphs = grownGlyphs;
+			float[] grownOffsets = new float[glyphCount * 4];
+			System.arraycopy(offsets, 0, grownOffsets, 0, glyphCount * 2);
+			offsets = grownOffsets;
+		}
+		glyphs[glyphCount] = image;
+		offsets[glyphCount * 2] = x;
+		offsets[glyphCount * 2 + 1] = y;
+		glyphCount++;
+	}
+
+	/**
+	 * Gets the width of the text.
+	 *
+	 * @return the width of the text in pixels
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/** Gets the font the run is laid out in. */
+	Font getFont() {
+		return font;
+	}
+
+	/**
+	 * Gets the text of the run as a string, only for the runs which aren't
+	 * laid out into glyphs.
+	 */
+	String getString() {
+		return string;
+	}
+
+	/** Checks whether the run was laid out into glyphs. */
+	boolean isLaidOut() {
+		return laidOut;
+	}
+
+	/** Gets the amount of glyphs. */
+	int getGlyphCount() {
+		return glyphCount;
+	}
+
+	/** Gets the image of the glyph in the given index. */
+	Image getGlyph(int index) {
+		return glyphs[index];
+	}
+
+	/** Gets the x-coordinate of the glyph in the given index. */
+	float getGlyphX(int index) {
+		return offsets[index * 2];
+	}
+
+	/** Gets the y-coordinate of the glyph in the given index. */
+	float getGlyphY(int index) {
+		return offsets[index * 2 + 1];
+	}
+}
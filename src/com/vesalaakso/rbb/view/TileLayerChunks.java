@@ -0,0 +1,204 @@
+package com.vesalaakso.rbb.view;
+
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Graphics;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.opengl.pbuffer.GraphicsFactory;
+import org.newdawn.slick.tiled.TiledMap;
+
+import com.vesalaakso.rbb.model.Camera;
+import com.vesalaakso.rbb.model.TileMap;
+
+/**
+ * A tile layer of a map baked into offscreen images, chunks, of
+ * {@link #CHUNK_SIZE} times {@link #CHUNK_SIZE} pixels. The tile layers never
+ * change, so they are drawn tile by tile only once and after that only the
+ * chunks on the screen are drawn.
+ *
+ * @author Vesa Laakso
+ */
+class TileLayerChunks {
+
+	/** The width and height of a single chunk, in pixels. */
+	static final int CHUNK_SIZE = 512;
+
+	/** The width and height of a single chunk, in tiles. */
+	private static final int CHUNK_TILES = CHUNK_SIZE / TileMap.TILE_SIZE;
+
+	/** The color the chunks are cleared with before drawing the tiles. */
+	private static final Color TRANSPARENT = new Color(0, 0, 0, 0);
+
+	/** The map the layer is in. */
+	private final TileMap map;
+
+	/** The index of the layer. */
+	private final int layer;
+
+	/** The chunks by their column and row, <code>null</code> if empty. */
+	private final Image[][] chunks;
+
+	/**
+	 * Bakes the given layer of the given map into chunks.
+	 *
+	 * @param map
+	 *            the map to bake
+	 * @param layer
+	 *            the index of the layer to bake
+	 * @param g
+	 *            the graphics context the game is drawn with, which is made
+	 *            current again after baking
+	 * @throws SlickException
+	 *             if offscreen images are not supported
+	 */
+	TileLayerChunks(TileMap map, int layer, Graphics g) throws SlickException {
+		this.map = map;
+		this.layer = layer;
+
+		int columns = (map.getWidthInTiles() + CHUNK_TILES - 1) / CHUNK_TILES;
+		int rows = (map.getHeightInTiles() + CHUNK_TILES - 1) / CHUNK_TILES;
+		chunks = new Image[columns][rows];
+
+		try {
+			for (int column = 0; column < columns; column++) {
+				for (int row = 0; row < rows; row++) {
+					chunks[column][row] = bake(column, row);
+				}
+			}
+		}
+		catch (SlickException e) {
+			destroy();
+			throw e;
+		}
+		finally {
+			Graphics.setCurrent(g);
+		}
+	}
+
+	/**
+	 * A helper to bake a single chunk. Returns <code>null</code> if there are
+	 * no tiles in the chunk.
+	 */
+	private Image bake(int column, int row) throws SlickException {
+		TiledMap tmap = map.getTiledMap();
+		int firstX = column * CHUNK_TILES;
+		int firstY = row * CHUNK_TILES;
+		int lastX = Math.min(firstX + CHUNK_TILES, map.getWidthInTiles());
+		int lastY = Math.min(firstY + CHUNK_TILES, map.getHeightInTiles());
+
+		if (isEmpty(tmap, firstX, firstY, lastX, lastY)) {
+			return null;
+		}
+
+		Image chunk =
+			Image.createOffscreenImage(CHUNK_SIZE, CHUNK_SIZE,
+					getTileSetFilter(tmap));
+		Graphics chunkGraphics = chunk.getGraphics();
+		Graphics.setCurrent(chunkGraphics);
+		chunkGraphics.setBackground(TRANSPARENT);
+		chunkGraphics.clear();
+		tmap.render(0, 0, firstX, firstY, lastX - firstX, lastY - firstY,
+				layer, false);
+		chunkGraphics.flush();
+
+		// Only the texture is needed from now on.
+		GraphicsFactory.releaseGraphicsForImage(chunk);
+		return chunk;
+	}
+
+	/**
+	 * A helper to get the filter the tile set images are scaled with, so that
+	 * the chunks look the same as the tiles drawn one by one when the camera
+	 * zooms. If the tile sets disagree, linear filtering wins.
+	 */
+	private static int getTileSetFilter(TiledMap tmap) {
+		int filter = Image.FILTER_NEAREST;
+		for (int i = 0; i < tmap.getTileSetCount(); i++) {
+			Image tiles = tmap.getTileSet(i).tiles;
+			if (tiles != null && tiles.getFilter() == Image.FILTER_LINEAR) {
+				filter = Image.FILTER_LINEAR;
+			}
+		}
+		return filter;
+	}
+
+	/** A helper to check whether there are no tiles in the given area */
+	private boolean isEmpty(TiledMap tmap, int firstX, int firstY, int lastX,
+			int lastY) {
+		for (int x = firstX; x < lastX; x++) {
+			for (int y = firstY; y < lastY; y++) {
+				if (tmap.getTileId(x, y, layer) != 0) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether these are the chunks of the given layer of the given map.
+	 *
+	 * @param map
+	 *            the map to check
+	 * @param layer
+	 *            the index of the layer to check
+	 * @return <code>true</code> if these chunks can be used to draw the layer
+	 */
+	boolean isOf(TileMap map, int layer) {
+		return this.map == map && this.layer == layer;
+	}
+
+	/**
+	 * Draws the chunks which are on the screen, at the current camera
+	 * position and scaling.
+	 *
+	 * @param view
+	 *            the area of the world on the screen
+	 */
+	void draw(WorldView view) {
+		Camera cam = view.getCamera();
+		int firstColumn =
+			Math.max(0, (int) Math.floor(view.getLeft() / CHUNK_SIZE));
+		int firstRow = Math.max(0, (int) Math.floor(view.getTop() / CHUNK_SIZE));
+		int lastColumn =
+			Math.min(chunks.length - 1,
+					(int) Math.floor(view.getRight() / CHUNK_SIZE));
+		int lastRow = (int) Math.floor(view.getBottom() / CHUNK_SIZE);
+
+		for (int column = firstColumn; column <= lastColumn; column++) {
+			Image[] chunkColumn = chunks[column];
+
+			// Round the edges to whole pixels, so that there are no seams
+			// between the chunks.
+			int x1 = Math.round(cam.worldToScreenX(column * CHUNK_SIZE));
+			int x2 = Math.round(cam.worldToScreenX((column + 1) * CHUNK_SIZE));
+			int columnLastRow = Math.min(chunkColumn.length - 1, lastRow);
+			for (int row = firstRow; row <= columnLastRow; row++) {
+				Image chunk = chunkColumn[row];
+				if (chunk == null) {
+					continue;
+				}
+				int y1 = Math.round(cam.worldToScreenY(row * CHUNK_SIZE));
+				int y2 = Math.round(cam.worldToScreenY((row + 1) * CHUNK_SIZE));
+				chunk.draw(x1, y1, x2 - x1, y2 - y1);
+			}
+		}
+	}
+
+	/** Destroys the chunk images. */
+	void destroy() {
+		for (Image[] chunkColumn : chunks) {
+			for (Image chunk : chunkColumn) {
+				if (chunk == null) {
+					continue;
+				}
+				try {
+					chunk.destroy();
+				}
+				catch (SlickException e) {
+					// Nothing to do, the texture is leaked.
+				}
+			}
+		}
+	}
+}
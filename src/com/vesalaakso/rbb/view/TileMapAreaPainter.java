@@ -27,6 +27,15 @@ public class TileMapAreaPainter implements Painter {
 	 */
 	private TileMapContainer mapContainer;
 
+	/** The area of the world on the screen. */
+	private WorldView view;
+
+	/** The color the current area is drawn with, reused for every area. */
+	private Color areaColor = new Color(0, 0, 0, 0);
+
+	/** Collects every area so that they are drawn with a few calls. */
+	private final GeometryBatch batch = new GeometryBatch();
+
 	/**
 	 * Constructs a new painter and associates it with the given map. Also loads
 	 * the gravity area image.
@@ -34,9 +43,14 @@ public class TileMapAreaPainter implements Painter {
 	 * @param currentMapContainer
 	 *            The {@link TileMapContainer} which will be queried to get the
 	 *            current map to be drawn.
+	 * @param view
+	 *            the area of the world on the screen, areas outside of it are
+	 *            not drawn
 	 */
-	public TileMapAreaPainter(TileMapContainer currentMapContainer) {
+	public TileMapAreaPainter(TileMapContainer currentMapContainer,
+			WorldView view) {
 		this.mapContainer = currentMapContainer;
+		this.view = view;
 	}
 
 	/**
@@ -49,6 +63,17 @@ public class TileMapAreaPainter implements Painter {
 		return true;
 	}
 
+	/**
+	 * @see com.vesalaakso.rbb.view.Painter#isVisible(WorldView)
+	 * 
+	 * @return <code>true</code>, every area is checked separately when
+	 *         painting.
+	 */
+	@Override
+	public boolean isVisible(WorldView view) {
+		return true;
+	}
+
 	/**
 	 * @see com.vesalaakso.rbb.view.Painter#paint(Graphics, ResourceManager)
 	 */
@@ -67,8 +92,8 @@ public class TileMapAreaPainter implements Painter {
 			modulate = 1.0f - (modulate - 1.0f);
 		}
 
-		for (TileMapObject area : safeAreas) {
-			paintArea(g, area, modulate);
+		for (int i = 0, n = safeAreas.size(); i < n; i++) {
+			paintArea(g, safeAreas.get(i), modulate);
 		}
 		paintArea(g, spawnArea, modulate);
 		paintArea(g, finishArea, modulate);
@@ -76,24 +101,43 @@ public class TileMapAreaPainter implements Painter {
 		// Paint gravity areas
 		List<GravityArea> gravityAreas = map.getGravityAreas();
 		Image gravityAreaImage = resManager.getImage(Gfx.MAP_GRAV_ARROW);
-		for (GravityArea area : gravityAreas) {
-			Color c = area.getColor();
-			c = c.brighter(modulate * .75f);
-			g.setColor(new Color(c.r, c.g, c.b, 0.15f));
-			g.drawRoundRect(area.x, area.y, area.width, area.height, 10);
-			g.drawImage(gravityAreaImage, area.x, area.y, c);
+		for (int i = 0, n = gravityAreas.size(); i < n; i++) {
+			GravityArea area = gravityAreas.get(i);
+			if (!view.intersects(area.x, area.y, area.width, area.height)) {
+				continue;
+			}
+			setAreaColor(area, modulate, 0.15f);
+			batch.drawRoundRect(area.x, area.y, area.width, area.height, 10,
+					areaColor);
+			areaColor.a = area.getColor().a;
+			batch.drawImage(gravityAreaImage, area.x, area.y, areaColor);
 		}
+
+		batch.flush();
 	}
 
 	/**
-	 * A helper which draws a single <code>TileMapObject</code> with the current
-	 * graphics context properly set.
+	 * A helper which sets {@link #areaColor} to the brightened color of the
+	 * given area, the same way <code>Color.brighter()</code> would.
 	 */
-	private void paintArea(Graphics g, TileMapObject area, float modulate) {
+	private void setAreaColor(TileMapObject area, float modulate, float alpha) {
 		Color c = area.getColor();
-		c = c.brighter(modulate * .75f);
-		g.setColor(new Color(c.r, c.g, c.b, 0.33f));
-		g.fillRect(area.x, area.y, area.width, area.height);
+		float scale = 1 + modulate * .75f;
+		areaColor.r = Math.min(c.r * scale, 1);
+		areaColor.g = Math.min(c.g * scale, 1);
+		areaColor.b = Math.min(c.b * scale, 1);
+		areaColor.a = alpha;
+	}
+
+	/**
+	 * A helper which adds a single <code>TileMapObject</code> to the batch.
+	 */
+	private void paintArea(Graphics g, TileMapObject area, float modulate) {
+		if (!view.intersects(area.x, area.y, area.width, area.height)) {
+			return;
+		}
+		setAreaColor(area, modulate, 0.33f);
+		batch.fillRect(area.x, area.y, area.width, area.height, areaColor);
 	}
 
 }
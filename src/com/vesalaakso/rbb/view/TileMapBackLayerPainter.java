@@ -19,9 +19,12 @@ public class TileMapBackLayerPainter extends TileMapPainter {
 	 * @param mapContainer
 	 *            The {@link TileMapContainer} which will be queried to get the
 	 *            current map to be drawn.
+	 * @param view
+	 *            the area of the world on the screen
 	 */
-	public TileMapBackLayerPainter(TileMapContainer mapContainer) {
-		super(mapContainer);
+	public TileMapBackLayerPainter(TileMapContainer mapContainer,
+			WorldView view) {
+		super(mapContainer, view);
 	}
 
 	/**
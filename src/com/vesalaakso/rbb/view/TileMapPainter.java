@@ -1,12 +1,13 @@
 package com.vesalaakso.rbb.view;
 
 import org.newdawn.slick.Graphics;
+import org.newdawn.slick.SlickException;
 import org.newdawn.slick.tiled.TiledMap;
+import org.newdawn.slick.util.Log;
 
 import com.vesalaakso.rbb.model.Camera;
 import com.vesalaakso.rbb.model.TileMap;
 import com.vesalaakso.rbb.model.TileMapContainer;
-import com.vesalaakso.rbb.util.Utils;
 
 /**
  * Handles the drawing of the tile map.
@@ -19,14 +20,27 @@ public abstract class TileMapPainter implements Painter {
 	 */
 	private TileMapContainer mapContainer;
 
+	/** The area of the world on the screen. */
+	private WorldView view;
+
+	/** The layer baked into chunks, <code>null</code> until first drawn. */
+	private TileLayerChunks chunks;
+
+	/** Can the layers be baked, false if offscreen images didn't work. */
+	private boolean chunksSupported = true;
+
 	/**
 	 * An empty constructor with no access modifier to prevent other than the
 	 * classes in this package instantiating this class.
 	 * 
 	 * @param mapContainer
+	 * @param view
+	 *            the area of the world on the screen, used to draw only the
+	 *            visible part of the map
 	 */
-	TileMapPainter(TileMapContainer mapContainer) {
+	TileMapPainter(TileMapContainer mapContainer, WorldView view) {
 		this.mapContainer = mapContainer;
+		this.view = view;
 	}
 
 	/**
@@ -39,7 +53,8 @@ public abstract class TileMapPainter implements Painter {
 	}
 
 	/**
-	 * Draws the given layer of the map.
+	 * Draws the given layer of the map. The layer is baked into chunks the
+	 * first time it is drawn and only the chunks on the screen are drawn.
 	 * 
 	 * @param layer
 	 *            which layer should be drawn
@@ -48,16 +63,45 @@ public abstract class TileMapPainter implements Painter {
 	 */
 	protected void drawLayer(int layer, Graphics g) {
 		TileMap map = mapContainer.getMap();
+
+		if (chunks == null || !chunks.isOf(map, layer)) {
+			if (chunks != null) {
+				chunks.destroy();
+				chunks = null;
+			}
+			if (chunksSupported) {
+				try {
+					chunks = new TileLayerChunks(map, layer, g);
+				}
+				catch (SlickException e) {
+					Log.warn("Can't bake the tile map, drawing it tile by tile",
+							e);
+					chunksSupported = false;
+				}
+			}
+		}
+
+		if (chunks != null) {
+			chunks.draw(view);
+		}
+		else {
+			drawTiles(map, layer, g);
+		}
+	}
+
+	/** A helper to draw the layer tile by tile */
+	private void drawTiles(TileMap map, int layer, Graphics g) {
 		TiledMap tmap = map.getTiledMap();
 
 		// Save old transform and apply scaling manually
 		g.pushTransform();
-		g.scale(Camera.get().getScaling(), Camera.get().getScaling());
+		Camera cam = view.getCamera();
+		g.scale(cam.getScaling(), cam.getScaling());
 
 		// Calculate the top left coordinates in screen dimensions after the
 		// camera has moved and scaled.
-		float scrX = Utils.screenToWorldX(0);
-		float scrY = Utils.screenToWorldY(0);
+		float scrX = view.getLeft();
+		float scrY = view.getTop();
 
 		// Calculate the top left tile that will be drawn first
 		int firstTileX = (int) scrX / TileMap.TILE_SIZE;
@@ -86,4 +130,15 @@ public abstract class TileMapPainter implements Painter {
 		return false;
 	}
 
+	/**
+	 * @see com.vesalaakso.rbb.view.Painter#isVisible(WorldView)
+	 * 
+	 * @return <code>true</code>, the visible part of the map is picked
+	 *         when drawing.
+	 */
+	@Override
+	public boolean isVisible(WorldView view) {
+		return true;
+	}
+
 }
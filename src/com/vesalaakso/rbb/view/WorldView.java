@@ -0,0 +1,127 @@
+package com.vesalaakso.rbb.view;
+
+import com.vesalaakso.rbb.RubberBandBall;
+import com.vesalaakso.rbb.model.Camera;
+
+/**
+ * The area of the world that is currently on the screen. The
+ * {@link PainterContainer} updates the area from the camera before painting
+ * every frame, and painters use it to skip whatever is off-screen.
+ *
+ * @author Vesa Laakso
+ */
+public class WorldView {
+
+	/** The camera the area is seen through. */
+	private final Camera camera;
+
+	/** The world x-coordinate of the left edge of the screen. */
+	private float left;
+
+	/** The world y-coordinate of the top edge of the screen. */
+	private float top;
+
+	/** The world x-coordinate of the right edge of the screen. */
+	private float right;
+
+	/** The world y-coordinate of the bottom edge of the screen. */
+	private float bottom;
+
+	/**
+	 * Constructs a new view of the world through the given camera.
+	 *
+	 * @param camera
+	 *            the camera the world is seen through
+	 */
+	WorldView(Camera camera) {
+		this.camera = camera;
+	}
+
+	/** Updates the area from the current camera location and scaling. */
+	void update() {
+		left = camera.screenToWorldX(0);
+		top = camera.screenToWorldY(0);
+		right = camera.screenToWorldX(RubberBandBall.SCREEN_WIDTH);
+		bottom = camera.screenToWorldY(RubberBandBall.SCREEN_HEIGHT);
+	}
+
+	/**
+	 * Gets the camera the world is seen through.
+	 *
+	 * @return the camera
+	 */
+	public Camera getCamera() {
+		return camera;
+	}
+
+	/**
+	 * Gets the world x-coordinate of the left edge of the screen.
+	 *
+	 * @return the left edge in world coordinates
+	 */
+	public float getLeft() {
+		return left;
+	}
+
+	/**
+	 * Gets the world y-coordinate of the top edge of the screen.
+	 *
+	 * @return the top edge in world coordinates
+	 */
+	public float getTop() {
+		return top;
+	}
+
+	/**
+	 * Gets the world x-coordinate of the right edge of the screen.
+	 *
+	 * @return the right edge in world coordinates
+	 */
+	public float getRight() {
+		return right;
+	}
+
+	/**
+	 * Gets the world y-coordinate of the bottom edge of the screen.
+	 *
+	 * @return the bottom edge in world coordinates
+	 */
+	public float getBottom() {
+		return bottom;
+	}
+
+	/**
+	 * Checks whether the given rectangle is at least partly on the screen.
+	 *
+	 * @param x
+	 *            the x-coordinate of the rectangle, in world coordinates
+	 * @param y
+	 *            the y-coordinate of the rectangle, in world coordinates
+	 * @param width
+	 *            the width of the rectangle
+	 * @param height
+	 *            the height of the rectangle
+	 * @return <code>true</code> if the rectangle is visible
+	 */
+	public boolean intersects(float x, float y, float width, float height) {
+		return x <= right && x + width >= left && y <= bottom
+				&& y + height >= top;
+	}
+
+	/**
+	 * Checks whether the given circle is at least partly on the screen. The
+	 * check is done against the bounding box of the circle, so circles just
+	 * off the corners of the screen count as visible.
+	 *
+	 * @param x
+	 *            the x-coordinate of the center, in world coordinates
+	 * @param y
+	 *            the y-coordinate of the center, in world coordinates
+	 * @param radius
+	 *            the radius of the circle
+	 * @return <code>true</code> if the circle is visible
+	 */
+	public boolean intersectsCircle(float x, float y, float radius) {
+		return intersects(x - radius, y - radius, radius * 2, radius * 2);
+	}
+}